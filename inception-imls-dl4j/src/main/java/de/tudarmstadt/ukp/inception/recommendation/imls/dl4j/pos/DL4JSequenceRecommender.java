@@ -25,8 +25,14 @@ import static org.apache.uima.fit.util.CasUtil.selectCovered;
 import static org.nd4j.linalg.indexing.NDArrayIndex.all;
 import static org.nd4j.linalg.indexing.NDArrayIndex.point;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -46,6 +52,7 @@ import org.deeplearning4j.nn.conf.layers.GravesLSTM;
 import org.deeplearning4j.nn.conf.layers.RnnOutputLayer;
 import org.deeplearning4j.nn.conf.layers.recurrent.Bidirectional;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.util.ModelSerializer;
 import org.dkpro.core.api.embeddings.binary.BinaryVectorizer;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.DataSet;
@@ -62,7 +69,9 @@ import de.tudarmstadt.ukp.dkpro.core.api.datasets.DatasetFactory;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
 import de.tudarmstadt.ukp.inception.recommendation.api.evaluation.DataSplitter;
+import de.tudarmstadt.ukp.inception.recommendation.api.evaluation.KFoldSplitter;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.CasStream;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngine;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationException;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext;
@@ -101,6 +110,20 @@ public class DL4JSequenceRecommender
 
     @Override
     public void train(RecommenderContext aContext, List<CAS> aCasses)
+        throws RecommendationException
+    {
+        train(aContext, CasStream.of(aCasses));
+    }
+
+    @Override
+    public boolean supportsStreaming()
+    {
+        return true;
+    }
+
+    @Override
+    public void train(RecommenderContext aContext, CasStream aCasses)
+        throws RecommendationException
     {
         // Prepare a map where we store the mapping from labels to numeric label IDs - i.e.
         // which index in the label vector represents which label
@@ -152,13 +175,14 @@ public class DL4JSequenceRecommender
         return tagset;
     }
     
-    private List<Sample> extractData(List<CAS> aCasses, boolean aExtractLabels)
+    private List<Sample> extractData(CasStream aCasses, boolean aExtractLabels)
+        throws RecommendationException
     {
         long start = System.currentTimeMillis();
         
         List<Sample> data = new ArrayList<>();
         
-        for (CAS cas : aCasses) {
+        aCasses.forEach(cas -> {
             Type sentenceType = getType(cas, Sentence.class);
             Type tokenType = getType(cas, Token.class);
             Type annotationType = getType(cas, layerName);
@@ -177,7 +201,7 @@ public class DL4JSequenceRecommender
                     data.add(new Sample(tokens, null));
                 }
             }
-        }
+        });
         
         log.trace("Extracting data took {}ms", System.currentTimeMillis() - start);
         
@@ -359,6 +383,12 @@ public class DL4JSequenceRecommender
                 new RecommendationException("Key [" + KEY_MODEL + "] not found in context"));
         
         try {
+            // This engine instance is not necessarily the one which trained the model (e.g. if
+            // the model was restored from the model store), so make sure that the embeddings are
+            // loaded and that we use the same unknown-word vector as during training
+            randUnk = aContext.get(KEY_UNKNOWN).orElse(null);
+            ensureEmbeddingsAreAvailable();
+            
             Type sentenceType = getType(aCas, Sentence.class);
             Type tokenType = getType(aCas, Token.class);
             Type predictionType = getAnnotationType(aCas, PredictedSpan.class);
@@ -456,20 +486,98 @@ public class DL4JSequenceRecommender
         return outcomes;
     }
 
+    @Override
+    public boolean supportsModelPersistence()
+    {
+        return true;
+    }
+
+    @Override
+    public void writeModel(RecommenderContext aContext, OutputStream aStream) throws IOException
+    {
+        String[] tagset = aContext.get(KEY_TAGSET).orElseThrow(() ->
+                new IOException("Key [" + KEY_TAGSET + "] not found in context"));
+        MultiLayerNetwork model = aContext.get(KEY_MODEL).orElseThrow(() ->
+                new IOException("Key [" + KEY_MODEL + "] not found in context"));
+        INDArray unknown = aContext.get(KEY_UNKNOWN).orElseThrow(() ->
+                new IOException("Key [" + KEY_UNKNOWN + "] not found in context"));
+        
+        // Not closing the stream here since the caller owns it
+        DataOutputStream os = new DataOutputStream(aStream);
+        os.writeInt(tagset.length);
+        for (String tag : tagset) {
+            os.writeUTF(tag);
+        }
+        Nd4j.write(unknown, os);
+        
+        // The model serializer closes the stream it writes to, so we buffer the model and write
+        // it with a length prefix
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        ModelSerializer.writeModel(model, buffer, false);
+        os.writeInt(buffer.size());
+        buffer.writeTo(os);
+        os.flush();
+    }
+
+    @Override
+    public void readModel(RecommenderContext aContext, InputStream aStream) throws IOException
+    {
+        DataInputStream is = new DataInputStream(aStream);
+        String[] tagset = new String[is.readInt()];
+        for (int i = 0; i < tagset.length; i++) {
+            tagset[i] = is.readUTF();
+        }
+        INDArray unknown = Nd4j.read(is);
+        
+        byte[] modelData = new byte[is.readInt()];
+        is.readFully(modelData);
+        MultiLayerNetwork model = ModelSerializer
+                .restoreMultiLayerNetwork(new ByteArrayInputStream(modelData));
+        
+        aContext.put(KEY_MODEL, model);
+        aContext.put(KEY_TAGSET, tagset);
+        aContext.put(KEY_UNKNOWN, unknown);
+        aContext.markAsReadyForPrediction();
+    }
+
     @Override
     public double evaluate(List<CAS> aCas, DataSplitter aDataSplitter)
+        throws RecommendationException
+    {
+        return evaluate(CasStream.of(aCas), aDataSplitter);
+    }
+
+    @Override
+    public double evaluate(CasStream aCasses, DataSplitter aDataSplitter)
+        throws RecommendationException
+    {
+        // Extract the data from the CASes
+        return evaluateSamples(extractData(aCasses, true), aDataSplitter);
+    }
+
+    @Override
+    public double crossValidate(CasStream aCasses, int aFolds) throws RecommendationException
+    {
+        // Extract the samples only once instead of consuming the stream once per fold
+        List<Sample> data = extractData(aCasses, true);
+        double total = 0.0;
+        for (int fold = 0; fold < aFolds; fold++) {
+            total += evaluateSamples(data, new KFoldSplitter(aFolds, fold));
+        }
+        return total / aFolds;
+    }
+
+    private double evaluateSamples(List<Sample> aData, DataSplitter aDataSplitter)
     {
         // Prepare a map where we store the mapping from labels to numeric label IDs - i.e.
         // which index in the label vector represents which label
         Object2IntMap<String> tagsetCollector = new Object2IntOpenHashMap<>();
 
-        // Extract the data from the CASes
-        List<Sample> data = extractData(aCas, true);
         List<Sample> trainingSet = new ArrayList<>();
         List<Sample> testSet = new ArrayList<>();
 
         // Split the data up into training and test sets
-        for (Sample sample : data) {
+        for (Sample sample : aData) {
             switch (aDataSplitter.getTargetSet(sample)) {
             case TRAIN:
                 trainingSet.add(sample);
@@ -489,7 +597,7 @@ public class DL4JSequenceRecommender
         }
 
         log.info("Training on [{}] items, predicting on [{}] of total [{}]", trainingSet.size(),
-                testSet.size(), data.size());
+                testSet.size(), aData.size());
 
         try {
             ensureEmbeddingsAreAvailable();
@@ -24,12 +24,16 @@ import static org.apache.uima.fit.util.CasUtil.select;
 import static org.apache.uima.fit.util.CasUtil.selectCovered;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.io.output.CloseShieldOutputStream;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.Feature;
@@ -41,7 +45,9 @@ import org.slf4j.LoggerFactory;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
 import de.tudarmstadt.ukp.inception.recommendation.api.evaluation.DataSplitter;
+import de.tudarmstadt.ukp.inception.recommendation.api.evaluation.KFoldSplitter;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.CasStream;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngine;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationException;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext;
@@ -83,6 +89,19 @@ public class OpenNlpDoccatRecommender
     @Override
     public void train(RecommenderContext aContext, List<CAS> aCasses)
         throws RecommendationException
+    {
+        train(aContext, CasStream.of(aCasses));
+    }
+
+    @Override
+    public boolean supportsStreaming()
+    {
+        return true;
+    }
+
+    @Override
+    public void train(RecommenderContext aContext, CasStream aCasses)
+        throws RecommendationException
     {
         List<DocumentSample> nameSamples = extractSamples(aCasses);
         
@@ -132,15 +151,60 @@ public class OpenNlpDoccatRecommender
         }
     }
 
+    @Override
+    public boolean supportsModelPersistence()
+    {
+        return true;
+    }
+
+    @Override
+    public void writeModel(RecommenderContext aContext, OutputStream aStream) throws IOException
+    {
+        DoccatModel model = aContext.get(KEY_MODEL).orElseThrow(() ->
+                new IOException("Key [" + KEY_MODEL + "] not found in context"));
+        model.serialize(new CloseShieldOutputStream(aStream));
+    }
+
+    @Override
+    public void readModel(RecommenderContext aContext, InputStream aStream) throws IOException
+    {
+        aContext.put(KEY_MODEL, new DoccatModel(new CloseShieldInputStream(aStream)));
+        aContext.markAsReadyForPrediction();
+    }
+
     @Override
     public double evaluate(List<CAS> aCasses, DataSplitter aDataSplitter)
         throws RecommendationException
     {
+        return evaluate(CasStream.of(aCasses), aDataSplitter);
+    }
+
+    @Override
+    public double evaluate(CasStream aCasses, DataSplitter aDataSplitter)
+        throws RecommendationException
+    {
+        return evaluateSamples(extractSamples(aCasses), aDataSplitter);
+    }
+
+    @Override
+    public double crossValidate(CasStream aCasses, int aFolds) throws RecommendationException
+    {
+        // Extract the samples only once instead of consuming the stream once per fold
         List<DocumentSample> data = extractSamples(aCasses);
+        double total = 0.0;
+        for (int fold = 0; fold < aFolds; fold++) {
+            total += evaluateSamples(data, new KFoldSplitter(aFolds, fold));
+        }
+        return total / aFolds;
+    }
+
+    private double evaluateSamples(List<DocumentSample> aData, DataSplitter aDataSplitter)
+        throws RecommendationException
+    {
         List<DocumentSample> trainingSet = new ArrayList<>();
         List<DocumentSample> testSet = new ArrayList<>();
 
-        for (DocumentSample nameSample : data) {
+        for (DocumentSample nameSample : aData) {
             switch (aDataSplitter.getTargetSet(nameSample)) {
             case TRAIN:
                 trainingSet.add(nameSample);
@@ -159,7 +223,7 @@ public class OpenNlpDoccatRecommender
             return 0.0;
         }
 
-        LOG.info("Evaluating on {} items (training set size {}, test set size {})", data.size(),
+        LOG.info("Evaluating on {} items (training set size {}, test set size {})", aData.size(),
                 trainingSet.size(), testSet.size());
 
         // Train model
@@ -178,10 +242,11 @@ public class OpenNlpDoccatRecommender
         }
     }
 
-    private List<DocumentSample> extractSamples(List<CAS> aCasses)
+    private List<DocumentSample> extractSamples(CasStream aCasses)
+        throws RecommendationException
     {
         List<DocumentSample> samples = new ArrayList<>();
-        for (CAS cas : aCasses) {
+        aCasses.forEach(cas -> {
             Type sentenceType = getType(cas, Sentence.class);
             Type tokenType = getType(cas, Token.class);
 
@@ -206,7 +271,7 @@ public class OpenNlpDoccatRecommender
                     }
                 }
             }
-        }
+        });
         return samples;
     }
 
@@ -25,12 +25,16 @@ import static org.apache.uima.fit.util.CasUtil.select;
 import static org.apache.uima.fit.util.CasUtil.selectCovered;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.io.output.CloseShieldOutputStream;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.Feature;
 import org.apache.uima.cas.Type;
@@ -41,7 +45,9 @@ import org.slf4j.LoggerFactory;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
 import de.tudarmstadt.ukp.inception.recommendation.api.evaluation.DataSplitter;
+import de.tudarmstadt.ukp.inception.recommendation.api.evaluation.KFoldSplitter;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.CasStream;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngine;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationException;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext;
@@ -83,6 +89,19 @@ public class OpenNlpNerRecommender
     @Override
     public void train(RecommenderContext aContext, List<CAS> aCasses)
         throws RecommendationException
+    {
+        train(aContext, CasStream.of(aCasses));
+    }
+
+    @Override
+    public boolean supportsStreaming()
+    {
+        return true;
+    }
+
+    @Override
+    public void train(RecommenderContext aContext, CasStream aCasses)
+        throws RecommendationException
     {
         List<NameSample> nameSamples = extractNameSamples(aCasses);
         
@@ -136,15 +155,66 @@ public class OpenNlpNerRecommender
         }
     }
 
+    @Override
+    public boolean supportsModelPersistence()
+    {
+        return true;
+    }
+
+    @Override
+    public void writeModel(RecommenderContext aContext, OutputStream aStream) throws IOException
+    {
+        TokenNameFinderModel model = aContext.get(KEY_MODEL).orElseThrow(() ->
+                new IOException("Key [" + KEY_MODEL + "] not found in context"));
+        model.serialize(new CloseShieldOutputStream(aStream));
+    }
+
+    @Override
+    public void readModel(RecommenderContext aContext, InputStream aStream) throws IOException
+    {
+        aContext.put(KEY_MODEL, new TokenNameFinderModel(new CloseShieldInputStream(aStream)));
+        aContext.markAsReadyForPrediction();
+    }
+
     @Override
     public double evaluate(List<CAS> aCasses, DataSplitter aDataSplitter)
         throws RecommendationException
     {
+        return evaluate(CasStream.of(aCasses), aDataSplitter);
+    }
+
+    @Override
+    public double evaluate(CasStream aCasses, DataSplitter aDataSplitter)
+        throws RecommendationException
+    {
+        return evaluateSamples(extractNameSamples(aCasses), aDataSplitter);
+    }
+
+    @Override
+    public double crossValidate(List<CAS> aCasses, int aFolds) throws RecommendationException
+    {
+        return crossValidate(CasStream.of(aCasses), aFolds);
+    }
+
+    @Override
+    public double crossValidate(CasStream aCasses, int aFolds) throws RecommendationException
+    {
+        // Extract the samples only once and reuse them for all folds
         List<NameSample> data = extractNameSamples(aCasses);
+        double total = 0.0;
+        for (int fold = 0; fold < aFolds; fold++) {
+            total += evaluateSamples(data, new KFoldSplitter(aFolds, fold));
+        }
+        return total / aFolds;
+    }
+
+    private double evaluateSamples(List<NameSample> aData, DataSplitter aDataSplitter)
+        throws RecommendationException
+    {
         List<NameSample> trainingSet = new ArrayList<>();
         List<NameSample> testSet = new ArrayList<>();
 
-        for (NameSample nameSample : data) {
+        for (NameSample nameSample : aData) {
             switch (aDataSplitter.getTargetSet(nameSample)) {
             case TRAIN:
                 trainingSet.add(nameSample);
@@ -164,7 +234,7 @@ public class OpenNlpNerRecommender
         }
 
         LOG.info("Training on [{}] items, predicting on [{}] of total [{}]", trainingSet.size(),
-                testSet.size(), data.size());
+                testSet.size(), aData.size());
 
         // Train model
         TokenNameFinderModel model = train(trainingSet, traits.getParameters());
@@ -183,10 +253,11 @@ public class OpenNlpNerRecommender
         }
     }
 
-    private List<NameSample> extractNameSamples(List<CAS> aCasses)
+    private List<NameSample> extractNameSamples(CasStream aCasses)
+        throws RecommendationException
     {
         List<NameSample> nameSamples = new ArrayList<>();
-        for (CAS cas : aCasses) {
+        aCasses.forEach(cas -> {
             Type sentenceType = getType(cas, Sentence.class);
             Type tokenType = getType(cas, Token.class);
 
@@ -200,7 +271,7 @@ public class OpenNlpNerRecommender
                     nameSamples.add(nameSample);
                 }
             }
-        }
+        });
         return nameSamples;
     }
 
@@ -25,6 +25,8 @@ import static org.apache.uima.fit.util.CasUtil.select;
 import static org.apache.uima.fit.util.CasUtil.selectCovered;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -33,6 +35,8 @@ import java.util.Optional;
 
 import javax.annotation.Nullable;
 
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.io.output.CloseShieldOutputStream;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.Feature;
 import org.apache.uima.cas.Type;
@@ -44,7 +48,9 @@ import org.slf4j.LoggerFactory;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
 import de.tudarmstadt.ukp.inception.recommendation.api.evaluation.DataSplitter;
+import de.tudarmstadt.ukp.inception.recommendation.api.evaluation.KFoldSplitter;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.CasStream;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngine;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationException;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext;
@@ -85,6 +91,19 @@ public class OpenNlpPosRecommender
     @Override
     public void train(RecommenderContext aContext, List<CAS> aCasses)
         throws RecommendationException
+    {
+        train(aContext, CasStream.of(aCasses));
+    }
+
+    @Override
+    public boolean supportsStreaming()
+    {
+        return true;
+    }
+
+    @Override
+    public void train(RecommenderContext aContext, CasStream aCasses)
+        throws RecommendationException
     {
         List<POSSample> posSamples = extractPosSamples(aCasses);
 
@@ -161,15 +180,60 @@ public class OpenNlpPosRecommender
         }
     }
 
+    @Override
+    public boolean supportsModelPersistence()
+    {
+        return true;
+    }
+
+    @Override
+    public void writeModel(RecommenderContext aContext, OutputStream aStream) throws IOException
+    {
+        POSModel model = aContext.get(KEY_MODEL).orElseThrow(() ->
+                new IOException("Key [" + KEY_MODEL + "] not found in context"));
+        model.serialize(new CloseShieldOutputStream(aStream));
+    }
+
+    @Override
+    public void readModel(RecommenderContext aContext, InputStream aStream) throws IOException
+    {
+        aContext.put(KEY_MODEL, new POSModel(new CloseShieldInputStream(aStream)));
+        aContext.markAsReadyForPrediction();
+    }
+
     @Override
     public double evaluate(List<CAS> aCasses, DataSplitter aDataSplitter)
         throws RecommendationException
     {
+        return evaluate(CasStream.of(aCasses), aDataSplitter);
+    }
+
+    @Override
+    public double evaluate(CasStream aCasses, DataSplitter aDataSplitter)
+        throws RecommendationException
+    {
+        return evaluateSamples(extractPosSamples(aCasses), aDataSplitter);
+    }
+
+    @Override
+    public double crossValidate(CasStream aCasses, int aFolds) throws RecommendationException
+    {
+        // Extract the samples only once instead of consuming the stream once per fold
         List<POSSample> data = extractPosSamples(aCasses);
+        double total = 0.0;
+        for (int fold = 0; fold < aFolds; fold++) {
+            total += evaluateSamples(data, new KFoldSplitter(aFolds, fold));
+        }
+        return total / aFolds;
+    }
+
+    private double evaluateSamples(List<POSSample> aData, DataSplitter aDataSplitter)
+        throws RecommendationException
+    {
         List<POSSample> trainingSet = new ArrayList<>();
         List<POSSample> testSet = new ArrayList<>();
 
-        for (POSSample posSample : data) {
+        for (POSSample posSample : aData) {
             switch (aDataSplitter.getTargetSet(posSample)) {
             case TRAIN:
                 trainingSet.add(posSample);
@@ -189,7 +253,7 @@ public class OpenNlpPosRecommender
         }
 
         LOG.info("Training on [{}] items, predicting on [{}] of total [{}]", trainingSet.size(),
-            testSet.size(), data.size());
+            testSet.size(), aData.size());
 
         // Train model
         POSModel model = train(trainingSet, traits.getParameters());
@@ -210,10 +274,11 @@ public class OpenNlpPosRecommender
         }
     }
 
-    private List<POSSample> extractPosSamples(List<CAS> aCasses)
+    private List<POSSample> extractPosSamples(CasStream aCasses)
+        throws RecommendationException
     {
         List<POSSample> posSamples = new ArrayList<>();
-        for (CAS cas : aCasses) {
+        aCasses.forEach(cas -> {
             Type sentenceType = getType(cas, Sentence.class);
             Type tokenType = getType(cas, Token.class);
 
@@ -226,7 +291,7 @@ public class OpenNlpPosRecommender
                 
                 createPosSample(cas, sentence, tokens).map(posSamples::add);
             }
-        }
+        });
         
         LOG.debug("Extracted {} POS samples", posSamples.size());
         
@@ -25,12 +25,18 @@ import static org.apache.uima.fit.util.CasUtil.getType;
 import static org.apache.uima.fit.util.CasUtil.select;
 import static org.apache.uima.fit.util.CasUtil.selectCovered;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+import org.apache.commons.lang3.mutable.MutableInt;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.Feature;
 import org.apache.uima.cas.Type;
@@ -43,7 +49,9 @@ import org.slf4j.LoggerFactory;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
 import de.tudarmstadt.ukp.inception.recommendation.api.evaluation.DataSplitter;
+import de.tudarmstadt.ukp.inception.recommendation.api.evaluation.KFoldSplitter;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.CasStream;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngine;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationException;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext;
@@ -73,17 +81,31 @@ public class StringMatchingRecommender
 
     @Override
     public void train(RecommenderContext aContext, List<CAS> aCasses)
+        throws RecommendationException
+    {
+        train(aContext, CasStream.of(aCasses));
+    }
+
+    @Override
+    public boolean supportsStreaming()
+    {
+        return true;
+    }
+
+    @Override
+    public void train(RecommenderContext aContext, CasStream aCasses)
+        throws RecommendationException
     {
         Trie<DictEntry> dict = new Trie<>();
         
-        for (CAS cas : aCasses) {
+        aCasses.forEach(cas -> {
             Type annotationType = getType(cas, layerName);
             Feature labelFeature = annotationType.getFeatureByBaseName(featureName);
 
             for (AnnotationFS ann : select(cas, annotationType)) {
                 learn(dict, ann.getCoveredText(), ann.getFeatureValueAsString(labelFeature));
             }
-        }
+        });
         
         aContext.put(KEY_MODEL, dict);
         aContext.markAsReadyForPrediction();
@@ -148,10 +170,84 @@ public class StringMatchingRecommender
         return data;
     }
 
+    @Override
+    public boolean supportsModelPersistence()
+    {
+        return true;
+    }
+
+    @Override
+    public void writeModel(RecommenderContext aContext, OutputStream aStream) throws IOException
+    {
+        Trie<DictEntry> dict = aContext.get(KEY_MODEL).orElseThrow(() ->
+                new IOException("Key [" + KEY_MODEL + "] not found in context"));
+        
+        // Not closing the stream here since the caller owns it
+        DataOutputStream os = new DataOutputStream(aStream);
+        os.writeInt(dict.size());
+        for (String key : dict.keys()) {
+            DictEntry entry = dict.get(key);
+            os.writeUTF(key);
+            os.writeInt(entry.labels.length);
+            for (int i = 0; i < entry.labels.length; i++) {
+                os.writeUTF(entry.labels[i]);
+                os.writeInt(entry.counts[i]);
+            }
+        }
+        os.flush();
+    }
+
+    @Override
+    public void readModel(RecommenderContext aContext, InputStream aStream) throws IOException
+    {
+        Trie<DictEntry> dict = new Trie<>();
+        
+        DataInputStream is = new DataInputStream(aStream);
+        int size = is.readInt();
+        for (int n = 0; n < size; n++) {
+            DictEntry entry = new DictEntry(is.readUTF());
+            int labelCount = is.readInt();
+            entry.labels = new String[labelCount];
+            entry.counts = new int[labelCount];
+            for (int i = 0; i < labelCount; i++) {
+                entry.labels[i] = is.readUTF();
+                entry.counts[i] = is.readInt();
+            }
+            dict.put(entry.key, entry);
+        }
+        
+        aContext.put(KEY_MODEL, dict);
+        aContext.markAsReadyForPrediction();
+    }
+
     @Override
     public double evaluate(List<CAS> aCasses, DataSplitter aDataSplitter)
+        throws RecommendationException
+    {
+        return evaluate(CasStream.of(aCasses), aDataSplitter);
+    }
+
+    @Override
+    public double evaluate(CasStream aCasses, DataSplitter aDataSplitter)
+        throws RecommendationException
     {
+        return evaluateSamples(extractData(aCasses, layerName, featureName), aDataSplitter);
+    }
+
+    @Override
+    public double crossValidate(CasStream aCasses, int aFolds) throws RecommendationException
+    {
+        // Extract the samples only once instead of consuming the stream once per fold
         List<Sample> data = extractData(aCasses, layerName, featureName);
+        double total = 0.0;
+        for (int fold = 0; fold < aFolds; fold++) {
+            total += evaluateSamples(data, new KFoldSplitter(aFolds, fold));
+        }
+        return total / aFolds;
+    }
+
+    private double evaluateSamples(Collection<Sample> aData, DataSplitter aDataSplitter)
+    {
         List<Sample> trainingSet = new ArrayList<>();
         List<Sample> testSet = new ArrayList<>();
 
@@ -161,7 +257,7 @@ public class StringMatchingRecommender
         // test set.
         int testSetContinuumSize = 0;
         
-        for (Sample sample : data) {
+        for (Sample sample : aData) {
             switch (aDataSplitter.getTargetSet(sample)) {
             case TRAIN:
                 trainingSet.add(sample);
@@ -182,7 +278,7 @@ public class StringMatchingRecommender
         }
 
         log.info("Training on [{}] items, predicting on [{}] of total [{}]", trainingSet.size(),
-                testSet.size(), data.size());        
+                testSet.size(), aData.size());        
             
         // Train
         Trie<DictEntry> dict = new Trie<>();
@@ -272,14 +368,15 @@ public class StringMatchingRecommender
         }
     }
     
-    private List<Sample> extractData(List<CAS> aCasses, String aLayerName, String aFeatureName)
+    private List<Sample> extractData(CasStream aCasses, String aLayerName, String aFeatureName)
+        throws RecommendationException
     {
         long start = System.currentTimeMillis();
         
         List<Sample> data = new ArrayList<>();
         
-        int docNo = 0;
-        for (CAS cas : aCasses) {
+        MutableInt docNo = new MutableInt(0);
+        aCasses.forEach(cas -> {
             Type sentenceType = getType(cas, Sentence.class);
             Type tokenType = getType(cas, Token.class);
             Type annotationType = getType(cas, aLayerName);
@@ -296,12 +393,12 @@ public class StringMatchingRecommender
                 
                 Collection<AnnotationFS> tokens = selectCovered(tokenType, sentence);
                 
-                data.add(new Sample(docNo, sentence.getBegin(), sentence.getEnd(),
+                data.add(new Sample(docNo.intValue(), sentence.getBegin(), sentence.getEnd(),
                         sentence.getCoveredText(), tokens, spans));
             }
             
-            docNo++;
-        }
+            docNo.increment();
+        });
         
         log.trace("Extracting data took {}ms", System.currentTimeMillis() - start);
         
@@ -21,6 +21,8 @@ import static java.util.Arrays.asList;
 import static org.apache.uima.fit.factory.CollectionReaderFactory.createReader;
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -78,6 +80,29 @@ public class StringMatchingRecommenderTest
             .isNotNull();
     }
 
+    @Test
+    public void thatStreamingTrainingLearnsTheSameModel() throws Exception
+    {
+        StringMatchingRecommender sut = new StringMatchingRecommender(recommender, traits);
+        List<CAS> casList = loadDevelopmentData();
+
+        sut.train(context, casList);
+        
+        // Track the CASes handed out to make sure the stream is consumed in a single pass
+        List<CAS> consumed = new ArrayList<>();
+        RecommenderContext streamContext = new RecommenderContext();
+        sut.train(streamContext, aConsumer -> {
+            for (CAS cas : casList) {
+                consumed.add(cas);
+                aConsumer.accept(cas);
+            }
+        });
+
+        assertThat(consumed).hasSameSizeAs(casList);
+        assertThat(streamContext.get(StringMatchingRecommender.KEY_MODEL).get().keys())
+            .isEqualTo(context.get(StringMatchingRecommender.KEY_MODEL).get().keys());
+    }
+
     @Test
     public void thatPredictionWorks() throws Exception
     {
@@ -102,6 +127,49 @@ public class StringMatchingRecommenderTest
             .anyMatch(prediction -> prediction.getScore() > 0.0 && prediction.getScore() < 1.0 );
     }
 
+    @Test
+    public void thatPersistedModelPredictsTheSame() throws Exception
+    {
+        StringMatchingRecommender sut = new StringMatchingRecommender(recommender, traits);
+        List<CAS> casList = loadDevelopmentData();
+        
+        CAS cas = casList.get(0);
+        
+        sut.train(context, asList(cas));
+        
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        sut.writeModel(context, buffer);
+        
+        RecommenderContext restoredContext = new RecommenderContext();
+        new StringMatchingRecommender(recommender, traits).readModel(restoredContext,
+                new ByteArrayInputStream(buffer.toByteArray()));
+
+        assertThat(restoredContext.isReadyForPrediction())
+            .as("Restored context is ready for prediction")
+            .isTrue();
+        
+        sut.predict(context, cas);
+        List<String> expected = new ArrayList<>();
+        for (PredictedSpan prediction : new ArrayList<>(
+                JCasUtil.select(cas.getJCas(), PredictedSpan.class))) {
+            expected.add(prediction.getBegin() + "-" + prediction.getEnd() + ":"
+                    + prediction.getLabel() + ":" + prediction.getScore());
+            prediction.removeFromIndexes();
+        }
+        
+        sut.predict(restoredContext, cas);
+        List<String> actual = new ArrayList<>();
+        for (PredictedSpan prediction : JCasUtil.select(cas.getJCas(), PredictedSpan.class)) {
+            actual.add(prediction.getBegin() + "-" + prediction.getEnd() + ":"
+                    + prediction.getLabel() + ":" + prediction.getScore());
+        }
+
+        assertThat(actual)
+            .as("Restored model makes the same predictions")
+            .isNotEmpty()
+            .isEqualTo(expected);
+    }
+
     @Test
     public void thatEvaluationWorks() throws Exception
     {
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2018
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.kb;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects the statements parsed from an RDF file and passes them on in batches, so that a large
+ * import can be committed piece by piece instead of in a single huge transaction. The progress is
+ * logged after every batch.
+ */
+class BulkImportHandler
+    extends AbstractRDFHandler
+{
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final String kbName;
+    private final int batchSize;
+    private final BatchWriter writer;
+
+    private final Map<String, String> namespaces = new LinkedHashMap<>();
+    private final List<Statement> statements = new ArrayList<>();
+
+    private long startTime;
+    private long statementCount;
+
+    /**
+     * @param aKbName
+     *            name of the knowledge base for logging.
+     * @param aBatchSize
+     *            number of statements per batch. If the value is {@code 0} or less, all
+     *            statements are passed on in a single batch.
+     * @param aWriter
+     *            the writer which commits a batch to the knowledge base.
+     */
+    public BulkImportHandler(String aKbName, int aBatchSize, BatchWriter aWriter)
+    {
+        kbName = aKbName;
+        batchSize = aBatchSize;
+        writer = aWriter;
+    }
+
+    @Override
+    public void startRDF()
+    {
+        startTime = System.currentTimeMillis();
+        statementCount = 0;
+    }
+
+    @Override
+    public void handleNamespace(String aPrefix, String aUri)
+    {
+        namespaces.put(aPrefix, aUri);
+    }
+
+    @Override
+    public void handleStatement(Statement aStatement)
+    {
+        statements.add(aStatement);
+        if (batchSize > 0 && statements.size() >= batchSize) {
+            flush();
+            log.info("Imported {} statements into [{}] so far ({} statements/sec)",
+                    statementCount, kbName, getStatementsPerSecond());
+        }
+    }
+
+    @Override
+    public void endRDF()
+    {
+        flush();
+        log.info("Imported {} statements into [{}] in {} ms ({} statements/sec)", statementCount,
+                kbName, System.currentTimeMillis() - startTime, getStatementsPerSecond());
+    }
+
+    private void flush()
+    {
+        if (statements.isEmpty() && namespaces.isEmpty()) {
+            return;
+        }
+
+        writer.write(namespaces, statements);
+        statementCount += statements.size();
+        namespaces.clear();
+        statements.clear();
+    }
+
+    public long getStatementCount()
+    {
+        return statementCount;
+    }
+
+    public long getStatementsPerSecond()
+    {
+        long duration = System.currentTimeMillis() - startTime;
+        return duration > 0 ? statementCount * 1000 / duration : statementCount;
+    }
+
+    @FunctionalInterface
+    interface BatchWriter
+    {
+        /**
+         * Adds the given namespaces and statements to the knowledge base in one transaction.
+         * Namespaces which are already defined in the knowledge base should be left as they are.
+         */
+        void write(Map<String, String> aNamespaces, List<Statement> aStatements);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2018
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.kb;
+
+import static java.util.Arrays.asList;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.inception.kb.model.KnowledgeBase;
+
+/**
+ * Cache for the results of read operations on remote knowledge bases. Every request to a remote
+ * SPARQL endpoint is a network round-trip, so repeated lookups of the same concept or instance
+ * (e.g. while rendering the statements of an entity or during auto-completion) are answered from
+ * here instead.
+ * <p>
+ * There is a separate cache for each knowledge base so that modifying one knowledge base only
+ * discards the results cached for it. Each of them is bounded in size and entries expire after a
+ * fixed time. Local knowledge bases are never cached since they can be queried cheaply.
+ * <p>
+ * Cached values are shared. Callers must not modify them but have to hand out copies instead.
+ */
+public class KnowledgeBaseReadCache
+{
+    private final int maxEntriesPerKB;
+    private final long expireDelaySeconds;
+    private final Ticker ticker;
+
+    private final Map<String, KBCache> caches = new ConcurrentHashMap<>();
+
+    /**
+     * @param aMaxEntriesPerKB
+     *            maximum number of cached results per knowledge base. Set to {@code 0} to disable
+     *            caching.
+     * @param aExpireDelaySeconds
+     *            time in seconds after which a cached result expires.
+     */
+    public KnowledgeBaseReadCache(int aMaxEntriesPerKB, long aExpireDelaySeconds)
+    {
+        this(aMaxEntriesPerKB, aExpireDelaySeconds, Ticker.systemTicker());
+    }
+
+    KnowledgeBaseReadCache(int aMaxEntriesPerKB, long aExpireDelaySeconds, Ticker aTicker)
+    {
+        maxEntriesPerKB = aMaxEntriesPerKB;
+        expireDelaySeconds = aExpireDelaySeconds;
+        ticker = aTicker;
+    }
+
+    /**
+     * Returns the cached result of the operation identified by the given key parts or obtains it
+     * from the given loader if there is no valid cached result.
+     * 
+     * @param aKB
+     *            the knowledge base being queried.
+     * @param aLoader
+     *            obtains the result from the knowledge base.
+     * @param aKeyParts
+     *            the name of the operation followed by all its parameters which affect the result.
+     */
+    public <T> T get(KnowledgeBase aKB, Supplier<T> aLoader, Object... aKeyParts)
+    {
+        if (!isCacheable(aKB)) {
+            return aLoader.get();
+        }
+
+        KBCache cache = caches.computeIfAbsent(aKB.getRepositoryId(),
+            id -> new KBCache(aKB.getProject().getId(), Caffeine.newBuilder()
+                    .maximumSize(maxEntriesPerKB)
+                    .expireAfterWrite(expireDelaySeconds, TimeUnit.SECONDS)
+                    .ticker(ticker)
+                    .recordStats()
+                    .build()));
+
+        @SuppressWarnings("unchecked")
+        T value = (T) cache.results.get(asList(aKeyParts), key -> aLoader.get());
+        return value;
+    }
+
+    /**
+     * Removes all cached results for the given knowledge base, e.g. because it was modified.
+     */
+    public void invalidate(KnowledgeBase aKB)
+    {
+        // Dropping the whole cache instead of clearing it ensures that results which are still
+        // being loaded from the old state of the knowledge base do not end up in the new cache.
+        caches.remove(aKB.getRepositoryId());
+    }
+
+    /**
+     * Removes all cached results for the knowledge bases of the given project, e.g. because their
+     * configuration has changed.
+     */
+    public void invalidate(Project aProject)
+    {
+        caches.values().removeIf(cache -> cache.projectId == aProject.getId());
+    }
+
+    public void invalidateAll()
+    {
+        caches.clear();
+    }
+
+    private boolean isCacheable(KnowledgeBase aKB)
+    {
+        return RepositoryType.REMOTE.equals(aKB.getType()) && aKB.getRepositoryId() != null
+                && maxEntriesPerKB > 0 && expireDelaySeconds > 0;
+    }
+
+    public long getHitCount()
+    {
+        return caches.values().stream().mapToLong(cache -> cache.results.stats().hitCount())
+                .sum();
+    }
+
+    public long getMissCount()
+    {
+        return caches.values().stream().mapToLong(cache -> cache.results.stats().missCount())
+                .sum();
+    }
+
+    private static class KBCache
+    {
+        private final long projectId;
+        private final Cache<List<Object>, Object> results;
+
+        public KBCache(long aProjectId, Cache<List<Object>, Object> aResults)
+        {
+            projectId = aProjectId;
+            results = aResults;
+        }
+    }
+}
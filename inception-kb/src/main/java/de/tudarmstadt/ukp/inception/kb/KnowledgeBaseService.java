@@ -21,6 +21,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -40,6 +41,7 @@ import de.tudarmstadt.ukp.inception.kb.graph.KBConcept;
 import de.tudarmstadt.ukp.inception.kb.graph.KBHandle;
 import de.tudarmstadt.ukp.inception.kb.graph.KBInstance;
 import de.tudarmstadt.ukp.inception.kb.graph.KBObject;
+import de.tudarmstadt.ukp.inception.kb.graph.KBPage;
 import de.tudarmstadt.ukp.inception.kb.graph.KBProperty;
 import de.tudarmstadt.ukp.inception.kb.graph.KBQualifier;
 import de.tudarmstadt.ukp.inception.kb.graph.KBStatement;
@@ -174,6 +176,20 @@ public interface KnowledgeBaseService
     
     List<KBHandle> listConcepts(KnowledgeBase kb, boolean aAll) throws QueryEvaluationException;
 
+    /**
+     * Returns a page of the concepts of the given knowledge base. Concepts are listed in the order
+     * of their identifiers.
+     *
+     * @param aKB       The knowledge base to query
+     * @param aAll      True if entities with implicit namespaces (e.g. defined by RDF)
+     * @param aCursor   The {@link KBPage#getNextCursor() cursor} of the previous page or
+     *                  {@code null} to retrieve the first page
+     * @param aPageSize The maximum number of concepts on the page
+     * @return The page of concepts
+     */
+    KBPage listConcepts(KnowledgeBase aKB, boolean aAll, String aCursor, int aPageSize)
+        throws QueryEvaluationException;
+
     /**
      * Creates a new property in the given knowledge base. Does nothing
      * if the knowledge base is read only.
@@ -186,6 +202,18 @@ public interface KnowledgeBaseService
     Optional<KBProperty> readProperty(KnowledgeBase kb, String aIdentifier)
         throws QueryEvaluationException;
 
+    /**
+     * Reads several properties using a single query. This is meant for views which show many
+     * properties at once, e.g. the statements of an instance.
+     *
+     * @param aKB          The knowledge base to query
+     * @param aIdentifiers The identifiers of the properties to read
+     * @return The properties which exist in the knowledge base. Identifiers which do not denote a
+     *         property are skipped.
+     */
+    List<KBProperty> readProperties(KnowledgeBase aKB, Collection<String> aIdentifiers)
+        throws QueryEvaluationException;
+
     /**
      * Updates an existing property in the given knowledge base. Does nothing
      * if the knowledge base is read only.
@@ -285,6 +313,22 @@ public interface KnowledgeBaseService
     List<KBHandle> listInstances(KnowledgeBase kb, String aConceptIri, boolean aAll)
         throws QueryEvaluationException;
 
+    /**
+     * Returns a page of the instances of the given concept. Instances are listed in the order of
+     * their identifiers.
+     *
+     * @param aKB         The knowledge base to query
+     * @param aConceptIri The URI of the concept finding instances for
+     * @param aAll        True if entities with implicit namespaces (e.g. defined by RDF)
+     * @param aCursor     The {@link KBPage#getNextCursor() cursor} of the previous page or
+     *                    {@code null} to retrieve the first page
+     * @param aPageSize   The maximum number of instances on the page
+     * @return The page of instances
+     */
+    KBPage listInstances(KnowledgeBase aKB, String aConceptIri, boolean aAll, String aCursor,
+            int aPageSize)
+        throws QueryEvaluationException;
+
     // Statements
 
     /**
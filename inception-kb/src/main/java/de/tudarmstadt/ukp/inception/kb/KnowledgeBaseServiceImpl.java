@@ -18,6 +18,8 @@
 package de.tudarmstadt.ukp.inception.kb;
 
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
 import static java.util.Collections.unmodifiableSet;
 
 import java.io.BufferedInputStream;
@@ -29,17 +31,27 @@ import java.io.OutputStream;
 import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
@@ -54,15 +66,20 @@ import org.eclipse.rdf4j.common.iteration.Iterations;
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Literal;
 import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
 import org.eclipse.rdf4j.model.ValueFactory;
 import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
 import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
 import org.eclipse.rdf4j.query.Binding;
 import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.MalformedQueryException;
 import org.eclipse.rdf4j.query.QueryEvaluationException;
 import org.eclipse.rdf4j.query.QueryLanguage;
 import org.eclipse.rdf4j.query.TupleQuery;
 import org.eclipse.rdf4j.query.TupleQueryResult;
+import org.eclipse.rdf4j.repository.Repository;
 import org.eclipse.rdf4j.repository.RepositoryConnection;
 import org.eclipse.rdf4j.repository.RepositoryException;
 import org.eclipse.rdf4j.repository.RepositoryResult;
@@ -76,8 +93,10 @@ import org.eclipse.rdf4j.repository.sail.config.SailRepositoryConfig;
 import org.eclipse.rdf4j.repository.sparql.config.SPARQLRepositoryConfig;
 import org.eclipse.rdf4j.rio.RDFFormat;
 import org.eclipse.rdf4j.rio.RDFParseException;
+import org.eclipse.rdf4j.rio.RDFParser;
 import org.eclipse.rdf4j.rio.RDFWriter;
 import org.eclipse.rdf4j.rio.Rio;
+import org.eclipse.rdf4j.sail.SailConnection;
 import org.eclipse.rdf4j.sail.lucene.LuceneSail;
 import org.eclipse.rdf4j.sail.lucene.config.LuceneSailConfig;
 import org.eclipse.rdf4j.sail.nativerdf.config.NativeStoreConfig;
@@ -99,10 +118,13 @@ import de.tudarmstadt.ukp.clarin.webanno.api.annotation.feature.FeatureSupportRe
 import de.tudarmstadt.ukp.clarin.webanno.api.dao.RepositoryProperties;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.support.SettingsUtil;
+import de.tudarmstadt.ukp.inception.kb.config.KnowledgeBaseProperties;
+import de.tudarmstadt.ukp.inception.kb.event.KnowledgeBaseConfigurationChangedEvent;
 import de.tudarmstadt.ukp.inception.kb.graph.KBConcept;
 import de.tudarmstadt.ukp.inception.kb.graph.KBHandle;
 import de.tudarmstadt.ukp.inception.kb.graph.KBInstance;
 import de.tudarmstadt.ukp.inception.kb.graph.KBObject;
+import de.tudarmstadt.ukp.inception.kb.graph.KBPage;
 import de.tudarmstadt.ukp.inception.kb.graph.KBProperty;
 import de.tudarmstadt.ukp.inception.kb.graph.KBQualifier;
 import de.tudarmstadt.ukp.inception.kb.graph.KBStatement;
@@ -120,6 +142,10 @@ public class KnowledgeBaseServiceImpl
     implements KnowledgeBaseService, DisposableBean
 {
     private static final String KNOWLEDGEBASE_PROFILES_YAML = "knowledgebase-profiles.yaml";
+    
+    // Beyond this number of parent relations, the concept hierarchy of a local KB is not kept in
+    // memory and ancestors are resolved using a property path query instead
+    private static final int MAX_MEMOIZED_PARENT_RELATIONS = 100_000;
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -127,11 +153,15 @@ public class KnowledgeBaseServiceImpl
     private final RepositoryManager repoManager;
     private final Set<String> implicitNamespaces;
     private final File kbRepositoriesRoot;
+    private final KnowledgeBaseReadCache readCache;
+    private final int importBatchSize;
+    private final Map<String, ConceptHierarchy> conceptHierarchies = new ConcurrentHashMap<>();
 
     private @SpringBean FeatureSupportRegistry featureSupportRegistry;
 
     @Autowired
-    public KnowledgeBaseServiceImpl(RepositoryProperties aRepoProperties)
+    public KnowledgeBaseServiceImpl(RepositoryProperties aRepoProperties,
+            KnowledgeBaseProperties aKbProperties)
     {
         kbRepositoriesRoot = new File(aRepoProperties.getPath(), "kb");
         
@@ -164,6 +194,15 @@ public class KnowledgeBaseServiceImpl
         log.info("Knowledge base repository path: {}", kbRepositoriesRoot);
         
         implicitNamespaces = new LinkedHashSet<>(IriConstants.IMPLICIT_NAMESPACES);
+        
+        readCache = new KnowledgeBaseReadCache(aKbProperties.getCacheSize(),
+                aKbProperties.getCacheExpireDelay());
+        importBatchSize = aKbProperties.getImportBatchSize();
+    }
+    
+    public KnowledgeBaseServiceImpl(RepositoryProperties aRepoProperties)
+    {
+        this(aRepoProperties, new KnowledgeBaseProperties());
     }
     
     public KnowledgeBaseServiceImpl(RepositoryProperties aRepoProperties,
@@ -208,6 +247,14 @@ public class KnowledgeBaseServiceImpl
         repoManager.refresh();
     }
     
+    @EventListener
+    public void onKnowledgeBaseConfigurationChanged(KnowledgeBaseConfigurationChangedEvent aEvent)
+    {
+        readCache.invalidate(aEvent.getProject());
+        conceptHierarchies.values()
+                .removeIf(hierarchy -> hierarchy.projectId == aEvent.getProject().getId());
+    }
+    
     @Override
     public void destroy() throws Exception
     {
@@ -284,6 +331,7 @@ public class KnowledgeBaseServiceImpl
     {
         assertRegistration(kb);
         entityManager.merge(kb);
+        invalidateCaches(kb);
     }
 
     @Transactional
@@ -294,6 +342,7 @@ public class KnowledgeBaseServiceImpl
         assertRegistration(kb);
         repoManager.addRepositoryConfig(new RepositoryConfig(kb.getRepositoryId(), cfg));
         entityManager.merge(kb);
+        invalidateCaches(kb);
     }
 
     @SuppressWarnings("unchecked")
@@ -335,6 +384,7 @@ public class KnowledgeBaseServiceImpl
         assertRegistration(aKB);
         
         repoManager.removeRepository(aKB.getRepositoryId());
+        invalidateCaches(aKB);
 
         entityManager.remove(entityManager.contains(aKB) ? aKB : entityManager.merge(aKB));
     }
@@ -402,16 +452,128 @@ public class KnowledgeBaseServiceImpl
         // Detect the file format
         RDFFormat format = Rio.getParserFormatForFileName(aFilename).orElse(RDFFormat.RDFXML);
 
+        // If the RDF file contains relative URLs, then they probably start with a hash.
+        // To avoid having two hashes here, we drop the hash from the base prefix configured
+        // by the user.
+        String prefix = StringUtils.removeEnd(kb.getBasePrefix(), "#");
+
         // Load files into the repository
-        try (RepositoryConnection conn = getConnection(kb)) {
-            // If the RDF file contains relative URLs, then they probably start with a hash.
-            // To avoid having two hashes here, we drop the hash from the base prefix configured
-            // by the user.
-            String prefix = StringUtils.removeEnd(kb.getBasePrefix(), "#");
-            conn.add(is, prefix, format);
+        LuceneSail luceneSail = getLuceneSail(kb);
+        Throwable importFailure = null;
+        try {
+            if (luceneSail != null) {
+                // Updating the full text index for every single statement is what makes importing
+                // large files slow, so we write to the store underneath the index and rebuild the
+                // index once at the end.
+                try (SailConnection conn = luceneSail.getBaseSail().getConnection()) {
+                    parse(kb, is, prefix, format, transactionalBatchWriter(conn::begin,
+                            conn::commit, conn::rollback, conn::getNamespace, conn::setNamespace,
+                            st -> conn.addStatement(st.getSubject(), st.getPredicate(),
+                                    st.getObject(), st.getContext())));
+                }
+            }
+            else {
+                try (RepositoryConnection conn = getConnection(kb)) {
+                    parse(kb, is, prefix, format, transactionalBatchWriter(conn::begin,
+                            conn::commit, conn::rollback, conn::getNamespace, conn::setNamespace,
+                            st -> conn.add(st)));
+                }
+            }
+        }
+        catch (Throwable e) {
+            importFailure = e;
+            throw e;
+        }
+        finally {
+            try {
+                // If the import failed half-way, the batches committed so far remain in the
+                // store, so the index is rebuilt in any case
+                if (luceneSail != null) {
+                    rebuildFullTextIndexAfterImport(kb);
+                }
+            }
+            catch (RepositoryException e) {
+                // Do not let a failure to rebuild the index hide why the import failed
+                if (importFailure == null) {
+                    throw e;
+                }
+                importFailure.addSuppressed(e);
+            }
+            finally {
+                invalidateCaches(kb);
+            }
         }
     }
     
+    /**
+     * Returns a writer which adds each batch of an import in a transaction of its own. Namespaces
+     * which are already defined in the knowledge base are left as they are. The operations are
+     * passed in separately because repository and sail connections do not share an interface.
+     */
+    private static BulkImportHandler.BatchWriter transactionalBatchWriter(Runnable aBegin,
+            Runnable aCommit, Runnable aRollback, Function<String, String> aNamespaceSource,
+            BiConsumer<String, String> aNamespaceSink, Consumer<Statement> aStatementSink)
+    {
+        return (namespaces, statements) -> {
+            aBegin.run();
+            try {
+                namespaces.forEach((nsPrefix, ns) -> {
+                    if (aNamespaceSource.apply(nsPrefix) == null) {
+                        aNamespaceSink.accept(nsPrefix, ns);
+                    }
+                });
+                statements.forEach(aStatementSink);
+                aCommit.run();
+            }
+            catch (RuntimeException e) {
+                aRollback.run();
+                throw e;
+            }
+        };
+    }
+    
+    private void parse(KnowledgeBase aKB, InputStream aIS, String aBaseUri, RDFFormat aFormat,
+            BulkImportHandler.BatchWriter aWriter)
+        throws RDFParseException, IOException
+    {
+        RDFParser parser = Rio.createParser(aFormat);
+        parser.setRDFHandler(new BulkImportHandler(aKB.getName(), importBatchSize, aWriter));
+        parser.parse(aIS, aBaseUri);
+    }
+    
+    private void rebuildFullTextIndexAfterImport(KnowledgeBase aKB)
+    {
+        long start = System.currentTimeMillis();
+        try {
+            rebuildFullTextIndex(aKB);
+        }
+        catch (Exception e) {
+            throw new RepositoryException(
+                    "Unable to rebuild full text index of [" + aKB.getName() + "]", e);
+        }
+        log.info("Rebuilt full text index of [{}] in {} ms", aKB.getName(),
+                System.currentTimeMillis() - start);
+    }
+    
+    /**
+     * @return the full text index of the given knowledge base or {@code null} if the knowledge
+     *         base does not have one.
+     */
+    private LuceneSail getLuceneSail(KnowledgeBase aKB)
+    {
+        if (!RepositoryType.LOCAL.equals(aKB.getType())) {
+            return null;
+        }
+        
+        Repository repo = repoManager.getRepository(aKB.getRepositoryId());
+        if (repo instanceof SailRepository
+                && ((SailRepository) repo).getSail() instanceof LuceneSail) {
+            return (LuceneSail) ((SailRepository) repo).getSail();
+        }
+        
+        return null;
+    }
+    
     @Override
     public void exportData(KnowledgeBase kb, RDFFormat format, OutputStream os)
     {
@@ -431,6 +593,9 @@ public class KnowledgeBaseServiceImpl
         try (RepositoryConnection conn = getConnection(kb)) {
             conn.clear();
         }
+        finally {
+            invalidateCaches(kb);
+        }
     }
 
     @Override
@@ -460,7 +625,7 @@ public class KnowledgeBaseServiceImpl
     public Optional<KBConcept> readConcept(KnowledgeBase aKB, String aIdentifier, boolean aAll)
         throws QueryEvaluationException
     {
-        List<KBHandle> resultList = read(aKB, (conn) -> {
+        List<KBHandle> resultList = readCache.get(aKB, () -> read(aKB, (conn) -> {
             String QUERY = SPARQLQueryStore.readConcept(aKB, 1);
             ValueFactory vf = SimpleValueFactory.getInstance();
             TupleQuery tupleQuery = conn.prepareTupleQuery(QueryLanguage.SPARQL, QUERY);
@@ -472,7 +637,7 @@ public class KnowledgeBaseServiceImpl
             tupleQuery.setBinding("pDESCRIPTION", aKB.getDescriptionIri());
             tupleQuery.setIncludeInferred(false);
             return evaluateListQuery(aKB, tupleQuery, true, aAll, "oItem");
-        });
+        }), "readConcept", aIdentifier, aAll);
         
         if (resultList.isEmpty()) {
             return Optional.empty();
@@ -546,6 +711,19 @@ public class KnowledgeBaseServiceImpl
         return listAllConcepts(kb, aAll);
     }
 
+    @Override
+    public KBPage listConcepts(KnowledgeBase aKB, boolean aAll, String aCursor, int aPageSize)
+        throws QueryEvaluationException
+    {
+        return read(aKB, (conn) -> {
+            String QUERY = SPARQLQueryStore.listConceptsPage(aKB, aCursor, aPageSize);
+            TupleQuery tupleQuery = conn.prepareTupleQuery(QueryLanguage.SPARQL, QUERY);
+            tupleQuery.setBinding("pLABEL", aKB.getLabelIri());
+            tupleQuery.setIncludeInferred(false);
+            return evaluatePageQuery(tupleQuery, aAll, "s", aPageSize);
+        });
+    }
+
     @Override
     public KBHandle createProperty(KnowledgeBase kb, KBProperty aProperty)
     {
@@ -580,6 +758,122 @@ public class KnowledgeBaseServiceImpl
         });
     }
 
+    @Override
+    public List<KBProperty> readProperties(KnowledgeBase aKB, Collection<String> aIdentifiers)
+    {
+        if (aIdentifiers.isEmpty()) {
+            return emptyList();
+        }
+        
+        return read(aKB, (conn) -> {
+            String QUERY = SPARQLQueryStore.readProperties(aKB, aIdentifiers);
+            TupleQuery tupleQuery = conn.prepareTupleQuery(QueryLanguage.SPARQL, QUERY);
+            tupleQuery.setBinding("pTYPE", aKB.getTypeIri());
+            tupleQuery.setBinding("oPROPERTYTYPE", aKB.getPropertyTypeIri());
+            tupleQuery.setBinding("pLABEL", aKB.getPropertyLabelIri());
+            tupleQuery.setBinding("pDESCRIPTION", aKB.getPropertyDescriptionIri());
+            
+            ValueFactory vf = conn.getValueFactory();
+            Map<String, KBProperty> properties = new LinkedHashMap<>();
+            Map<String, Statement> typeStatements = new HashMap<>();
+            Map<String, Value> labels = new HashMap<>();
+            Map<String, Value> descriptions = new HashMap<>();
+            try (TupleQueryResult result = tupleQuery.evaluate()) {
+                while (result.hasNext()) {
+                    BindingSet bindings = result.next();
+                    IRI subject = (IRI) bindings.getValue("s");
+                    String id = subject.stringValue();
+                    KBProperty prop = properties.computeIfAbsent(id, k -> {
+                        KBProperty kbProp = new KBProperty();
+                        kbProp.setIdentifier(k);
+                        kbProp.setKB(aKB);
+                        return kbProp;
+                    });
+                    
+                    // Remember the type statement which actually matched. The property type of
+                    // the knowledge base is preferred over the generic RDF/OWL property types
+                    // because it is what gets written back when the property is updated.
+                    Value genericType = bindings.getValue("prop");
+                    if (genericType == null) {
+                        typeStatements.put(id, vf.createStatement(subject, aKB.getTypeIri(),
+                                aKB.getPropertyTypeIri()));
+                    }
+                    else {
+                        typeStatements.putIfAbsent(id,
+                                vf.createStatement(subject, RDF.TYPE, genericType));
+                    }
+                    
+                    // Prefer values in the default language of the knowledge base over values
+                    // without a language
+                    Value label = bindings.getValue("l");
+                    if (label != null) {
+                        labels.merge(id, label, KnowledgeBaseServiceImpl::preferTagged);
+                    }
+                    Value description = bindings.getValue("d");
+                    if (description != null) {
+                        descriptions.merge(id, description, KnowledgeBaseServiceImpl::preferTagged);
+                    }
+                    
+                    // Like readProperty, use the first value found for the other attributes
+                    Value range = bindings.getValue("range");
+                    if (range != null && prop.getRange() == null) {
+                        prop.setRange(range.stringValue());
+                        prop.getOriginalStatements()
+                                .add(vf.createStatement(subject, RDFS.RANGE, range));
+                    }
+                    Value domain = bindings.getValue("domain");
+                    if (domain != null && prop.getDomain() == null) {
+                        prop.setDomain(domain.stringValue());
+                        prop.getOriginalStatements()
+                                .add(vf.createStatement(subject, RDFS.DOMAIN, domain));
+                    }
+                }
+            }
+            
+            for (KBProperty prop : properties.values()) {
+                String id = prop.getIdentifier();
+                IRI subject = vf.createIRI(id);
+                prop.getOriginalStatements().add(typeStatements.get(id));
+                Value label = labels.get(id);
+                if (label != null) {
+                    prop.setName(label.stringValue());
+                    prop.getOriginalStatements().add(vf.createStatement(subject,
+                            aKB.getPropertyLabelIri(), label));
+                    setLanguage(prop, label);
+                }
+                Value description = descriptions.get(id);
+                if (description != null) {
+                    prop.setDescription(description.stringValue());
+                    prop.getOriginalStatements().add(vf.createStatement(subject,
+                            aKB.getPropertyDescriptionIri(), description));
+                    setLanguage(prop, description);
+                }
+            }
+            return new ArrayList<>(properties.values());
+        });
+    }
+    
+    /**
+     * The query only returns values without a language or in the default language of the
+     * knowledge base, so any value with a language is in the default language.
+     */
+    private static Value preferTagged(Value aCurrent, Value aCandidate)
+    {
+        if (aCurrent instanceof Literal && !((Literal) aCurrent).getLanguage().isPresent()
+                && aCandidate instanceof Literal
+                && ((Literal) aCandidate).getLanguage().isPresent()) {
+            return aCandidate;
+        }
+        return aCurrent;
+    }
+    
+    private static void setLanguage(KBProperty aProperty, Value aValue)
+    {
+        if (aValue instanceof Literal) {
+            ((Literal) aValue).getLanguage().ifPresent(aProperty::setLanguage);
+        }
+    }
+
     @Override
     public void updateProperty(KnowledgeBase kb, KBProperty aProperty)
     {
@@ -643,6 +937,12 @@ public class KnowledgeBaseServiceImpl
     @Override
     public Optional<KBInstance> readInstance(KnowledgeBase kb, String aIdentifier)
         throws QueryEvaluationException
+    {
+        return readCache.get(kb, () -> readInstanceUncached(kb, aIdentifier), "readInstance",
+                aIdentifier).map(KnowledgeBaseServiceImpl::copyInstance);
+    }
+    
+    private Optional<KBInstance> readInstanceUncached(KnowledgeBase kb, String aIdentifier)
     {
         try (RepositoryConnection conn = getConnection(kb)) {
             ValueFactory vf = conn.getValueFactory();
@@ -722,6 +1022,21 @@ public class KnowledgeBaseServiceImpl
         return list(kb, conceptIri, false, aAll, kb.getMaxResults());
     }
 
+    @Override
+    public KBPage listInstances(KnowledgeBase aKB, String aConceptIri, boolean aAll,
+            String aCursor, int aPageSize)
+        throws QueryEvaluationException
+    {
+        return read(aKB, (conn) -> {
+            String QUERY = SPARQLQueryStore.listInstancesPage(aKB, aConceptIri, aCursor,
+                    aPageSize);
+            TupleQuery tupleQuery = conn.prepareTupleQuery(QueryLanguage.SPARQL, QUERY);
+            tupleQuery.setBinding("pLABEL", aKB.getLabelIri());
+            tupleQuery.setIncludeInferred(false);
+            return evaluatePageQuery(tupleQuery, aAll, "s", aPageSize);
+        });
+    }
+
     // Statements
 
     @Override
@@ -805,6 +1120,9 @@ public class KnowledgeBaseServiceImpl
                 }
             }
         }
+        finally {
+            invalidateCaches(kb);
+        }
         return result;
     }
 
@@ -968,7 +1286,7 @@ public class KnowledgeBaseServiceImpl
         throws QueryEvaluationException
     {
 
-        Optional<KBHandle> handle = read(aKB, (conn) -> {
+        Optional<KBHandle> handle = readCache.get(aKB, () -> read(aKB, (conn) -> {
             String QUERY = SPARQLQueryStore.readLabelWithoutLanguage(aKB, 1, getLabel,
                     getDescription);
             ValueFactory vf = SimpleValueFactory.getInstance();
@@ -981,7 +1299,7 @@ public class KnowledgeBaseServiceImpl
             tupleQueryLabel.setBinding("pDESCRIPTION", aKB.getDescriptionIri());
             tupleQueryLabel.setIncludeInferred(false);
             return evaluateGenericLabelQuery(aKB, tupleQueryLabel, aAll, "oItem", "l", "d");
-        });
+        }), "readLabelsWithoutLanguage", aIdentifier, aAll, getLabel, getDescription);
         
         return handle;
     }
@@ -1004,6 +1322,13 @@ public class KnowledgeBaseServiceImpl
     public List<KBHandle> getParentConcept(KnowledgeBase aKB, KBHandle aHandle,
             boolean aAll)
         throws QueryEvaluationException
+    {
+        return copyHandles(readCache.get(aKB, () -> getParentConceptUncached(aKB, aHandle, aAll),
+                "getParentConcept", aHandle.getIdentifier(), aAll));
+    }
+    
+    private List<KBHandle> getParentConceptUncached(KnowledgeBase aKB, KBHandle aHandle,
+            boolean aAll)
     {
         List<KBHandle> resultList = read(aKB, (conn) -> {
             String QUERY = SPARQLQueryStore.queryForParentConcept(aKB);
@@ -1049,25 +1374,167 @@ public class KnowledgeBaseServiceImpl
         throws QueryEvaluationException
     {
         Set<KBHandle> parentConceptSet = new LinkedHashSet<KBHandle>();
-        if (aIdentifier != null) {
-            Optional<KBObject> identifierKBObj = readKBIdentifier(aKB.getProject(), aIdentifier);
-            if (!identifierKBObj.isPresent()) {
-                return parentConceptSet;
-            }
-            else if (identifierKBObj.get() instanceof KBConcept) {
-                parentConceptSet.add(identifierKBObj.get().toKBHandle());
-                getParentConceptListforConcept(parentConceptSet, aKB,
-                        identifierKBObj.get().toKBHandle(), aAll);
-            }
-            else if (identifierKBObj.get() instanceof KBInstance) {
-                List<KBHandle> conceptList = getConceptForInstance(aKB, aIdentifier, aAll);
-                parentConceptSet.addAll(conceptList);
-                for (KBHandle parent : conceptList) {
-                    getParentConceptListforConcept(parentConceptSet, aKB, parent, aAll);
+        if (aIdentifier == null) {
+            return parentConceptSet;
+        }
+        
+        Optional<KBObject> identifierKBObj = readKBIdentifier(aKB, aIdentifier);
+        if (!identifierKBObj.isPresent()) {
+            return parentConceptSet;
+        }
+        
+        KBObject kbObject = identifierKBObj.get();
+        boolean isInstance = kbObject instanceof KBInstance;
+        
+        List<KBHandle> concepts;
+        if (isInstance) {
+            concepts = getConceptForInstance(aKB, aIdentifier, aAll);
+        }
+        else {
+            concepts = asList(kbObject.toKBHandle());
+        }
+        parentConceptSet.addAll(concepts);
+        
+        // Local KBs are resolved against the in-memory concept hierarchy. Otherwise, we try
+        // resolving all ancestors with a single query.
+        Optional<ConceptHierarchy> hierarchy = getConceptHierarchy(aKB);
+        if (hierarchy.isPresent()) {
+            parentConceptSet.addAll(copyHandles(hierarchy.get().getAncestors(concepts,
+                id -> aAll || !hasImplicitNamespace(id))));
+            return parentConceptSet;
+        }
+        
+        try {
+            parentConceptSet.addAll(listAncestorConcepts(aKB, concepts, aAll));
+            return parentConceptSet;
+        }
+        catch (QueryEvaluationException | MalformedQueryException e) {
+            log.debug("Unable to resolve ancestors of [{}] using a property path - falling "
+                    + "back to resolving them level by level", aIdentifier, e);
+        }
+        
+        for (KBHandle concept : concepts) {
+            getParentConceptListforConcept(parentConceptSet, aKB, concept, aAll);
+        }
+        return parentConceptSet;
+    }
+    
+    /**
+     * Returns all ancestors of the given concepts using a single query. The result is the same as
+     * calling {@link #getParentConceptListforConcept} for each of the concepts.
+     */
+    List<KBHandle> listAncestorConcepts(KnowledgeBase aKB, List<KBHandle> aConcepts,
+            boolean aAll)
+    {
+        if (aConcepts.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        List<String> identifiers = aConcepts.stream().map(KBHandle::getIdentifier)
+                .collect(Collectors.toList());
+        return copyHandles(readCache.get(aKB,
+            () -> listAncestorConceptsUncached(aKB, aConcepts, aAll),
+            "listAncestorConcepts", identifiers, aAll));
+    }
+    
+    private List<KBHandle> listAncestorConceptsUncached(KnowledgeBase aKB,
+            List<KBHandle> aConcepts, boolean aAll)
+    {
+        // The query yields the parent relations of all concepts which may be ancestors. Walking
+        // these relations up from the given concepts yields the actual ancestors.
+        ConceptHierarchy relations = new ConceptHierarchy(aKB.getProject().getId());
+        
+        read(aKB, (conn) -> {
+            String QUERY = SPARQLQueryStore.queryForAncestorConcepts(aKB, aConcepts.stream()
+                    .map(KBHandle::getIdentifier).collect(Collectors.toList()));
+            TupleQuery tupleQuery = conn.prepareTupleQuery(QueryLanguage.SPARQL, QUERY);
+            tupleQuery.setBinding("pTYPE", aKB.getTypeIri());
+            tupleQuery.setBinding("oCLASS", aKB.getClassIri());
+            tupleQuery.setBinding("pSUBCLASS", aKB.getSubclassIri());
+            tupleQuery.setBinding("pLABEL", aKB.getLabelIri());
+            tupleQuery.setIncludeInferred(false);
+            
+            try (TupleQueryResult result = tupleQuery.evaluate()) {
+                while (result.hasNext()) {
+                    BindingSet bindings = result.next();
+                    String childId = bindings.getBinding("oChild").getValue().stringValue();
+                    String parentId = bindings.getBinding("s").getValue().stringValue();
+                    relations.addParent(childId, createHandle(parentId, bindings));
                 }
             }
+            return null;
+        });
+        
+        List<KBHandle> resultList = relations.getAncestors(aConcepts,
+            id -> isListable(id, aAll));
+        resultList.sort(Comparator.comparing(KBObject::getUiLabel));
+        return resultList;
+    }
+    
+    /**
+     * Returns the concept hierarchy of a local knowledge base. The hierarchy is loaded with a
+     * single query and kept until the knowledge base is modified.
+     * 
+     * @return the hierarchy or nothing if the knowledge base is not local or its hierarchy is too
+     *         large to be kept in memory.
+     */
+    private Optional<ConceptHierarchy> getConceptHierarchy(KnowledgeBase aKB)
+    {
+        if (!RepositoryType.LOCAL.equals(aKB.getType())) {
+            return Optional.empty();
         }
-        return parentConceptSet;
+        
+        ConceptHierarchy hierarchy = conceptHierarchies.computeIfAbsent(aKB.getRepositoryId(),
+            id -> loadConceptHierarchy(aKB));
+        return hierarchy.complete ? Optional.of(hierarchy) : Optional.empty();
+    }
+    
+    private ConceptHierarchy loadConceptHierarchy(KnowledgeBase aKB)
+    {
+        ConceptHierarchy hierarchy = new ConceptHierarchy(aKB.getProject().getId());
+        
+        read(aKB, (conn) -> {
+            String QUERY = SPARQLQueryStore.queryForAllParentConcepts(aKB);
+            TupleQuery tupleQuery = conn.prepareTupleQuery(QueryLanguage.SPARQL, QUERY);
+            tupleQuery.setBinding("pTYPE", aKB.getTypeIri());
+            tupleQuery.setBinding("oCLASS", aKB.getClassIri());
+            tupleQuery.setBinding("pSUBCLASS", aKB.getSubclassIri());
+            tupleQuery.setBinding("pLABEL", aKB.getLabelIri());
+            tupleQuery.setIncludeInferred(false);
+            
+            try (TupleQueryResult result = tupleQuery.evaluate()) {
+                int relations = 0;
+                while (result.hasNext()) {
+                    BindingSet bindings = result.next();
+                    String childId = bindings.getBinding("oChild").getValue().stringValue();
+                    String parentId = bindings.getBinding("s").getValue().stringValue();
+                    if (!childId.contains(":") || !parentId.contains(":")) {
+                        continue;
+                    }
+                    
+                    relations++;
+                    if (relations > MAX_MEMOIZED_PARENT_RELATIONS) {
+                        log.info("Concept hierarchy of knowledge base [{}] has more than {} parent "
+                                + "relations - not keeping it in memory", aKB.getName(),
+                                MAX_MEMOIZED_PARENT_RELATIONS);
+                        hierarchy.parents.clear();
+                        hierarchy.complete = false;
+                        break;
+                    }
+                    
+                    hierarchy.addParent(childId, createHandle(parentId, bindings));
+                }
+            }
+            return null;
+        });
+        
+        return hierarchy;
+    }
+    
+    private void invalidateCaches(KnowledgeBase aKB)
+    {
+        readCache.invalidate(aKB);
+        conceptHierarchies.remove(aKB.getRepositoryId());
     }
     
     // recursive method to get concept tree
@@ -1089,6 +1556,14 @@ public class KnowledgeBaseServiceImpl
     public List<KBHandle> listChildConcepts(KnowledgeBase aKB, String aParentIdentifier,
             boolean aAll, int aLimit)
         throws QueryEvaluationException
+    {
+        return copyHandles(readCache.get(aKB,
+            () -> listChildConceptsUncached(aKB, aParentIdentifier, aAll, aLimit),
+            "listChildConcepts", aParentIdentifier, aAll, aLimit));
+    }
+    
+    private List<KBHandle> listChildConceptsUncached(KnowledgeBase aKB, String aParentIdentifier,
+            boolean aAll, int aLimit)
     {
         // The query below only returns subclasses which simultaneously declare being a class
         // via the class property defined in the KB specification. This means that if the KB
@@ -1119,12 +1594,21 @@ public class KnowledgeBaseServiceImpl
             boolean aAll, int aLimit)
         throws QueryEvaluationException
     {
-        List<KBHandle> childConceptInstances = new ArrayList<KBHandle>();
-        List<KBHandle> childConcepts =  listChildConcepts(aKB, aParentIdentifier, aAll, aLimit);
-        for (KBHandle childConcept : childConcepts) {
-            childConceptInstances.addAll(listInstances(aKB, childConcept.getIdentifier(), aAll));
-        }
-        return childConceptInstances;
+        List<KBHandle> resultList = read(aKB, (conn) -> {
+            String QUERY = SPARQLQueryStore.listInstancesForChildConcepts(aKB);
+            ValueFactory vf = SimpleValueFactory.getInstance();
+            TupleQuery tupleQuery = conn.prepareTupleQuery(QueryLanguage.SPARQL, QUERY);
+            tupleQuery.setBinding("oPARENT", vf.createIRI(aParentIdentifier));
+            tupleQuery.setBinding("pTYPE", aKB.getTypeIri());
+            tupleQuery.setBinding("oCLASS", aKB.getClassIri());
+            tupleQuery.setBinding("pSUBCLASS", aKB.getSubclassIri());
+            tupleQuery.setBinding("pLABEL", aKB.getLabelIri());
+            tupleQuery.setIncludeInferred(false);
+            return evaluateListQuery(aKB, tupleQuery, false, aAll, "s");
+        });
+        
+        resultList.sort(Comparator.comparing(KBObject::getUiLabel));
+        return resultList;
     }
     
     /**
@@ -1143,49 +1627,103 @@ public class KnowledgeBaseServiceImpl
             boolean sepLabelQuery, boolean aAll, String itemVariable)
         throws QueryEvaluationException
     {
-        TupleQueryResult result = tupleQuery.evaluate();        
-        
+        try (Stream<KBHandle> handles = streamListQuery(tupleQuery, aAll, itemVariable)) {
+            return handles.collect(Collectors.toList());
+        }
+    }
+    
+    /**
+     * Same as {@link #evaluateListQuery}, but the handles are produced one by one while the query
+     * results come in instead of being collected into a list. The stream has to be closed in order
+     * to release the query result.
+     */
+    private Stream<KBHandle> streamListQuery(TupleQuery aTupleQuery, boolean aAll,
+            String aItemVariable)
+        throws QueryEvaluationException
+    {
+        return Iterations.stream(aTupleQuery.evaluate())
+                .filter(bindings -> bindings.size() != 0)
+                .filter(bindings -> isListable(getItemId(bindings, aItemVariable), aAll))
+                .map(bindings -> createHandle(getItemId(bindings, aItemVariable), bindings));
+    }
+    
+    /**
+     * Evaluates a query which retrieves a page of a listing ordered by the item IRIs. The IRI of
+     * the last item in the query result is the cursor for the next page. An item may occupy
+     * several consecutive rows, e.g. if it has labels in several languages. Items which are
+     * filtered out here also count towards the page size, so a page may contain fewer handles than
+     * requested even if there are further pages.
+     */
+    private KBPage evaluatePageQuery(TupleQuery aTupleQuery, boolean aAll, String aItemVariable,
+            int aPageSize)
+        throws QueryEvaluationException
+    {
         List<KBHandle> handles = new ArrayList<>();
-        while (result.hasNext()) {
-            BindingSet bindings = result.next();
-            if (bindings.size() == 0) {
-                continue;
-            }
-            String id = bindings.getBinding(itemVariable).getValue().stringValue();
-
-            if (!id.contains(":") || (!aAll && hasImplicitNamespace(id))) {
-                continue;
-            }
-            Binding label = bindings.getBinding("l");
-            Binding description = bindings.getBinding("d");
-            Binding labelGeneral = bindings.getBinding("labelGeneral");
-            Binding descGeneral = bindings.getBinding("descGeneral");
-            
-            KBHandle handle = new KBHandle(id);
-            if (label != null) {
-                handle.setName(label.getValue().stringValue());
-                if (label.getValue() instanceof Literal) {
-                    Literal literal = (Literal) label.getValue();
-                    Optional<String> language = literal.getLanguage();
-                    language.ifPresent(handle::setLanguage);
+        String lastId = null;
+        int items = 0;
+        try (TupleQueryResult result = aTupleQuery.evaluate()) {
+            while (result.hasNext()) {
+                BindingSet bindings = result.next();
+                if (bindings.size() == 0) {
+                    continue;
+                }
+                
+                String id = getItemId(bindings, aItemVariable);
+                if (!id.equals(lastId)) {
+                    items++;
+                    lastId = id;
+                }
+                if (isListable(id, aAll)) {
+                    handles.add(createHandle(id, bindings));
                 }
             }
-            else if (labelGeneral != null) {
-                handle.setName(labelGeneral.getValue().stringValue());
-            }
-            else {
-                handle.setName(handle.getUiLabel());
-            }
-            
-            if (description != null ) {
-                handle.setDescription(description.getValue().stringValue());
-            }
-            else if (descGeneral != null) {
-                handle.setDescription(descGeneral.getValue().stringValue());
+        }
+        
+        // A page which is not full is the last one
+        String nextCursor = items < aPageSize ? null : lastId;
+        return new KBPage(KBHandle.distinctByIri(handles), nextCursor);
+    }
+    
+    private static String getItemId(BindingSet aBindings, String aItemVariable)
+    {
+        return aBindings.getBinding(aItemVariable).getValue().stringValue();
+    }
+    
+    private boolean isListable(String aId, boolean aAll)
+    {
+        return aId.contains(":") && (aAll || !hasImplicitNamespace(aId));
+    }
+    
+    private KBHandle createHandle(String aId, BindingSet aBindings)
+    {
+        Binding label = aBindings.getBinding("l");
+        Binding description = aBindings.getBinding("d");
+        Binding labelGeneral = aBindings.getBinding("labelGeneral");
+        Binding descGeneral = aBindings.getBinding("descGeneral");
+        
+        KBHandle handle = new KBHandle(aId);
+        if (label != null) {
+            handle.setName(label.getValue().stringValue());
+            if (label.getValue() instanceof Literal) {
+                Literal literal = (Literal) label.getValue();
+                Optional<String> language = literal.getLanguage();
+                language.ifPresent(handle::setLanguage);
             }
-            handles.add(handle);
         }
-        return handles;
+        else if (labelGeneral != null) {
+            handle.setName(labelGeneral.getValue().stringValue());
+        }
+        else {
+            handle.setName(handle.getUiLabel());
+        }
+        
+        if (description != null ) {
+            handle.setDescription(description.getValue().stringValue());
+        }
+        else if (descGeneral != null) {
+            handle.setDescription(descGeneral.getValue().stringValue());
+        }
+        return handle;
     }
 
     /**
@@ -1248,6 +1786,34 @@ public class KnowledgeBaseServiceImpl
         return handleValue;
     }
     
+    /**
+     * Results obtained from the {@link KnowledgeBaseReadCache} are shared, so callers get copies
+     * which they are free to modify.
+     */
+    private static List<KBHandle> copyHandles(List<KBHandle> aHandles)
+    {
+        List<KBHandle> copies = new ArrayList<>(aHandles.size());
+        for (KBHandle handle : aHandles) {
+            KBHandle copy = new KBHandle(handle.getIdentifier(), handle.getName(),
+                    handle.getDescription());
+            copy.setLanguage(handle.getLanguage());
+            copy.setKB(handle.getKB());
+            copies.add(copy);
+        }
+        return copies;
+    }
+    
+    private static KBInstance copyInstance(KBInstance aInstance)
+    {
+        KBInstance copy = new KBInstance(aInstance.getIdentifier(), aInstance.getName());
+        copy.setDescription(aInstance.getDescription());
+        copy.setType(aInstance.getType());
+        copy.setLanguage(aInstance.getLanguage());
+        copy.setKB(aInstance.getKB());
+        copy.getOriginalStatements().addAll(aInstance.getOriginalStatements());
+        return copy;
+    }
+    
     private ReificationStrategy getReificationStrategy(KnowledgeBase kb)
     {
         switch (kb.getReification()) {
@@ -1570,11 +2136,64 @@ public class KnowledgeBaseServiceImpl
 
     @Override
     public List<KBHandle> listAllInstances(KnowledgeBase aKB, boolean aAll) {
-        List<KBHandle> instanceList = new ArrayList<>();
-        for (KBHandle concept : listConcepts(aKB, aAll)) {
-            instanceList.addAll(listInstances(aKB, concept.getIdentifier(), aAll));
+        List<KBHandle> resultList = read(aKB, (conn) -> {
+            String QUERY = SPARQLQueryStore.listAllInstances(aKB);
+            TupleQuery tupleQuery = conn.prepareTupleQuery(QueryLanguage.SPARQL, QUERY);
+            tupleQuery.setBinding("pTYPE", aKB.getTypeIri());
+            tupleQuery.setBinding("oCLASS", aKB.getClassIri());
+            tupleQuery.setBinding("pSUBCLASS", aKB.getSubclassIri());
+            tupleQuery.setBinding("pLABEL", aKB.getLabelIri());
+            tupleQuery.setIncludeInferred(false);
+            return evaluateListQuery(aKB, tupleQuery, false, aAll, "s");
+        });
+        
+        resultList.sort(Comparator.comparing(KBObject::getUiLabel));
+        return resultList;
+    }
+    
+    /**
+     * Parent relations between the concepts of a knowledge base. For local knowledge bases, all
+     * relations are loaded and kept in memory.
+     */
+    private static class ConceptHierarchy
+    {
+        private final long projectId;
+        private final Map<String, List<KBHandle>> parents = new HashMap<>();
+        private boolean complete = true;
+        
+        public ConceptHierarchy(long aProjectId)
+        {
+            projectId = aProjectId;
+        }
+        
+        private void addParent(String aChild, KBHandle aParent)
+        {
+            List<KBHandle> handles = parents.computeIfAbsent(aChild, id -> new ArrayList<>());
+            // The query may yield the same parent multiple times, e.g. if it has several labels
+            if (!handles.contains(aParent)) {
+                handles.add(aParent);
+            }
+        }
+        
+        /**
+         * Returns all ancestors of the given concepts in breadth-first order. Ancestors not
+         * accepted by the filter are skipped along with their own ancestors.
+         */
+        private List<KBHandle> getAncestors(Collection<KBHandle> aConcepts,
+                Predicate<String> aFilter)
+        {
+            Set<KBHandle> ancestors = new LinkedHashSet<>();
+            Deque<KBHandle> queue = new ArrayDeque<>(aConcepts);
+            while (!queue.isEmpty()) {
+                KBHandle concept = queue.poll();
+                for (KBHandle parent : parents.getOrDefault(concept.getIdentifier(),
+                        emptyList())) {
+                    if (aFilter.test(parent.getIdentifier()) && ancestors.add(parent)) {
+                        queue.add(parent);
+                    }
+                }
+            }
+            return new ArrayList<>(ancestors);
         }
-        return instanceList;
     }
-
 }
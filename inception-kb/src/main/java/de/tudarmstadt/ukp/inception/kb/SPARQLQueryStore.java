@@ -17,6 +17,11 @@
  */
 package de.tudarmstadt.ukp.inception.kb;
 
+import java.util.Collection;
+import java.util.stream.Collectors;
+
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
 import org.eclipse.rdf4j.model.vocabulary.OWL;
 import org.eclipse.rdf4j.model.vocabulary.RDF;
 import org.eclipse.rdf4j.model.vocabulary.RDFS;
@@ -102,6 +107,116 @@ public final class SPARQLQueryStore
     }
     
     
+    /**
+     * Query to list the instances of all concepts from a knowledge base at once. Uses the same
+     * notion of a concept as {@link #queryForAllConceptList(KnowledgeBase)}.
+     */
+    public static final String listAllInstances(KnowledgeBase aKB)
+    {
+        return String.join("\n"
+                , SPARQL_PREFIX
+                , "SELECT DISTINCT ?s ?l ?labelGeneral WHERE {"
+                , "  ?s ?pTYPE ?oConcept ."
+                , "  { ?oConcept ?pTYPE ?oCLASS . } "
+                , "  UNION { ?someSubClass ?pSUBCLASS ?oConcept . } ."
+                , "  FILTER(?oConcept != ?oCLASS)"
+                , optionalLanguageFilteredValue("?pLABEL", aKB.getDefaultLanguage(),"?s","?l")
+                , optionalLanguageFilteredValue("?pLABEL", null,"?s","?labelGeneral")
+                , "}"
+                , "LIMIT " + aKB.getMaxResults());
+    }
+    
+    /**
+     * Query to list the instances of all child concepts of a concept at once. Uses the same notion
+     * of a child concept as {@link #listChildConcepts(KnowledgeBase)}.
+     */
+    public static final String listInstancesForChildConcepts(KnowledgeBase aKB)
+    {
+        return String.join("\n"
+                , SPARQL_PREFIX
+                , "SELECT DISTINCT ?s ?l ?labelGeneral WHERE {"
+                , "  ?s ?pTYPE ?oConcept ."
+                , "  { ?oConcept ?pSUBCLASS ?oPARENT . }"
+                , "  UNION { ?oConcept ?pTYPE ?oCLASS ."
+                , "    ?oConcept owl:intersectionOf ?list . "
+                , "    FILTER EXISTS { ?list rdf:rest*/rdf:first ?oPARENT} }"
+                , optionalLanguageFilteredValue("?pLABEL", aKB.getDefaultLanguage(),"?s","?l")
+                , optionalLanguageFilteredValue("?pLABEL", null,"?s","?labelGeneral")
+                , "}"
+                , "LIMIT " + aKB.getMaxResults());
+    }
+    
+    /**
+     * Query to list a page of the concepts from a knowledge base. See
+     * {@link #page(String, String, int)} for how the pages are formed.
+     */
+    public static final String listConceptsPage(KnowledgeBase aKB, String aCursor,
+            int aPageSize)
+    {
+        String pattern = String.join(" "
+                , "{ ?s", NTriplesUtil.toNTriplesString(aKB.getTypeIri())
+                , NTriplesUtil.toNTriplesString(aKB.getClassIri()), ". }"
+                , "UNION { ?someSubClass", NTriplesUtil.toNTriplesString(aKB.getSubclassIri())
+                , "?s . }");
+        
+        return String.join("\n"
+                , SPARQL_PREFIX
+                , "SELECT DISTINCT ?s ?l ?labelGeneral WHERE { "
+                , page(pattern, aCursor, aPageSize)
+                , optionalLanguageFilteredValue("?pLABEL", aKB.getDefaultLanguage(),"?s","?l")
+                , optionalLanguageFilteredValue("?pLABEL", null,"?s","?labelGeneral")
+                , "}"
+                , "ORDER BY STR(?s)");
+    }
+    
+    /**
+     * Query to list a page of the instances of a concept from a knowledge base. See
+     * {@link #page(String, String, int)} for how the pages are formed.
+     */
+    public static final String listInstancesPage(KnowledgeBase aKB, String aConceptIri,
+            String aCursor, int aPageSize)
+    {
+        ValueFactory vf = SimpleValueFactory.getInstance();
+        String pattern = String.join(" "
+                , "?s", NTriplesUtil.toNTriplesString(aKB.getTypeIri())
+                , NTriplesUtil.toNTriplesString(vf.createIRI(aConceptIri)), ".");
+        
+        return String.join("\n"
+                , SPARQL_PREFIX
+                , "SELECT DISTINCT ?s ?l ?labelGeneral WHERE {"
+                , page(pattern, aCursor, aPageSize)
+                , optionalLanguageFilteredValue("?pLABEL", aKB.getDefaultLanguage(),"?s","?l")
+                , optionalLanguageFilteredValue("?pLABEL", null,"?s","?labelGeneral")
+                , "}"
+                , "ORDER BY STR(?s)");
+    }
+    
+    /**
+     * Sub-query selecting a page of the items {@code ?s} matched by the given pattern. Pages are
+     * ordered by IRI and a page starts right after the given cursor, i.e. the last IRI of the
+     * previous page, or at the beginning if the cursor is {@code null}. Unlike with
+     * {@code OFFSET}, the endpoint does not need to skip over all the previous pages to get to the
+     * requested one.
+     * <p>
+     * The page is formed before the labels are joined in, so that items with several labels do
+     * not take up more than one place on the page. The pattern and the cursor must not rely on
+     * bindings because bindings are not reliably passed into subqueries by remote endpoints, so
+     * their values are inlined.
+     */
+    private static final String page(String aPattern, String aCursor, int aPageSize)
+    {
+        return String.join("\n"
+                , "  { SELECT DISTINCT ?s WHERE {"
+                , "      " + aPattern
+                , aCursor != null
+                        ? "      FILTER(isIRI(?s) && STR(?s) > \""
+                                + NTriplesUtil.escapeString(aCursor) + "\")"
+                        : "      FILTER(isIRI(?s))"
+                , "    }"
+                , "    ORDER BY STR(?s)"
+                , "    LIMIT " + aPageSize + " }");
+    }
+    
     /** 
      * Query to list root concepts from a knowledge base.
      */
@@ -262,6 +377,107 @@ public final class SPARQLQueryStore
 
     }
     
+    /**
+     * Query to retrieve all parent relations between concepts of a knowledge base at once. Uses the
+     * same notion of a parent as {@link #queryForParentConcept(KnowledgeBase)}.
+     */
+    public static final String queryForAllParentConcepts(KnowledgeBase aKB)
+    {
+        return String.join("\n"
+                , SPARQL_PREFIX
+                , "SELECT DISTINCT ?oChild ?s ?l ?labelGeneral WHERE { "
+                , "   {?oChild ?pSUBCLASS ?s . }"
+                , "   UNION { ?s ?pTYPE ?oCLASS ."
+                , "     ?oChild owl:intersectionOf ?list . "
+                , "     FILTER EXISTS {?list rdf:rest*/rdf:first ?s. } }"
+                , optionalLanguageFilteredValue("?pLABEL", aKB.getDefaultLanguage(),"?s","?l")
+                , optionalLanguageFilteredValue("?pLABEL", null,"?s","?labelGeneral")
+                , "}");
+    }
+    
+    /**
+     * Query to retrieve the parent relations of the given concepts and of all concepts above them
+     * at once. The concepts from which the ancestors are reachable are found using a property path
+     * instead of one query per level. The path may pass intersection members which are not
+     * parents according to {@link #queryForParentConcept(KnowledgeBase)}, so the parent relations
+     * themselves are matched exactly like there and the ancestors need to be collected by following
+     * the returned relations from the given concepts. SPARQL does not allow variables in property
+     * paths, so the subclass property of the knowledge base is inlined into the query.
+     */
+    public static final String queryForAncestorConcepts(KnowledgeBase aKB,
+            Collection<String> aIdentifiers)
+    {
+        ValueFactory vf = SimpleValueFactory.getInstance();
+        String values = aIdentifiers.stream()
+                .map(id -> NTriplesUtil.toNTriplesString(vf.createIRI(id)))
+                .collect(Collectors.joining(" "));
+        String parentPath = "(" + NTriplesUtil.toNTriplesString(aKB.getSubclassIri())
+                + "|owl:intersectionOf/rdf:rest*/rdf:first)";
+        
+        return String.join("\n"
+                , SPARQL_PREFIX
+                , "SELECT DISTINCT ?oChild ?s ?l ?labelGeneral WHERE { "
+                , "   VALUES ?oItem { " + values + " }"
+                , "   ?oItem " + parentPath + "* ?oChild ."
+                , "   {?oChild ?pSUBCLASS ?s . }"
+                , "   UNION { ?s ?pTYPE ?oCLASS ."
+                , "     ?oChild owl:intersectionOf ?list . "
+                , "     FILTER EXISTS {?list rdf:rest*/rdf:first ?s. } }"
+                , optionalLanguageFilteredValue("?pLABEL", aKB.getDefaultLanguage(),"?s","?l")
+                , optionalLanguageFilteredValue("?pLABEL", null,"?s","?labelGeneral")
+                , "}");
+    }
+    
+    /**
+     * Query to read several properties at once. The identifiers of the properties are inlined into
+     * the query as a {@code VALUES} block. Apart from that, the query mirrors what
+     * {@link KnowledgeBaseService#readProperty(KnowledgeBase, String)} retrieves for a single
+     * property. {@code ?prop} is only bound if the property has been found through one of the
+     * generic RDF/OWL property types instead of the property type of the knowledge base.
+     */
+    public static final String readProperties(KnowledgeBase aKB, Collection<String> aIdentifiers)
+    {
+        ValueFactory vf = SimpleValueFactory.getInstance();
+        String values = aIdentifiers.stream()
+                .map(id -> NTriplesUtil.toNTriplesString(vf.createIRI(id)))
+                .collect(Collectors.joining(" "));
+        
+        return String.join("\n"
+                , SPARQL_PREFIX
+                , "SELECT DISTINCT ?s ?prop ?l ?d ?range ?domain WHERE { "
+                , "  VALUES ?s { " + values + " }"
+                , "  { ?s ?pTYPE ?oPROPERTYTYPE . }"
+                , "  UNION { ?s a ?prop ."
+                , "    VALUES ?prop { rdf:Property owl:ObjectProperty owl:DatatypeProperty "
+                        + "owl:AnnotationProperty } }"
+                , optionalValue("?pLABEL", aKB.getDefaultLanguage(), "?s", "?l")
+                , optionalValue("?pDESCRIPTION", aKB.getDefaultLanguage(), "?s", "?d")
+                , optionalValue("rdfs:range", null, "?s", "?range")
+                , optionalValue("rdfs:domain", null, "?s", "?domain")
+                , "}");
+    }
+    
+    /**
+     * Unlike {@link #optionalLanguageFilteredValue}, this also accepts values without a language
+     * if a language is given and accepts values in any language if no language is given.
+     */
+    private static final String optionalValue(String aProperty, String aLanguage,
+            String aVariable, String aValueVariable)
+    {
+        StringBuilder fragment = new StringBuilder();
+        fragment.append("  OPTIONAL {\n");
+        fragment.append("    ").append(aVariable).append(" ").append(aProperty).append(" ")
+                .append(aValueVariable).append(" .\n");
+        if (aLanguage != null) {
+            String escapedLang = NTriplesUtil.escapeString(aLanguage);
+            fragment.append("    FILTER(LANG(").append(aValueVariable).append(") = \"\" || ")
+                    .append("LANGMATCHES(LANG(").append(aValueVariable).append("), \"")
+                    .append(escapedLang).append("\"))\n");
+        }
+        fragment.append(" }\n");
+        return fragment.toString();
+    }
+    
     /**
      *  Query to retrieve concept for an instance
      */
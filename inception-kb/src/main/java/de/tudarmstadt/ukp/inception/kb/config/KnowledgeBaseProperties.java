@@ -28,6 +28,9 @@ public class KnowledgeBaseProperties
     
     private int defaultMaxResults = 1000;
     private int hardMaxResults = 10000;
+    private int cacheSize = 1000;
+    private long cacheExpireDelay = 15 * 60;
+    private int importBatchSize = 100_000;
 
     public int getDefaultMaxResults()
     {
@@ -48,4 +51,45 @@ public class KnowledgeBaseProperties
     {
         hardMaxResults = aHardMaxResults;
     }
+
+    /**
+     * @return maximum number of cached query results per remote knowledge base. A value of
+     *         {@code 0} disables the cache.
+     */
+    public int getCacheSize()
+    {
+        return cacheSize;
+    }
+
+    public void setCacheSize(int aCacheSize)
+    {
+        cacheSize = aCacheSize;
+    }
+
+    /**
+     * @return time in seconds after which cached query results of remote knowledge bases expire.
+     */
+    public long getCacheExpireDelay()
+    {
+        return cacheExpireDelay;
+    }
+
+    public void setCacheExpireDelay(long aCacheExpireDelay)
+    {
+        cacheExpireDelay = aCacheExpireDelay;
+    }
+
+    /**
+     * @return number of statements committed at once when importing data into a local knowledge
+     *         base. A value of {@code 0} imports all statements in a single transaction.
+     */
+    public int getImportBatchSize()
+    {
+        return importBatchSize;
+    }
+
+    public void setImportBatchSize(int aImportBatchSize)
+    {
+        importBatchSize = aImportBatchSize;
+    }
 }
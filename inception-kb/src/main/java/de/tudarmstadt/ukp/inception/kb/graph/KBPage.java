@@ -0,0 +1,58 @@
+/*
+ * Copyright 2018
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.kb.graph;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A page of a listing which is retrieved from the knowledge base piece by piece. To retrieve the
+ * next page, the {@link #getNextCursor() cursor} of this page is passed to the listing method.
+ */
+public class KBPage
+    implements Serializable
+{
+    private static final long serialVersionUID = 4137260914427861372L;
+
+    private final List<KBHandle> handles;
+    private final String nextCursor;
+
+    public KBPage(List<KBHandle> aHandles, String aNextCursor)
+    {
+        handles = aHandles;
+        nextCursor = aNextCursor;
+    }
+
+    public List<KBHandle> getHandles()
+    {
+        return handles;
+    }
+
+    /**
+     * @return the cursor pointing to the next page or {@code null} if this is the last page.
+     */
+    public String getNextCursor()
+    {
+        return nextCursor;
+    }
+
+    public boolean hasNext()
+    {
+        return nextCursor != null;
+    }
+}
@@ -17,10 +17,14 @@
  */
 package de.tudarmstadt.ukp.inception.kb.reification;
 
+import static java.util.Arrays.asList;
+
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.rdf4j.model.IRI;
@@ -37,6 +41,7 @@ import org.eclipse.rdf4j.query.TupleQuery;
 import org.eclipse.rdf4j.query.TupleQueryResult;
 import org.eclipse.rdf4j.repository.RepositoryConnection;
 import org.eclipse.rdf4j.repository.RepositoryResult;
+import org.eclipse.rdf4j.rio.ntriples.NTriplesUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -133,19 +138,34 @@ public class WikiDataReification
     public List<KBStatement> listStatements(KnowledgeBase kb, KBHandle aInstance,
         boolean aAll)
     {
+        IRI instance = vf.createIRI(aInstance.getIdentifier());
+        
+        // The qualifiers are retrieved along with the statements instead of running one query
+        // per statement. A statement spans one result row per qualifier, so the limit is applied
+        // to the statements in a subquery and the qualifiers are joined outside of it. The
+        // instance and the namespace are inlined because bindings are not reliably passed into
+        // subqueries.
+        String psNamespace = NTriplesUtil.escapeString(PREDICATE_NAMESPACE);
         String QUERY = String.join("\n",
-            "SELECT DISTINCT ?p ?o ?id ?ps WHERE {",
-            "  ?s  ?p  ?id .",
-            "  ?id ?ps ?o .",
-            "  FILTER(STRSTARTS(STR(?ps), STR(?ps_ns)))",
+            "SELECT DISTINCT ?p ?o ?id ?ps ?qp ?qo WHERE {",
+            "  {",
+            "    SELECT DISTINCT ?p ?o ?id ?ps WHERE {",
+            "      " + NTriplesUtil.toNTriplesString(instance) + " ?p ?id .",
+            "      ?id ?ps ?o .",
+            "      FILTER(STRSTARTS(STR(?ps), \"" + psNamespace + "\"))",
+            "    }",
+            "    ORDER BY ?p ?id ?ps ?o",
+            "    LIMIT " + kb.getMaxResults(),
+            "  }",
+            "  OPTIONAL {",
+            "    ?id ?qp ?qo .",
+            "    FILTER(!STRSTARTS(STR(?qp), \"" + psNamespace + "\"))",
+            "  }",
             "}",
-            "LIMIT " + kb.getMaxResults());
+            "ORDER BY ?p ?id ?ps ?o");
 
-        IRI instance = vf.createIRI(aInstance.getIdentifier());
         try (RepositoryConnection conn = kbService.getConnection(kb)) {
             TupleQuery tupleQuery = conn.prepareTupleQuery(QueryLanguage.SPARQL, QUERY);
-            tupleQuery.setBinding("s", instance);
-            tupleQuery.setBinding("ps_ns", vf.createIRI(PREDICATE_NAMESPACE));
             tupleQuery.setIncludeInferred(false);
             TupleQueryResult result;
 
@@ -157,7 +177,8 @@ public class WikiDataReification
                 return Collections.emptyList();
             }
 
-            List<KBStatement> statements = new ArrayList<>();
+            // A statement spans one result row per qualifier
+            Map<List<Value>, KBStatement> statements = new LinkedHashMap<>();
 
             while (result.hasNext()) {
                 BindingSet bindings = result.next();
@@ -186,12 +207,20 @@ public class WikiDataReification
                 originalStatements.add(valueStatement);
                 kbStatement.setOriginalStatements(originalStatements);
 
-                List<KBQualifier> qualifiers = listQualifiers(kb, kbStatement);
-                kbStatement.setQualifiers(qualifiers);
+                KBStatement existing = statements.putIfAbsent(
+                        asList(p.getValue(), id.getValue(), ps.getValue(), value), kbStatement);
+                if (existing != null) {
+                    kbStatement = existing;
+                }
 
-                statements.add(kbStatement);
+                Binding qp = bindings.getBinding("qp");
+                Binding qo = bindings.getBinding("qo");
+                if (qp != null && qo != null) {
+                    kbStatement.addQualifier(
+                            createQualifier(kbStatement, qp.getValue(), qo.getValue()));
+                }
             }
-            return statements;
+            return new ArrayList<>(statements.values());
         }
     }
 
@@ -477,20 +506,7 @@ public class WikiDataReification
                     Binding o = bindings.getBinding("o");
     
                     if (!p.getValue().stringValue().contains(PREDICATE_NAMESPACE)) {
-                        KBHandle property = new KBHandle();
-                        property.setIdentifier(p.getValue().stringValue());
-                        Value value = o.getValue();
-                        KBQualifier qualifier = new KBQualifier(aStatement, property, value);
-    
-                        IRI predicate = vf.createIRI(p.getValue().stringValue());
-                        Value object = o.getValue();
-                        Statement qualifierStatement = vf.createStatement(id, predicate, object);
-    
-                        Set<Statement> statements = new HashSet<>();
-                        statements.add(qualifierStatement);
-                        qualifier.setOriginalStatements(statements);
-    
-                        qualifiers.add(qualifier);
+                        qualifiers.add(createQualifier(aStatement, p.getValue(), o.getValue()));
                     }
                 }
                 return qualifiers;
@@ -503,6 +519,22 @@ public class WikiDataReification
         }
     }
 
+    private KBQualifier createQualifier(KBStatement aStatement, Value aPredicate, Value aValue)
+    {
+        KBHandle property = new KBHandle();
+        property.setIdentifier(aPredicate.stringValue());
+        KBQualifier qualifier = new KBQualifier(aStatement, property, aValue);
+
+        Resource id = vf.createBNode(aStatement.getStatementId());
+        IRI predicate = vf.createIRI(aPredicate.stringValue());
+        Statement qualifierStatement = vf.createStatement(id, predicate, aValue);
+
+        Set<Statement> statements = new HashSet<>();
+        statements.add(qualifierStatement);
+        qualifier.setOriginalStatements(statements);
+        return qualifier;
+    }
+
     @Override
     public boolean statementsMatchSPO(KnowledgeBase akb, KBStatement mockStatement)
     {
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2018
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.kb;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFParser;
+import org.eclipse.rdf4j.rio.Rio;
+import org.junit.Test;
+
+public class BulkImportHandlerTest
+{
+    private static final String DATA = String.join("\n",
+            "@prefix ex: <http://example.org/> .",
+            "ex:a ex:p ex:b .",
+            "ex:b ex:p ex:c .",
+            "ex:c ex:p ex:d .",
+            "ex:d ex:p ex:e .",
+            "ex:e ex:p ex:f .");
+
+    private List<Map<String, String>> namespaceBatches = new ArrayList<>();
+    private List<List<Statement>> statementBatches = new ArrayList<>();
+
+    @Test
+    public void thatStatementsArePassedOnInBatches() throws Exception
+    {
+        BulkImportHandler sut = parse(2);
+
+        assertThat(statementBatches).extracting(List::size).containsExactly(2, 2, 1);
+        assertThat(namespaceBatches.get(0)).containsEntry("ex", "http://example.org/");
+        assertThat(namespaceBatches.get(1)).isEmpty();
+        assertThat(sut.getStatementCount()).isEqualTo(5);
+    }
+
+    @Test
+    public void thatAllStatementsArePassedOnAtOnceWithoutBatchSize() throws Exception
+    {
+        BulkImportHandler sut = parse(0);
+
+        assertThat(statementBatches).extracting(List::size).containsExactly(5);
+        assertThat(sut.getStatementCount()).isEqualTo(5);
+    }
+
+    private BulkImportHandler parse(int aBatchSize) throws Exception
+    {
+        // The handler re-uses its buffers, so the batches need to be copied
+        BulkImportHandler handler = new BulkImportHandler("test", aBatchSize,
+            (namespaces, statements) -> {
+                namespaceBatches.add(new LinkedHashMap<>(namespaces));
+                statementBatches.add(new ArrayList<>(statements));
+            });
+
+        RDFParser parser = Rio.createParser(RDFFormat.TURTLE);
+        parser.setRDFHandler(handler);
+        parser.parse(new StringReader(DATA), "http://example.org/");
+        return handler;
+    }
+}
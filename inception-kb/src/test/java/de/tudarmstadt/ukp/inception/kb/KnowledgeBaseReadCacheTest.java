@@ -0,0 +1,116 @@
+/*
+ * Copyright 2018
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.kb;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.inception.kb.model.KnowledgeBase;
+
+public class KnowledgeBaseReadCacheTest
+{
+    private AtomicLong time;
+    private AtomicInteger loads;
+    private KnowledgeBaseReadCache sut;
+
+    @Before
+    public void setUp()
+    {
+        time = new AtomicLong();
+        loads = new AtomicInteger();
+        sut = new KnowledgeBaseReadCache(2, 60, time::get);
+    }
+
+    @Test
+    public void thatRemoteResultsAreCached()
+    {
+        KnowledgeBase kb = buildKnowledgeBase(1, "kb1", RepositoryType.REMOTE);
+
+        assertThat(load(kb, "a")).isEqualTo("a1");
+        assertThat(load(kb, "a")).isEqualTo("a1");
+        assertThat(load(kb, "b")).isEqualTo("b2");
+
+        assertThat(loads.get()).isEqualTo(2);
+        assertThat(sut.getHitCount()).isEqualTo(1);
+        assertThat(sut.getMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void thatLocalResultsAreNotCached()
+    {
+        KnowledgeBase kb = buildKnowledgeBase(1, "kb1", RepositoryType.LOCAL);
+
+        assertThat(load(kb, "a")).isEqualTo("a1");
+        assertThat(load(kb, "a")).isEqualTo("a2");
+    }
+
+    @Test
+    public void thatResultsExpire()
+    {
+        KnowledgeBase kb = buildKnowledgeBase(1, "kb1", RepositoryType.REMOTE);
+
+        assertThat(load(kb, "a")).isEqualTo("a1");
+        time.addAndGet(TimeUnit.SECONDS.toNanos(61));
+        assertThat(load(kb, "a")).isEqualTo("a2");
+    }
+
+    @Test
+    public void thatInvalidationOnlyAffectsGivenKnowledgeBase()
+    {
+        KnowledgeBase kb1 = buildKnowledgeBase(1, "kb1", RepositoryType.REMOTE);
+        KnowledgeBase kb2 = buildKnowledgeBase(1, "kb2", RepositoryType.REMOTE);
+        KnowledgeBase kb3 = buildKnowledgeBase(2, "kb3", RepositoryType.REMOTE);
+
+        load(kb1, "a");
+        load(kb2, "a");
+        load(kb3, "a");
+
+        sut.invalidate(kb1);
+        assertThat(load(kb1, "a")).isEqualTo("a4");
+        assertThat(load(kb2, "a")).isEqualTo("a2");
+
+        sut.invalidate(kb3.getProject());
+        assertThat(load(kb2, "a")).isEqualTo("a2");
+        assertThat(load(kb3, "a")).isEqualTo("a5");
+    }
+
+    private String load(KnowledgeBase aKB, String aKey)
+    {
+        return sut.get(aKB, () -> aKey + loads.incrementAndGet(), "test", aKey);
+    }
+
+    private static KnowledgeBase buildKnowledgeBase(long aProjectId, String aRepositoryId,
+            RepositoryType aType)
+    {
+        Project project = new Project();
+        project.setId(aProjectId);
+
+        KnowledgeBase kb = new KnowledgeBase();
+        kb.setProject(project);
+        kb.setRepositoryId(aRepositoryId);
+        kb.setType(aType);
+        return kb;
+    }
+}
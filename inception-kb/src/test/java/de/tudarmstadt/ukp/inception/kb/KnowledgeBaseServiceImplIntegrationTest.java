@@ -18,6 +18,7 @@
 
 package de.tudarmstadt.ukp.inception.kb;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatCode;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
@@ -26,6 +27,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -33,9 +35,11 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -71,6 +75,7 @@ import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.inception.kb.graph.KBConcept;
 import de.tudarmstadt.ukp.inception.kb.graph.KBHandle;
 import de.tudarmstadt.ukp.inception.kb.graph.KBInstance;
+import de.tudarmstadt.ukp.inception.kb.graph.KBPage;
 import de.tudarmstadt.ukp.inception.kb.graph.KBProperty;
 import de.tudarmstadt.ukp.inception.kb.graph.KBStatement;
 import de.tudarmstadt.ukp.inception.kb.model.KnowledgeBase;
@@ -589,6 +594,60 @@ public class KnowledgeBaseServiceImplIntegrationTest  {
             .allMatch(this::hasImplicitNamespace);
     }
 
+    @Test
+    public void listConcepts_WithSeveralLabelsInPages_ShouldCountEachConceptOnce()
+        throws Exception
+    {
+        sut.registerKnowledgeBase(kb, sut.getNativeConfig());
+        String data = String.join("\n",
+            "@prefix rdfs: <http://www.w3.org/2000/01/rdf-schema#> .",
+            "<http://example.org/#a> a rdfs:Class ; rdfs:label \"A\", \"Alpha\" .",
+            "<http://example.org/#b> a rdfs:Class ; rdfs:label \"B\", \"Beta\" .",
+            "<http://example.org/#c> a rdfs:Class ; rdfs:label \"C\" .");
+        try (InputStream is = new ByteArrayInputStream(data.getBytes(UTF_8))) {
+            sut.importData(kb, "labels.ttl", is);
+        }
+        setSchema(kb, RDFS.CLASS, RDFS.SUBCLASSOF, RDF.TYPE, RDFS.COMMENT, RDFS.LABEL, RDF.PROPERTY);
+
+        KBPage firstPage = sut.listConcepts(kb, false, null, 2);
+        assertThat(firstPage.getHandles())
+            .as("Check that concepts with several labels take up one place on the page")
+            .extracting(KBHandle::getIdentifier)
+            .containsExactly("http://example.org/#a", "http://example.org/#b");
+        assertThat(firstPage.hasNext()).isTrue();
+
+        KBPage secondPage = sut.listConcepts(kb, false, firstPage.getNextCursor(), 2);
+        assertThat(secondPage.getHandles())
+            .extracting(KBHandle::getIdentifier)
+            .containsExactly("http://example.org/#c");
+        assertThat(secondPage.hasNext()).isFalse();
+    }
+
+    @Test
+    public void listConcepts_WithStreamsInPages_ShouldFindAllConceptsOnce() throws Exception {
+        sut.registerKnowledgeBase(kb, sut.getNativeConfig());
+        importKnowledgeBase("data/streams.ttl");
+        setSchema(kb, RDFS.CLASS, RDFS.SUBCLASSOF, RDF.TYPE, RDFS.COMMENT, RDFS.LABEL, RDF.PROPERTY);
+
+        List<String> pagedConcepts = new ArrayList<>();
+        String cursor = null;
+        do {
+            KBPage page = sut.listConcepts(kb, false, cursor, 3);
+            assertThat(page.getHandles()).hasSizeLessThanOrEqualTo(3);
+            page.getHandles().forEach(h -> pagedConcepts.add(h.getIdentifier()));
+            cursor = page.getNextCursor();
+        }
+        while (cursor != null);
+
+        assertThat(pagedConcepts)
+            .as("Check that the pages together contain every concept exactly once")
+            .doesNotHaveDuplicates()
+            .containsExactlyInAnyOrderElementsOf(sut.listConcepts(kb, false).stream()
+                .map(KBHandle::getIdentifier)
+                .distinct()
+                .collect(Collectors.toList()));
+    }
+
     @Test
     public void createProperty_WithEmptyIdentifier_ShouldCreateNewProperty() {
         KBProperty property = buildProperty();
@@ -680,6 +739,66 @@ public class KnowledgeBaseServiceImplIntegrationTest  {
             .isFalse();
     }
 
+    @Test
+    public void readProperties_WithExistingAndNonexistentProperties_ShouldReturnSavedProperties() {
+        sut.registerKnowledgeBase(kb, sut.getNativeConfig());
+        KBProperty property = buildProperty();
+        KBHandle handle = sut.createProperty(kb, property);
+        KBHandle otherHandle = sut.createProperty(kb, buildProperty());
+
+        List<KBProperty> savedProperties = sut.readProperties(kb,
+                Arrays.asList(handle.getIdentifier(), otherHandle.getIdentifier(),
+                        "https://nonexistent.identifier.test"));
+
+        assertThat(savedProperties)
+            .as("Check that only the existing properties were read")
+            .extracting(KBProperty::getIdentifier)
+            .containsExactlyInAnyOrder(handle.getIdentifier(), otherHandle.getIdentifier());
+        assertThat(savedProperties)
+            .filteredOn(p -> p.getIdentifier().equals(handle.getIdentifier()))
+            .as("Check that the property was read like with readProperty")
+            .usingFieldByFieldElementComparator()
+            .containsExactly(sut.readProperty(kb, handle.getIdentifier()).get());
+    }
+
+    @Test
+    public void readProperties_WithOwlPropertyAndLanguages_ShouldRecordMatchedStatements()
+        throws Exception
+    {
+        kb.setDefaultLanguage("en");
+        sut.registerKnowledgeBase(kb, sut.getNativeConfig());
+        String data = String.join("\n",
+            "@prefix owl: <http://www.w3.org/2002/07/owl#> .",
+            "@prefix skos: <http://www.w3.org/2004/02/skos/core#> .",
+            "<http://example.org/#p> a owl:ObjectProperty ;",
+            "  skos:prefLabel \"untagged\", \"tagged\"@en ;",
+            "  skos:definition \"untagged\", \"tagged\"@en .");
+        try (InputStream is = new ByteArrayInputStream(data.getBytes(UTF_8))) {
+            sut.importData(kb, "properties.ttl", is);
+        }
+        ValueFactory vf = SimpleValueFactory.getInstance();
+        IRI subject = vf.createIRI("http://example.org/#p");
+
+        List<KBProperty> properties = sut.readProperties(kb,
+                Arrays.asList(subject.stringValue()));
+
+        assertThat(properties)
+            .as("Check that the labels in the default language are preferred")
+            .hasSize(1)
+            .element(0)
+            .hasFieldOrPropertyWithValue("name", "tagged")
+            .hasFieldOrPropertyWithValue("description", "tagged")
+            .hasFieldOrPropertyWithValue("language", "en");
+        assertThat(properties.get(0).getOriginalStatements())
+            .as("Check that the statements which actually exist are recorded")
+            .containsExactlyInAnyOrder(
+                vf.createStatement(subject, RDF.TYPE, OWL.OBJECTPROPERTY),
+                vf.createStatement(subject, kb.getPropertyLabelIri(),
+                        vf.createLiteral("tagged", "en")),
+                vf.createStatement(subject, kb.getPropertyDescriptionIri(),
+                        vf.createLiteral("tagged", "en")));
+    }
+
     @Test
     public void updateProperty_WithAlteredProperty_ShouldUpdateProperty() {
         KBProperty property = buildProperty();
@@ -1333,6 +1452,47 @@ public class KnowledgeBaseServiceImplIntegrationTest  {
             .as("Check that all immediate child concepts have been found")
             .containsExactlyInAnyOrder(expectedLabels);
     }
+
+    @Test
+    public void getParentConceptList_WithStreams_ReturnsAllAncestors() throws Exception {
+        sut.registerKnowledgeBase(kb, sut.getNativeConfig());
+        importKnowledgeBase("data/streams.ttl");
+        setSchema(kb, RDFS.CLASS, RDFS.SUBCLASSOF, RDF.TYPE, RDFS.COMMENT, RDFS.LABEL, RDF.PROPERTY);
+
+        Stream<String> parentConcepts = sut
+            .getParentConceptList(kb, "http://mrklie.com/schemas/streams#bufferedinput", false)
+            .stream()
+            .map(KBHandle::getName);
+
+        assertThat(parentConcepts)
+            .as("Check that the concept and all its ancestors have been found")
+            .containsExactly("BufferedInputStream", "FilterInputStream", "InputStream");
+    }
+
+    @Test
+    public void listAncestorConcepts_WithIntersections_ReturnsSameAsLevelByLevel()
+        throws Exception
+    {
+        sut.registerKnowledgeBase(kb, sut.getNativeConfig());
+        importKnowledgeBase("data/wine-ontology.rdf");
+        setSchema(kb, OWL.CLASS, RDFS.SUBCLASSOF, RDF.TYPE, RDFS.COMMENT, RDFS.LABEL, RDF.PROPERTY);
+
+        String ns = "http://www.w3.org/TR/2003/PR-owl-guide-20031209/wine#";
+        for (String name : Arrays.asList("WhiteNonSweetWine", "WhiteLoire", "Riesling")) {
+            KBHandle concept = new KBHandle(ns + name);
+
+            List<KBHandle> ancestors = sut.listAncestorConcepts(kb, Arrays.asList(concept),
+                false);
+            Set<KBHandle> levelByLevel = sut.getParentConceptListforConcept(
+                new LinkedHashSet<>(), kb, concept, false);
+
+            assertThat(ancestors)
+                .as("Check that the property path yields the same ancestors of [%s] as the "
+                    + "level-by-level resolution", name)
+                .isNotEmpty()
+                .containsExactlyInAnyOrderElementsOf(levelByLevel);
+        }
+    }
     
     @Test
     public void getEnabledKnowledgeBases_WithOneEnabledOneDisabled_ReturnsOnlyEnabledKB()
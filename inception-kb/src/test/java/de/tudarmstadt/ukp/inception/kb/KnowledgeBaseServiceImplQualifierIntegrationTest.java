@@ -17,6 +17,7 @@
  */
 package de.tudarmstadt.ukp.inception.kb;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatCode;
 
@@ -382,6 +383,44 @@ public class KnowledgeBaseServiceImplQualifierIntegrationTest {
         }
     }
 
+    @Test
+    public void listStatements_WithSeveralQualifiers_ShouldLimitStatementsNotQualifiers()
+    {
+        sut.registerKnowledgeBase(kb, sut.getNativeConfig());
+        if (kb.getReification().equals(Reification.WIKIDATA)) {
+            KBConcept concept = testFixtures.buildConcept();
+            KBProperty property = testFixtures.buildProperty();
+            KBHandle conceptHandle = sut.createConcept(kb, concept);
+            KBHandle propertyHandle = sut.createProperty(kb, property);
+            KBStatement statement = testFixtures.buildStatement(conceptHandle,
+                propertyHandle, "Test statement");
+            sut.initStatement(kb, statement);
+            sut.upsertStatement(kb, statement);
+            for (String value : asList("first", "second", "third")) {
+                sut.addQualifier(kb, testFixtures.buildQualifier(statement, propertyHandle,
+                    value));
+            }
+            KBStatement otherStatement = testFixtures.buildStatement(conceptHandle,
+                propertyHandle, "Other statement");
+            sut.initStatement(kb, otherStatement);
+            sut.upsertStatement(kb, otherStatement);
+
+            // Each qualifier adds a result row, but the limit applies to the statements
+            kb.setMaxResults(2);
+            List<KBStatement> statements = sut.listStatements(kb, conceptHandle, false);
+
+            assertThat(statements)
+                .as("Check that each statement is listed once")
+                .extracting(KBStatement::getValue)
+                .containsExactlyInAnyOrder("Test statement", "Other statement");
+            assertThat(statements)
+                .filteredOn(stmt -> "Test statement".equals(stmt.getValue()))
+                .flatExtracting(KBStatement::getQualifiers)
+                .extracting(KBQualifier::getValue)
+                .containsExactlyInAnyOrder("first", "second", "third");
+        }
+    }
+
     @Test
     public void listQualifiers_WithExistentQualifier_ShouldReturnOnlyThisQualifier()
     {
@@ -17,6 +17,7 @@
  */
 package de.tudarmstadt.ukp.inception.kb;
 
+import static java.util.stream.Collectors.toList;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.io.IOException;
@@ -61,6 +62,7 @@ import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import de.tudarmstadt.ukp.clarin.webanno.api.dao.RepositoryProperties;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.inception.kb.graph.KBHandle;
+import de.tudarmstadt.ukp.inception.kb.graph.KBPage;
 import de.tudarmstadt.ukp.inception.kb.model.KnowledgeBase;
 import de.tudarmstadt.ukp.inception.kb.reification.Reification;
 import de.tudarmstadt.ukp.inception.kb.util.TestFixtures;
@@ -403,6 +405,32 @@ public class KnowledgeBaseServiceRemoteTest
         assertThat(parentList).as("Check that parent list is not empty").isNotEmpty();
     }
 
+    @Test
+    public void thatSecondPageOfConceptsCanBeRetrieved()
+    {
+        KnowledgeBase kb = sutConfig.getKnowledgeBase();
+
+        long duration = System.currentTimeMillis();
+        KBPage firstPage = sut.listConcepts(kb, true, null, 5);
+        KBPage secondPage = sut.listConcepts(kb, true, firstPage.getNextCursor(), 5);
+        duration = System.currentTimeMillis() - duration;
+
+        System.out.printf("Concepts on second page : %d%n", secondPage.getHandles().size());
+        System.out.printf("Time required           : %d ms%n", duration);
+        secondPage.getHandles().forEach(h -> System.out.printf("   %s%n", h));
+
+        assertThat(firstPage.getNextCursor()).as("Check that there is a second page")
+                .isNotNull();
+        assertThat(secondPage.getHandles()).as("Check that second page is not empty")
+                .isNotEmpty();
+        // The cursor is the last IRI of the previous page and pages are ordered by IRI
+        assertThat(secondPage.getHandles()).extracting(KBHandle::getIdentifier)
+                .as("Check that second page continues after the first page")
+                .allMatch(id -> id.compareTo(firstPage.getNextCursor()) > 0)
+                .doesNotContainAnyElementsOf(firstPage.getHandles().stream()
+                        .map(KBHandle::getIdentifier).collect(toList()));
+    }
+
     // Helper
 
     private void importKnowledgeBase(String resourceName) throws Exception
@@ -26,6 +26,7 @@ import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.AnnotationSuggestion;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecord;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecordChangeLocation;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecordIndex;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecordType;
 
 public interface LearningRecordService
@@ -42,6 +43,14 @@ public interface LearningRecordService
      */
     List<LearningRecord> listRecords(String user, AnnotationLayer layer, int aLimit);
 
+    /**
+     * Returns an index over the learning records of the given user and layer which can be used to
+     * quickly look up the action the user performed on a suggestion. The index is kept in memory
+     * and is updated as records are created or deleted through this service, so it should not be
+     * cached by the caller.
+     */
+    LearningRecordIndex getRecordIndex(String user, AnnotationLayer layer);
+
     void deleteRecords(SourceDocument document, String user);
 
     LearningRecord getRecordById(long recordId);
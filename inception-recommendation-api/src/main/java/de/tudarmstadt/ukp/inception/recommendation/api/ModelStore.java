@@ -0,0 +1,51 @@
+/*
+ * Copyright 2018
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.api;
+
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngine;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext;
+
+/**
+ * Persists the models trained by recommenders so they survive restarts and the end of user
+ * sessions. Only models of engines which {@link RecommendationEngine#supportsModelPersistence()
+ * support persistence} are stored.
+ */
+public interface ModelStore
+{
+    /**
+     * Restores the stored model of the given user and recommender into the given context.
+     * 
+     * @return whether a model was restored.
+     */
+    boolean load(User aUser, Recommender aRecommender, RecommendationEngine aEngine,
+            RecommenderContext aContext);
+
+    /**
+     * Stores the model contained in the given context, replacing any previously stored model of
+     * the given user and recommender.
+     */
+    void save(User aUser, Recommender aRecommender, RecommendationEngine aEngine,
+            RecommenderContext aContext);
+
+    /**
+     * Removes the stored models of all users for the given recommender.
+     */
+    void delete(Recommender aRecommender);
+}
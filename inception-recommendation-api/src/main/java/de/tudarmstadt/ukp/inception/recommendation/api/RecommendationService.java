@@ -83,6 +83,13 @@ public interface RecommendationService
     void putIncomingPredictions(User aUser, Project aProject, Predictions aPredictions);
     
     boolean switchPredictions(User aUser, Project aProject);
+    
+    /**
+     * Returns the number of edits the given user made in the given project which have not yet
+     * been passed on to the training of the recommenders, i.e. by how many edits the models are
+     * behind.
+     */
+    int getPendingEditCount(User aUser, Project aProject);
 
     /**
      * Returns the {@code RecommenderContext} for the given recommender if it exists, else it
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2018
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.api.evaluation;
+
+import static de.tudarmstadt.ukp.inception.recommendation.api.evaluation.DataSplitter.TargetSet.TEST;
+import static de.tudarmstadt.ukp.inception.recommendation.api.evaluation.DataSplitter.TargetSet.TRAIN;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Splitter for one fold of a k-fold cross-validation. The samples are assigned to the folds in a
+ * round-robin fashion in the order in which they are passed to the splitter, i.e. the n-th sample
+ * goes to fold {@code n % k}. The samples of the test fold are mapped to the test set, all others
+ * to the training set. Since the assignment only depends on the sample order, all recommenders
+ * extracting their samples in the same order from the same data are evaluated on the same folds.
+ */
+public class KFoldSplitter
+    implements DataSplitter
+{
+    private final int folds;
+    private final int testFold;
+    
+    private int count;
+
+    public KFoldSplitter(int aFolds, int aTestFold)
+    {
+        Validate.isTrue(aFolds >= 2, "Cross-validation requires at least 2 folds");
+        Validate.isTrue(aTestFold >= 0 && aTestFold < aFolds, "Test fold has to be in [0,%d]",
+                aFolds - 1);
+        
+        folds = aFolds;
+        testFold = aTestFold;
+    }
+
+    @Override
+    public TargetSet getTargetSet(Object aObject)
+    {
+        TargetSet target = count % folds == testFold ? TEST : TRAIN;
+        count++;
+        return target;
+    }
+    
+    public int getFolds()
+    {
+        return folds;
+    }
+    
+    public int getTestFold()
+    {
+        return testFold;
+    }
+}
@@ -123,6 +123,7 @@ public class AnnotationSuggestion
         coveredText = aObject.coveredText;
         documentName = aObject.documentName;
         documentUri = aObject.documentUri;
+        hidingFlags = aObject.hidingFlags;
     }
 
     // Getter and setter
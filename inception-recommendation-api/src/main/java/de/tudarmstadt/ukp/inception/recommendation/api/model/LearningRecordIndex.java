@@ -0,0 +1,146 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.api.model;
+
+import static de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecordType.SHOWN;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+/**
+ * In-memory index over the learning records of a single user and layer which allows looking up
+ * the action the user last performed on a suggestion by its document, offsets and label.
+ * <p>
+ * Records with the action {@link LearningRecordType#SHOWN} are not indexed. If there are multiple
+ * records for the same location and label (e.g. for different features), the most recent one
+ * wins.
+ */
+public class LearningRecordIndex
+{
+    private final Map<RecordKey, LearningRecord> records = new ConcurrentHashMap<>();
+
+    /**
+     * @param aRecords
+     *            the records to index, most recent first (as returned by
+     *            {@code LearningRecordService.listRecords}).
+     */
+    public LearningRecordIndex(Collection<LearningRecord> aRecords)
+    {
+        for (LearningRecord record : aRecords) {
+            if (record.getUserAction() != SHOWN) {
+                records.putIfAbsent(new RecordKey(record), record);
+            }
+        }
+    }
+
+    /**
+     * Adds a newly created record to the index. The record takes precedence over any record
+     * already indexed at the same location.
+     */
+    public void add(LearningRecord aRecord)
+    {
+        if (aRecord.getUserAction() != SHOWN) {
+            records.put(new RecordKey(aRecord), aRecord);
+        }
+    }
+
+    /**
+     * Removes the given record from the index.
+     * 
+     * @return {@code false} if the record was the one indexed for its location. In this case, an
+     *         older record for the same location may have become relevant again which the index
+     *         does not know about and the index should be rebuilt.
+     */
+    public boolean remove(LearningRecord aRecord)
+    {
+        RecordKey key = new RecordKey(aRecord);
+        LearningRecord indexed = records.get(key);
+        if (indexed == null || !isSameRecord(indexed, aRecord)) {
+            return true;
+        }
+        
+        records.remove(key, indexed);
+        return false;
+    }
+
+    public Optional<LearningRecordType> getUserAction(String aDocumentName, int aBegin, int aEnd,
+            String aLabel)
+    {
+        LearningRecord record = records.get(new RecordKey(aDocumentName, aBegin, aEnd, aLabel));
+        return Optional.ofNullable(record).map(LearningRecord::getUserAction);
+    }
+
+    public int size()
+    {
+        return records.size();
+    }
+
+    private static boolean isSameRecord(LearningRecord aOne, LearningRecord aOther)
+    {
+        if (aOne.getId() != null && aOther.getId() != null) {
+            return aOne.getId().equals(aOther.getId());
+        }
+        return aOne == aOther;
+    }
+
+    private static class RecordKey
+    {
+        private final String documentName;
+        private final int begin;
+        private final int end;
+        private final String label;
+
+        public RecordKey(LearningRecord aRecord)
+        {
+            this(aRecord.getSourceDocument().getName(), aRecord.getOffsetCharacterBegin(),
+                    aRecord.getOffsetCharacterEnd(), aRecord.getAnnotation());
+        }
+
+        public RecordKey(String aDocumentName, int aBegin, int aEnd, String aLabel)
+        {
+            documentName = aDocumentName;
+            begin = aBegin;
+            end = aEnd;
+            label = aLabel;
+        }
+
+        @Override
+        public boolean equals(final Object other)
+        {
+            if (!(other instanceof RecordKey)) {
+                return false;
+            }
+            RecordKey castOther = (RecordKey) other;
+            return new EqualsBuilder().append(documentName, castOther.documentName)
+                    .append(begin, castOther.begin).append(end, castOther.end)
+                    .append(label, castOther.label).isEquals();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return new HashCodeBuilder().append(documentName).append(begin).append(end)
+                    .append(label).toHashCode();
+        }
+    }
+}
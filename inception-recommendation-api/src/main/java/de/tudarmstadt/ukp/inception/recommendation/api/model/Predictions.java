@@ -17,17 +17,26 @@
  */
 package de.tudarmstadt.ukp.inception.recommendation.api.model;
 
+import static java.util.stream.Collectors.toList;
+
 import java.io.Serializable;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.function.BiPredicate;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.ImmutableTriple;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.model.VID;
@@ -43,19 +52,32 @@ import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
  * 
  * If the prediction task has run it stores the predicted annotations for an annotation layer in the
  * predictions map.
+ * 
+ * The suggestions are indexed by document, layer and begin offset as well as by the
+ * (recommender ID, suggestion ID) pair used in the {@link VID} of a suggestion. This allows the
+ * renderer to look up the suggestions for the visible window without scanning all predictions.
  */
 public class Predictions
     implements Serializable
 {
     private static final long serialVersionUID = -1598768729246662885L;
     
-    private Map<ExtendedId, AnnotationSuggestion> predictions = new ConcurrentHashMap<>();
+    private final Map<ExtendedId, AnnotationSuggestion> predictions = new ConcurrentHashMap<>();
+    
+    // document name -> layer ID -> begin offset -> suggestions
+    private final Map<String, Map<Long, NavigableMap<Integer, List<AnnotationSuggestion>>>> 
+            offsetIndex = new HashMap<>();
+    
+    // (document name, recommender ID, suggestion ID) -> suggestion
+    private final Map<Triple<String, Long, Integer>, AnnotationSuggestion> idIndex = 
+            new HashMap<>();
+    
+    // (document name, recommender ID) -> (CAS timestamp, recommender context version)
+    private final Map<Pair<String, Long>, Pair<Long, Long>> versions = new ConcurrentHashMap<>();
     
     private final Project project;
     private final User user;
     
-    private Logger logger = LoggerFactory.getLogger(getClass());
-    
     public Predictions(Project aProject, User aUser,
             Map<ExtendedId, AnnotationSuggestion> aPredictions)
     {
@@ -67,13 +89,24 @@ public class Predictions
         user = aUser;
 
         if (aPredictions != null) {
-            predictions = new ConcurrentHashMap<ExtendedId, AnnotationSuggestion>(aPredictions);
+            aPredictions.forEach(this::put);
         }
     }
     
     public Predictions(Project aProject, User aUser) {
         this(aProject, aUser, null);
     }
+    
+    /**
+     * Creates a copy of the given predictions which can be updated without affecting the original.
+     * The suggestions themselves are shared between the copy and the original, so they must be
+     * copied before changing e.g. their visibility.
+     */
+    public Predictions(Predictions aOther)
+    {
+        this(aOther.project, aOther.user, aOther.predictions);
+        versions.putAll(aOther.versions);
+    }
 
     /**
      * Get the predictions of a given window for each document, where the outer list is a list of
@@ -116,46 +149,71 @@ public class Predictions
      * If the parameters {@code aWindowBegin} and {@code aWindowEnd} are {@code -1},
      * then they are ignored respectively. This is useful when all suggestions should be fetched.
      */
-    private List<AnnotationSuggestion> getFlattenedPredictions(String aDocumentName,
+    private synchronized List<AnnotationSuggestion> getFlattenedPredictions(String aDocumentName,
         AnnotationLayer aLayer, int aWindowBegin, int aWindowEnd)
     {
-        List<Map.Entry<ExtendedId, AnnotationSuggestion>> p = predictions.entrySet().stream()
-            .filter(f -> f.getKey().getDocumentName().equals(aDocumentName))
-            .filter(f -> f.getKey().getLayerId() == aLayer.getId())
-            .filter(f -> aWindowBegin == -1 || (f.getKey().getBegin() >= aWindowBegin))
-            .filter(f -> aWindowEnd == -1 || (f.getKey().getEnd() <= aWindowEnd))
-            .sorted(Comparator.comparingInt(e2 -> e2.getValue().getBegin()))
-            .collect(Collectors.toList());
-
-        return p.stream()
-            .map(Map.Entry::getValue)
-            .collect(Collectors.toList());
+        NavigableMap<Integer, List<AnnotationSuggestion>> byBegin = getOffsetIndex(aDocumentName,
+                aLayer.getId());
+        if (byBegin == null) {
+            return new ArrayList<>();
+        }
+        
+        // Since a suggestion never ends before it begins, only suggestions beginning within the
+        // window can be contained in the window
+        if (aWindowBegin != -1 && aWindowEnd != -1) {
+            byBegin = byBegin.subMap(aWindowBegin, true, aWindowEnd, true);
+        }
+        else if (aWindowBegin != -1) {
+            byBegin = byBegin.tailMap(aWindowBegin, true);
+        }
+        else if (aWindowEnd != -1) {
+            byBegin = byBegin.headMap(aWindowEnd, true);
+        }
+        
+        List<AnnotationSuggestion> result = new ArrayList<>();
+        for (List<AnnotationSuggestion> suggestions : byBegin.values()) {
+            for (AnnotationSuggestion suggestion : suggestions) {
+                if (aWindowEnd == -1 || suggestion.getEnd() <= aWindowEnd) {
+                    result.add(suggestion);
+                }
+            }
+        }
+        return result;
     }
 
     /**
      * Returns the first prediction that matches recommendationId and recommenderId
      * in the given document.
      */
-    public Optional<AnnotationSuggestion> getPredictionByVID(SourceDocument aDocument, VID aVID)
+    public synchronized Optional<AnnotationSuggestion> getPredictionByVID(SourceDocument aDocument,
+            VID aVID)
     {
-        return predictions.values().stream()
-                .filter(f -> f.getDocumentName().equals(aDocument.getName()))
-                .filter(f -> f.getId() == aVID.getSubId())
-                .filter(f -> f.getRecommenderId() == aVID.getId())
-                .findFirst();
+        return Optional.ofNullable(idIndex.get(new ImmutableTriple<>(aDocument.getName(),
+                (long) aVID.getId(), aVID.getSubId())));
     }
 
     /**
      * Returns the prediction used to generate the VID
      */
-    public Optional<AnnotationSuggestion> getPrediction(SourceDocument aDocument, int aBegin,
-            int aEnd, String aLabel)
+    public synchronized Optional<AnnotationSuggestion> getPrediction(SourceDocument aDocument,
+            int aBegin, int aEnd, String aLabel)
     {
-        return predictions.values().stream()
-                .filter(f -> f.getDocumentName().equals(aDocument.getName()))
-                .filter(f -> f.getBegin() == aBegin && f.getEnd() == aEnd)
-                .filter(f -> f.getLabel().equals(aLabel))
-                .max(Comparator.comparingInt(AnnotationSuggestion::getId));
+        Map<Long, NavigableMap<Integer, List<AnnotationSuggestion>>> byLayer = offsetIndex
+                .get(aDocument.getName());
+        if (byLayer == null) {
+            return Optional.empty();
+        }
+        
+        AnnotationSuggestion best = null;
+        for (NavigableMap<Integer, List<AnnotationSuggestion>> byBegin : byLayer.values()) {
+            for (AnnotationSuggestion s : byBegin.getOrDefault(aBegin, Collections.emptyList())) {
+                if (s.getEnd() == aEnd && s.getLabel().equals(aLabel)
+                        && (best == null || s.getId() > best.getId())) {
+                    best = s;
+                }
+            }
+        }
+        return Optional.ofNullable(best);
     }
     
     /**
@@ -167,12 +225,95 @@ public class Predictions
     {
         aPredictions.forEach(prediction -> {
             if (prediction.getLabel() != null) {
-                predictions.put(new ExtendedId(user.getUsername(), project.getId(),
+                put(new ExtendedId(user.getUsername(), project.getId(),
                         prediction.getDocumentName(), aLayerId, prediction.getOffset(),
                         prediction.getRecommenderId(), prediction.getId(), -1), prediction);
             }
         });
     }
+    
+    private synchronized void put(ExtendedId aId, AnnotationSuggestion aSuggestion)
+    {
+        AnnotationSuggestion previous = predictions.put(aId, aSuggestion);
+        if (previous != null) {
+            unindex(aId, previous);
+        }
+        
+        offsetIndex.computeIfAbsent(aId.getDocumentName(), k -> new HashMap<>())
+                .computeIfAbsent(aId.getLayerId(), k -> new TreeMap<>())
+                .computeIfAbsent(aId.getBegin(), k -> new ArrayList<>())
+                .add(aSuggestion);
+        idIndex.put(new ImmutableTriple<>(aId.getDocumentName(), aSuggestion.getRecommenderId(),
+                aSuggestion.getId()), aSuggestion);
+    }
+    
+    private void unindex(ExtendedId aId, AnnotationSuggestion aSuggestion)
+    {
+        Triple<String, Long, Integer> idKey = new ImmutableTriple<>(aId.getDocumentName(),
+                aSuggestion.getRecommenderId(), aSuggestion.getId());
+        if (idIndex.get(idKey) == aSuggestion) {
+            idIndex.remove(idKey);
+        }
+        
+        Map<Long, NavigableMap<Integer, List<AnnotationSuggestion>>> byLayer = offsetIndex
+                .get(aId.getDocumentName());
+        if (byLayer == null) {
+            return;
+        }
+        NavigableMap<Integer, List<AnnotationSuggestion>> byBegin = byLayer.get(aId.getLayerId());
+        if (byBegin == null) {
+            return;
+        }
+        List<AnnotationSuggestion> suggestions = byBegin.get(aId.getBegin());
+        if (suggestions == null) {
+            return;
+        }
+        
+        // Remove by identity - the same suggestion may not be in the list twice
+        suggestions.removeIf(s -> s == aSuggestion);
+        if (suggestions.isEmpty()) {
+            byBegin.remove(aId.getBegin());
+            if (byBegin.isEmpty()) {
+                byLayer.remove(aId.getLayerId());
+                if (byLayer.isEmpty()) {
+                    offsetIndex.remove(aId.getDocumentName());
+                }
+            }
+        }
+    }
+    
+    private NavigableMap<Integer, List<AnnotationSuggestion>> getOffsetIndex(String aDocumentName,
+            long aLayerId)
+    {
+        Map<Long, NavigableMap<Integer, List<AnnotationSuggestion>>> byLayer = offsetIndex
+                .get(aDocumentName);
+        return byLayer != null ? byLayer.get(aLayerId) : null;
+    }
+    
+    /**
+     * Records that the predictions of the given recommender for the given document have been
+     * generated from the annotation CAS with the given timestamp using the given version of the
+     * recommender context.
+     */
+    public void putPredictionVersion(String aDocumentName, long aRecommenderId, long aCasTimestamp,
+            long aContextVersion)
+    {
+        versions.put(new ImmutablePair<>(aDocumentName, aRecommenderId),
+                new ImmutablePair<>(aCasTimestamp, aContextVersion));
+    }
+    
+    /**
+     * @return whether the predictions of the given recommender for the given document have been
+     *         generated from the annotation CAS with the given timestamp using the given version of
+     *         the recommender context, i.e. whether predicting again would yield the same result.
+     */
+    public boolean isPredictionUpToDate(String aDocumentName, long aRecommenderId,
+            long aCasTimestamp, long aContextVersion)
+    {
+        Pair<Long, Long> version = versions.get(new ImmutablePair<>(aDocumentName, aRecommenderId));
+        return version != null && version.getLeft() == aCasTimestamp
+                && version.getRight() == aContextVersion;
+    }
 
     public Project getProject() {
         return project;
@@ -185,18 +326,70 @@ public class Predictions
 
     public Map<ExtendedId, AnnotationSuggestion> getPredictions()
     {
-        return predictions;
+        return Collections.unmodifiableMap(predictions);
+    }
+    
+    /**
+     * @return the predictions of the given recommender for the given document.
+     */
+    public synchronized List<AnnotationSuggestion> getPredictions(String aDocumentName,
+            long aRecommenderId)
+    {
+        Map<Long, NavigableMap<Integer, List<AnnotationSuggestion>>> byLayer = offsetIndex
+                .get(aDocumentName);
+        if (byLayer == null) {
+            return new ArrayList<>();
+        }
+        
+        return byLayer.values().stream()
+                .flatMap(byBegin -> byBegin.values().stream())
+                .flatMap(List::stream)
+                .filter(suggestion -> suggestion.getRecommenderId() == aRecommenderId)
+                .collect(toList());
+    }
+    
+    public int size()
+    {
+        return predictions.size();
     }
     
-    public void clearPredictions()
+    public synchronized void clearPredictions()
     {
         predictions.clear();
+        offsetIndex.clear();
+        idIndex.clear();
+        versions.clear();
     }
 
     public void removePredictions(Long recommenderId)
     {
-        predictions.entrySet()
-            .removeIf((p) -> p.getKey().getRecommenderId() == recommenderId);
+        removePredictions((doc, rec) -> rec.equals(recommenderId));
+    }
+    
+    /**
+     * Removes the predictions of the given recommender for the given document.
+     */
+    public void removePredictions(String aDocumentName, long aRecommenderId)
+    {
+        removePredictions((doc, rec) -> rec == aRecommenderId && doc.equals(aDocumentName));
+    }
+    
+    /**
+     * Removes all predictions for which the given predicate on the document name and the
+     * recommender ID holds, along with their version information.
+     */
+    public synchronized void removePredictions(BiPredicate<String, Long> aPredicate)
+    {
+        Iterator<Map.Entry<ExtendedId, AnnotationSuggestion>> i = predictions.entrySet()
+                .iterator();
+        while (i.hasNext()) {
+            Map.Entry<ExtendedId, AnnotationSuggestion> e = i.next();
+            if (aPredicate.test(e.getKey().getDocumentName(), e.getKey().getRecommenderId())) {
+                i.remove();
+                unindex(e.getKey(), e.getValue());
+            }
+        }
+        versions.keySet().removeIf(k -> aPredicate.test(k.getLeft(), k.getRight()));
     }
 
     /**
@@ -211,17 +404,24 @@ public class Predictions
      * @param aFeature the given annotation feature name
      * @return
      */
-    public List<AnnotationSuggestion> getPredictionsByTokenAndFeature(String aDocumentName,
-        AnnotationLayer aLayer, int aBegin, int aEnd, String aFeature)
-    {
-        return predictions.entrySet().stream()
-            .filter(f -> f.getKey().getDocumentName().equals(aDocumentName))
-            .filter(f -> f.getKey().getLayerId() == aLayer.getId())
-            .filter(f -> f.getKey().getOffset().getBeginCharacter() == aBegin)
-            .filter(f -> f.getKey().getOffset().getEndCharacter() == aEnd)
-            .filter(f -> f.getValue().getFeature().equals(aFeature))
-            .map(Map.Entry::getValue)
-            .collect(Collectors.toList());
-
+    public synchronized List<AnnotationSuggestion> getPredictionsByTokenAndFeature(
+            String aDocumentName, AnnotationLayer aLayer, int aBegin, int aEnd, String aFeature)
+    {
+        List<AnnotationSuggestion> result = new ArrayList<>();
+        
+        NavigableMap<Integer, List<AnnotationSuggestion>> byBegin = getOffsetIndex(aDocumentName,
+                aLayer.getId());
+        if (byBegin == null) {
+            return result;
+        }
+        
+        Collection<AnnotationSuggestion> candidates = byBegin.getOrDefault(aBegin,
+                Collections.emptyList());
+        for (AnnotationSuggestion suggestion : candidates) {
+            if (suggestion.getEnd() == aEnd && suggestion.getFeature().equals(aFeature)) {
+                result.add(suggestion);
+            }
+        }
+        return result;
     }
 }
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.api.recommender;
+
+import java.util.List;
+
+import org.apache.uima.cas.CAS;
+
+/**
+ * Provides the CASes a recommender is trained or evaluated on one at a time. Unlike a list of
+ * CASes, a stream does not require all CASes to be held in memory at the same time.
+ * <p>
+ * Each CAS is handed to a {@link CasConsumer} and is released as soon as the consumer returns.
+ * Consumers must therefore extract whatever they need from the CAS (e.g. training samples) and
+ * must not keep references to the CAS itself or to any of its feature structures. A stream may be
+ * consumed multiple times, but each pass may involve loading the CASes again.
+ */
+public interface CasStream
+{
+    /**
+     * Passes each CAS of the stream to the given consumer. As for the list-based methods of
+     * {@link RecommendationEngine}, the consumer must not mutate the CASes in any way.
+     */
+    void forEach(CasConsumer aConsumer) throws RecommendationException;
+
+    /**
+     * @return a stream over the given CASes which are already in memory.
+     */
+    static CasStream of(List<CAS> aCasses)
+    {
+        return aConsumer -> {
+            for (CAS cas : aCasses) {
+                aConsumer.accept(cas);
+            }
+        };
+    }
+
+    @FunctionalInterface
+    interface CasConsumer
+    {
+        void accept(CAS aCas) throws RecommendationException;
+    }
+}
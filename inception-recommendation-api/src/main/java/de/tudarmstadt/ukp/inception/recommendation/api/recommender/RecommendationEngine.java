@@ -17,12 +17,16 @@
  */
 package de.tudarmstadt.ukp.inception.recommendation.api.recommender;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Optional;
 
 import org.apache.uima.cas.CAS;
 
 import de.tudarmstadt.ukp.inception.recommendation.api.evaluation.DataSplitter;
+import de.tudarmstadt.ukp.inception.recommendation.api.evaluation.KFoldSplitter;
 
 public interface RecommendationEngine {
     /**
@@ -54,6 +58,111 @@ public interface RecommendationEngine {
      */
     double evaluate(List<CAS> aCasses, DataSplitter aDataSplitter) throws RecommendationException;
 
+    /**
+     * Evaluates the performance of a recommender using a k-fold cross-validation on the data given
+     * in {@code aCasses}. The default implementation calls {@link #evaluate} once per fold using a
+     * {@link KFoldSplitter}. Implementations should override this if they can extract their samples
+     * once and reuse them across all folds. This method must not mutate {@code aCasses} in any
+     * way.
+     * @param aCasses The CASses containing target annotations
+     * @param aFolds The number of folds
+     * @return The average score across all folds
+     */
+    default double crossValidate(List<CAS> aCasses, int aFolds) throws RecommendationException
+    {
+        double total = 0.0;
+        for (int fold = 0; fold < aFolds; fold++) {
+            total += evaluate(aCasses, new KFoldSplitter(aFolds, fold));
+        }
+        return total / aFolds;
+    }
+
+    /**
+     * @return whether the engine can be trained and evaluated on a {@link CasStream} using
+     *         {@link #train(RecommenderContext, CasStream)},
+     *         {@link #evaluate(CasStream, DataSplitter)} and {@link #crossValidate(CasStream, int)}.
+     *         If so, callers should prefer these methods over their list-based counterparts since
+     *         they do not require all CASes to be held in memory at the same time.
+     */
+    default boolean supportsStreaming()
+    {
+        return false;
+    }
+
+    /**
+     * Same as {@link #train(RecommenderContext, List)}, but obtains the training data from a
+     * stream. Only supported if {@link #supportsStreaming()} returns {@code true}.
+     * @param aContext The context of the recommender
+     * @param aCasses The training data
+     */
+    default void train(RecommenderContext aContext, CasStream aCasses)
+        throws RecommendationException
+    {
+        throw new UnsupportedOperationException("Recommender does not support streaming");
+    }
+
+    /**
+     * Same as {@link #evaluate(List, DataSplitter)}, but obtains the data from a stream. Only
+     * supported if {@link #supportsStreaming()} returns {@code true}.
+     * @param aCasses The CASses containing target annotations
+     * @param aDataSplitter The splitter which determines which annotations belong to which set
+     * @return Score measuring the performance of predicting on the test set
+     */
+    default double evaluate(CasStream aCasses, DataSplitter aDataSplitter)
+        throws RecommendationException
+    {
+        throw new UnsupportedOperationException("Recommender does not support streaming");
+    }
+
+    /**
+     * Same as {@link #crossValidate(List, int)}, but obtains the data from a stream. The default
+     * implementation calls {@link #evaluate(CasStream, DataSplitter)} once per fold, i.e. it
+     * consumes the stream once per fold. Only supported if {@link #supportsStreaming()} returns
+     * {@code true}.
+     * @param aCasses The CASses containing target annotations
+     * @param aFolds The number of folds
+     * @return The average score across all folds
+     */
+    default double crossValidate(CasStream aCasses, int aFolds) throws RecommendationException
+    {
+        double total = 0.0;
+        for (int fold = 0; fold < aFolds; fold++) {
+            total += evaluate(aCasses, new KFoldSplitter(aFolds, fold));
+        }
+        return total / aFolds;
+    }
+
+    /**
+     * @return whether the engine can write the models it trains to a stream and read them back
+     *         using {@link #writeModel} and {@link #readModel}.
+     */
+    default boolean supportsModelPersistence()
+    {
+        return false;
+    }
+
+    /**
+     * Writes the model trained into {@code aContext} to the given stream. This method must not
+     * close the stream.
+     * @param aContext The context of the recommender containing a trained model
+     * @param aStream The stream to write the model to
+     */
+    default void writeModel(RecommenderContext aContext, OutputStream aStream) throws IOException
+    {
+        throw new UnsupportedOperationException("Recommender does not support persisting models");
+    }
+
+    /**
+     * Reads a model previously written by {@link #writeModel} into {@code aContext} and marks the
+     * context as ready for prediction. This method must not close the stream.
+     * @param aContext The context of the recommender to restore the model into
+     * @param aStream The stream to read the model from
+     */
+    default void readModel(RecommenderContext aContext, InputStream aStream) throws IOException
+    {
+        throw new UnsupportedOperationException("Recommender does not support persisting models");
+    }
+
     /**
      * Returns the long name of the type this recommender predict, e.g.
      * {@code "de.tudarmstadt.ukp.dkpro.core.api.ner.type.NamedEntity"}
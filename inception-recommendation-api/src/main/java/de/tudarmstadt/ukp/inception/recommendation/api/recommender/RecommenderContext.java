@@ -25,7 +25,9 @@ import javax.annotation.Nullable;
 public class RecommenderContext
 {
     private final ConcurrentHashMap<String, Object> store;
-    private boolean ready = false;
+    private volatile boolean ready = false;
+    private volatile long version = 0;
+    private volatile String dataFingerprint;
 
     public RecommenderContext()
     {
@@ -57,9 +59,10 @@ public class RecommenderContext
     /**
      * Mark context as ready meaning that it can be used to generate predictions.
      */
-    public void markAsReadyForPrediction()
+    public synchronized void markAsReadyForPrediction()
     {
         ready = true;
+        version++;
     }
     
     /**
@@ -69,4 +72,44 @@ public class RecommenderContext
     {
         return ready;
     }
+    
+    /**
+     * @return the version of the context. The version changes every time the context is marked
+     *         as ready for prediction, i.e. every time a new model has been trained.
+     */
+    public long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * @return a fingerprint of the training data and configuration the model in this context was
+     *         trained with or {@code null} if unknown.
+     */
+    public String getDataFingerprint()
+    {
+        return dataFingerprint;
+    }
+
+    public void setDataFingerprint(String aDataFingerprint)
+    {
+        dataFingerprint = aDataFingerprint;
+    }
+    
+    /**
+     * Replaces the contents of this context with the contents of the given context, e.g. with a
+     * model which has been trained in a separate context. If the given context is ready for
+     * prediction, this context is marked as ready as well.
+     */
+    public synchronized void update(RecommenderContext aOther)
+    {
+        // Put the new values before dropping the old ones so that concurrent readers never see
+        // a context without a model
+        store.putAll(aOther.store);
+        store.keySet().retainAll(aOther.store.keySet());
+        dataFingerprint = aOther.dataFingerprint;
+        if (aOther.isReadyForPrediction()) {
+            markAsReadyForPrediction();
+        }
+    }
 }
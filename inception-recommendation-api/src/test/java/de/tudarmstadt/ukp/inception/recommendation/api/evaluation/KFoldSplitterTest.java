@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.api.evaluation;
+
+import static de.tudarmstadt.ukp.inception.recommendation.api.evaluation.DataSplitter.TargetSet.TEST;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class KFoldSplitterTest
+{
+    @Test
+    public void thatEachSampleIsTestedExactlyOnce()
+    {
+        int folds = 3;
+        int samples = 10;
+        
+        List<Integer> tested = new ArrayList<>();
+        for (int fold = 0; fold < folds; fold++) {
+            KFoldSplitter splitter = new KFoldSplitter(folds, fold);
+            for (int i = 0; i < samples; i++) {
+                if (splitter.getTargetSet(i) == TEST) {
+                    tested.add(i);
+                }
+            }
+        }
+
+        assertThat(tested)
+            .as("Every sample is in exactly one test fold")
+            .hasSize(samples)
+            .containsOnly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+    }
+
+    @Test
+    public void thatFoldsAreStableAcrossSplitters()
+    {
+        KFoldSplitter first = new KFoldSplitter(5, 2);
+        KFoldSplitter second = new KFoldSplitter(5, 2);
+        
+        for (int i = 0; i < 20; i++) {
+            assertThat(second.getTargetSet("other-" + i))
+                .as("Sample %d is assigned to the same set", i)
+                .isEqualTo(first.getTargetSet("sample-" + i));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void thatAtLeastTwoFoldsAreRequired()
+    {
+        new KFoldSplitter(1, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void thatTestFoldMustExist()
+    {
+        new KFoldSplitter(5, 5);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.api.model;
+
+import static de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecordType.ACCEPTED;
+import static de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecordType.REJECTED;
+import static de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecordType.SHOWN;
+import static de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecordType.SKIPPED;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+
+public class LearningRecordIndexTest
+{
+    private SourceDocument doc1;
+    private SourceDocument doc2;
+    private long nextId;
+
+    @Before
+    public void setup()
+    {
+        doc1 = new SourceDocument();
+        doc1.setName("doc1");
+
+        doc2 = new SourceDocument();
+        doc2.setName("doc2");
+        
+        nextId = 1;
+    }
+
+    @Test
+    public void thatLookupMatchesDocumentOffsetsAndLabel()
+    {
+        LearningRecordIndex sut = new LearningRecordIndex(
+                asList(record(doc1, 0, 5, "A", REJECTED), record(doc2, 10, 15, "B", SKIPPED)));
+
+        assertThat(sut.getUserAction("doc1", 0, 5, "A")).contains(REJECTED);
+        assertThat(sut.getUserAction("doc2", 10, 15, "B")).contains(SKIPPED);
+        assertThat(sut.getUserAction("doc2", 0, 5, "A")).isEmpty();
+        assertThat(sut.getUserAction("doc1", 0, 6, "A")).isEmpty();
+        assertThat(sut.getUserAction("doc1", 0, 5, "B")).isEmpty();
+    }
+
+    @Test
+    public void thatMostRecentRecordWins()
+    {
+        // Records are passed most recent first
+        LearningRecordIndex sut = new LearningRecordIndex(
+                asList(record(doc1, 0, 5, "A", ACCEPTED), record(doc1, 0, 5, "A", REJECTED)));
+
+        assertThat(sut.getUserAction("doc1", 0, 5, "A")).contains(ACCEPTED);
+        
+        sut.add(record(doc1, 0, 5, "A", SKIPPED));
+        
+        assertThat(sut.getUserAction("doc1", 0, 5, "A")).contains(SKIPPED);
+    }
+
+    @Test
+    public void thatShownRecordsAreNotIndexed()
+    {
+        LearningRecordIndex sut = new LearningRecordIndex(
+                asList(record(doc1, 0, 5, "A", SHOWN)));
+        sut.add(record(doc1, 10, 15, "B", SHOWN));
+
+        assertThat(sut.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void thatRemovingIndexedRecordRequestsRebuild()
+    {
+        LearningRecord newer = record(doc1, 0, 5, "A", REJECTED);
+        LearningRecord older = record(doc1, 0, 5, "A", SKIPPED);
+        LearningRecordIndex sut = new LearningRecordIndex(asList(newer, older));
+
+        // Removing a shadowed record does not affect the index
+        assertThat(sut.remove(older)).isTrue();
+        assertThat(sut.getUserAction("doc1", 0, 5, "A")).contains(REJECTED);
+        
+        // Removing the indexed record may uncover an older one
+        assertThat(sut.remove(newer)).isFalse();
+        assertThat(sut.getUserAction("doc1", 0, 5, "A")).isEmpty();
+    }
+
+    private LearningRecord record(SourceDocument aDocument, int aBegin, int aEnd, String aLabel,
+            LearningRecordType aAction)
+    {
+        LearningRecord record = new LearningRecord();
+        record.setId(nextId++);
+        record.setSourceDocument(aDocument);
+        record.setOffsetCharacterBegin(aBegin);
+        record.setOffsetCharacterEnd(aEnd);
+        record.setAnnotation(aLabel);
+        record.setUserAction(aAction);
+        return record;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2018
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.api.model;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+
+public class PredictionsTest
+{
+    private Predictions sut;
+    private AnnotationLayer layer;
+    private SourceDocument document;
+    
+    private AnnotationSuggestion rec1Sug1;
+    private AnnotationSuggestion rec1Sug2;
+    private AnnotationSuggestion rec1Sug3;
+    private AnnotationSuggestion rec2Sug1;
+
+    @Before
+    public void setup()
+    {
+        Project project = new Project();
+        project.setId(1l);
+        
+        layer = new AnnotationLayer();
+        layer.setId(1l);
+        
+        document = new SourceDocument();
+        document.setName("doc1");
+        
+        sut = new Predictions(project, new User("user"));
+        
+        rec1Sug1 = new AnnotationSuggestion(0, 1, "rec1", 1, "value", "doc1", "doc1Uri", 0, 5,
+                "a", "A", "#A", 0.1);
+        rec1Sug2 = new AnnotationSuggestion(1, 1, "rec1", 1, "value", "doc1", "doc1Uri", 10, 15,
+                "b", "B", "#B", 0.2);
+        rec1Sug3 = new AnnotationSuggestion(2, 1, "rec1", 1, "value", "doc1", "doc1Uri", 20, 30,
+                "c", "C", "#C", 0.3);
+        rec2Sug1 = new AnnotationSuggestion(0, 2, "rec2", 1, "value", "doc1", "doc1Uri", 10, 15,
+                "d", "D", "#D", 0.4);
+        
+        sut.putPredictions(1l, asList(rec1Sug1, rec1Sug2, rec1Sug3));
+        sut.putPredictions(1l, asList(rec2Sug1));
+    }
+
+    @Test
+    public void thatWindowQueryReturnsContainedSuggestionsOnly()
+    {
+        assertThat(sut.getPredictions("doc1", layer, 5, 25).stream()
+                .flatMap(SuggestionGroup::stream))
+                .containsExactlyInAnyOrder(rec1Sug2, rec2Sug1);
+        
+        assertThat(sut.getPredictions("doc1", layer, -1, -1).stream()
+                .flatMap(SuggestionGroup::stream))
+                .containsExactlyInAnyOrder(rec1Sug1, rec1Sug2, rec1Sug3, rec2Sug1);
+        
+        assertThat(sut.getPredictions("doc2", layer, -1, -1)).isEmpty();
+    }
+
+    @Test
+    public void thatLookupByVidWorks()
+    {
+        assertThat(sut.getPredictionByVID(document, rec1Sug2.getVID())).contains(rec1Sug2);
+        assertThat(sut.getPredictionByVID(document, rec2Sug1.getVID())).contains(rec2Sug1);
+    }
+    
+    @Test
+    public void thatLookupByOffsetWorks()
+    {
+        assertThat(sut.getPrediction(document, 10, 15, "D")).contains(rec2Sug1);
+        assertThat(sut.getPrediction(document, 10, 16, "D")).isEmpty();
+        assertThat(sut.getPredictionsByTokenAndFeature("doc1", layer, 10, 15, "value"))
+                .containsExactlyInAnyOrder(rec1Sug2, rec2Sug1);
+    }
+
+    @Test
+    public void thatLookupByDocumentAndRecommenderWorks()
+    {
+        assertThat(sut.getPredictions("doc1", 1l))
+                .containsExactlyInAnyOrder(rec1Sug1, rec1Sug2, rec1Sug3);
+        assertThat(sut.getPredictions("doc1", 2l)).containsExactly(rec2Sug1);
+        assertThat(sut.getPredictions("doc2", 1l)).isEmpty();
+    }
+
+    @Test
+    public void thatRemovingPredictionsUpdatesTheIndex()
+    {
+        sut.removePredictions(1l);
+        
+        assertThat(sut.size()).isEqualTo(1);
+        assertThat(sut.getPredictionByVID(document, rec1Sug2.getVID())).isEmpty();
+        assertThat(sut.getPredictions("doc1", layer, -1, -1).stream()
+                .flatMap(SuggestionGroup::stream))
+                .containsExactly(rec2Sug1);
+    }
+    
+    @Test
+    public void thatCopyIsIndependent()
+    {
+        Predictions copy = new Predictions(sut);
+        copy.removePredictions("doc1", 2l);
+        
+        assertThat(copy.size()).isEqualTo(3);
+        assertThat(sut.size()).isEqualTo(4);
+        assertThat(sut.getPredictionByVID(document, rec2Sug1.getVID())).contains(rec2Sug1);
+    }
+}
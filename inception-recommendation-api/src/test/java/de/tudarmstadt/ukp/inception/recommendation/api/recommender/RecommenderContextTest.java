@@ -83,4 +83,26 @@ public class RecommenderContextTest {
         sut.markAsReadyForPrediction();
         assertThat(sut.isReadyForPrediction()).isTrue();
     }
+
+    @Test
+    public void thatUpdateReplacesContents()
+    {
+        Key<String> otherKey = new Key<>("Other");
+        sut.put(KEY, "Old");
+        sut.put(otherKey, "Stale");
+        long version = sut.getVersion();
+
+        RecommenderContext trained = new RecommenderContext();
+        trained.put(KEY, "New");
+        trained.setDataFingerprint("fingerprint");
+        trained.markAsReadyForPrediction();
+
+        sut.update(trained);
+
+        assertThat(sut.get(KEY)).contains("New");
+        assertThat(sut.get(otherKey)).isEmpty();
+        assertThat(sut.getDataFingerprint()).isEqualTo("fingerprint");
+        assertThat(sut.isReadyForPrediction()).isTrue();
+        assertThat(sut.getVersion()).isGreaterThan(version);
+    }
 }
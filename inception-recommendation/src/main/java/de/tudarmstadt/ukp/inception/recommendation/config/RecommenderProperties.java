@@ -0,0 +1,180 @@
+/*
+ * Copyright 2018
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties("recommenders")
+public class RecommenderProperties
+{
+    /**
+     * Number of worker threads executing selection, training and prediction tasks.
+     */
+    private int schedulerThreads = 2;
+    
+    /**
+     * Maximum number of tasks of the same user in the same project which may run at the same
+     * time.
+     */
+    private int maxConcurrentTasksPerUser = 1;
+    
+    /**
+     * Maximum number of tasks waiting to be executed across all users and projects.
+     */
+    private int queueSize = 100;
+    
+    /**
+     * Maximum estimated memory used by annotation CASes cached for the recommender tasks (in MB).
+     */
+    private long casCacheSize = 256;
+    
+    /**
+     * Number of threads used to train recommenders in parallel (shared across all users).
+     */
+    private int trainingThreads = 4;
+    
+    /**
+     * Maximum time a single recommender may spend training (in seconds). 0 means no limit.
+     */
+    private long trainingTimeout = 600;
+    
+    /**
+     * Number of folds used to evaluate recommenders during selection. 1 means that a single
+     * 80/20 split is used instead of a cross-validation.
+     */
+    private int evaluationFolds = 1;
+    
+    /**
+     * Whether trained models are stored in the repository so they survive restarts.
+     */
+    private boolean persistModels = true;
+    
+    /**
+     * Time without further edits (in milliseconds) after which the edits of a user trigger a
+     * training round.
+     */
+    private long triggerQuietPeriod = 3000;
+    
+    /**
+     * Number of edits after which a training round is triggered without waiting for the quiet
+     * period.
+     */
+    private int triggerEditThreshold = 10;
+
+    public int getSchedulerThreads()
+    {
+        return schedulerThreads;
+    }
+
+    public void setSchedulerThreads(int aSchedulerThreads)
+    {
+        schedulerThreads = aSchedulerThreads;
+    }
+
+    public int getMaxConcurrentTasksPerUser()
+    {
+        return maxConcurrentTasksPerUser;
+    }
+
+    public void setMaxConcurrentTasksPerUser(int aMaxConcurrentTasksPerUser)
+    {
+        maxConcurrentTasksPerUser = aMaxConcurrentTasksPerUser;
+    }
+
+    public int getQueueSize()
+    {
+        return queueSize;
+    }
+
+    public void setQueueSize(int aQueueSize)
+    {
+        queueSize = aQueueSize;
+    }
+
+    public long getCasCacheSize()
+    {
+        return casCacheSize;
+    }
+
+    public void setCasCacheSize(long aCasCacheSize)
+    {
+        casCacheSize = aCasCacheSize;
+    }
+
+    public int getTrainingThreads()
+    {
+        return trainingThreads;
+    }
+
+    public void setTrainingThreads(int aTrainingThreads)
+    {
+        trainingThreads = aTrainingThreads;
+    }
+
+    public long getTrainingTimeout()
+    {
+        return trainingTimeout;
+    }
+
+    public void setTrainingTimeout(long aTrainingTimeout)
+    {
+        trainingTimeout = aTrainingTimeout;
+    }
+
+    public int getEvaluationFolds()
+    {
+        return evaluationFolds;
+    }
+
+    public void setEvaluationFolds(int aEvaluationFolds)
+    {
+        evaluationFolds = aEvaluationFolds;
+    }
+
+    public boolean isPersistModels()
+    {
+        return persistModels;
+    }
+
+    public void setPersistModels(boolean aPersistModels)
+    {
+        persistModels = aPersistModels;
+    }
+
+    public long getTriggerQuietPeriod()
+    {
+        return triggerQuietPeriod;
+    }
+
+    public void setTriggerQuietPeriod(long aTriggerQuietPeriod)
+    {
+        triggerQuietPeriod = aTriggerQuietPeriod;
+    }
+
+    public int getTriggerEditThreshold()
+    {
+        return triggerEditThreshold;
+    }
+
+    public void setTriggerEditThreshold(int aTriggerEditThreshold)
+    {
+        triggerEditThreshold = aTriggerEditThreshold;
+    }
+}
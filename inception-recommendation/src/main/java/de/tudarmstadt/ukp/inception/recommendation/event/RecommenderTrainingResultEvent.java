@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.event;
+
+import org.springframework.context.ApplicationEvent;
+
+import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
+
+public class RecommenderTrainingResultEvent extends ApplicationEvent
+{
+    private static final long serialVersionUID = -2314575658433893318L;
+    
+    public enum Outcome {
+        SUCCEEDED, SKIPPED, FAILED, TIMED_OUT
+    }
+    
+    private final Recommender recommender;
+    private final String user;
+    private final int documents;
+    private final long duration;
+    private final Outcome outcome;
+    
+    public RecommenderTrainingResultEvent(Object aSource, Recommender aRecommender, String aUser,
+            int aDocuments, long aDuration, Outcome aOutcome)
+    {
+        super(aSource);
+
+        recommender = aRecommender;
+        user = aUser;
+        documents = aDocuments;
+        duration = aDuration;
+        outcome = aOutcome;
+    }
+
+    public String getUser()
+    {
+        return user;
+    }
+    
+    public Recommender getRecommender()
+    {
+        return recommender;
+    }
+    
+    public int getDocuments()
+    {
+        return documents;
+    }
+    
+    public long getDuration()
+    {
+        return duration;
+    }
+    
+    public Outcome getOutcome()
+    {
+        return outcome;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder();
+        builder.append("RecommenderTrainingResultEvent [recommender=");
+        builder.append(recommender);
+        builder.append(", user=");
+        builder.append(user);
+        builder.append(", outcome=");
+        builder.append(outcome);
+        builder.append("]");
+        return builder.toString();
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.log;
+
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import de.tudarmstadt.ukp.clarin.webanno.support.JSONUtil;
+import de.tudarmstadt.ukp.inception.log.adapter.EventLoggingAdapter;
+import de.tudarmstadt.ukp.inception.recommendation.event.RecommenderTrainingResultEvent;
+
+@Component
+public class RecommenderTrainingResultEventAdapter
+    implements EventLoggingAdapter<RecommenderTrainingResultEvent>
+{
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    @Override
+    public boolean accepts(Object aEvent)
+    {
+        return aEvent instanceof RecommenderTrainingResultEvent;
+    }
+
+    @Override
+    public long getProject(RecommenderTrainingResultEvent aEvent)
+    {
+        return aEvent.getRecommender().getProject().getId();
+    }
+
+    @Override
+    public String getAnnotator(RecommenderTrainingResultEvent aEvent)
+    {
+        return aEvent.getUser();
+    }
+
+    @Override
+    public String getUser(RecommenderTrainingResultEvent aEvent)
+    {
+        return aEvent.getUser();
+    }
+
+    @Override
+    public String getDetails(RecommenderTrainingResultEvent aEvent)
+    {
+        try {
+            Details details = new Details();
+
+            details.layer = aEvent.getRecommender().getLayer().getName();
+            details.feature = aEvent.getRecommender().getFeature();
+            details.tool = aEvent.getRecommender().getTool();
+
+            details.documents = aEvent.getDocuments();
+            details.duration = aEvent.getDuration();
+            
+            details.outcome = aEvent.getOutcome().name();
+
+            return JSONUtil.toJsonString(details);
+        }
+        catch (IOException e) {
+            log.error("Unable to log event [{}]", aEvent, e);
+            return "<ERROR>";
+        }
+    }
+
+    public static class Details
+    {
+        // Recommender configuration
+        public String layer;
+        public String feature;
+        public String tool;
+
+        // Training process telemetry
+        public int documents;
+        public long duration;
+
+        // Training results
+        public String outcome;
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright 2018
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.scheduling;
+
+import static org.apache.uima.fit.util.CasUtil.selectAll;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.uima.UIMAException;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.util.CasCopier;
+import org.apache.uima.util.TypeSystemUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
+import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.LayerConfigurationChangedEvent;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.inception.recommendation.config.RecommenderProperties;
+
+/**
+ * Cache of annotation CASes shared by the selection, training and prediction tasks. These tasks
+ * are usually scheduled back-to-back for the same user and would otherwise each load all the
+ * CASes of the project again.
+ * <p>
+ * Entries are keyed by document, user and the timestamp of the annotation CAS on disk, so any
+ * change to the CAS made by the user results in a cache miss. Since the cached CASes are upgraded
+ * to the type system of the project, the key also includes a version of the layer configuration
+ * of the project which changes whenever the layers or features are changed.
+ * <p>
+ * The cache is bounded by the estimated memory consumption of the cached CASes and evicts the
+ * least recently used entries first.
+ * <p>
+ * The cached CASes are shared between tasks which may run concurrently, so callers of
+ * {@link #read} and {@link #readTransient} must not modify them in any way. Callers which need to
+ * modify the CAS, e.g. to let a recommender write its predictions into it, must use
+ * {@link #readCopy} instead.
+ */
+@Component
+public class CasSnapshotCache
+{
+    private static final long BYTES_PER_MB = 1024 * 1024;
+
+    // Rough estimate of the memory used by a feature structure including its index entries
+    private static final long ESTIMATED_BYTES_PER_FS = 64;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private @Autowired DocumentService documentService;
+    private @Autowired AnnotationSchemaService annoService;
+    private @Autowired RecommenderProperties properties;
+
+    private final Map<CacheKey, CacheEntry> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalSize = 0;
+    private long hits = 0;
+    private long misses = 0;
+    
+    // Project ID -> number of layer configuration changes since startup
+    private final Map<Long, Long> schemaVersions = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the annotation CAS of the given user for the given document, upgraded to the current
+     * type system of the project. If the CAS has not changed since it was last read, the cached
+     * instance is returned.
+     */
+    public JCas read(SourceDocument aDocument, String aUsername)
+        throws IOException, UIMAException
+    {
+        return read(aDocument, aUsername, true, false);
+    }
+
+    /**
+     * Same as {@link #read(SourceDocument, String)}, but a CAS which is not in the cache yet is
+     * not added to it. This is meant for passes over more documents than fit into the cache, e.g.
+     * when streaming training data, which would otherwise evict the CASes that are re-used.
+     */
+    public JCas readTransient(SourceDocument aDocument, String aUsername)
+        throws IOException, UIMAException
+    {
+        return read(aDocument, aUsername, false, false);
+    }
+
+    /**
+     * Same as {@link #read(SourceDocument, String)}, but the returned CAS is never shared and may
+     * be modified by the caller. If the CAS is in the cache, a copy of the cached CAS is returned
+     * which is cheaper than reading and upgrading the CAS again.
+     */
+    public JCas readCopy(SourceDocument aDocument, String aUsername)
+        throws IOException, UIMAException
+    {
+        return read(aDocument, aUsername, true, true);
+    }
+
+    private JCas read(SourceDocument aDocument, String aUsername, boolean aAddToCache,
+            boolean aCopy)
+        throws IOException, UIMAException
+    {
+        Optional<Long> timestamp = documentService.getAnnotationCasTimestamp(aDocument,
+                aUsername);
+
+        // If there is no annotation CAS on disk yet, there is nothing to key the cache on
+        if (!timestamp.isPresent() || getMaxSize() <= 0) {
+            return readCas(aDocument, aUsername);
+        }
+
+        // The schema version must be obtained before reading the CAS so that a CAS upgraded
+        // while the layer configuration changes is never cached under the new version
+        long projectId = aDocument.getProject().getId();
+        CacheKey key = new CacheKey(projectId, aDocument.getId(), aUsername, timestamp.get(),
+                getSchemaVersion(projectId));
+        CacheEntry entry;
+        synchronized (cache) {
+            entry = cache.get(key);
+            if (entry != null) {
+                hits++;
+            }
+            else {
+                misses++;
+            }
+        }
+        
+        // Copying happens outside the lock - the cached CAS is only ever read
+        if (entry != null) {
+            return aCopy ? copy(entry.jcas) : entry.jcas;
+        }
+
+        // Reading happens outside the lock so that tasks of different users do not block each
+        // other. If two tasks read the same CAS at the same time, the last one wins.
+        JCas jcas = readCas(aDocument, aUsername);
+        if (aAddToCache && put(key, new CacheEntry(jcas, estimateSize(jcas))) && aCopy) {
+            return copy(jcas);
+        }
+        return jcas;
+    }
+    
+    private static JCas copy(JCas aJCas)
+        throws UIMAException
+    {
+        JCas copy = JCasFactory.createJCas(
+                TypeSystemUtil.typeSystem2TypeSystemDescription(aJCas.getTypeSystem()));
+        CasCopier.copyCas(aJCas.getCas(), copy.getCas(), true);
+        return copy;
+    }
+
+    private JCas readCas(SourceDocument aDocument, String aUsername)
+        throws IOException, UIMAException
+    {
+        JCas jcas = documentService.readAnnotationCas(aDocument, aUsername);
+        annoService.upgradeCasIfRequired(jcas.getCas(), aDocument, aUsername);
+        return jcas;
+    }
+
+    /**
+     * @return whether the CAS has been added to the cache and is hence shared now.
+     */
+    private boolean put(CacheKey aKey, CacheEntry aEntry)
+    {
+        long maxSize = getMaxSize();
+
+        // Do not cache CASes which would take up most of the cache on their own
+        if (aEntry.size > maxSize / 2) {
+            return false;
+        }
+
+        synchronized (cache) {
+            // Older versions of the same CAS can never be hit again
+            Iterator<Map.Entry<CacheKey, CacheEntry>> i = cache.entrySet().iterator();
+            while (i.hasNext()) {
+                Map.Entry<CacheKey, CacheEntry> e = i.next();
+                if (e.getKey().isOtherVersionOf(aKey)) {
+                    totalSize -= e.getValue().size;
+                    i.remove();
+                }
+            }
+
+            cache.put(aKey, aEntry);
+            totalSize += aEntry.size;
+
+            // Evict least recently used entries until we are within bounds again
+            i = cache.entrySet().iterator();
+            while (totalSize > maxSize && i.hasNext()) {
+                totalSize -= i.next().getValue().size;
+                i.remove();
+            }
+
+            log.debug("CAS cache: {} entries, ~{} MB, {} hits, {} misses", cache.size(),
+                    totalSize / BYTES_PER_MB, hits, misses);
+        }
+        
+        return true;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLayerConfigurationChanged(LayerConfigurationChangedEvent aEvent)
+    {
+        long projectId = aEvent.getProject().getId();
+        schemaVersions.merge(projectId, 1L, Long::sum);
+        
+        // CASes upgraded to the old type system can never be hit again
+        synchronized (cache) {
+            Iterator<Map.Entry<CacheKey, CacheEntry>> i = cache.entrySet().iterator();
+            while (i.hasNext()) {
+                Map.Entry<CacheKey, CacheEntry> e = i.next();
+                if (e.getKey().projectId == projectId) {
+                    totalSize -= e.getValue().size;
+                    i.remove();
+                }
+            }
+        }
+    }
+    
+    private long getSchemaVersion(long aProjectId)
+    {
+        return schemaVersions.getOrDefault(aProjectId, 0L);
+    }
+
+    /**
+     * Removes all cached CASes of the given user.
+     */
+    public void evict(String aUsername)
+    {
+        synchronized (cache) {
+            Iterator<Map.Entry<CacheKey, CacheEntry>> i = cache.entrySet().iterator();
+            while (i.hasNext()) {
+                Map.Entry<CacheKey, CacheEntry> e = i.next();
+                if (e.getKey().user.equals(aUsername)) {
+                    totalSize -= e.getValue().size;
+                    i.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the maximum estimated memory the cached CASes may take up (in bytes).
+     */
+    long getMaxSize()
+    {
+        return properties.getCasCacheSize() * BYTES_PER_MB;
+    }
+
+    /**
+     * @return the estimated memory the given CAS takes up (in bytes).
+     */
+    static long estimateSize(JCas aJCas)
+    {
+        String text = aJCas.getDocumentText();
+        long textSize = text != null ? text.length() * 2L : 0;
+        return textSize + selectAll(aJCas.getCas()).size() * ESTIMATED_BYTES_PER_FS;
+    }
+
+    public long getHitCount()
+    {
+        synchronized (cache) {
+            return hits;
+        }
+    }
+
+    public long getMissCount()
+    {
+        synchronized (cache) {
+            return misses;
+        }
+    }
+
+    private static class CacheEntry
+    {
+        private final JCas jcas;
+        private final long size;
+
+        public CacheEntry(JCas aJCas, long aSize)
+        {
+            jcas = aJCas;
+            size = aSize;
+        }
+    }
+
+    private static class CacheKey
+    {
+        private final long projectId;
+        private final long documentId;
+        private final String user;
+        private final long timestamp;
+        private final long schemaVersion;
+
+        public CacheKey(long aProjectId, long aDocumentId, String aUser, long aTimestamp,
+                long aSchemaVersion)
+        {
+            projectId = aProjectId;
+            documentId = aDocumentId;
+            user = aUser;
+            timestamp = aTimestamp;
+            schemaVersion = aSchemaVersion;
+        }
+
+        public boolean isOtherVersionOf(CacheKey aOther)
+        {
+            return documentId == aOther.documentId && user.equals(aOther.user)
+                    && (timestamp != aOther.timestamp || schemaVersion != aOther.schemaVersion);
+        }
+
+        @Override
+        public boolean equals(final Object other)
+        {
+            if (!(other instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey castOther = (CacheKey) other;
+            return new EqualsBuilder().append(documentId, castOther.documentId)
+                    .append(user, castOther.user).append(timestamp, castOther.timestamp)
+                    .append(schemaVersion, castOther.schemaVersion).isEquals();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return new HashCodeBuilder().append(documentId).append(user).append(timestamp)
+                    .append(schemaVersion).toHashCode();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.scheduling;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.apache.uima.UIMAException;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.jcas.JCas;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.CasStream;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationException;
+
+/**
+ * {@link CasStream} over the annotation CASes of a user for a list of documents. The CASes are
+ * read one at a time while the stream is consumed and are no longer referenced by the stream once
+ * the consumer has returned.
+ * <p>
+ * The stream may be consumed several times, e.g. once per fold of a cross-validation and once for
+ * training. To avoid reading the CASes again in each pass, they are read through the
+ * {@link CasSnapshotCache} as long as the CASes of a pass fit into the cache. Once they do not fit
+ * anymore, the remaining CASes are read without adding them to the cache because they would only
+ * evict the CASes read earlier in the pass (and the CASes of other users).
+ * <p>
+ * Documents whose CAS cannot be read are logged and skipped, as are documents whose CAS does not
+ * match the given filter.
+ */
+public class DocumentCasStream
+    implements CasStream
+{
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final CasSnapshotCache casCache;
+    private final String user;
+    private final List<SourceDocument> documents;
+    private final Predicate<CAS> filter;
+
+    private volatile int documentCount = 0;
+
+    public DocumentCasStream(CasSnapshotCache aCasCache, String aUser,
+            List<SourceDocument> aDocuments, Predicate<CAS> aFilter)
+    {
+        casCache = aCasCache;
+        user = aUser;
+        documents = aDocuments;
+        filter = aFilter;
+    }
+
+    @Override
+    public void forEach(CasConsumer aConsumer) throws RecommendationException
+    {
+        documentCount = 0;
+        long cacheBudget = casCache.getMaxSize();
+        long passSize = 0;
+        for (SourceDocument document : documents) {
+            // Reading the CASes is the expensive part of the stream, so this is a good place to
+            // react to the consumer being cancelled
+            if (Thread.currentThread().isInterrupted()) {
+                throw new RecommendationException("Interrupted while reading CASes");
+            }
+
+            CAS cas;
+            try {
+                JCas jcas = passSize < cacheBudget ? casCache.read(document, user)
+                        : casCache.readTransient(document, user);
+                passSize += CasSnapshotCache.estimateSize(jcas);
+                cas = jcas.getCas();
+            }
+            catch (IOException e) {
+                log.error("Cannot read annotation CAS.", e);
+                continue;
+            }
+            catch (UIMAException e) {
+                log.error("Cannot upgrade annotation CAS.", e);
+                continue;
+            }
+
+            if (filter.test(cas)) {
+                aConsumer.accept(cas);
+                documentCount++;
+            }
+        }
+    }
+
+    /**
+     * @return the number of documents passed to the consumer so far in the current (or last) pass
+     *         over the stream.
+     */
+    public int getDocumentCount()
+    {
+        return documentCount;
+    }
+}
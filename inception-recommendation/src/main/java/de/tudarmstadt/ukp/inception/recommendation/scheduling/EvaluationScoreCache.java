@@ -0,0 +1,119 @@
+/*
+ * Copyright 2018
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.scheduling;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.springframework.stereotype.Component;
+
+import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
+
+/**
+ * Remembers the evaluation scores of recommenders so that the {@code SelectionTask} does not have
+ * to evaluate a recommender again as long as neither its training data nor its configuration has
+ * changed. The caller describes the state of the training data and configuration by a
+ * fingerprint object which must implement {@code equals}. A cached score is only returned if the
+ * fingerprint is equal to the one under which the score was stored.
+ */
+@Component
+public class EvaluationScoreCache
+{
+    private final Map<CacheKey, CacheEntry> scores = new ConcurrentHashMap<>();
+
+    public Optional<Double> get(Recommender aRecommender, String aUsername, Object aFingerprint)
+    {
+        CacheEntry entry = scores.get(new CacheKey(aRecommender.getId(), aUsername));
+        if (entry != null && Objects.equals(entry.fingerprint, aFingerprint)) {
+            return Optional.of(entry.score);
+        }
+        return Optional.empty();
+    }
+
+    public void put(Recommender aRecommender, String aUsername, Object aFingerprint, double aScore)
+    {
+        scores.put(new CacheKey(aRecommender.getId(), aUsername),
+                new CacheEntry(aFingerprint, aScore));
+    }
+
+    /**
+     * Removes all cached scores of the given recommender, e.g. because it was changed or deleted.
+     */
+    public void evict(Recommender aRecommender)
+    {
+        if (aRecommender.getId() == null) {
+            return;
+        }
+        
+        long recommenderId = aRecommender.getId();
+        scores.keySet().removeIf(key -> key.recommenderId == recommenderId);
+    }
+
+    /**
+     * Removes all cached scores of the given user.
+     */
+    public void evict(String aUsername)
+    {
+        scores.keySet().removeIf(key -> key.user.equals(aUsername));
+    }
+
+    private static class CacheEntry
+    {
+        private final Object fingerprint;
+        private final double score;
+
+        public CacheEntry(Object aFingerprint, double aScore)
+        {
+            fingerprint = aFingerprint;
+            score = aScore;
+        }
+    }
+
+    private static class CacheKey
+    {
+        private final long recommenderId;
+        private final String user;
+
+        public CacheKey(long aRecommenderId, String aUser)
+        {
+            recommenderId = aRecommenderId;
+            user = aUser;
+        }
+
+        @Override
+        public boolean equals(final Object other)
+        {
+            if (!(other instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey castOther = (CacheKey) other;
+            return new EqualsBuilder().append(recommenderId, castOther.recommenderId)
+                    .append(user, castOther.user).isEquals();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return new HashCodeBuilder().append(recommenderId).append(user).toHashCode();
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2018
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.scheduling;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.inception.recommendation.scheduling.tasks.Task;
+
+/**
+ * Task queue which hands out tasks in a round-robin fashion across the (project, user) pairs that
+ * have pending tasks. Within a (project, user) pair, tasks are handed out in the order in which
+ * they were added. At most {@code maxConcurrentTasksPerKey} tasks of the same pair are handed out
+ * at the same time, i.e. a task is only handed out once enough tasks of its pair have been
+ * {@link #complete completed}.
+ */
+public class FairTaskQueue
+{
+    private final int capacity;
+    private final int maxConcurrentTasksPerKey;
+
+    private final Map<TaskKey, Deque<Task>> pending = new HashMap<>();
+    private final Deque<TaskKey> rotation = new ArrayDeque<>();
+    private final Map<TaskKey, Integer> running = new HashMap<>();
+    private int size = 0;
+
+    private long enqueuedCount = 0;
+    private long rejectedCount = 0;
+    private long completedCount = 0;
+    private long failedCount = 0;
+
+    public FairTaskQueue(int aCapacity, int aMaxConcurrentTasksPerKey)
+    {
+        isTrue(aCapacity > 0, "Capacity must be positive");
+        isTrue(aMaxConcurrentTasksPerKey > 0, "Concurrent tasks per key must be positive");
+
+        capacity = aCapacity;
+        maxConcurrentTasksPerKey = aMaxConcurrentTasksPerKey;
+    }
+
+    /**
+     * Adds the given task to the queue.
+     *
+     * @return {@code false} if the queue is full and the task was rejected.
+     */
+    public synchronized boolean offer(Task aTask)
+    {
+        notNull(aTask);
+
+        if (size >= capacity) {
+            rejectedCount++;
+            return false;
+        }
+
+        TaskKey key = new TaskKey(aTask);
+        Deque<Task> tasks = pending.get(key);
+        if (tasks == null) {
+            tasks = new ArrayDeque<>();
+            pending.put(key, tasks);
+            rotation.addLast(key);
+        }
+        tasks.addLast(aTask);
+        size++;
+        enqueuedCount++;
+
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Waits until a task is available for execution and returns it. The caller must invoke
+     * {@link #complete} once the task has finished.
+     */
+    public synchronized Task take() throws InterruptedException
+    {
+        while (true) {
+            Task task = poll();
+            if (task != null) {
+                return task;
+            }
+            wait();
+        }
+    }
+
+    /**
+     * Marks a task previously obtained via {@link #take()} as finished, allowing further tasks of
+     * the same project and user to be handed out.
+     */
+    public synchronized void complete(Task aTask, boolean aSuccessful)
+    {
+        TaskKey key = new TaskKey(aTask);
+        running.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+
+        if (aSuccessful) {
+            completedCount++;
+        }
+        else {
+            failedCount++;
+        }
+
+        notifyAll();
+    }
+
+    public synchronized boolean contains(Task aTask)
+    {
+        Deque<Task> tasks = pending.get(new TaskKey(aTask));
+        return tasks != null && tasks.contains(aTask);
+    }
+
+    /**
+     * @return whether there are pending or running tasks for the given project and user.
+     */
+    public synchronized boolean hasTasks(Project aProject, String aUser)
+    {
+        TaskKey key = new TaskKey(aProject.getId(), aUser);
+        return pending.containsKey(key) || running.containsKey(key);
+    }
+
+    /**
+     * Removes all pending tasks matching the given predicate. Tasks which are already running are
+     * not affected.
+     */
+    public synchronized void removeIf(Predicate<Task> aPredicate)
+    {
+        Iterator<Map.Entry<TaskKey, Deque<Task>>> i = pending.entrySet().iterator();
+        while (i.hasNext()) {
+            Map.Entry<TaskKey, Deque<Task>> e = i.next();
+            Deque<Task> tasks = e.getValue();
+            int before = tasks.size();
+            tasks.removeIf(aPredicate);
+            size -= before - tasks.size();
+            if (tasks.isEmpty()) {
+                i.remove();
+                rotation.remove(e.getKey());
+            }
+        }
+    }
+
+    private Task poll()
+    {
+        int keys = rotation.size();
+        for (int i = 0; i < keys; i++) {
+            TaskKey key = rotation.pollFirst();
+
+            // Skip keys which already have the maximum number of tasks running but keep them in
+            // the rotation so they get their turn once a task has completed
+            if (running.getOrDefault(key, 0) >= maxConcurrentTasksPerKey) {
+                rotation.addLast(key);
+                continue;
+            }
+
+            Deque<Task> tasks = pending.get(key);
+            Task task = tasks.pollFirst();
+            size--;
+            running.merge(key, 1, Integer::sum);
+
+            if (tasks.isEmpty()) {
+                pending.remove(key);
+            }
+            else {
+                rotation.addLast(key);
+            }
+
+            return task;
+        }
+
+        return null;
+    }
+
+    public synchronized int size()
+    {
+        return size;
+    }
+
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    public synchronized int getRunningCount()
+    {
+        return running.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    public synchronized long getEnqueuedCount()
+    {
+        return enqueuedCount;
+    }
+
+    public synchronized long getRejectedCount()
+    {
+        return rejectedCount;
+    }
+
+    public synchronized long getCompletedCount()
+    {
+        return completedCount;
+    }
+
+    public synchronized long getFailedCount()
+    {
+        return failedCount;
+    }
+
+    private static class TaskKey
+    {
+        private final long projectId;
+        private final String user;
+
+        public TaskKey(long aProjectId, String aUser)
+        {
+            projectId = aProjectId;
+            user = aUser;
+        }
+
+        public TaskKey(Task aTask)
+        {
+            this(aTask.getProject().getId(), aTask.getUser().getUsername());
+        }
+
+        @Override
+        public boolean equals(final Object other)
+        {
+            if (!(other instanceof TaskKey)) {
+                return false;
+            }
+            TaskKey castOther = (TaskKey) other;
+            return new EqualsBuilder().append(user, castOther.user)
+                    .append(projectId, castOther.projectId).isEquals();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return new HashCodeBuilder().append(user).append(projectId).toHashCode();
+        }
+    }
+}
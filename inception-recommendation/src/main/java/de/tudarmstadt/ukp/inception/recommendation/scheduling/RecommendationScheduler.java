@@ -17,9 +17,13 @@
  */
 package de.tudarmstadt.ukp.inception.recommendation.scheduling;
 
-import java.util.Iterator;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,13 +34,18 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Component;
 
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
 import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+import de.tudarmstadt.ukp.inception.recommendation.config.RecommenderProperties;
 import de.tudarmstadt.ukp.inception.recommendation.scheduling.tasks.SelectionTask;
 import de.tudarmstadt.ukp.inception.recommendation.scheduling.tasks.Task;
 import de.tudarmstadt.ukp.inception.recommendation.scheduling.tasks.TrainingTask;
 
 /**
- * Used to run the selection, training and prediction task concurrently.
+ * Used to run the selection, training and prediction task concurrently. Tasks are executed by a
+ * pool of worker threads. The workers pick tasks in a round-robin fashion across the users and
+ * projects that have pending tasks, so a slow task of one user does not hold up the tasks of
+ * other users.
  */
 @Component
 public class RecommendationScheduler
@@ -45,61 +54,160 @@ public class RecommendationScheduler
     private Logger log = LoggerFactory.getLogger(getClass());
     
     private @Autowired ApplicationContext applicationContext;
+    private @Autowired RecommenderProperties properties;
     
-    private Thread consumer;
-    private BlockingQueue<Task> queue = new ArrayBlockingQueue<Task>(100);
-    private int counter = 0;
+    private List<Thread> consumers = new ArrayList<>();
+    private FairTaskQueue queue;
+    private ExecutorService trainingExecutor;
+    private ScheduledExecutorService triggerTimer;
+    private TriggerCoalescer triggerCoalescer;
 
     @Override
     public void afterPropertiesSet() throws Exception
     {
-        consumer = new Thread(new TaskConsumer(applicationContext, queue),
-                "Recommendation task consumer");
-        consumer.setPriority(Thread.MIN_PRIORITY);
-        consumer.start();
-        log.info("Started Recommendation Thread");
+        queue = new FairTaskQueue(properties.getQueueSize(),
+                properties.getMaxConcurrentTasksPerUser());
+        
+        int threads = Math.max(1, properties.getSchedulerThreads());
+        for (int i = 0; i < threads; i++) {
+            Thread consumer = new Thread(new TaskConsumer(applicationContext, queue),
+                    "Recommendation task consumer " + i);
+            consumer.setPriority(Thread.MIN_PRIORITY);
+            consumer.start();
+            consumers.add(consumer);
+        }
+        log.info("Started {} Recommendation Threads", threads);
+        
+        AtomicInteger trainerCount = new AtomicInteger();
+        ThreadFactory trainerFactory = r -> {
+            Thread trainer = new Thread(r,
+                    "Recommendation trainer " + trainerCount.getAndIncrement());
+            trainer.setPriority(Thread.MIN_PRIORITY);
+            trainer.setDaemon(true);
+            return trainer;
+        };
+        trainingExecutor = Executors.newFixedThreadPool(
+                Math.max(1, properties.getTrainingThreads()), trainerFactory);
+        
+        triggerTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread timer = new Thread(r, "Recommendation trigger timer");
+            timer.setDaemon(true);
+            return timer;
+        });
+        triggerCoalescer = new TriggerCoalescer(triggerTimer,
+                properties.getTriggerQuietPeriod(),
+                Math.max(1, properties.getTriggerEditThreshold()), this::startRound);
     }
     
     @Override
     public void destroy()
     {
-        consumer.interrupt();
+        consumers.forEach(Thread::interrupt);
+        trainingExecutor.shutdownNow();
+        triggerTimer.shutdownNow();
+    }
+    
+    /**
+     * @return the executor on which the recommenders are trained. It is shared across all users
+     *         and projects to bound the total number of recommenders trained at the same time.
+     */
+    public ExecutorService getTrainingExecutor()
+    {
+        return trainingExecutor;
     }
     
     public void enqueueTask(User user, Project project)
+    {
+        enqueueTask(user, project, null);
+    }
+    
+    /**
+     * Schedules selection, training and prediction for the given user and project right away.
+     * Edits by the user which are still waiting to be passed on to a training round are included.
+     * 
+     * @param aCurrentDocument
+     *            the document the user is currently working on. Predictions for this document
+     *            are made available first. May be {@code null}.
+     */
+    public void enqueueTask(User user, Project project, SourceDocument aCurrentDocument)
     {   
-        // Add Selection Task
-        if (counter % 2 == 0) {
-            enqueue(new SelectionTask(user, project));
-        }
+        triggerCoalescer.flush(user, project, aCurrentDocument);
+    }
+    
+    /**
+     * Notifies the scheduler about an edit made by the given user. Edits made in quick
+     * succession are collapsed into a single round of selection, training and prediction which
+     * is scheduled once the user pauses or once enough edits have accumulated.
+     * 
+     * @param aCurrentDocument
+     *            the document the user edited.
+     */
+    public void enqueueTaskAfterEdit(User user, Project project, SourceDocument aCurrentDocument)
+    {
+        triggerCoalescer.edit(user, project, aCurrentDocument);
+    }
+    
+    private void startRound(TriggerCoalescer.Trigger aTrigger)
+    {
+        log.debug("[{}]: Starting training round ({} edits)", aTrigger.getUser().getUsername(),
+                aTrigger.getEdits());
         
-        // Add Training (which in turn will later enqueue the prediction Task)
-        enqueue(new TrainingTask(user, project));
+        // Since training rounds are no longer started for every single edit and the selection
+        // task reuses the scores of recommenders whose data did not change, we can afford to
+        // run the selection in every round
+        enqueue(new SelectionTask(aTrigger.getUser(), aTrigger.getProject()));
         
-        counter++;
+        // Add Training (which in turn will later enqueue the prediction Task)
+        enqueue(new TrainingTask(aTrigger.getUser(), aTrigger.getProject(),
+                aTrigger.getDocument()));
     }
     
     public synchronized void enqueue(Task aRunnable)
     {
         // If the no equivalent task is scheduled, then we schedule the new one.
-        if (!queue.contains(aRunnable)) {
-            queue.offer(aRunnable);
+        if (queue.contains(aRunnable)) {
+            log.info("Task already in queue: {}", aRunnable);
+        }
+        else if (queue.offer(aRunnable)) {
             log.info("Enqueued new task: {} (queue size {})", aRunnable, queue.size());
         }
         else {
-            log.info("Task already in queue: {}", aRunnable);
+            log.warn("Queue full - rejected task: {} (queue size {}, running {}, rejected {})",
+                    aRunnable, queue.size(), queue.getRunningCount(), queue.getRejectedCount());
         }
     }
     
     public void stopAllTasksForUser(String username)
     {
-        Iterator<Task> it = queue.iterator();
-        while (it.hasNext()) {
-            Task t = it.next();
-            if (t.getUser().getUsername().equals(username)) {
-                queue.remove(t);
-            }
-        }
+        triggerCoalescer.cancel(username);
+        queue.removeIf(t -> t.getUser().getUsername().equals(username));
+    }
+    
+    /**
+     * @return the number of edits of the given user which have not been learned by a training
+     *         yet, i.e. by how many edits the model is behind.
+     */
+    public int getPendingEditCount(Project aProject, String aUser)
+    {
+        return triggerCoalescer.getPendingEdits(aProject, aUser);
+    }
+    
+    /**
+     * @return the number of edits of the given user which have been passed on to a training round
+     *         but have not been learned yet.
+     * @see TriggerCoalescer#getUnlearnedEdits
+     */
+    public int getUnlearnedEditCount(Project aProject, String aUser)
+    {
+        return triggerCoalescer.getUnlearnedEdits(aProject, aUser);
+    }
+    
+    /**
+     * Records that a training has learned from the given number of edits of the given user.
+     */
+    public void editsLearned(Project aProject, String aUser, int aEdits)
+    {
+        triggerCoalescer.learned(aProject, aUser, aEdits);
     }
 
     /*
@@ -108,13 +216,36 @@ public class RecommendationScheduler
      */
     public boolean isTraining(Project p, String user)
     {
-        Iterator<Task> it = queue.iterator();
-        while (it.hasNext()) {
-            Task t = it.next();
-            if (t.getUser().getUsername().equals(user) && t.getProject().equals(p)) {
-                return true;
-            }
-        }
-        return false;
+        return queue.hasTasks(p, user);
+    }
+    
+    public int getQueueSize()
+    {
+        return queue.size();
+    }
+    
+    public int getRunningTaskCount()
+    {
+        return queue.getRunningCount();
+    }
+    
+    public long getEnqueuedTaskCount()
+    {
+        return queue.getEnqueuedCount();
+    }
+    
+    public long getRejectedTaskCount()
+    {
+        return queue.getRejectedCount();
+    }
+    
+    public long getCompletedTaskCount()
+    {
+        return queue.getCompletedCount();
+    }
+    
+    public long getFailedTaskCount()
+    {
+        return queue.getFailedCount();
     }
 }
@@ -19,8 +19,6 @@ package de.tudarmstadt.ukp.inception.recommendation.scheduling;
 
 import static org.apache.commons.lang3.Validate.notNull;
 
-import java.util.concurrent.BlockingQueue;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
@@ -34,9 +32,9 @@ public class TaskConsumer
     private static Logger log = LoggerFactory.getLogger(TaskConsumer.class);
     
     private final ApplicationContext applicationContext;
-    private BlockingQueue<Task> queue;
+    private final FairTaskQueue queue;
  
-    public TaskConsumer(ApplicationContext aApplicationContext, BlockingQueue<Task> aQueue)
+    public TaskConsumer(ApplicationContext aApplicationContext, FairTaskQueue aQueue)
     {
         notNull(aQueue);
         notNull(aApplicationContext);
@@ -52,8 +50,9 @@ public class TaskConsumer
             while (!Thread.interrupted()) {
                 log.info("Waiting for new task...");
                 
-                Runnable task = queue.take();
+                Task task = queue.take();
                 
+                boolean successful = false;
                 try {
                     AutowireCapableBeanFactory factory = applicationContext
                             .getAutowireCapableBeanFactory();
@@ -61,12 +60,15 @@ public class TaskConsumer
                     factory.initializeBean(task, "transientTask");
                     
                     task.run();
+                    successful = true;
+                    log.info("{} completed successfully.", task);
                 }
                 catch (Throwable e) {
                     log.error("{} failed.", task, e);
                 }
-
-                log.info("{} completed successfully.", task);
+                finally {
+                    queue.complete(task, successful);
+                }
             }
         }
         catch (InterruptedException ie) {
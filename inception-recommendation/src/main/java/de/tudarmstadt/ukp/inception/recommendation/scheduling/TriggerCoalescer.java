@@ -0,0 +1,294 @@
+/*
+ * Copyright 2018
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.scheduling;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Consumer;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+
+/**
+ * Collapses bursts of training triggers per project and user into a single training round. Each
+ * {@link #edit edit} postpones the round until no further edits have been made for the quiet
+ * period. To make sure the model does not fall behind too far during continuous annotation, the
+ * round is started right away once the number of pending edits reaches the edit threshold.
+ * Triggers which should not be delayed (e.g. opening a document) are passed in via
+ * {@link #flush}.
+ * <p>
+ * Edits passed on to a training round still count as pending until the training has actually
+ * learned from them and reports so via {@link #learned}. Thus, a round which is dropped because an
+ * equivalent one is already queued or which times out does not make the model look up-to-date.
+ */
+public class TriggerCoalescer
+{
+    private final ScheduledExecutorService timer;
+    private final long quietPeriod;
+    private final int editThreshold;
+    private final Consumer<Trigger> roundStarter;
+
+    private final Map<TriggerKey, Trigger> pending = new HashMap<>();
+    
+    // Edits which have been passed on to a training round but have not been learned yet
+    private final Map<TriggerKey, Integer> unlearned = new HashMap<>();
+
+    /**
+     * @param aTimer
+     *            the executor used to start delayed rounds.
+     * @param aQuietPeriod
+     *            the time without edits (in milliseconds) after which a round is started.
+     * @param aEditThreshold
+     *            the number of edits after which a round is started without waiting for the quiet
+     *            period.
+     * @param aRoundStarter
+     *            called to start a training round.
+     */
+    public TriggerCoalescer(ScheduledExecutorService aTimer, long aQuietPeriod,
+            int aEditThreshold, Consumer<Trigger> aRoundStarter)
+    {
+        notNull(aTimer);
+        notNull(aRoundStarter);
+        isTrue(aQuietPeriod >= 0, "Quiet period must not be negative");
+        isTrue(aEditThreshold > 0, "Edit threshold must be positive");
+
+        timer = aTimer;
+        quietPeriod = aQuietPeriod;
+        editThreshold = aEditThreshold;
+        roundStarter = aRoundStarter;
+    }
+
+    /**
+     * Registers an edit made by the given user. The training round is postponed until the edits
+     * stop or until the edit threshold is reached.
+     */
+    public void edit(User aUser, Project aProject, SourceDocument aDocument)
+    {
+        Trigger ready;
+        synchronized (this) {
+            TriggerKey key = new TriggerKey(aProject.getId(), aUser.getUsername());
+            Trigger trigger = pending.computeIfAbsent(key, k -> new Trigger(aUser, aProject));
+            trigger.document = aDocument;
+            trigger.edits++;
+
+            if (trigger.future != null) {
+                trigger.future.cancel(false);
+                trigger.future = null;
+            }
+
+            if (trigger.edits < editThreshold && quietPeriod > 0) {
+                trigger.future = timer.schedule(() -> fire(key, trigger), quietPeriod,
+                        MILLISECONDS);
+                return;
+            }
+
+            pending.remove(key);
+            handOver(key, trigger);
+            ready = trigger;
+        }
+
+        roundStarter.accept(ready);
+    }
+
+    /**
+     * Starts a training round for the given user right away, including any edits still pending.
+     */
+    public void flush(User aUser, Project aProject, SourceDocument aDocument)
+    {
+        Trigger trigger;
+        synchronized (this) {
+            trigger = pending.remove(new TriggerKey(aProject.getId(), aUser.getUsername()));
+            if (trigger == null) {
+                trigger = new Trigger(aUser, aProject);
+            }
+            else if (trigger.future != null) {
+                trigger.future.cancel(false);
+                trigger.future = null;
+            }
+            
+            if (aDocument != null) {
+                trigger.document = aDocument;
+            }
+            
+            handOver(new TriggerKey(aProject.getId(), aUser.getUsername()), trigger);
+        }
+
+        roundStarter.accept(trigger);
+    }
+
+    private void fire(TriggerKey aKey, Trigger aTrigger)
+    {
+        synchronized (this) {
+            // Only start the round if the trigger has not been superseded in the meantime
+            if (pending.get(aKey) != aTrigger) {
+                return;
+            }
+            pending.remove(aKey);
+            handOver(aKey, aTrigger);
+        }
+
+        roundStarter.accept(aTrigger);
+    }
+
+    private void handOver(TriggerKey aKey, Trigger aTrigger)
+    {
+        if (aTrigger.edits > 0) {
+            unlearned.merge(aKey, aTrigger.edits, Integer::sum);
+        }
+    }
+
+    /**
+     * Drops all pending triggers of the given user.
+     */
+    public synchronized void cancel(String aUsername)
+    {
+        unlearned.keySet().removeIf(key -> key.user.equals(aUsername));
+        pending.entrySet().removeIf(e -> {
+            if (!e.getKey().user.equals(aUsername)) {
+                return false;
+            }
+            if (e.getValue().future != null) {
+                e.getValue().future.cancel(false);
+            }
+            return true;
+        });
+    }
+
+    /**
+     * @return the number of edits made by the given user which have not been learned yet, either
+     *         because they have not been passed on to a training round yet or because the
+     *         training has not consumed them yet.
+     */
+    public synchronized int getPendingEdits(Project aProject, String aUsername)
+    {
+        TriggerKey key = new TriggerKey(aProject.getId(), aUsername);
+        Trigger trigger = pending.get(key);
+        return (trigger != null ? trigger.edits : 0) + getUnlearnedEdits(key);
+    }
+
+    /**
+     * @return the number of edits made by the given user which have been passed on to a training
+     *         round but have not been learned yet. A training should obtain this number before
+     *         reading the annotations and report it via {@link #learned} once it has completed.
+     */
+    public synchronized int getUnlearnedEdits(Project aProject, String aUsername)
+    {
+        return getUnlearnedEdits(new TriggerKey(aProject.getId(), aUsername));
+    }
+
+    private int getUnlearnedEdits(TriggerKey aKey)
+    {
+        return unlearned.getOrDefault(aKey, 0);
+    }
+
+    /**
+     * Records that a training has learned from the given number of edits of the given user.
+     * Edits passed on to further rounds in the meantime remain pending.
+     */
+    public synchronized void learned(Project aProject, String aUsername, int aEdits)
+    {
+        TriggerKey key = new TriggerKey(aProject.getId(), aUsername);
+        int remaining = getUnlearnedEdits(key) - aEdits;
+        if (remaining > 0) {
+            unlearned.put(key, remaining);
+        }
+        else {
+            unlearned.remove(key);
+        }
+    }
+
+    public static class Trigger
+    {
+        private final User user;
+        private final Project project;
+        private SourceDocument document;
+        private int edits;
+        private ScheduledFuture<?> future;
+
+        private Trigger(User aUser, Project aProject)
+        {
+            user = aUser;
+            project = aProject;
+        }
+
+        public User getUser()
+        {
+            return user;
+        }
+
+        public Project getProject()
+        {
+            return project;
+        }
+
+        /**
+         * @return the document most recently edited or opened by the user. May be {@code null}.
+         */
+        public SourceDocument getDocument()
+        {
+            return document;
+        }
+
+        /**
+         * @return the number of edits collapsed into this trigger.
+         */
+        public int getEdits()
+        {
+            return edits;
+        }
+    }
+
+    private static class TriggerKey
+    {
+        private final long projectId;
+        private final String user;
+
+        public TriggerKey(long aProjectId, String aUser)
+        {
+            projectId = aProjectId;
+            user = aUser;
+        }
+
+        @Override
+        public boolean equals(final Object other)
+        {
+            if (!(other instanceof TriggerKey)) {
+                return false;
+            }
+            TriggerKey castOther = (TriggerKey) other;
+            return new EqualsBuilder().append(user, castOther.user)
+                    .append(projectId, castOther.projectId).isEquals();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return new HashCodeBuilder().append(user).append(projectId).toHashCode();
+        }
+    }
+}
@@ -23,15 +23,19 @@ import static de.tudarmstadt.ukp.inception.recommendation.api.model.AnnotationSu
 import static de.tudarmstadt.ukp.inception.recommendation.api.model.AnnotationSuggestion.FLAG_SKIPPED;
 import static java.util.Comparator.comparingInt;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
 import static org.apache.uima.fit.util.CasUtil.getAnnotationType;
 import static org.apache.uima.fit.util.CasUtil.select;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.Set;
 import java.util.TreeMap;
 import javax.persistence.NoResultException;
 
@@ -60,7 +64,8 @@ import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
 import de.tudarmstadt.ukp.inception.recommendation.api.LearningRecordService;
 import de.tudarmstadt.ukp.inception.recommendation.api.RecommendationService;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.AnnotationSuggestion;
-import de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecord;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecordIndex;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecordType;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Offset;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Predictions;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
@@ -68,6 +73,7 @@ import de.tudarmstadt.ukp.inception.recommendation.api.model.SuggestionGroup;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngine;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineFactory;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext;
+import de.tudarmstadt.ukp.inception.recommendation.scheduling.CasSnapshotCache;
 import de.tudarmstadt.ukp.inception.recommendation.util.OverlapIterator;
 
 /**
@@ -78,6 +84,7 @@ public class PredictionTask
     extends Task
 {
     private static final double NO_SCORE = 0.0;
+    private static final long NO_TIMESTAMP = 0L;
 
     private Logger log = LoggerFactory.getLogger(getClass());
     
@@ -85,136 +92,323 @@ public class PredictionTask
     private @Autowired RecommendationService recommendationService;
     private @Autowired DocumentService documentService;
     private @Autowired LearningRecordService learningRecordService;
+    private @Autowired CasSnapshotCache casCache;
+    
+    private final SourceDocument currentDocument;
     
     public PredictionTask(User aUser, Project aProject)
+    {
+        this(aUser, aProject, null);
+    }
+    
+    /**
+     * @param aCurrentDocument
+     *            the document the user is currently working on. Predictions for this document are
+     *            generated first and published immediately. May be {@code null}.
+     */
+    public PredictionTask(User aUser, Project aProject, SourceDocument aCurrentDocument)
     {
         super(aProject, aUser);
+        currentDocument = aCurrentDocument;
     }
 
     @Override
     public void run()
     {
         User user = getUser();
-
         Project project = getProject();
-        Predictions model = new Predictions(project, getUser());
-        List<SourceDocument> documents = documentService.listSourceDocuments(project);
+        
+        // We start from the most recent predictions and only predict again for those documents
+        // and recommenders where the annotations or the trained model changed in the meantime.
+        Predictions previous = recommendationService.getIncomingPredictions(user, project);
+        if (previous == null) {
+            previous = recommendationService.getPredictions(user, project);
+        }
+        Predictions model = previous != null ? new Predictions(previous)
+                : new Predictions(project, user);
+        
+        Map<AnnotationLayer, List<Recommender>> recommenders = listRecommenders(user, project);
+        
+        List<SourceDocument> documents = new ArrayList<>(
+                documentService.listSourceDocuments(project));
+        
+        // The document the user is currently looking at is predicted first
+        if (currentDocument != null && documents.remove(currentDocument)) {
+            documents.add(0, currentDocument);
+        }
+        
+        // Drop predictions for documents which no longer exist or from recommenders which are no
+        // longer active
+        Set<String> documentNames = documents.stream()
+                .map(SourceDocument::getName)
+                .collect(toSet());
+        Set<Long> recommenderIds = recommenders.values().stream()
+                .flatMap(List::stream)
+                .map(Recommender::getId)
+                .collect(toSet());
+        int sizeBefore = model.size();
+        model.removePredictions((doc, rec) -> !documentNames.contains(doc)
+                || !recommenderIds.contains(rec));
+        boolean modified = previous == null || model.size() != sizeBefore;
+        
+        for (SourceDocument document : documents) {
+            boolean documentModified = predictDocument(model, document, recommenders);
+            modified |= documentModified;
+            
+            // Make suggestions for the current document available as soon as possible
+            if (documentModified && document.equals(currentDocument)) {
+                recommendationService.putIncomingPredictions(user, project,
+                        new Predictions(model));
+            }
+        }
 
-        nextDocument: for (SourceDocument document : documents) {
-            Optional<JCas> jCas = Optional.empty();
-            nextLayer: for (AnnotationLayer layer : annoService.listAnnotationLayer(project)) {
-                if (!layer.isEnabled()) {
-                    continue nextLayer;
+        if (modified) {
+            recommendationService.putIncomingPredictions(user, project, model);
+        }
+        else {
+            log.debug("[{}]: Predictions are up-to-date", user.getUsername());
+        }
+    }
+    
+    /**
+     * Collects the active and enabled recommenders for all enabled layers.
+     */
+    private Map<AnnotationLayer, List<Recommender>> listRecommenders(User aUser, Project aProject)
+    {
+        Map<AnnotationLayer, List<Recommender>> result = new LinkedHashMap<>();
+        
+        for (AnnotationLayer layer : annoService.listAnnotationLayer(aProject)) {
+            if (!layer.isEnabled()) {
+                continue;
+            }
+            
+            List<Recommender> recommenders = new ArrayList<>();
+            for (Recommender r : recommendationService.getActiveRecommenders(aUser, layer)) {
+                // Make sure we have the latest recommender config from the DB - the one from
+                // the active recommenders list may be outdated
+                Recommender recommender;
+                try {
+                    recommender = recommendationService.getRecommender(r.getId());
                 }
+                catch (NoResultException e) {
+                    log.info("[{}][{}]: Recommender no longer available... skipping",
+                            aUser.getUsername(), r.getName());
+                    continue;
+                }
+                
+                if (!recommender.isEnabled()) {
+                    log.debug("[{}][{}]: Disabled - skipping", aUser.getUsername(), r.getName());
+                    continue;
+                }
+                
+                recommenders.add(recommender);
+            }
+            
+            result.put(layer, recommenders);
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Updates the predictions of all recommenders for the given document unless they are already
+     * up-to-date.
+     * 
+     * @return whether any predictions were updated.
+     */
+    private boolean predictDocument(Predictions aModel, SourceDocument aDocument,
+            Map<AnnotationLayer, List<Recommender>> aRecommenders)
+    {
+        User user = getUser();
+        Project project = getProject();
+        Optional<Long> casTimestamp = getCasTimestamp(aDocument);
+        boolean modified = false;
+        
+        Optional<JCas> jCas = Optional.empty();
+        for (Entry<AnnotationLayer, List<Recommender>> e : aRecommenders.entrySet()) {
+            AnnotationLayer layer = e.getKey();
+            
+            nextRecommender: for (Recommender recommender : e.getValue()) {
+                RecommenderContext ctx = recommendationService.getContext(user, recommender);
+                
+                if (!ctx.isReadyForPrediction()) {
+                    log.info("Context for recommender [{}]({}) for user [{}] on document "
+                            + "[{}]({}) in project [{}]({}) is not ready yet - skipping recommender",
+                            recommender.getName(), recommender.getId(), user.getUsername(),
+                            aDocument.getName(), aDocument.getId(), project.getName(),
+                            project.getId());
+                    continue nextRecommender;
+                }
+                
+                // Neither the annotations nor the model changed since the last prediction
+                long contextVersion = ctx.getVersion();
+                if (casTimestamp.isPresent() && aModel.isPredictionUpToDate(aDocument.getName(),
+                        recommender.getId(), casTimestamp.get(), contextVersion)) {
+                    // ... but the user may have rejected or skipped suggestions meanwhile
+                    modified |= updateRecordedVisibility(aModel, aDocument, layer, recommender,
+                            casTimestamp.get(), contextVersion);
+                    continue nextRecommender;
+                }
+                
+                RecommendationEngineFactory<?> factory = recommendationService
+                        .getRecommenderFactory(recommender);
+                RecommendationEngine recommendationEngine = factory.build(recommender);
 
-                List<Recommender> recommenders = recommendationService
-                    .getActiveRecommenders(user, layer);
-
-                nextRecommender: for (Recommender r : recommenders) {
-                    // Make sure we have the latest recommender config from the DB - the one from
-                    // the active recommenders list may be outdated
-                    Recommender recommender;
-                    try {
-                        recommender = recommendationService.getRecommender(r.getId());
-                    }
-                    catch (NoResultException e) {
-                        log.info("[{}][{}]: Recommender no longer available... skipping",
-                                user.getUsername(), r.getName());
-                        continue nextRecommender;
-                    }
-                    
-                    if (!recommender.isEnabled()) {
-                        log.debug("[{}][{}]: Disabled - skipping", user.getUsername(), r.getName());
-                        continue nextRecommender;
-                    }
-                    
-                    RecommenderContext ctx = recommendationService.getContext(user, recommender);
-                    
-                    if (!ctx.isReadyForPrediction()) {
-                        log.info("Context for recommender [{}]({}) for user [{}] on document "
-                                + "[{}]({}) in project [{}]({}) is not ready yet - skipping recommender",
-                                recommender.getName(), recommender.getId(), user.getUsername(),
-                                document.getName(), document.getId(), project.getName(),
-                                project.getId());
-                        continue nextRecommender;
-                    }
-                    
-                    RecommendationEngineFactory<?> factory = recommendationService
-                            .getRecommenderFactory(recommender);
-                    RecommendationEngine recommendationEngine = factory.build(recommender);
-
-                    // We lazily load the CAS only at this point because that allows us to skip
-                    // loading the CAS entirely if there is no enabled layer or recommender.
-                    // If the CAS cannot be loaded, then we skip to the next document.
+                // We lazily load the CAS only at this point because that allows us to skip
+                // loading the CAS entirely if there is no enabled layer or recommender or if all
+                // the predictions are up-to-date. If the CAS cannot be loaded, then we skip to the
+                // next document.
+                if (!jCas.isPresent()) {
+                    jCas = readCas(aDocument);
                     if (!jCas.isPresent()) {
-                        try {
-                            jCas = Optional.of(documentService.readAnnotationCas(document,
-                                    user.getUsername()));
-                        }
-                        catch (IOException e) {
-                            log.error("Cannot read annotation CAS for user [{}] of document "
-                                    + "[{}]({}) in project [{}]({}) - skipping document",
-                                    user.getUsername(), document.getName(), document.getId(),
-                                    project.getName(), project.getId(), e);
-                            continue nextDocument;
-                        }
-                        try {
-                            annoService.upgradeCasIfRequired(jCas.get().getCas(), document,
-                                    user.getUsername());
-                        }
-                        catch (UIMAException | IOException e) {
-                            log.error("Cannot upgrade annotation CAS for user [{}] of document "
-                                    + "[{}]({}) in project [{}]({}) - skipping document",
-                                    user.getUsername(), document.getName(), document.getId(),
-                                    project.getName(), project.getId(), e);
-                            continue nextDocument;
-                        }
+                        return modified;
                     }
-                    
+                }
+                
+                // The predictions of each recommender must be removed again before the next
+                // recommender predicts, even if predicting or extracting the suggestions fails
+                CAS cas = jCas.get().getCas();
+                Type predictionType = getAnnotationType(cas,
+                        recommendationEngine.getPredictedType());
+                try {
                     try {
-                        recommendationEngine.predict(ctx, jCas.get().getCas());
+                        recommendationEngine.predict(ctx, cas);
                     }
-                    catch (Throwable e) {
+                    catch (Throwable ex) {
                         log.error("Error applying recommender [{}]({}) for user [{}] to document "
                                         + "[{}]({}) in project [{}]({}) - skipping recommender",
                                 recommender.getName(), recommender.getId(), user.getUsername(),
-                                document.getName(), document.getId(), project.getName(),
-                                project.getId(), e);
+                                aDocument.getName(), aDocument.getId(), project.getName(),
+                                project.getId(), ex);
                         continue nextRecommender;
                     }
 
-                    String predictedTypeName = recommendationEngine.getPredictedType();
                     String predictedFeatureName = recommendationEngine.getPredictedFeature();
                     Optional<String> scoreFeatureName = recommendationEngine.getScoreFeature();
-                    Type predictionType = getAnnotationType(jCas.get().getCas(), predictedTypeName);
                     Feature labelFeature = predictionType
                             .getFeatureByBaseName(predictedFeatureName);
                     Optional<Feature> scoreFeature = scoreFeatureName
                             .map(predictionType::getFeatureByBaseName);
 
-                    // Extract the suggestions from the data which the recommender has written into
-                    // the CAS
-                    List<AnnotationSuggestion> predictions = extractSuggestions(user,
-                            jCas.get().getCas(), predictionType, labelFeature, scoreFeature,
-                            document, recommender);
+                    // Extract the suggestions from the data which the recommender has written
+                    // into the CAS
+                    List<AnnotationSuggestion> predictions = extractSuggestions(user, cas,
+                            predictionType, labelFeature, scoreFeature, aDocument, recommender);
                     
                     // Calculate the visbility of the suggestions
                     Collection<SuggestionGroup> groups = SuggestionGroup.group(predictions);
                     calculateVisibility(learningRecordService, annoService, jCas.get(),
-                            getUser().getUsername(), layer, groups, 0,
+                            user.getUsername(), layer, groups, 0,
                             jCas.get().getDocumentText().length());
                     
-                    model.putPredictions(layer.getId(), predictions);
-
+                    // Replace the previous predictions of the recommender for this document
+                    aModel.removePredictions(aDocument.getName(), recommender.getId());
+                    aModel.putPredictions(layer.getId(), predictions);
+                    if (casTimestamp.isPresent()) {
+                        aModel.putPredictionVersion(aDocument.getName(), recommender.getId(),
+                                casTimestamp.get(), contextVersion);
+                    }
+                    modified = true;
+                }
+                finally {
                     // In order to just extract the annotations for a single recommender, each
                     // recommender undoes the changes applied in `recommendationEngine.predict`
-
-                    removePredictions(jCas.get().getCas(), predictionType);
+                    removePredictions(cas, predictionType);
                 }
             }
         }
-
-        recommendationService.putIncomingPredictions(getUser(), project, model);
+        
+        return modified;
+    }
+    
+    /**
+     * Re-applies the rejected and skipped state from the learning records to the existing
+     * suggestions of the given recommender for the given document. Suggestions hidden because they
+     * overlap with an annotation do not need to be checked because the annotations did not change.
+     * <p>
+     * The suggestions are shared with the predictions which are currently displayed to the user,
+     * so they are not changed in place. Instead, the suggestions of the recommender are replaced
+     * with updated copies if the visibility of any of them changed.
+     * 
+     * @return whether the visibility of any suggestion changed.
+     */
+    private boolean updateRecordedVisibility(Predictions aModel, SourceDocument aDocument,
+            AnnotationLayer aLayer, Recommender aRecommender, long aCasTimestamp,
+            long aContextVersion)
+    {
+        LearningRecordIndex recordedAnnotations = learningRecordService
+                .getRecordIndex(getUser().getUsername(), aLayer);
+        
+        boolean modified = false;
+        List<AnnotationSuggestion> suggestions = new ArrayList<>();
+        for (AnnotationSuggestion original : aModel.getPredictions(aDocument.getName(),
+                aRecommender.getId())) {
+            AnnotationSuggestion suggestion = new AnnotationSuggestion(original);
+            suggestion.show(FLAG_REJECTED | FLAG_SKIPPED);
+            if (suggestion.isVisible()) {
+                hideSuggestionsRejectedOrWithoutLabel(suggestion, recordedAnnotations);
+            }
+            modified |= !original.getReasonForHiding().equals(suggestion.getReasonForHiding());
+            suggestions.add(suggestion);
+        }
+        
+        if (modified) {
+            aModel.removePredictions(aDocument.getName(), aRecommender.getId());
+            aModel.putPredictions(aLayer.getId(), suggestions);
+            aModel.putPredictionVersion(aDocument.getName(), aRecommender.getId(), aCasTimestamp,
+                    aContextVersion);
+        }
+        
+        return modified;
+    }
+    
+    /**
+     * @return the timestamp of the annotation CAS or {@link #NO_TIMESTAMP} if the user has no
+     *         annotation CAS for the document yet. If the timestamp cannot be determined, nothing
+     *         is returned.
+     */
+    private Optional<Long> getCasTimestamp(SourceDocument aDocument)
+    {
+        try {
+            return Optional.of(documentService
+                    .getAnnotationCasTimestamp(aDocument, getUser().getUsername())
+                    .orElse(NO_TIMESTAMP));
+        }
+        catch (IOException e) {
+            log.warn("Cannot determine annotation CAS timestamp for user [{}] of document "
+                    + "[{}]({}) - predicting anyway", getUser().getUsername(),
+                    aDocument.getName(), aDocument.getId(), e);
+            return Optional.empty();
+        }
+    }
+    
+    private Optional<JCas> readCas(SourceDocument aDocument)
+    {
+        User user = getUser();
+        Project project = getProject();
+        
+        JCas jCas;
+        try {
+            // The recommenders write their predictions into the CAS, so we must not use a CAS
+            // which is shared with other tasks via the cache
+            jCas = casCache.readCopy(aDocument, user.getUsername());
+        }
+        catch (IOException e) {
+            log.error("Cannot read annotation CAS for user [{}] of document "
+                    + "[{}]({}) in project [{}]({}) - skipping document",
+                    user.getUsername(), aDocument.getName(), aDocument.getId(),
+                    project.getName(), project.getId(), e);
+            return Optional.empty();
+        }
+        catch (UIMAException e) {
+            log.error("Cannot upgrade annotation CAS for user [{}] of document "
+                    + "[{}]({}) in project [{}]({}) - skipping document",
+                    user.getUsername(), aDocument.getName(), aDocument.getId(),
+                    project.getName(), project.getId(), e);
+            return Optional.empty();
+        }
+        
+        return Optional.of(jCas);
     }
 
     private List<AnnotationSuggestion> extractSuggestions(User aUser, CAS aCas, Type predictionType,
@@ -266,6 +460,48 @@ public class PredictionTask
         return result;
     }
 
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder();
+        builder.append(getClass().getSimpleName());
+        builder.append(" [project=");
+        builder.append(getProject().getName());
+        builder.append(", user=");
+        builder.append(getUser().getUsername());
+        builder.append(", currentDocument=");
+        builder.append(currentDocument != null ? currentDocument.getName() : null);
+        builder.append("]");
+        return builder.toString();
+    }
+
+    @Override
+    public int hashCode()
+    {
+        final int prime = 31;
+        int result = super.hashCode();
+        result = prime * result + ((currentDocument == null) ? 0 : currentDocument.hashCode());
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (!super.equals(obj)) {
+            return false;
+        }
+        PredictionTask other = (PredictionTask) obj;
+        if (currentDocument == null) {
+            if (other.currentDocument != null) {
+                return false;
+            }
+        }
+        else if (!currentDocument.equals(other.currentDocument)) {
+            return false;
+        }
+        return true;
+    }
+
     private void removePredictions(CAS aCas, Type aPredictionType)
     {
         for (AnnotationFS fs : CasUtil.select(aCas, aPredictionType)) {
@@ -299,7 +535,7 @@ public class PredictionTask
                 .collect(toList());
         
         // Get all the skipped/rejected entries for the current layer
-        List<LearningRecord> recordedAnnotations = aLearningRecordService.listRecords(aUser,
+        LearningRecordIndex recordedAnnotations = aLearningRecordService.getRecordIndex(aUser,
                 aLayer);
         
         for (AnnotationFeature feature : aAnnotationService.listAnnotationFeature(aLayer)) {
@@ -353,7 +589,7 @@ public class PredictionTask
     }
 
     private static void hideSuggestionsRejectedOrWithoutLabel(
-            AnnotationSuggestion aSuggestion, List<LearningRecord> aRecordedRecommendations)
+            AnnotationSuggestion aSuggestion, LearningRecordIndex aRecordedRecommendations)
     {
         // If there is no label, then hide it
         if (aSuggestion.getLabel() == null) {
@@ -362,24 +598,23 @@ public class PredictionTask
         }
 
         // If it was rejected or skipped, it hide it
-        for (LearningRecord record : aRecordedRecommendations) {
-            if (record.getOffsetCharacterBegin() == aSuggestion.getBegin()
-                    && record.getOffsetCharacterEnd() == aSuggestion.getEnd()
-                    && record.getAnnotation().equals(aSuggestion.getLabel()))
-            {
-                switch (record.getUserAction()) {
-                case REJECTED:
-                    aSuggestion.hide(FLAG_REJECTED);
-                    break;
-                case SKIPPED:
-                    aSuggestion.hide(FLAG_SKIPPED);
-                    break;
-                default:
-                    // Nothing to do for the other cases. ACCEPTED annotation are filtered out 
-                    // because the overlap with a created annotation and the same for CORRECTED
-                }
-                return;
-            }
+        Optional<LearningRecordType> userAction = aRecordedRecommendations.getUserAction(
+                aSuggestion.getDocumentName(), aSuggestion.getBegin(), aSuggestion.getEnd(),
+                aSuggestion.getLabel());
+        if (!userAction.isPresent()) {
+            return;
+        }
+        
+        switch (userAction.get()) {
+        case REJECTED:
+            aSuggestion.hide(FLAG_REJECTED);
+            break;
+        case SKIPPED:
+            aSuggestion.hide(FLAG_SKIPPED);
+            break;
+        default:
+            // Nothing to do for the other cases. ACCEPTED annotation are filtered out 
+            // because the overlap with a created annotation and the same for CORRECTED
         }
     }
 }
@@ -19,12 +19,25 @@ package de.tudarmstadt.ukp.inception.recommendation.scheduling.tasks;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
 import javax.persistence.NoResultException;
 
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.concurrent.ConcurrentException;
 import org.apache.commons.lang3.concurrent.LazyInitializer;
 import org.apache.uima.UIMAException;
 import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Type;
+import org.apache.uima.fit.util.CasUtil;
 import org.apache.uima.jcas.JCas;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,14 +54,24 @@ import de.tudarmstadt.ukp.inception.recommendation.api.RecommendationService;
 import de.tudarmstadt.ukp.inception.recommendation.api.evaluation.DataSplitter;
 import de.tudarmstadt.ukp.inception.recommendation.api.evaluation.PercentageBasedSplitter;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.CasStream;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngine;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineFactory;
+import de.tudarmstadt.ukp.inception.recommendation.config.RecommenderProperties;
 import de.tudarmstadt.ukp.inception.recommendation.event.RecommenderEvaluationResultEvent;
+import de.tudarmstadt.ukp.inception.recommendation.scheduling.CasSnapshotCache;
+import de.tudarmstadt.ukp.inception.recommendation.scheduling.DocumentCasStream;
+import de.tudarmstadt.ukp.inception.recommendation.scheduling.EvaluationScoreCache;
+import de.tudarmstadt.ukp.inception.recommendation.scheduling.RecommendationScheduler;
 
 /**
  * This task is run every 60 seconds, if the document has changed. It evaluates all available
  * classification tools for all annotation layers of the current project. If a classifier exceeds
  * its specific activation f-score limit during the evaluation it is selected for active prediction.
+ * <p>
+ * The recommenders of a layer are evaluated in parallel on the training executor of the
+ * {@link RecommendationScheduler}. Scores are cached in the {@link EvaluationScoreCache} and a
+ * recommender is only evaluated again once its training data or its configuration has changed.
  */
 public class SelectionTask
     extends Task
@@ -58,7 +81,11 @@ public class SelectionTask
     private @Autowired AnnotationSchemaService annoService;
     private @Autowired DocumentService documentService;
     private @Autowired RecommendationService recommendationService;
+    private @Autowired RecommendationScheduler recommendationScheduler;
     private @Autowired ApplicationEventPublisher appEventPublisher;
+    private @Autowired CasSnapshotCache casCache;
+    private @Autowired EvaluationScoreCache scoreCache;
+    private @Autowired RecommenderProperties properties;
     
     public SelectionTask(User aUser, Project aProject)
     {
@@ -72,15 +99,21 @@ public class SelectionTask
         User user = getUser();
         String userName = user.getUsername();
         
+        // The timestamps of the annotation CASes identify the state of the training data. They
+        // are much cheaper to obtain than the CASes themselves, so we can check the score cache
+        // without reading any CAS.
+        List<SourceDocument> documents = documentService.listSourceDocuments(project);
+        Map<Long, Long> dataVersion = readCasTimestamps(documents, userName);
+        
         // Read the CASes only when they are accessed the first time. This allows us to skip reading
         // the CASes in case that no layer / recommender is available or if no recommender requires
-        // evaluation.
+        // evaluation. Recommenders which support streaming do not access them at all.
         LazyInitializer<List<CAS>> casses = new LazyInitializer<List<CAS>>()
         {
             @Override
             protected List<CAS> initialize()
             {
-                return readCasses(project, userName);
+                return readCasses(documents, userName);
             }
         };
 
@@ -97,6 +130,7 @@ public class SelectionTask
             }
     
             List<Recommender> activeRecommenders = new ArrayList<>();
+            List<EvaluationJob> jobs = new ArrayList<>();
             
             for (Recommender r : recommenders) {
                 // Make sure we have the latest recommender config from the DB - the one from
@@ -119,10 +153,8 @@ public class SelectionTask
                 String recommenderName = recommender.getName();
                 
                 try {
-                    long start = System.currentTimeMillis();
                     RecommendationEngineFactory factory = recommendationService
                         .getRecommenderFactory(recommender);
-                    RecommendationEngine recommendationEngine = factory.build(recommender);
 
                     if (recommender.isAlwaysSelected()) {
                         log.debug("[{}][{}]: Activating [{}] without evaluating - always selected",
@@ -135,48 +167,146 @@ public class SelectionTask
                         activeRecommenders.add(recommender);
                         continue;
                     }
-    
-                    log.info("[{}][{}]: Evaluating...", userName, recommenderName);
-
-                    DataSplitter splitter = new PercentageBasedSplitter(0.8, 10);
-                    double score = recommendationEngine.evaluate(casses.get(), splitter);
-
-                    Double threshold = recommender.getThreshold();
-                    boolean activated;
-                    if (score >= threshold) {
-                        activated = true;
-                        activeRecommenders.add(recommender);
-                        log.info("[{}][{}]: Activated ({} is above threshold {})",
-                                user.getUsername(), recommenderName, score,
-                                threshold);
-                    }
-                    else {
-                        activated = false;
-                        log.info("[{}][{}]: Not activated ({} is not above threshold {})",
-                                user.getUsername(), recommenderName, score,
-                                threshold);
+                    
+                    Fingerprint fingerprint = new Fingerprint(recommender,
+                            properties.getEvaluationFolds(), dataVersion);
+                    Optional<Double> cachedScore = scoreCache.get(recommender, userName,
+                            fingerprint);
+                    if (cachedScore.isPresent()) {
+                        log.debug("[{}][{}]: Using cached score {}", userName, recommenderName,
+                                cachedScore.get());
+                        if (isActivated(recommender, cachedScore.get())) {
+                            activeRecommenders.add(recommender);
+                        }
+                        continue;
                     }
-
-                    appEventPublisher.publishEvent(new RecommenderEvaluationResultEvent(this,
-                            recommender, user.getUsername(), score,
-                            System.currentTimeMillis() - start, activated));
+                    
+                    jobs.add(new EvaluationJob(recommender, factory.build(recommender),
+                            fingerprint));
                 }
                 catch (Throwable e) {
                     log.error("[{}][{}]: Failed", user.getUsername(), recommenderName, e);
                 }
             }
+            
+            if (!jobs.isEmpty()) {
+                try {
+                    evaluate(layer, jobs, documents, casses, activeRecommenders);
+                }
+                catch (ConcurrentException e) {
+                    log.error("[{}][{}]: Unable to read CASes", userName, layer.getUiName(), e);
+                }
+                catch (InterruptedException e) {
+                    log.info("[{}]: Selection interrupted", userName);
+                    jobs.forEach(job -> job.future.cancel(true));
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
     
             recommendationService.setActiveRecommenders(user, layer, activeRecommenders);
         }
     }
+    
+    /**
+     * Evaluates the given recommenders of a layer in parallel and adds those that pass their
+     * threshold to the active recommenders.
+     */
+    private void evaluate(AnnotationLayer aLayer, List<EvaluationJob> aJobs,
+            List<SourceDocument> aDocuments, LazyInitializer<List<CAS>> aCasses,
+            List<Recommender> aActiveRecommenders)
+        throws InterruptedException, ConcurrentException
+    {
+        String userName = getUser().getUsername();
+        
+        // Documents which do not contain any annotations of the layer do not contribute to the
+        // evaluation - the training also skips them. Streams skip them while reading the CASes.
+        // For all other recommenders, filter them out once instead of having every recommender
+        // scan them.
+        List<CAS> layerCasses = null;
+        
+        for (EvaluationJob job : aJobs) {
+            if (job.engine.supportsStreaming()) {
+                job.stream = new DocumentCasStream(casCache, userName, aDocuments,
+                        cas -> containsTargetAnnotation(aLayer, cas));
+            }
+            else {
+                if (layerCasses == null) {
+                    layerCasses = aCasses.get().stream()
+                            .filter(cas -> containsTargetAnnotation(aLayer, cas))
+                            .collect(Collectors.toList());
+                }
+                job.casses = layerCasses;
+            }
+            job.future = recommendationScheduler.getTrainingExecutor().submit(job);
+        }
+        
+        for (EvaluationJob job : aJobs) {
+            Recommender recommender = job.recommender;
+            String recommenderName = recommender.getName();
+            
+            double score;
+            try {
+                score = job.future.get();
+            }
+            catch (ExecutionException e) {
+                log.error("[{}][{}]: Failed", userName, recommenderName, e.getCause());
+                continue;
+            }
+            
+            scoreCache.put(recommender, userName, job.fingerprint, score);
+            
+            boolean activated = isActivated(recommender, score);
+            if (activated) {
+                aActiveRecommenders.add(recommender);
+                log.info("[{}][{}]: Activated ({} is above threshold {})", userName,
+                        recommenderName, score, recommender.getThreshold());
+            }
+            else {
+                log.info("[{}][{}]: Not activated ({} is not above threshold {})", userName,
+                        recommenderName, score, recommender.getThreshold());
+            }
+
+            appEventPublisher.publishEvent(new RecommenderEvaluationResultEvent(this,
+                    recommender, userName, score, job.duration, activated));
+        }
+    }
+    
+    private boolean isActivated(Recommender aRecommender, double aScore)
+    {
+        return aScore >= aRecommender.getThreshold();
+    }
+
+    private boolean containsTargetAnnotation(AnnotationLayer aLayer, CAS aCas)
+    {
+        Type type = CasUtil.getType(aCas, aLayer.getName());
+        return CasUtil.iterator(aCas, type).hasNext();
+    }
+
+    private Map<Long, Long> readCasTimestamps(List<SourceDocument> aDocuments, String aUserName)
+    {
+        Map<Long, Long> timestamps = new LinkedHashMap<>();
+        for (SourceDocument document : aDocuments) {
+            try {
+                timestamps.put(document.getId(),
+                        documentService.getAnnotationCasTimestamp(document, aUserName).orElse(0L));
+            }
+            catch (IOException e) {
+                log.error("Cannot read annotation CAS timestamp.", e);
+                // Use a marker which never matches a real timestamp so that a score obtained
+                // while the CAS was still readable is not reused
+                timestamps.put(document.getId(), -1L);
+            }
+        }
+        return timestamps;
+    }
 
-    private List<CAS> readCasses(Project aProject, String aUserName)
+    private List<CAS> readCasses(List<SourceDocument> aDocuments, String aUserName)
     {
         List<CAS> casses = new ArrayList<>();
-        for (SourceDocument document : documentService.listSourceDocuments(aProject)) {
+        for (SourceDocument document : aDocuments) {
             try {
-                JCas jCas = documentService.readAnnotationCas(document, aUserName);
-                annoService.upgradeCasIfRequired(jCas.getCas(), document, aUserName);
+                JCas jCas = casCache.read(document, aUserName);
                 casses.add(jCas.getCas());
             } catch (IOException e) {
                 log.error("Cannot read annotation CAS.", e);
@@ -188,4 +318,91 @@ public class SelectionTask
         }
         return casses;
     }
+    
+    private class EvaluationJob
+        implements Callable<Double>
+    {
+        private final Recommender recommender;
+        private final RecommendationEngine engine;
+        private final Fingerprint fingerprint;
+        private List<CAS> casses;
+        private CasStream stream;
+        private Future<Double> future;
+        private volatile long duration;
+        
+        public EvaluationJob(Recommender aRecommender, RecommendationEngine aEngine,
+                Fingerprint aFingerprint)
+        {
+            recommender = aRecommender;
+            engine = aEngine;
+            fingerprint = aFingerprint;
+        }
+        
+        @Override
+        public Double call() throws Exception
+        {
+            long start = System.currentTimeMillis();
+            try {
+                log.info("[{}][{}]: Evaluating...", getUser().getUsername(),
+                        recommender.getName());
+                int folds = fingerprint.folds;
+                if (folds > 1) {
+                    return stream != null ? engine.crossValidate(stream, folds)
+                            : engine.crossValidate(casses, folds);
+                }
+                else {
+                    DataSplitter splitter = new PercentageBasedSplitter(0.8, 10);
+                    return stream != null ? engine.evaluate(stream, splitter)
+                            : engine.evaluate(casses, splitter);
+                }
+            }
+            finally {
+                duration = System.currentTimeMillis() - start;
+            }
+        }
+    }
+    
+    /**
+     * Describes everything an evaluation score depends on: the configuration of the recommender,
+     * the evaluation mode and the versions of the annotation CASes.
+     */
+    private static class Fingerprint
+    {
+        private final long layerId;
+        private final String feature;
+        private final String tool;
+        private final String traits;
+        private final int folds;
+        private final Map<Long, Long> dataVersion;
+
+        public Fingerprint(Recommender aRecommender, int aFolds, Map<Long, Long> aDataVersion)
+        {
+            layerId = aRecommender.getLayer().getId();
+            feature = aRecommender.getFeature();
+            tool = aRecommender.getTool();
+            traits = aRecommender.getTraits();
+            folds = aFolds;
+            dataVersion = aDataVersion;
+        }
+
+        @Override
+        public boolean equals(final Object other)
+        {
+            if (!(other instanceof Fingerprint)) {
+                return false;
+            }
+            Fingerprint castOther = (Fingerprint) other;
+            return new EqualsBuilder().append(layerId, castOther.layerId)
+                    .append(feature, castOther.feature).append(tool, castOther.tool)
+                    .append(traits, castOther.traits).append(folds, castOther.folds)
+                    .append(dataVersion, castOther.dataVersion).isEquals();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return new HashCodeBuilder().append(layerId).append(feature).append(tool)
+                    .append(traits).append(folds).append(dataVersion).toHashCode();
+        }
+    }
 }
@@ -17,15 +17,29 @@
  */
 package de.tudarmstadt.ukp.inception.recommendation.scheduling.tasks;
 
+import static de.tudarmstadt.ukp.inception.recommendation.event.RecommenderTrainingResultEvent.Outcome.FAILED;
+import static de.tudarmstadt.ukp.inception.recommendation.event.RecommenderTrainingResultEvent.Outcome.SKIPPED;
+import static de.tudarmstadt.ukp.inception.recommendation.event.RecommenderTrainingResultEvent.Outcome.SUCCEEDED;
+import static de.tudarmstadt.ukp.inception.recommendation.event.RecommenderTrainingResultEvent.Outcome.TIMED_OUT;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 import javax.persistence.NoResultException;
 
 import org.apache.commons.lang3.concurrent.LazyInitializer;
+import org.apache.uima.UIMAException;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.Type;
 import org.apache.uima.fit.util.CasUtil;
@@ -33,6 +47,8 @@ import org.apache.uima.jcas.JCas;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.util.DigestUtils;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
 import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
@@ -42,29 +58,61 @@ import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
 import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+import de.tudarmstadt.ukp.inception.recommendation.api.ModelStore;
 import de.tudarmstadt.ukp.inception.recommendation.api.RecommendationService;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngine;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineFactory;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext;
+import de.tudarmstadt.ukp.inception.recommendation.config.RecommenderProperties;
+import de.tudarmstadt.ukp.inception.recommendation.event.RecommenderTrainingResultEvent;
+import de.tudarmstadt.ukp.inception.recommendation.event.RecommenderTrainingResultEvent.Outcome;
+import de.tudarmstadt.ukp.inception.recommendation.scheduling.CasSnapshotCache;
+import de.tudarmstadt.ukp.inception.recommendation.scheduling.DocumentCasStream;
 import de.tudarmstadt.ukp.inception.recommendation.scheduling.RecommendationScheduler;
 
 /**
  * This consumer trains a new classifier model, if a classification tool was selected before.
+ * The active recommenders are trained in parallel on the training executor of the
+ * {@link RecommendationScheduler}, each within its own time budget. Recommenders which support
+ * streaming receive their training data as a {@link DocumentCasStream}; for all others, the CASes
+ * are read once and shared.
  */
 public class TrainingTask
     extends Task
 {
+    private static final long NO_TIMESTAMP = 0L;
+    
+    // Number of training timeouts a job may wait for a free training thread before it is given up
+    private static final int MAX_QUEUED_TIMEOUTS = 2;
+    
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     private @Autowired AnnotationSchemaService annoService;
     private @Autowired DocumentService documentService;
     private @Autowired RecommendationService recommendationService;
     private @Autowired RecommendationScheduler recommendationScheduler;
+    private @Autowired CasSnapshotCache casCache;
+    private @Autowired RecommenderProperties properties;
+    private @Autowired ApplicationEventPublisher appEventPublisher;
+    private @Autowired ModelStore modelStore;
+
+    private final SourceDocument currentDocument;
 
     public TrainingTask(User aUser, Project aProject)
+    {
+        this(aUser, aProject, null);
+    }
+    
+    /**
+     * @param aCurrentDocument
+     *            the document the user is currently working on. This is passed on to the
+     *            {@link PredictionTask} triggered after the training. May be {@code null}.
+     */
+    public TrainingTask(User aUser, Project aProject, SourceDocument aCurrentDocument)
     {
         super(aProject, aUser);
+        currentDocument = aCurrentDocument;
     }
     
     @Override
@@ -72,35 +120,28 @@ public class TrainingTask
     {
         Project project = getProject();
         User user = getUser();
-
-        // Read the CASes only when they are accessed the first time. This allows us to skip reading
-        // the CASes in case that no layer / recommender is available or if no recommender requires
-        // evaluation.
-        LazyInitializer<List<TrainingDocument>> casses =
-                new LazyInitializer<List<TrainingDocument>>()
-        {
-            @Override
-            protected List<TrainingDocument> initialize()
-            {
-                return readCasses(project, user);
-            }
-        };
         
+        // Edits passed on to training rounds after this point may not be contained in the
+        // annotations read below, so they remain pending
+        int edits = recommendationScheduler.getUnlearnedEditCount(project, user.getUsername());
+        boolean learned = true;
+
+        List<Recommender> recommenders = new ArrayList<>();
         for (AnnotationLayer layer : annoService.listAnnotationLayer(project)) {
             if (!layer.isEnabled()) {
                 continue;
             }
             
-            List<Recommender> recommenders = recommendationService.getActiveRecommenders(user,
-                    layer);
+            List<Recommender> activeRecommenders = recommendationService
+                    .getActiveRecommenders(user, layer);
     
-            if (recommenders.isEmpty()) {
+            if (activeRecommenders.isEmpty()) {
                 log.debug("[{}][{}]: No active recommenders, skipping training.",
                         user.getUsername(), layer.getUiName());
                 continue;
             }
             
-            for (Recommender r : recommenders) {
+            for (Recommender r : activeRecommenders) {
                 // Make sure we have the latest recommender config from the DB - the one from the
                 // active recommenders list may be outdated
                 Recommender recommender;
@@ -118,40 +159,123 @@ public class TrainingTask
                     continue;
                 }
                 
-                long startTime = System.currentTimeMillis();
-                RecommenderContext context = recommendationService.getContext(user, recommender);
-                RecommendationEngineFactory factory = recommendationService
-                    .getRecommenderFactory(recommender);
-                RecommendationEngine recommendationEngine = factory.build(recommender);
-
-                try {
-                    List<CAS> cassesForTraining = casses.get()
-                            .stream()
-                            .filter(e -> !recommender.getStatesIgnoredForTraining()
-                                    .contains(e.state))
-                            .filter(e -> containsTargetAnnotation(recommender, e.cas))
-                            .map(e -> e.cas)
-                            .collect(Collectors.toList());
-                    log.info("[{}][{}]: Training model on [{}] out of [{}] documents ...",
-                            user.getUsername(), recommender.getName(), cassesForTraining.size(),
-                            casses.get().size());
-
-                    recommendationEngine.train(context, cassesForTraining);
-                    log.info("[{}][{}]: Training complete ({} ms)", user.getUsername(),
-                            recommender.getName(), (System.currentTimeMillis() - startTime));
+                recommenders.add(recommender);
+            }
+        }
+        
+        if (!recommenders.isEmpty()) {
+            List<TrainingDocument> documents = listTrainingDocuments(project, user);
+            
+            // Recommenders which cannot consume a stream of CASes need all CASes in memory at
+            // once. Read them only when the first such recommender needs them and share them
+            // between all these recommenders.
+            LazyInitializer<Map<Long, CAS>> casses = new LazyInitializer<Map<Long, CAS>>()
+            {
+                @Override
+                protected Map<Long, CAS> initialize()
+                {
+                    return readCasses(documents, user);
+                }
+            };
+            
+            // Train all recommenders in parallel
+            List<TrainingJob> jobs = new ArrayList<>();
+            for (Recommender recommender : recommenders) {
+                TrainingJob job = new TrainingJob(recommender, documents, casses);
+                job.future = recommendationScheduler.getTrainingExecutor().submit(job);
+                jobs.add(job);
+            }
+            
+            long timeout = properties.getTrainingTimeout() * 1000;
+            try {
+                for (TrainingJob job : jobs) {
+                    Outcome outcome = awaitTraining(job, timeout);
+                    learned &= outcome == SUCCEEDED || outcome == SKIPPED;
+                    appEventPublisher.publishEvent(new RecommenderTrainingResultEvent(this,
+                            job.recommender, user.getUsername(), job.getDocumentCount(),
+                            job.getDuration(), outcome));
+                }
+            }
+            catch (InterruptedException e) {
+                log.info("[{}]: Training interrupted", user.getUsername());
+                jobs.forEach(TrainingJob::cancel);
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        
+        // If a recommender failed or timed out, its model is still behind the edits
+        if (learned) {
+            recommendationScheduler.editsLearned(project, user.getUsername(), edits);
+        }
+        
+        recommendationScheduler.enqueue(new PredictionTask(user, getProject(), currentDocument));
+    }
+    
+    /**
+     * Waits for the given training job to complete. If the job does not complete within the given
+     * time after it has started, it is cancelled. The training threads may all be blocked, e.g. by
+     * cancelled recommenders which do not react to being interrupted. Thus, a job which has not
+     * even started within {@link #MAX_QUEUED_TIMEOUTS} times the given time after it was submitted
+     * is cancelled as well.
+     * 
+     * @param aTimeout
+     *            the time budget in milliseconds or {@code 0} for no limit.
+     */
+    private Outcome awaitTraining(TrainingJob aJob, long aTimeout) throws InterruptedException
+    {
+        while (true) {
+            try {
+                if (aTimeout <= 0 || aJob.future.isDone()) {
+                    return aJob.future.get();
                 }
-                catch (Exception e) {
-                    log.info("[{}][{}]: Training failed ({} ms)", user.getUsername(),
-                            recommender.getName(), (System.currentTimeMillis() - startTime), e);
+                
+                // The time budget only starts once the job is actually running - it may have to
+                // wait for a free training thread first
+                long startTime = aJob.startTime;
+                boolean queued = startTime < 0;
+                long deadline = queued ? aJob.submitTime + MAX_QUEUED_TIMEOUTS * aTimeout
+                        : startTime + aTimeout;
+                long wait = deadline - System.currentTimeMillis();
+                if (wait > 0) {
+                    // While the job is queued, check regularly whether it has started meanwhile
+                    return aJob.future.get(queued ? Math.min(wait, aTimeout) : wait,
+                            MILLISECONDS);
+                }
+                
+                // Cancelling interrupts the training thread or prevents a queued job from
+                // starting at all. Not all recommenders react to being interrupted, so the thread
+                // may remain busy for a while, but its results are discarded. If the job has
+                // already published its results, we let it finish.
+                if (!aJob.cancel()) {
+                    return aJob.future.get();
                 }
+                if (queued) {
+                    log.warn("[{}][{}]: Training could not start within {} ms - cancelled",
+                            getUser().getUsername(), aJob.recommender.getName(),
+                            MAX_QUEUED_TIMEOUTS * aTimeout);
+                }
+                else {
+                    log.warn("[{}][{}]: Training timed out after {} ms - cancelled",
+                            getUser().getUsername(), aJob.recommender.getName(),
+                            aJob.getDuration());
+                }
+                return TIMED_OUT;
+            }
+            catch (TimeoutException e) {
+                // Check again - the job may have started in the meantime
+            }
+            catch (ExecutionException e) {
+                log.info("[{}][{}]: Training failed ({} ms)", getUser().getUsername(),
+                        aJob.recommender.getName(), aJob.getDuration(), e.getCause());
+                return FAILED;
             }
         }
-        recommendationScheduler.enqueue(new PredictionTask(user, getProject()));
     }
 
-    private List<TrainingDocument> readCasses(Project aProject, User aUser)
+    private List<TrainingDocument> listTrainingDocuments(Project aProject, User aUser)
     {
-        List<TrainingDocument> casses = new ArrayList<>();
+        List<TrainingDocument> documents = new ArrayList<>();
         Map<SourceDocument, AnnotationDocument> allDocuments =
                 documentService.listAllDocuments(aProject, aUser);
         for (Map.Entry<SourceDocument, AnnotationDocument> entry : allDocuments.entrySet()) {
@@ -161,10 +285,28 @@ public class TrainingTask
                 AnnotationDocumentState state = annotationDocument != null ?
                         annotationDocument.getState() : AnnotationDocumentState.NEW;
 
-                JCas jCas = documentService.readAnnotationCas(sourceDocument, aUser.getUsername());
-                casses.add(new TrainingDocument(jCas.getCas(), state));
+                long timestamp = documentService
+                        .getAnnotationCasTimestamp(sourceDocument, aUser.getUsername())
+                        .orElse(NO_TIMESTAMP);
+                documents.add(new TrainingDocument(sourceDocument, timestamp, state));
+            } catch (IOException e) {
+                log.error("Cannot read annotation CAS timestamp.", e);
+            }
+        }
+        return documents;
+    }
+
+    private Map<Long, CAS> readCasses(List<TrainingDocument> aDocuments, User aUser)
+    {
+        Map<Long, CAS> casses = new HashMap<>();
+        for (TrainingDocument document : aDocuments) {
+            try {
+                JCas jCas = casCache.read(document.document, aUser.getUsername());
+                casses.put(document.documentId, jCas.getCas());
             } catch (IOException e) {
                 log.error("Cannot read annotation CAS.", e);
+            } catch (UIMAException e) {
+                log.error("Cannot upgrade annotation CAS.", e);
             }
         }
         return casses;
@@ -176,13 +318,179 @@ public class TrainingTask
         return CasUtil.iterator(aCas, type).hasNext();
     }
 
+    private class TrainingJob
+        implements Callable<Outcome>
+    {
+        private final Recommender recommender;
+        private final List<TrainingDocument> documents;
+        private final LazyInitializer<Map<Long, CAS>> casses;
+        private Future<Outcome> future;
+        private final long submitTime = System.currentTimeMillis();
+        private volatile long startTime = -1;
+        private volatile long endTime = -1;
+        private volatile int documentCount = 0;
+        private volatile DocumentCasStream stream;
+        private boolean cancelled = false;
+        private boolean published = false;
+
+        public TrainingJob(Recommender aRecommender, List<TrainingDocument> aDocuments,
+                LazyInitializer<Map<Long, CAS>> aCasses)
+        {
+            recommender = aRecommender;
+            documents = aDocuments;
+            casses = aCasses;
+        }
+        
+        @Override
+        public Outcome call() throws Exception
+        {
+            startTime = System.currentTimeMillis();
+            try {
+                User user = getUser();
+                RecommenderContext context = recommendationService.getContext(user, recommender);
+                // The model is trained into a scratch context and only published to the live
+                // context if the job has not been cancelled in the meantime
+                RecommenderContext trainingContext = new RecommenderContext();
+                RecommendationEngineFactory factory = recommendationService
+                    .getRecommenderFactory(recommender);
+                RecommendationEngine recommendationEngine = factory.build(recommender);
+                
+                List<TrainingDocument> documentsForTraining = documents.stream()
+                        .filter(e -> !recommender.getStatesIgnoredForTraining().contains(e.state))
+                        .collect(Collectors.toList());
+                
+                // If the model in the context (possibly restored from the model store) has been
+                // trained on exactly the same data, there is no need to train again
+                String fingerprint = fingerprint(recommender, documentsForTraining);
+                if (context.isReadyForPrediction()
+                        && fingerprint.equals(context.getDataFingerprint())) {
+                    log.info("[{}][{}]: Model is up to date - skipping training",
+                            user.getUsername(), recommender.getName());
+                    return SKIPPED;
+                }
+                
+                if (recommendationEngine.supportsStreaming()) {
+                    // Documents without target annotations are skipped while streaming
+                    log.info("[{}][{}]: Training model on up to [{}] out of [{}] documents "
+                            + "(streaming) ...", user.getUsername(), recommender.getName(),
+                            documentsForTraining.size(), documents.size());
+                    
+                    stream = new DocumentCasStream(casCache, user.getUsername(),
+                            documentsForTraining.stream()
+                                    .map(e -> e.document)
+                                    .collect(Collectors.toList()),
+                            cas -> containsTargetAnnotation(recommender, cas));
+                    recommendationEngine.train(trainingContext, stream);
+                }
+                else {
+                    Map<Long, CAS> allCasses = casses.get();
+                    List<CAS> cassesForTraining = documentsForTraining.stream()
+                            .map(e -> allCasses.get(e.documentId))
+                            .filter(cas -> cas != null && containsTargetAnnotation(recommender,
+                                    cas))
+                            .collect(Collectors.toList());
+                    documentCount = cassesForTraining.size();
+                    log.info("[{}][{}]: Training model on [{}] out of [{}] documents ...",
+                            user.getUsername(), recommender.getName(), cassesForTraining.size(),
+                            documents.size());
+    
+                    recommendationEngine.train(trainingContext, cassesForTraining);
+                }
+                trainingContext.setDataFingerprint(fingerprint);
+                
+                if (!publish(context, trainingContext)) {
+                    log.info("[{}][{}]: Training cancelled - discarding model",
+                            user.getUsername(), recommender.getName());
+                    return TIMED_OUT;
+                }
+                log.info("[{}][{}]: Training complete ({} ms)", user.getUsername(),
+                        recommender.getName(), (System.currentTimeMillis() - startTime));
+                
+                modelStore.save(user, recommender, recommendationEngine, trainingContext);
+                return SUCCEEDED;
+            }
+            finally {
+                endTime = System.currentTimeMillis();
+            }
+        }
+        
+        /**
+         * Copies the trained model into the live context unless the job has been cancelled.
+         * 
+         * @return whether the model was published.
+         */
+        private synchronized boolean publish(RecommenderContext aContext,
+                RecommenderContext aTrainingContext)
+        {
+            if (cancelled) {
+                return false;
+            }
+            aContext.update(aTrainingContext);
+            published = true;
+            return true;
+        }
+        
+        /**
+         * Cancels the job unless it has already published its model.
+         * 
+         * @return whether the job was cancelled.
+         */
+        public synchronized boolean cancel()
+        {
+            if (published) {
+                return false;
+            }
+            cancelled = true;
+            future.cancel(true);
+            return true;
+        }
+        
+        public int getDocumentCount()
+        {
+            return stream != null ? stream.getDocumentCount() : documentCount;
+        }
+        
+        public long getDuration()
+        {
+            if (startTime < 0) {
+                return 0;
+            }
+            return (endTime < 0 ? System.currentTimeMillis() : endTime) - startTime;
+        }
+    }
+
+    /**
+     * Computes a fingerprint of the configuration of the given recommender and the versions of the
+     * given training documents. If any of these change, the fingerprint changes as well. The
+     * fingerprint does not require reading the CASes, so it also covers documents which do not
+     * contain any annotations of the recommender's layer.
+     */
+    private static String fingerprint(Recommender aRecommender, List<TrainingDocument> aDocuments)
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(aRecommender.getLayer().getId()).append('|');
+        sb.append(aRecommender.getFeature()).append('|');
+        sb.append(aRecommender.getTool()).append('|');
+        sb.append(aRecommender.getTraits()).append('|');
+        aDocuments.stream()
+                .sorted(Comparator.comparingLong(doc -> doc.documentId))
+                .forEach(doc -> sb.append(doc.documentId).append(':').append(doc.timestamp)
+                        .append(';'));
+        return DigestUtils.md5DigestAsHex(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
     private static class TrainingDocument
     {
-        private final CAS cas;
+        private final SourceDocument document;
+        private final long documentId;
+        private final long timestamp;
         private final AnnotationDocumentState state;
 
-        private TrainingDocument(CAS aCas, AnnotationDocumentState aState) {
-            cas = aCas;
+        private TrainingDocument(SourceDocument aDocument, long aTimestamp,
+                AnnotationDocumentState aState) {
+            document = aDocument;
+            documentId = aDocument.getId();
+            timestamp = aTimestamp;
             state = aState;
         }
     }
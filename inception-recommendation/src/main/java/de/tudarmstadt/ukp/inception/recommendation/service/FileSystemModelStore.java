@@ -0,0 +1,214 @@
+/*
+ * Copyright 2018
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.service;
+
+import static de.tudarmstadt.ukp.clarin.webanno.api.ProjectService.PROJECT_FOLDER;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.RepositoryProperties;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+import de.tudarmstadt.ukp.inception.recommendation.api.ModelStore;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngine;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext;
+import de.tudarmstadt.ukp.inception.recommendation.config.RecommenderProperties;
+
+/**
+ * Stores the recommender models in the project folder of the repository, one file per user and
+ * recommender. Each file starts with a small header identifying the tool which wrote the model,
+ * the configuration of the recommender the model was trained for and the fingerprint of the data
+ * it was trained on, followed by the model written by the engine. A model is only restored if it
+ * was written in the current format by the same tool for the same configuration.
+ */
+@Component
+public class FileSystemModelStore
+    implements ModelStore
+{
+    private static final String RECOMMENDER_FOLDER = "recommenders";
+    private static final String MODEL_SUFFIX = ".model";
+
+    // Increment this when changing the header format to make sure old files are ignored
+    private static final int FORMAT_VERSION = 2;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private @Autowired RepositoryProperties repositoryProperties;
+    private @Autowired RecommenderProperties properties;
+
+    @Override
+    public boolean load(User aUser, Recommender aRecommender, RecommendationEngine aEngine,
+            RecommenderContext aContext)
+    {
+        if (!properties.isPersistModels() || !aEngine.supportsModelPersistence()) {
+            return false;
+        }
+
+        File modelFile = getModelFile(aUser, aRecommender);
+        if (!modelFile.exists()) {
+            return false;
+        }
+
+        long start = System.currentTimeMillis();
+        try (DataInputStream is = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(modelFile.toPath())))) {
+            if (is.readInt() != FORMAT_VERSION) {
+                log.info("[{}][{}]: Stored model has an outdated format - ignoring",
+                        aUser.getUsername(), aRecommender.getName());
+                return false;
+            }
+
+            String tool = is.readUTF();
+            if (!tool.equals(aRecommender.getTool())) {
+                log.info("[{}][{}]: Stored model was created by [{}] - ignoring",
+                        aUser.getUsername(), aRecommender.getName(), tool);
+                return false;
+            }
+
+            // E.g. a model trained for a different feature or different traits must not be used
+            String configuration = is.readUTF();
+            if (!configuration.equals(configurationFingerprint(aRecommender))) {
+                log.info("[{}][{}]: Stored model was created for a different configuration - "
+                        + "ignoring", aUser.getUsername(), aRecommender.getName());
+                return false;
+            }
+
+            String fingerprint = is.readUTF();
+            aEngine.readModel(aContext, is);
+            aContext.setDataFingerprint(StringUtils.defaultIfEmpty(fingerprint, null));
+
+            log.info("[{}][{}]: Restored model ({} ms)", aUser.getUsername(),
+                    aRecommender.getName(), System.currentTimeMillis() - start);
+            return true;
+        }
+        catch (Exception e) {
+            log.warn("[{}][{}]: Unable to restore model - discarding it", aUser.getUsername(),
+                    aRecommender.getName(), e);
+            modelFile.delete();
+            return false;
+        }
+    }
+
+    @Override
+    public void save(User aUser, Recommender aRecommender, RecommendationEngine aEngine,
+            RecommenderContext aContext)
+    {
+        if (!properties.isPersistModels() || !aEngine.supportsModelPersistence()) {
+            return;
+        }
+
+        File modelFile = getModelFile(aUser, aRecommender);
+        Path tempFile = null;
+        try {
+            Files.createDirectories(modelFile.getParentFile().toPath());
+
+            // Write to a temporary file first so that a concurrent load never sees a partially
+            // written model
+            tempFile = Files.createTempFile(modelFile.getParentFile().toPath(),
+                    modelFile.getName(), ".tmp");
+            try (DataOutputStream os = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                os.writeInt(FORMAT_VERSION);
+                os.writeUTF(aRecommender.getTool());
+                os.writeUTF(configurationFingerprint(aRecommender));
+                os.writeUTF(StringUtils.defaultString(aContext.getDataFingerprint()));
+                aEngine.writeModel(aContext, os);
+            }
+
+            Files.move(tempFile, modelFile.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+            log.debug("[{}][{}]: Stored model", aUser.getUsername(), aRecommender.getName());
+        }
+        catch (Exception e) {
+            log.warn("[{}][{}]: Unable to store model", aUser.getUsername(),
+                    aRecommender.getName(), e);
+            if (tempFile != null) {
+                tempFile.toFile().delete();
+            }
+        }
+    }
+
+    @Override
+    public void delete(Recommender aRecommender)
+    {
+        File folder = getRecommenderFolder(aRecommender);
+        if (!folder.exists()) {
+            return;
+        }
+
+        try (Stream<Path> paths = Files.walk(folder.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+        catch (IOException e) {
+            log.warn("[{}]: Unable to delete stored models", aRecommender.getName(), e);
+        }
+    }
+
+    /**
+     * Computes a fingerprint of the configuration of the given recommender which affects the
+     * model, i.e. the layer, the feature, the tool and its traits.
+     */
+    private static String configurationFingerprint(Recommender aRecommender)
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(aRecommender.getLayer().getId()).append('|');
+        sb.append(aRecommender.getFeature()).append('|');
+        sb.append(aRecommender.getTool()).append('|');
+        sb.append(aRecommender.getTraits());
+        return DigestUtils.md5DigestAsHex(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private File getRecommenderFolder(Recommender aRecommender)
+    {
+        return new File(repositoryProperties.getPath(),
+                "/" + PROJECT_FOLDER + "/" + aRecommender.getProject().getId() + "/"
+                        + RECOMMENDER_FOLDER + "/" + aRecommender.getId());
+    }
+
+    private File getModelFile(User aUser, Recommender aRecommender)
+    {
+        try {
+            return new File(getRecommenderFolder(aRecommender),
+                    URLEncoder.encode(aUser.getUsername(), "UTF-8") + MODEL_SUFFIX);
+        }
+        catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported
+            throw new IllegalStateException(e);
+        }
+    }
+}
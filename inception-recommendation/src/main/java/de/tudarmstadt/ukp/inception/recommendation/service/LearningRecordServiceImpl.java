@@ -18,13 +18,19 @@
 package de.tudarmstadt.ukp.inception.recommendation.service;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
 
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
@@ -34,6 +40,7 @@ import de.tudarmstadt.ukp.inception.recommendation.api.LearningRecordService;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.AnnotationSuggestion;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecord;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecordChangeLocation;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecordIndex;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecordType;
 
 @Component(LearningRecordService.SERVICE_NAME)
@@ -43,6 +50,13 @@ public class LearningRecordServiceImpl
     @PersistenceContext
     private EntityManager entityManager;
 
+    // Indexes are built lazily and updated in place when records are created or deleted. Any
+    // modification which cannot be applied in place drops the affected indexes so they get rebuilt
+    // on the next access. All updates go through the compute methods of the map so they cannot
+    // interleave with the (re)building of an index. Updates are only applied once the transaction
+    // making the modification has been committed.
+    private final Map<IndexKey, LearningRecordIndex> indexes = new ConcurrentHashMap<>();
+
     @Transactional
     @Override
     public void logRecord(SourceDocument aDocument, String aUsername,
@@ -74,7 +88,7 @@ public class LearningRecordServiceImpl
                 "layer = :layer AND",
                 "annotationFeature = :annotationFeature AND",
                 "annotation = :annotation");
-        entityManager.createQuery(query)
+        int deleted = entityManager.createQuery(query)
                 .setParameter("user", aUsername)
                 .setParameter("sourceDocument", aDocument)
                 .setParameter("offsetCharacterBegin", aSuggestion.getBegin())
@@ -98,6 +112,12 @@ public class LearningRecordServiceImpl
         record.setChangeLocation(aLocation);
         record.setAnnotationFeature(aFeature);
 
+        // A new record replaces the deleted duplicates in the index unless it is not indexed
+        // itself
+        if (deleted > 0 && aUserAction == LearningRecordType.SHOWN) {
+            invalidateIndex(aUsername, aLayer);
+        }
+        
         create(record);
     }
 
@@ -130,6 +150,14 @@ public class LearningRecordServiceImpl
         return listRecords(aUsername, aLayer, 0);
     }
 
+    @Transactional
+    @Override
+    public LearningRecordIndex getRecordIndex(String aUsername, AnnotationLayer aLayer)
+    {
+        return indexes.computeIfAbsent(new IndexKey(aUsername, aLayer),
+            key -> new LearningRecordIndex(listRecords(aUsername, aLayer)));
+    }
+
     @Transactional
     @Override
     public LearningRecord getRecordById(long recordId) {
@@ -149,6 +177,9 @@ public class LearningRecordServiceImpl
             .setParameter("document", document)
             .setParameter("user",user)
             .executeUpdate();
+        
+        // We do not know which layers were affected
+        afterCommit(() -> indexes.keySet().removeIf(key -> key.user.equals(user)));
     }
 
     @Override
@@ -156,6 +187,12 @@ public class LearningRecordServiceImpl
     public void create(LearningRecord learningRecord) {
         entityManager.persist(learningRecord);
         entityManager.flush();
+        
+        afterCommit(() -> indexes.computeIfPresent(new IndexKey(learningRecord),
+            (key, index) -> {
+                index.add(learningRecord);
+                return index;
+            }));
     }
 
     @Override
@@ -163,6 +200,8 @@ public class LearningRecordServiceImpl
     public void update(LearningRecord learningRecord) {
         entityManager.merge(learningRecord);
         entityManager.flush();
+        
+        invalidateIndex(learningRecord.getUser(), learningRecord.getLayer());
     }
 
     @Override
@@ -170,6 +209,9 @@ public class LearningRecordServiceImpl
     public void delete(LearningRecord learningRecord) {
         entityManager.remove(entityManager.contains(learningRecord) ? learningRecord :
             entityManager.merge(learningRecord));
+        
+        afterCommit(() -> indexes.computeIfPresent(new IndexKey(learningRecord),
+            (key, index) -> index.remove(learningRecord) ? index : null));
     }
 
     @Override
@@ -212,5 +254,70 @@ public class LearningRecordServiceImpl
                 .setParameter("layer", aLayer)
                 .setParameter("action", LearningRecordType.SKIPPED)
                 .executeUpdate();
+        
+        invalidateIndex(aUser.getUsername(), aLayer);
+    }
+    
+    private void invalidateIndex(String aUsername, AnnotationLayer aLayer)
+    {
+        IndexKey key = new IndexKey(aUsername, aLayer);
+        afterCommit(() -> indexes.remove(key));
+    }
+    
+    /**
+     * Runs the given index update after the current transaction has been committed. If the
+     * transaction is rolled back, the update is dropped. Outside of a transaction, the update is
+     * run immediately.
+     */
+    private void afterCommit(Runnable aUpdate)
+    {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            aUpdate.run();
+            return;
+        }
+        
+        TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronizationAdapter()
+                {
+                    @Override
+                    public void afterCommit()
+                    {
+                        aUpdate.run();
+                    }
+                });
+    }
+    
+    private static class IndexKey
+    {
+        private final String user;
+        private final long layerId;
+
+        public IndexKey(String aUser, AnnotationLayer aLayer)
+        {
+            user = aUser;
+            layerId = aLayer.getId();
+        }
+
+        public IndexKey(LearningRecord aRecord)
+        {
+            this(aRecord.getUser(), aRecord.getLayer());
+        }
+
+        @Override
+        public boolean equals(final Object other)
+        {
+            if (!(other instanceof IndexKey)) {
+                return false;
+            }
+            IndexKey castOther = (IndexKey) other;
+            return new EqualsBuilder().append(user, castOther.user)
+                    .append(layerId, castOther.layerId).isEquals();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return new HashCodeBuilder().append(user).append(layerId).toHashCode();
+        }
     }
 }
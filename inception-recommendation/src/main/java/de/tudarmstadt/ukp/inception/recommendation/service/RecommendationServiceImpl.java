@@ -62,6 +62,7 @@ import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
 import de.tudarmstadt.ukp.clarin.webanno.security.UserDao;
 import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+import de.tudarmstadt.ukp.inception.recommendation.api.ModelStore;
 import de.tudarmstadt.ukp.inception.recommendation.api.RecommendationService;
 import de.tudarmstadt.ukp.inception.recommendation.api.RecommenderFactoryRegistry;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Predictions;
@@ -70,6 +71,8 @@ import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineFactory;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext;
 import de.tudarmstadt.ukp.inception.recommendation.event.RecommenderDeletedEvent;
+import de.tudarmstadt.ukp.inception.recommendation.scheduling.CasSnapshotCache;
+import de.tudarmstadt.ukp.inception.recommendation.scheduling.EvaluationScoreCache;
 import de.tudarmstadt.ukp.inception.recommendation.scheduling.RecommendationScheduler;
 
 /**
@@ -87,6 +90,9 @@ public class RecommendationServiceImpl
     private @Autowired UserDao userRepository;
     private @Autowired RecommenderFactoryRegistry recommenderFactoryRegistry;
     private @Autowired RecommendationScheduler scheduler;
+    private @Autowired CasSnapshotCache casCache;
+    private @Autowired EvaluationScoreCache scoreCache;
+    private @Autowired ModelStore modelStore;
     
     private Map<RecommendationStateKey, RecommendationState> states = new ConcurrentHashMap<>();
 
@@ -146,6 +152,8 @@ public class RecommendationServiceImpl
         }
         else {
             entityManager.merge(aRecommender);
+            // Scores of the previous configuration can never be used again
+            scoreCache.evict(aRecommender);
         }
     }
 
@@ -160,6 +168,7 @@ public class RecommendationServiceImpl
         }
 
         entityManager.remove(settings);
+        scoreCache.evict(aRecommender);
     }
 
     @Override
@@ -243,14 +252,16 @@ public class RecommendationServiceImpl
     @EventListener
     public void afterAnnotationUpdate(AfterAnnotationUpdateEvent aEvent)
     {
-        triggerTrainingAndClassification(aEvent.getDocument().getUser(),
-                aEvent.getDocument().getProject());
+        User user = userRepository.get(aEvent.getDocument().getUser());
+        scheduler.enqueueTaskAfterEdit(user, aEvent.getDocument().getProject(),
+                aEvent.getDocument().getDocument());
     }
 
     @EventListener
     public void onDocumentOpen(DocumentOpenedEvent aEvent)
     {
-        triggerTrainingAndClassification(aEvent.getUser(), aEvent.getDocument().getProject());
+        triggerTrainingAndClassification(aEvent.getUser(), aEvent.getDocument().getProject(),
+                aEvent.getDocument());
     }
 
     @EventListener
@@ -260,13 +271,20 @@ public class RecommendationServiceImpl
         synchronized (state) {
             state.removePredictions(aEvent.getRecommender());
         }
+        modelStore.delete(aEvent.getRecommender());
         triggerTrainingAndClassification(aEvent.getUser(), aEvent.getProject());
     }
     
     private void triggerTrainingAndClassification(String aUser, Project aProject)
+    {
+        triggerTrainingAndClassification(aUser, aProject, null);
+    }
+    
+    private void triggerTrainingAndClassification(String aUser, Project aProject,
+            SourceDocument aCurrentDocument)
     {
         User user = userRepository.get(aUser);
-        scheduler.enqueueTask(user, aProject);
+        scheduler.enqueueTask(user, aProject, aCurrentDocument);
     }
     
     @EventListener
@@ -279,6 +297,8 @@ public class RecommendationServiceImpl
             String username = (String) info.getPrincipal();
             clearState(username);
             scheduler.stopAllTasksForUser(username);
+            casCache.evict(username);
+            scoreCache.evict(username);
         }
     }
 
@@ -288,7 +308,7 @@ public class RecommendationServiceImpl
         String userName = aEvent.getDocument().getUser();
         Project project = aEvent.getDocument().getProject();
         clearState(userName);
-        triggerTrainingAndClassification(userName, project);
+        triggerTrainingAndClassification(userName, project, aEvent.getDocument().getDocument());
     }
 
     @Override
@@ -305,6 +325,12 @@ public class RecommendationServiceImpl
         state.setPreferences(aPreferences);
     }
     
+    @Override
+    public int getPendingEditCount(User aUser, Project aProject)
+    {
+        return scheduler.getPendingEditCount(aProject, aUser.getUsername());
+    }
+    
     @Override
     public RecommendationEngineFactory getRecommenderFactory(Recommender aRecommender)
     {
@@ -341,9 +367,30 @@ public class RecommendationServiceImpl
     public RecommenderContext getContext(User aUser, Recommender aRecommender)
     {
         RecommendationState state = getState(aUser.getUsername(), aRecommender.getProject());
-        synchronized (state) {
-            return state.getContext(aRecommender);
+        RecommenderContext context = state.getContext(aRecommender);
+        if (context != null) {
+            return context;
+        }
+        
+        // Restoring a stored model may take a while, so it is done without holding the lock on
+        // the state. If two threads restore the same context at the same time, the one which is
+        // published first wins.
+        return state.putContextIfAbsent(aRecommender, restoreContext(aUser, aRecommender));
+    }
+    
+    /**
+     * Creates a new context for the given recommender. If a model has been stored for the
+     * recommender, it is restored into the context so that predictions can be made right away
+     * without having to wait for the training.
+     */
+    private RecommenderContext restoreContext(User aUser, Recommender aRecommender)
+    {
+        RecommenderContext context = new RecommenderContext();
+        RecommendationEngineFactory factory = getRecommenderFactory(aRecommender);
+        if (factory != null) {
+            modelStore.load(aUser, aRecommender, factory.build(aRecommender), context);
         }
+        return context;
     }
     
     @Override
@@ -483,14 +530,27 @@ public class RecommendationServiceImpl
         }
         
         /**
-         * Returns the context for the given recommender or creates a new one if there is none so
-         * far.
+         * Returns the context for the given recommender or {@code null} if there is none so far.
          */
         public RecommenderContext getContext(Recommender aRecommender)
         {
             Validate.notNull(aRecommender, "Recommender must be specified");
             
-            return contexts.computeIfAbsent(aRecommender, (v) -> new RecommenderContext());
+            return contexts.get(aRecommender);
+        }
+        
+        /**
+         * Sets the context for the given recommender unless there already is one.
+         * 
+         * @return the context of the recommender after the operation.
+         */
+        public RecommenderContext putContextIfAbsent(Recommender aRecommender,
+                RecommenderContext aContext)
+        {
+            Validate.notNull(aRecommender, "Recommender must be specified");
+            
+            RecommenderContext existing = contexts.putIfAbsent(aRecommender, aContext);
+            return existing != null ? existing : aContext;
         }
                 
         public void removePredictions(Recommender aRecommender)
@@ -17,6 +17,7 @@
  */
 package de.tudarmstadt.ukp.inception.recommendation.sidebar;
 
+import org.apache.wicket.markup.html.basic.Label;
 import org.apache.wicket.markup.html.form.CheckBox;
 import org.apache.wicket.markup.html.form.Form;
 import org.apache.wicket.markup.html.form.NumberTextField;
@@ -28,6 +29,8 @@ import de.tudarmstadt.ukp.clarin.webanno.api.JCasProvider;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.action.AnnotationActionHandler;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.model.AnnotatorState;
 import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaAjaxButton;
+import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaBehavior;
+import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaModel;
 import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaModelAdapter;
 import de.tudarmstadt.ukp.clarin.webanno.ui.annotation.AnnotationPage;
 import de.tudarmstadt.ukp.clarin.webanno.ui.annotation.sidebar.AnnotationSidebar_ImplBase;
@@ -63,6 +66,13 @@ public class RecommendationSidebar
 
         form.add(new CheckBox("showAllPredictions"));
 
+        IModel<Integer> pendingEdits = LambdaModel.of(() -> recommendationService
+                .getPendingEditCount(aModel.getObject().getUser(),
+                        aModel.getObject().getProject()));
+        form.add(new Label("pendingEdits", pendingEdits)
+                .add(LambdaBehavior.onConfigure(_this -> _this
+                        .setVisible(pendingEdits.getObject() > 0))));
+
         form.add(new LambdaAjaxButton<>("save", (_target, _form) -> 
                 aAnnotationPage.actionRefreshDocument(_target)));
         
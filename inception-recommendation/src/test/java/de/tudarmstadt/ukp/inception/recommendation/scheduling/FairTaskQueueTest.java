@@ -0,0 +1,147 @@
+/*
+ * Copyright 2018
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.scheduling;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+import de.tudarmstadt.ukp.inception.recommendation.scheduling.tasks.Task;
+
+public class FairTaskQueueTest
+{
+    private Project project;
+    private User alice;
+    private User bob;
+
+    @Before
+    public void setup()
+    {
+        project = new Project();
+        project.setId(1l);
+        project.setName("project");
+        alice = new User("alice");
+        bob = new User("bob");
+    }
+
+    @Test
+    public void thatTasksAreHandedOutRoundRobinAcrossUsers() throws Exception
+    {
+        FairTaskQueue queue = new FairTaskQueue(10, 10);
+        Task a1 = new DummyTask(alice, project, 1);
+        Task a2 = new DummyTask(alice, project, 2);
+        Task a3 = new DummyTask(alice, project, 3);
+        Task b1 = new DummyTask(bob, project, 1);
+
+        queue.offer(a1);
+        queue.offer(a2);
+        queue.offer(a3);
+        queue.offer(b1);
+
+        assertThat(queue.take()).isSameAs(a1);
+        assertThat(queue.take()).isSameAs(b1);
+        assertThat(queue.take()).isSameAs(a2);
+        assertThat(queue.take()).isSameAs(a3);
+        assertThat(queue.getRunningCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void thatConcurrencyPerUserIsBounded() throws Exception
+    {
+        FairTaskQueue queue = new FairTaskQueue(10, 1);
+        Task a1 = new DummyTask(alice, project, 1);
+        Task a2 = new DummyTask(alice, project, 2);
+        Task b1 = new DummyTask(bob, project, 1);
+
+        queue.offer(a1);
+        queue.offer(a2);
+        queue.offer(b1);
+
+        assertThat(queue.take()).isSameAs(a1);
+        // a2 must wait until a1 has completed
+        assertThat(queue.take()).isSameAs(b1);
+        assertThat(queue.hasTasks(project, "alice")).isTrue();
+
+        queue.complete(a1, true);
+        assertThat(queue.take()).isSameAs(a2);
+        assertThat(queue.getCompletedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void thatFullQueueRejectsTasks()
+    {
+        FairTaskQueue queue = new FairTaskQueue(2, 1);
+
+        assertThat(queue.offer(new DummyTask(alice, project, 1))).isTrue();
+        assertThat(queue.offer(new DummyTask(alice, project, 2))).isTrue();
+        assertThat(queue.offer(new DummyTask(bob, project, 1))).isFalse();
+
+        assertThat(queue.size()).isEqualTo(2);
+        assertThat(queue.getRejectedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void thatPendingTasksCanBeRemoved() throws Exception
+    {
+        FairTaskQueue queue = new FairTaskQueue(10, 1);
+        Task b1 = new DummyTask(bob, project, 1);
+
+        queue.offer(new DummyTask(alice, project, 1));
+        queue.offer(new DummyTask(alice, project, 2));
+        queue.offer(b1);
+
+        queue.removeIf(t -> t.getUser().getUsername().equals("alice"));
+
+        assertThat(queue.size()).isEqualTo(1);
+        assertThat(queue.hasTasks(project, "alice")).isFalse();
+        assertThat(queue.take()).isSameAs(b1);
+    }
+
+    private static class DummyTask
+        extends Task
+    {
+        private final int id;
+
+        public DummyTask(User aUser, Project aProject, int aId)
+        {
+            super(aProject, aUser);
+            id = aId;
+        }
+
+        @Override
+        public void run()
+        {
+            // Nothing to do
+        }
+
+        @Override
+        public boolean equals(Object aObj)
+        {
+            return super.equals(aObj) && id == ((DummyTask) aObj).id;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return super.hashCode() * 31 + id;
+        }
+    }
+}
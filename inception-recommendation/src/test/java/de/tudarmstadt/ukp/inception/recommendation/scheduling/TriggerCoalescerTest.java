@@ -0,0 +1,153 @@
+/*
+ * Copyright 2018
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.scheduling;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+import de.tudarmstadt.ukp.inception.recommendation.scheduling.TriggerCoalescer.Trigger;
+
+public class TriggerCoalescerTest
+{
+    private ScheduledExecutorService timer;
+    private List<Trigger> rounds;
+    private Project project;
+    private User alice;
+    private SourceDocument document;
+
+    @Before
+    public void setup()
+    {
+        timer = Executors.newSingleThreadScheduledExecutor();
+        rounds = new CopyOnWriteArrayList<>();
+        project = new Project();
+        project.setId(1l);
+        project.setName("project");
+        alice = new User("alice");
+        document = new SourceDocument();
+    }
+
+    @After
+    public void tearDown()
+    {
+        timer.shutdownNow();
+    }
+
+    @Test
+    public void thatEditsAreCollapsedUntilThresholdIsReached()
+    {
+        // Long quiet period so only the threshold can start a round during the test
+        TriggerCoalescer sut = new TriggerCoalescer(timer, 60_000, 3, rounds::add);
+
+        sut.edit(alice, project, document);
+        sut.edit(alice, project, document);
+
+        assertThat(rounds).isEmpty();
+        assertThat(sut.getPendingEdits(project, "alice")).isEqualTo(2);
+
+        sut.edit(alice, project, document);
+
+        assertThat(rounds).hasSize(1);
+        assertThat(rounds.get(0).getEdits()).isEqualTo(3);
+        assertThat(sut.getPendingEdits(project, "alice")).isEqualTo(3);
+        assertThat(sut.getUnlearnedEdits(project, "alice")).isEqualTo(3);
+    }
+
+    @Test
+    public void thatRoundStartsAfterQuietPeriod() throws Exception
+    {
+        CountDownLatch started = new CountDownLatch(1);
+        TriggerCoalescer sut = new TriggerCoalescer(timer, 50, 100, trigger -> {
+            rounds.add(trigger);
+            started.countDown();
+        });
+
+        sut.edit(alice, project, document);
+        sut.edit(alice, project, document);
+
+        assertThat(started.await(10, SECONDS)).isTrue();
+        assertThat(rounds).hasSize(1);
+        assertThat(rounds.get(0).getEdits()).isEqualTo(2);
+        assertThat(rounds.get(0).getDocument()).isSameAs(document);
+    }
+
+    @Test
+    public void thatFlushIncludesPendingEdits()
+    {
+        TriggerCoalescer sut = new TriggerCoalescer(timer, 60_000, 100, rounds::add);
+
+        sut.edit(alice, project, document);
+        sut.flush(alice, project, null);
+
+        assertThat(rounds).hasSize(1);
+        assertThat(rounds.get(0).getEdits()).isEqualTo(1);
+        assertThat(rounds.get(0).getDocument()).isSameAs(document);
+        assertThat(sut.getUnlearnedEdits(project, "alice")).isEqualTo(1);
+    }
+
+    @Test
+    public void thatEditsRemainPendingUntilLearned()
+    {
+        TriggerCoalescer sut = new TriggerCoalescer(timer, 60_000, 100, rounds::add);
+
+        sut.edit(alice, project, document);
+        sut.edit(alice, project, document);
+        sut.flush(alice, project, null);
+        
+        // The training starts and obtains the edits it is going to learn
+        int edits = sut.getUnlearnedEdits(project, "alice");
+        
+        // Further edits are made and passed on while the training is running
+        sut.edit(alice, project, document);
+        sut.flush(alice, project, null);
+        sut.edit(alice, project, document);
+        
+        assertThat(sut.getPendingEdits(project, "alice")).isEqualTo(4);
+        
+        sut.learned(project, "alice", edits);
+
+        assertThat(edits).isEqualTo(2);
+        assertThat(sut.getUnlearnedEdits(project, "alice")).isEqualTo(1);
+        assertThat(sut.getPendingEdits(project, "alice")).isEqualTo(2);
+    }
+
+    @Test
+    public void thatCancelDropsPendingEdits()
+    {
+        TriggerCoalescer sut = new TriggerCoalescer(timer, 60_000, 100, rounds::add);
+
+        sut.edit(alice, project, document);
+        sut.cancel("alice");
+
+        assertThat(rounds).isEmpty();
+        assertThat(sut.getPendingEdits(project, "alice")).isEqualTo(0);
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright 2018
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.search;
+
+import static de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState.FINISHED;
+import static de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState.IGNORE;
+import static java.util.Arrays.asList;
+import static org.apache.commons.lang3.Validate.isTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.jcas.JCas;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
+import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.adapter.SpanAdapter;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterAnnotationUpdateEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.exception.AnnotationException;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+
+/**
+ * Background job which sets a feature value on span annotations at the locations of a set of
+ * search results. The results are grouped by document so that the annotation CAS of each
+ * document is read and written only once. If there is already an annotation of the layer at the
+ * location of a result, its feature value is updated instead of creating a new annotation.
+ * <p>
+ * Documents which the user has marked as finished or which are ignored for the user are not
+ * touched. Neither are documents which have been modified while the job was annotating them - the
+ * results in such documents are skipped instead of overwriting the concurrent changes.
+ * <p>
+ * The job runs with the security context of the thread which created it, so that the changes are
+ * attributed to the user who started the job, e.g. in the event log.
+ * <p>
+ * The job can be cancelled. Documents which have already been written keep their annotations.
+ */
+public class BulkAnnotationJob
+    implements Runnable
+{
+    public enum State
+    {
+        QUEUED, RUNNING, COMPLETED, CANCELLED, FAILED
+    }
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final DocumentService documentService;
+    private final AnnotationSchemaService annotationService;
+    private final ApplicationEventPublisher applicationEventPublisher;
+
+    private final User user;
+    private final Project project;
+    private final AnnotationLayer layer;
+    private final AnnotationFeature feature;
+    private final String value;
+    private final Map<String, List<SearchResult>> resultsByDocument;
+    private final int totalResults;
+    private final SecurityContext securityContext;
+
+    private volatile State state = State.QUEUED;
+    private volatile boolean cancelled = false;
+    private final AtomicInteger processedDocuments = new AtomicInteger();
+    private final AtomicInteger annotatedResults = new AtomicInteger();
+    private final AtomicInteger failedResults = new AtomicInteger();
+    private final AtomicInteger skippedResults = new AtomicInteger();
+    private final Set<Long> annotatedDocuments = ConcurrentHashMap.newKeySet();
+
+    public BulkAnnotationJob(DocumentService aDocumentService,
+            AnnotationSchemaService aAnnotationService,
+            ApplicationEventPublisher aApplicationEventPublisher, User aUser, Project aProject,
+            List<SearchResult> aResults, AnnotationLayer aLayer, AnnotationFeature aFeature,
+            String aValue)
+    {
+        isTrue(WebAnnoConst.SPAN_TYPE.equals(aLayer.getType()),
+                "Only span layers can be used for bulk annotation");
+        isTrue(!aLayer.isReadonly(), "Read-only layers cannot be used for bulk annotation");
+
+        documentService = aDocumentService;
+        annotationService = aAnnotationService;
+        applicationEventPublisher = aApplicationEventPublisher;
+        user = aUser;
+        project = aProject;
+        layer = aLayer;
+        feature = aFeature;
+        value = aValue;
+
+        // The search results only carry the document title, which is unique within a project.
+        // Overlapping queries may yield the same location several times, but it is annotated once.
+        resultsByDocument = new LinkedHashMap<>();
+        Set<List<Object>> locations = new HashSet<>();
+        for (SearchResult result : aResults) {
+            if (locations.add(asList(result.getDocumentTitle(), result.getOffsetStart(),
+                    result.getOffsetEnd()))) {
+                resultsByDocument
+                        .computeIfAbsent(result.getDocumentTitle(), k -> new ArrayList<>())
+                        .add(result);
+            }
+        }
+        totalResults = locations.size();
+
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        context.setAuthentication(SecurityContextHolder.getContext().getAuthentication());
+        securityContext = context;
+    }
+
+    @Override
+    public void run()
+    {
+        if (cancelled) {
+            return;
+        }
+
+        state = State.RUNNING;
+        long start = System.currentTimeMillis();
+
+        SecurityContext previousContext = SecurityContextHolder.getContext();
+        SecurityContextHolder.setContext(securityContext);
+        try {
+            for (Map.Entry<String, List<SearchResult>> e : resultsByDocument.entrySet()) {
+                if (cancelled) {
+                    break;
+                }
+
+                try {
+                    annotateDocument(e.getKey(), e.getValue());
+                }
+                catch (Exception ex) {
+                    log.error("Unable to annotate search results in document [{}] of project "
+                            + "[{}]({}) for user [{}]", e.getKey(), project.getName(),
+                            project.getId(), user.getUsername(), ex);
+                    failedResults.addAndGet(e.getValue().size());
+                }
+
+                processedDocuments.incrementAndGet();
+            }
+
+            state = cancelled ? State.CANCELLED : State.COMPLETED;
+        }
+        catch (RuntimeException e) {
+            state = State.FAILED;
+            throw e;
+        }
+        finally {
+            SecurityContextHolder.setContext(previousContext);
+
+            log.info("Bulk annotation in project [{}]({}) for user [{}] {}: {} of {} results "
+                    + "annotated in {} of {} documents ({} failed, {} skipped) in {} ms",
+                    project.getName(), project.getId(), user.getUsername(),
+                    state.name().toLowerCase(), annotatedResults.get(), totalResults,
+                    processedDocuments.get(), resultsByDocument.size(), failedResults.get(),
+                    skippedResults.get(), System.currentTimeMillis() - start);
+        }
+    }
+
+    private void annotateDocument(String aDocumentTitle, List<SearchResult> aResults)
+        throws Exception
+    {
+        SourceDocument sourceDocument = documentService.getSourceDocument(project,
+                aDocumentTitle);
+        AnnotationDocument annotationDocument = documentService
+                .createOrGetAnnotationDocument(sourceDocument, user);
+
+        // Finished and ignored documents are closed for editing by the annotator
+        if (FINISHED.equals(annotationDocument.getState())
+                || IGNORE.equals(annotationDocument.getState())) {
+            log.info("Not annotating search results in document [{}] which is {} for user [{}]",
+                    aDocumentTitle, annotationDocument.getState(), user.getUsername());
+            skippedResults.addAndGet(aResults.size());
+            return;
+        }
+
+        Optional<Long> timestampBeforeRead = documentService
+                .getAnnotationCasTimestamp(sourceDocument, user.getUsername());
+        JCas jcas = documentService.readAnnotationCas(annotationDocument);
+        Optional<Long> timestamp = documentService.getAnnotationCasTimestamp(sourceDocument,
+                user.getUsername());
+        // Reading the CAS of a document which has never been opened creates its CAS file, so
+        // only a timestamp which existed before can have been changed by a concurrent write
+        if (timestampBeforeRead.isPresent() && !timestampBeforeRead.equals(timestamp)) {
+            skipConcurrentlyModifiedDocument(aDocumentTitle, aResults.size());
+            return;
+        }
+
+        annotationService.upgradeCasIfRequired(jcas.getCas(), sourceDocument,
+                user.getUsername());
+
+        SpanAdapter adapter = (SpanAdapter) annotationService.getAdapter(layer);
+        Type type = jcas.getTypeSystem().getType(adapter.getAnnotationTypeName());
+
+        List<AnnotationFS> annotations = new ArrayList<>();
+        for (SearchResult result : aResults) {
+            try {
+                // Update an existing annotation at the location or create a new one
+                AnnotationFS existing = WebAnnoCasUtil.selectSingleFsAt(jcas, type,
+                        result.getOffsetStart(), result.getOffsetEnd());
+                int address = existing != null ? WebAnnoCasUtil.getAddr(existing)
+                        : adapter.add(sourceDocument, user.getUsername(), jcas,
+                                result.getOffsetStart(), result.getOffsetEnd());
+                adapter.setFeatureValue(sourceDocument, user.getUsername(), jcas, address,
+                        feature, value);
+                annotations.add(WebAnnoCasUtil.selectByAddr(jcas, AnnotationFS.class, address));
+            }
+            catch (AnnotationException e) {
+                // E.g. if the layer does not allow annotations crossing sentence boundaries
+                log.debug("Unable to annotate search result [{}-{}] in document [{}]: {}",
+                        result.getOffsetStart(), result.getOffsetEnd(), aDocumentTitle,
+                        e.getMessage());
+                failedResults.incrementAndGet();
+            }
+        }
+
+        if (annotations.isEmpty()) {
+            return;
+        }
+
+        // The annotator may have edited the document while the results were being annotated
+        if (!timestamp.equals(documentService.getAnnotationCasTimestamp(sourceDocument,
+                user.getUsername()))) {
+            // The results which could not be annotated anyway have already been counted as failed
+            skipConcurrentlyModifiedDocument(aDocumentTitle, annotations.size());
+            return;
+        }
+
+        documentService.writeAnnotationCas(jcas, annotationDocument, true);
+        annotatedDocuments.add(sourceDocument.getId());
+        annotatedResults.addAndGet(annotations.size());
+
+        // Let the listeners, e.g. the search index and the recommenders, know about the changes.
+        // They only act on the document as a whole, so a single event for the last annotation
+        // covers all changes in the document.
+        applicationEventPublisher.publishEvent(new AfterAnnotationUpdateEvent(this,
+                annotationDocument, jcas, annotations.get(annotations.size() - 1)));
+    }
+
+    private void skipConcurrentlyModifiedDocument(String aDocumentTitle, int aSkippedResults)
+    {
+        log.info("Not annotating search results in document [{}] which has been modified "
+                + "concurrently by user [{}]", aDocumentTitle, user.getUsername());
+        skippedResults.addAndGet(aSkippedResults);
+    }
+
+    /**
+     * Requests the job to stop. The document which is being annotated at the time is completed
+     * and written, but no further documents are processed.
+     */
+    public void cancel()
+    {
+        cancelled = true;
+        if (state == State.QUEUED) {
+            state = State.CANCELLED;
+        }
+    }
+
+    public boolean isDone()
+    {
+        return state != State.QUEUED && state != State.RUNNING;
+    }
+
+    public State getState()
+    {
+        return state;
+    }
+
+    public User getUser()
+    {
+        return user;
+    }
+
+    public Project getProject()
+    {
+        return project;
+    }
+
+    public int getTotalDocuments()
+    {
+        return resultsByDocument.size();
+    }
+
+    public int getProcessedDocuments()
+    {
+        return processedDocuments.get();
+    }
+
+    public int getTotalResults()
+    {
+        return totalResults;
+    }
+
+    public int getAnnotatedResults()
+    {
+        return annotatedResults.get();
+    }
+
+    public int getFailedResults()
+    {
+        return failedResults.get();
+    }
+
+    /**
+     * @return the number of results which were not annotated because their document was finished,
+     *         ignored or modified concurrently.
+     */
+    public int getSkippedResults()
+    {
+        return skippedResults.get();
+    }
+
+    /**
+     * @return whether the job has written annotations to the given document.
+     */
+    public boolean isDocumentAnnotated(SourceDocument aDocument)
+    {
+        return annotatedDocuments.contains(aDocument.getId());
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.search;
+
+import java.io.Serializable;
+
+/**
+ * A count from a statistics query on the index. Each count refers to one indexed document, i.e.
+ * to the annotation document of a user or to a source document which is indexed with an empty
+ * user.
+ */
+public class CountResult
+    implements Serializable
+{
+    private static final long serialVersionUID = 5830125513416290614L;
+
+    private final long documentId;
+    private final String documentTitle;
+    private final String user;
+    private final String value;
+    private final long count;
+
+    public CountResult(long aDocumentId, String aDocumentTitle, String aUser, String aValue,
+            long aCount)
+    {
+        documentId = aDocumentId;
+        documentTitle = aDocumentTitle;
+        user = aUser;
+        value = aValue;
+        count = aCount;
+    }
+
+    /**
+     * @return the ID of the source document.
+     */
+    public long getDocumentId()
+    {
+        return documentId;
+    }
+
+    public String getDocumentTitle()
+    {
+        return documentTitle;
+    }
+
+    /**
+     * @return the annotator or an empty string if the count refers to the source document.
+     */
+    public String getUser()
+    {
+        return user;
+    }
+
+    /**
+     * @return the counted feature value or {@code null} if the count refers to the hits of a query.
+     */
+    public String getValue()
+    {
+        return value;
+    }
+
+    public long getCount()
+    {
+        return count;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("[%d] %s / %s / %s: %d", documentId, documentTitle, user, value,
+                count);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.search;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A page of the results of a query together with the total number of hits of the query.
+ */
+public class SearchResultPage
+    implements Serializable
+{
+    private static final long serialVersionUID = -3906317745196512893L;
+
+    private final List<SearchResult> results;
+    private final long offset;
+    private final long totalHits;
+
+    public SearchResultPage(List<SearchResult> aResults, long aOffset, long aTotalHits)
+    {
+        results = aResults;
+        offset = aOffset;
+        totalHits = aTotalHits;
+    }
+
+    /**
+     * @return the results on this page.
+     */
+    public List<SearchResult> getResults()
+    {
+        return results;
+    }
+
+    /**
+     * @return the number of hits preceding this page.
+     */
+    public long getOffset()
+    {
+        return offset;
+    }
+
+    /**
+     * @return the number of hits of the query over all pages.
+     */
+    public long getTotalHits()
+    {
+        return totalHits;
+    }
+
+    public boolean hasPrevious()
+    {
+        return offset > 0;
+    }
+
+    public boolean hasNext()
+    {
+        return offset + results.size() < totalHits;
+    }
+}
@@ -19,10 +19,13 @@ package de.tudarmstadt.ukp.inception.search;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Optional;
 
 import org.apache.uima.jcas.JCas;
 
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
 import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
@@ -35,6 +38,47 @@ public interface SearchService
     List<SearchResult> query(User aUser, Project aProject, String aQuery)
         throws IOException, ExecutionException;
 
+    /**
+     * Executes a query and returns up to {@code aLimit} results starting at the hit with the given
+     * offset, along with the total number of hits.
+     */
+    SearchResultPage query(User aUser, Project aProject, String aQuery, long aOffset, int aLimit)
+        throws IOException, ExecutionException;
+
+    /**
+     * Counts the hits of a query per indexed document, i.e. per source document and annotator.
+     * Only the documents visible to the user in {@link #query} are counted. The hits themselves
+     * are not retrieved.
+     */
+    List<CountResult> countQueryHits(User aUser, Project aProject, String aQuery)
+        throws IOException, ExecutionException;
+
+    /**
+     * Counts the occurrences of the values of an indexed feature per indexed document, i.e. per
+     * source document and annotator. Only the documents visible to the user in {@link #query} are
+     * counted.
+     */
+    List<CountResult> countFeatureValues(User aUser, Project aProject, String aFeature)
+        throws IOException, ExecutionException;
+
+    /**
+     * Starts a background job which sets the given feature value on span annotations of the given
+     * layer at the locations of the given search results in the annotation documents of the user.
+     * Each affected document is read and written once. Only one job per user and project can be
+     * active at a time.
+     * 
+     * @return the job which provides the progress and can be cancelled.
+     * @throws IllegalStateException
+     *             if the user already has an active job in the project.
+     */
+    BulkAnnotationJob annotateResults(User aUser, Project aProject, List<SearchResult> aResults,
+            AnnotationLayer aLayer, AnnotationFeature aFeature, String aValue);
+
+    /**
+     * @return the most recent bulk annotation job of the user in the project, if any.
+     */
+    Optional<BulkAnnotationJob> getBulkAnnotationJob(User aUser, Project aProject);
+
     void reindex(Project aproject) throws IOException;
 
     public Index getIndex(Project aProject);
@@ -22,16 +22,23 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
 
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.uima.jcas.JCas;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
@@ -46,6 +53,8 @@ import de.tudarmstadt.ukp.clarin.webanno.api.event.BeforeDocumentRemovedEvent;
 import de.tudarmstadt.ukp.clarin.webanno.api.event.BeforeProjectRemovedEvent;
 import de.tudarmstadt.ukp.clarin.webanno.api.event.LayerConfigurationChangedEvent;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
 import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
@@ -58,7 +67,7 @@ import de.tudarmstadt.ukp.inception.search.scheduling.IndexScheduler;
 @Component(SearchService.SERVICE_NAME)
 @Transactional
 public class SearchServiceImpl
-    implements SearchService
+    implements SearchService, DisposableBean
 {
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -70,6 +79,7 @@ public class SearchServiceImpl
     private @Autowired ProjectService projectService;
     private @Autowired PhysicalIndexRegistry physicalIndexRegistry;
     private @Autowired IndexScheduler indexScheduler;
+    private @Autowired ApplicationEventPublisher applicationEventPublisher;
 
     // Index factory
     private PhysicalIndexFactory physicalIndexFactory;
@@ -78,6 +88,15 @@ public class SearchServiceImpl
     // The indexes for each project
     private static Map<Long, Index> indexes;
 
+    // Bulk annotation jobs read and write whole documents, so they are run one after the other
+    private final ExecutorService bulkAnnotationExecutor = Executors
+            .newSingleThreadExecutor(new BasicThreadFactory.Builder()
+                    .namingPattern("search-bulk-annotation-%d").daemon(true).build());
+
+    // The most recent bulk annotation job for each project and user
+    private final Map<Pair<Long, String>, BulkAnnotationJob> bulkAnnotationJobs =
+            new ConcurrentHashMap<>();
+
     @Value(value = "${repository.path}")
     private String dir;
 
@@ -87,6 +106,13 @@ public class SearchServiceImpl
         indexes = new HashMap<>();
     }
 
+    @Override
+    public void destroy()
+    {
+        bulkAnnotationJobs.values().forEach(BulkAnnotationJob::cancel);
+        bulkAnnotationExecutor.shutdownNow();
+    }
+
     /** 
      * Get an index entry from the memory map
      * @param aProject The project
@@ -145,6 +171,15 @@ public class SearchServiceImpl
 
         Project project = aEvent.getProject();
         
+        // Stop bulk annotation jobs in the project
+        bulkAnnotationJobs.entrySet().removeIf(e -> {
+            if (e.getKey().getLeft().equals(project.getId())) {
+                e.getValue().cancel();
+                return true;
+            }
+            return false;
+        });
+        
         // Retrieve index entry for the project
         Index index = getIndexFromMemory(project);
 
@@ -264,27 +299,12 @@ public class SearchServiceImpl
 
         if (canAddDocumentToIndex(index)) {
             try {
-                // Retrieve the timestamp for the current indexed annotation document
-                Optional<String> timestamp = index.getPhysicalIndex()
-                        .getTimestamp(aAnnotationDocument);
-                
-                // Add annotation document to the index again
-                log.debug("Add to the index: annotation document [{}]({}) in project [{}]({})",
+                // Only the parts of the annotation document which changed are indexed again
+                log.debug("Update in the index: annotation document [{}]({}) in project [{}]({})",
                         aAnnotationDocument.getName(), aAnnotationDocument.getId(),
                         aAnnotationDocument.getProject().getName(),
                         aAnnotationDocument.getProject().getId());
-                index.getPhysicalIndex().indexDocument(aAnnotationDocument, aJCas);
-                
-                // If there was a previous timestamped indexed annotation document, remove it from 
-                // index
-                if (timestamp.isPresent()) {
-                    log.debug("Remove from the index previous annotation document [{}]({}) "
-                            + "in project [{}]({}) based on last timestamp {}",
-                            aAnnotationDocument.getName(), aAnnotationDocument.getId(),
-                            aAnnotationDocument.getProject().getName(),
-                            aAnnotationDocument.getProject().getId(), timestamp);
-                    index.getPhysicalIndex().deindexDocument(aAnnotationDocument, timestamp.get());
-                }
+                index.getPhysicalIndex().updateDocument(aAnnotationDocument, aJCas);
 
                 log.debug("Finished indexing annotation document [{}]({}) in project [{}]({})",
                         aAnnotationDocument.getName(), aAnnotationDocument.getId(),
@@ -318,8 +338,90 @@ public class SearchServiceImpl
         log.debug("Starting query for user [{}] in project [{}]({})", aUser.getUsername(),
                 aProject.getName(), aProject.getId());
 
-        List<SearchResult> results = null;
+        PhysicalIndex physicalIndex = getQueryableIndex(aProject);
+
+        log.debug("Running query: [{}]", aQuery);
+
+        return physicalIndex.executeQuery(aUser, aQuery, null, (String) null);
+    }
+
+    @Override
+    @Transactional
+    public SearchResultPage query(User aUser, Project aProject, String aQuery, long aOffset,
+            int aLimit)
+        throws IOException, ExecutionException
+    {
+        log.debug("Starting query for user [{}] in project [{}]({}), offset {}, limit {}",
+                aUser.getUsername(), aProject.getName(), aProject.getId(), aOffset, aLimit);
+
+        PhysicalIndex physicalIndex = getQueryableIndex(aProject);
+
+        log.debug("Running query: [{}]", aQuery);
+
+        return physicalIndex.executeQuery(aUser, aQuery, aOffset, aLimit);
+    }
+
+    @Override
+    @Transactional
+    public List<CountResult> countQueryHits(User aUser, Project aProject, String aQuery)
+        throws IOException, ExecutionException
+    {
+        log.debug("Counting hits of query [{}] for user [{}] in project [{}]({})", aQuery,
+                aUser.getUsername(), aProject.getName(), aProject.getId());
 
+        return getQueryableIndex(aProject).countQueryHits(aUser, aQuery);
+    }
+
+    @Override
+    @Transactional
+    public List<CountResult> countFeatureValues(User aUser, Project aProject, String aFeature)
+        throws IOException, ExecutionException
+    {
+        log.debug("Counting values of feature [{}] for user [{}] in project [{}]({})", aFeature,
+                aUser.getUsername(), aProject.getName(), aProject.getId());
+
+        return getQueryableIndex(aProject).countFeatureValues(aUser, aFeature);
+    }
+
+    @Override
+    public BulkAnnotationJob annotateResults(User aUser, Project aProject,
+            List<SearchResult> aResults, AnnotationLayer aLayer, AnnotationFeature aFeature,
+            String aValue)
+    {
+        BulkAnnotationJob job = new BulkAnnotationJob(documentService, annotationSchemaService,
+                applicationEventPublisher, aUser, aProject, aResults, aLayer, aFeature, aValue);
+
+        bulkAnnotationJobs.compute(Pair.of(aProject.getId(), aUser.getUsername()),
+                (key, previousJob) -> {
+                    if (previousJob != null && !previousJob.isDone()) {
+                        throw new IllegalStateException(
+                                "A bulk annotation job is already active for the user");
+                    }
+                    return job;
+                });
+
+        bulkAnnotationExecutor.execute(job);
+
+        log.info("Enqueued bulk annotation of {} results in {} documents in project [{}]({}) "
+                + "for user [{}]", job.getTotalResults(), job.getTotalDocuments(),
+                aProject.getName(), aProject.getId(), aUser.getUsername());
+
+        return job;
+    }
+
+    @Override
+    public Optional<BulkAnnotationJob> getBulkAnnotationJob(User aUser, Project aProject)
+    {
+        return Optional.ofNullable(
+                bulkAnnotationJobs.get(Pair.of(aProject.getId(), aUser.getUsername())));
+    }
+
+    /**
+     * Returns the open physical index of the project. If the index is invalid or does not exist,
+     * it is scheduled to be rebuilt and an exception is thrown.
+     */
+    private PhysicalIndex getQueryableIndex(Project aProject) throws ExecutionException
+    {
         Index index = getIndexFromMemory(aProject);
 
         if (index.getInvalid()) {
@@ -353,13 +455,9 @@ public class SearchServiceImpl
                     index.getPhysicalIndex().openPhysicalIndex();
                 }
 
-                log.debug("Running query: [{}]", aQuery);
-
-                results = index.getPhysicalIndex().executeQuery(aUser, aQuery, null, (String) null);
+                return index.getPhysicalIndex();
             }
-
         }
-        return results;
     }
 
     @TransactionalEventListener(fallbackExecution = true)
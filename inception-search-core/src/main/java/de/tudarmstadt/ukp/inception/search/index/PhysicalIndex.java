@@ -26,8 +26,10 @@ import org.apache.uima.jcas.JCas;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
 import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+import de.tudarmstadt.ukp.inception.search.CountResult;
 import de.tudarmstadt.ukp.inception.search.ExecutionException;
 import de.tudarmstadt.ukp.inception.search.SearchResult;
+import de.tudarmstadt.ukp.inception.search.SearchResultPage;
 
 public interface PhysicalIndex
 {
@@ -49,10 +51,69 @@ public interface PhysicalIndex
             String... sResultField)
         throws IOException, ExecutionException;
 
+    /**
+     * Executes a query and returns only the results in the given range. The total number of hits
+     * is counted without building results for the hits outside the range.
+     * 
+     * @param aUser
+     *          The user whose documents are searched
+     * @param aQuery
+     *          The query
+     * @param aOffset
+     *          The number of hits to skip
+     * @param aLimit
+     *          The maximum number of results to return
+     * @return
+     *          The requested page of results
+     */
+    public SearchResultPage executeQuery(User aUser, String aQuery, long aOffset, int aLimit)
+        throws IOException, ExecutionException;
+
+    /**
+     * Counts the hits of a query in each indexed document visible to the user, i.e. the same
+     * documents which {@link #executeQuery} searches. Only documents with at least one hit are
+     * included.
+     * 
+     * @param aUser
+     *          The user whose documents are counted
+     * @param aQuery
+     *          The query
+     * @return
+     *          The number of hits per indexed document
+     */
+    public List<CountResult> countQueryHits(User aUser, String aQuery)
+        throws IOException, ExecutionException;
+
+    /**
+     * Counts the occurrences of each value of an indexed feature in each indexed document visible
+     * to the user.
+     * 
+     * @param aUser
+     *          The user whose documents are counted
+     * @param aFeature
+     *          The feature as it is used in queries, e.g. {@code Named_entity.value}
+     * @return
+     *          The number of occurrences per feature value and indexed document
+     */
+    public List<CountResult> countFeatureValues(User aUser, String aFeature)
+        throws IOException, ExecutionException;
+
     public void indexDocument(SourceDocument aDocument, JCas aJCas) throws IOException;
 
     public void indexDocument(AnnotationDocument aDocument, JCas aJCas) throws IOException;
 
+    /**
+     * Updates an indexed annotation document such that the index reflects the given CAS. The
+     * document is added to the index if it has not been indexed yet. Implementations may index
+     * only the parts of the document which have changed since it was last indexed.
+     * 
+     * @param aDocument
+     *          The annotation document
+     * @param aJCas
+     *          The current annotations of the document
+     */
+    public void updateDocument(AnnotationDocument aDocument, JCas aJCas) throws IOException;
+
     public void deindexDocument(SourceDocument aDocument) throws IOException;
 
     public void deindexDocument(AnnotationDocument aDocument) throws IOException;
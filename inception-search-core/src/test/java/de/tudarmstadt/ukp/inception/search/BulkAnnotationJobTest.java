@@ -0,0 +1,273 @@
+/*
+ * Copyright 2018
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.search;
+
+import static de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState.FINISHED;
+import static de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState.IN_PROGRESS;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
+import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.adapter.SpanAdapter;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterAnnotationUpdateEvent;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+
+public class BulkAnnotationJobTest
+{
+    private @Mock DocumentService documentService;
+    private @Mock AnnotationSchemaService annotationService;
+    private @Mock ApplicationEventPublisher applicationEventPublisher;
+    private @Mock SpanAdapter adapter;
+
+    private User user;
+    private Project project;
+    private AnnotationLayer layer;
+    private AnnotationFeature feature;
+    private SourceDocument sourceDocument;
+    private AnnotationDocument annotationDocument;
+    private JCas jcas;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        initMocks(this);
+
+        user = new User();
+        user.setUsername("user");
+
+        project = new Project();
+        project.setName("Test Project");
+
+        layer = new AnnotationLayer();
+        layer.setName(CAS.TYPE_NAME_ANNOTATION);
+        layer.setType(WebAnnoConst.SPAN_TYPE);
+
+        feature = new AnnotationFeature();
+        feature.setName("value");
+
+        sourceDocument = new SourceDocument();
+        sourceDocument.setId(1L);
+        sourceDocument.setName("doc");
+        sourceDocument.setProject(project);
+
+        annotationDocument = new AnnotationDocument();
+        annotationDocument.setDocument(sourceDocument);
+        annotationDocument.setUser(user.getUsername());
+        annotationDocument.setState(IN_PROGRESS);
+
+        jcas = JCasFactory.createJCas();
+        jcas.setDocumentText("This is a test . This is a test .");
+
+        when(documentService.getSourceDocument(project, "doc")).thenReturn(sourceDocument);
+        when(documentService.createOrGetAnnotationDocument(sourceDocument, user))
+                .thenReturn(annotationDocument);
+        when(documentService.readAnnotationCas(annotationDocument)).thenReturn(jcas);
+        when(documentService.getAnnotationCasTimestamp(sourceDocument, "user"))
+                .thenReturn(Optional.of(1L));
+
+        when(annotationService.getAdapter(layer)).thenReturn(adapter);
+        when(adapter.getAnnotationTypeName()).thenReturn(CAS.TYPE_NAME_ANNOTATION);
+        when(adapter.add(eq(sourceDocument), eq("user"), eq(jcas), anyInt(), anyInt()))
+                .thenAnswer(invocation -> {
+                    AnnotationFS fs = jcas.getCas().createAnnotation(
+                            jcas.getCas().getAnnotationType(), invocation.getArgument(3),
+                            invocation.getArgument(4));
+                    jcas.getCas().addFsToIndexes(fs);
+                    return WebAnnoCasUtil.getAddr(fs);
+                });
+    }
+
+    @After
+    public void tearDown()
+    {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void thatResultsAreAnnotated() throws Exception
+    {
+        BulkAnnotationJob sut = createJob(result(10, 14), result(27, 31));
+
+        sut.run();
+
+        assertThat(sut.getState()).isEqualTo(BulkAnnotationJob.State.COMPLETED);
+        assertThat(sut.getAnnotatedResults()).isEqualTo(2);
+        assertThat(sut.getSkippedResults()).isEqualTo(0);
+        assertThat(sut.isDocumentAnnotated(sourceDocument)).isTrue();
+        verify(adapter, times(2)).setFeatureValue(eq(sourceDocument), eq("user"), eq(jcas),
+                anyInt(), eq(feature), eq("LOC"));
+        verify(documentService).writeAnnotationCas(jcas, annotationDocument, true);
+
+        // One event per written document, not per annotation
+        ArgumentCaptor<AfterAnnotationUpdateEvent> events = ArgumentCaptor
+                .forClass(AfterAnnotationUpdateEvent.class);
+        verify(applicationEventPublisher).publishEvent(events.capture());
+        assertThat(events.getValue().getDocument()).isEqualTo(annotationDocument);
+    }
+
+    @Test
+    public void thatDuplicateResultsAreAnnotatedOnce() throws Exception
+    {
+        BulkAnnotationJob sut = createJob(result(10, 14), result(27, 31), result(10, 14));
+
+        sut.run();
+
+        assertThat(sut.getTotalResults()).isEqualTo(2);
+        assertThat(sut.getAnnotatedResults()).isEqualTo(2);
+        verify(adapter, times(2)).add(eq(sourceDocument), eq("user"), eq(jcas), anyInt(),
+                anyInt());
+    }
+
+    @Test
+    public void thatJobRunsAsInitiatingUser() throws Exception
+    {
+        SecurityContextHolder.getContext()
+                .setAuthentication(new TestingAuthenticationToken("user", null));
+        BulkAnnotationJob sut = createJob(result(10, 14));
+
+        // The job is run on another thread which does not have the context of the user
+        SecurityContextHolder.clearContext();
+
+        List<String> eventUsers = new ArrayList<>();
+        doAnswer(invocation -> {
+            eventUsers.add(SecurityContextHolder.getContext().getAuthentication().getName());
+            return null;
+        }).when(applicationEventPublisher).publishEvent(any(AfterAnnotationUpdateEvent.class));
+
+        sut.run();
+
+        assertThat(eventUsers).containsExactly("user");
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+    }
+
+    @Test
+    public void thatExistingAnnotationIsUpdated() throws Exception
+    {
+        AnnotationFS existing = jcas.getCas().createAnnotation(jcas.getCas().getAnnotationType(),
+                10, 14);
+        jcas.getCas().addFsToIndexes(existing);
+
+        BulkAnnotationJob sut = createJob(result(10, 14));
+
+        sut.run();
+
+        assertThat(sut.getAnnotatedResults()).isEqualTo(1);
+        verify(adapter, never()).add(any(), any(), any(), anyInt(), anyInt());
+        verify(adapter).setFeatureValue(sourceDocument, "user", jcas,
+                WebAnnoCasUtil.getAddr(existing), feature, "LOC");
+    }
+
+    @Test
+    public void thatFinishedDocumentIsSkipped() throws Exception
+    {
+        annotationDocument.setState(FINISHED);
+
+        BulkAnnotationJob sut = createJob(result(10, 14), result(27, 31));
+
+        sut.run();
+
+        assertThat(sut.getState()).isEqualTo(BulkAnnotationJob.State.COMPLETED);
+        assertThat(sut.getAnnotatedResults()).isEqualTo(0);
+        assertThat(sut.getSkippedResults()).isEqualTo(2);
+        assertThat(sut.isDocumentAnnotated(sourceDocument)).isFalse();
+        verify(documentService, never()).readAnnotationCas(any(AnnotationDocument.class));
+        verify(documentService, never()).writeAnnotationCas(any(), any(AnnotationDocument.class),
+                eq(true));
+        verifyZeroInteractions(applicationEventPublisher);
+    }
+
+    @Test
+    public void thatConcurrentlyModifiedDocumentIsNotWritten() throws Exception
+    {
+        // The annotator saves the document while the job is annotating it
+        when(documentService.getAnnotationCasTimestamp(sourceDocument, "user"))
+                .thenReturn(Optional.of(1L), Optional.of(1L), Optional.of(2L));
+
+        BulkAnnotationJob sut = createJob(result(10, 14), result(27, 31));
+
+        sut.run();
+
+        assertThat(sut.getAnnotatedResults()).isEqualTo(0);
+        assertThat(sut.getSkippedResults()).isEqualTo(2);
+        assertThat(sut.isDocumentAnnotated(sourceDocument)).isFalse();
+        verify(documentService, never()).writeAnnotationCas(any(), any(AnnotationDocument.class),
+                eq(true));
+        verifyZeroInteractions(applicationEventPublisher);
+    }
+
+    @Test
+    public void thatReadOnlyLayerIsRejected()
+    {
+        layer.setReadonly(true);
+
+        assertThatThrownBy(() -> createJob(result(10, 14)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private BulkAnnotationJob createJob(SearchResult... aResults)
+    {
+        List<SearchResult> results = asList(aResults);
+        return new BulkAnnotationJob(documentService, annotationService,
+                applicationEventPublisher, user, project, results, layer, feature, "LOC");
+    }
+
+    private SearchResult result(int aBegin, int aEnd)
+    {
+        SearchResult result = new SearchResult();
+        result.setDocumentTitle("doc");
+        result.setOffsetStart(aBegin);
+        result.setOffsetEnd(aEnd);
+        return result;
+    }
+}
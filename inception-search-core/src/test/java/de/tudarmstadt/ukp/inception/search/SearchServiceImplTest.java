@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.search;
+
+import static de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState.FINISHED;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.uima.cas.CAS;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.context.ApplicationEventPublisher;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
+import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+
+public class SearchServiceImplTest
+{
+    private @Mock DocumentService documentService;
+    private @Mock AnnotationSchemaService annotationSchemaService;
+    private @Mock ApplicationEventPublisher applicationEventPublisher;
+
+    private @InjectMocks SearchServiceImpl sut;
+
+    private User user;
+    private Project project;
+    private AnnotationLayer layer;
+    private AnnotationFeature feature;
+    private List<SearchResult> results;
+
+    @Before
+    public void setUp()
+    {
+        initMocks(this);
+
+        user = new User();
+        user.setUsername("user");
+
+        project = new Project();
+        project.setId(1L);
+        project.setName("Test Project");
+
+        layer = new AnnotationLayer();
+        layer.setName(CAS.TYPE_NAME_ANNOTATION);
+        layer.setType(WebAnnoConst.SPAN_TYPE);
+
+        feature = new AnnotationFeature();
+        feature.setName("value");
+
+        SearchResult result = new SearchResult();
+        result.setDocumentTitle("doc");
+        result.setOffsetStart(0);
+        result.setOffsetEnd(4);
+        results = asList(result);
+    }
+
+    @After
+    public void tearDown()
+    {
+        sut.destroy();
+    }
+
+    @Test
+    public void thatOnlyOneBulkAnnotationJobPerUserIsActive() throws Exception
+    {
+        SourceDocument sourceDocument = new SourceDocument();
+        sourceDocument.setName("doc");
+        AnnotationDocument annotationDocument = new AnnotationDocument();
+        annotationDocument.setState(FINISHED);
+
+        // Keep the first job running until the second one has been requested
+        CountDownLatch release = new CountDownLatch(1);
+        when(documentService.getSourceDocument(project, "doc")).thenAnswer(invocation -> {
+            release.await();
+            return sourceDocument;
+        });
+        when(documentService.createOrGetAnnotationDocument(sourceDocument, user))
+                .thenReturn(annotationDocument);
+
+        BulkAnnotationJob job = sut.annotateResults(user, project, results, layer, feature,
+                "LOC");
+
+        assertThat(sut.getBulkAnnotationJob(user, project)).contains(job);
+        assertThatThrownBy(() -> sut.annotateResults(user, project, results, layer, feature,
+                "LOC")).isInstanceOf(IllegalStateException.class);
+
+        release.countDown();
+        for (int i = 0; i < 100 && !job.isDone(); i++) {
+            Thread.sleep(50);
+        }
+
+        assertThat(job.getState()).isEqualTo(BulkAnnotationJob.State.COMPLETED);
+        assertThat(job.getSkippedResults()).isEqualTo(1);
+
+        // Once the job is done, the user can start another one
+        BulkAnnotationJob nextJob = sut.annotateResults(user, project, results, layer, feature,
+                "LOC");
+        assertThat(sut.getBulkAnnotationJob(user, project)).contains(nextJob);
+    }
+}
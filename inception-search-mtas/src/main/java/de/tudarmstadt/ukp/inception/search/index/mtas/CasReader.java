@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.search.index.mtas;
+
+import static org.apache.uima.fit.util.JCasUtil.select;
+
+import java.io.Reader;
+import java.util.Collection;
+
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
+
+/**
+ * Passes an already loaded CAS through the Lucene analysis chain to the {@link MtasUimaParser}.
+ * Lucene hands the reader of a field to the MTAS tokenizer unchanged, so the parser can take the
+ * CAS from it instead of having the CAS serialized to XMI and deserialized again.
+ * <p>
+ * A reader may be restricted to a {@link DocumentBlock}. In this case, only the annotations
+ * belonging to that block are indexed.
+ * <p>
+ * The reader does not provide any characters. It releases the CAS when it is closed, which Lucene
+ * does once the field has been indexed.
+ */
+public class CasReader
+    extends Reader
+{
+    private JCas jcas;
+    private final int begin;
+    private final int end;
+    private Collection<Annotation> annotations;
+
+    public CasReader(JCas aJCas)
+    {
+        jcas = aJCas;
+        begin = 0;
+        end = Integer.MAX_VALUE;
+        annotations = select(aJCas, Annotation.class);
+    }
+
+    public CasReader(JCas aJCas, DocumentBlock aBlock)
+    {
+        jcas = aJCas;
+        begin = aBlock.getBegin();
+        end = aBlock.getEnd();
+        annotations = aBlock.getAnnotations();
+    }
+
+    /**
+     * @return the CAS to be indexed or {@code null} if the reader has already been closed.
+     */
+    public JCas getJCas()
+    {
+        return jcas;
+    }
+
+    /**
+     * @return the annotations to be indexed in the order of the annotation index or {@code null}
+     *         if the reader has already been closed.
+     */
+    public Collection<Annotation> getAnnotations()
+    {
+        return annotations;
+    }
+
+    /**
+     * @return the offset from which on annotations are indexed (inclusive).
+     */
+    public int getBegin()
+    {
+        return begin;
+    }
+
+    /**
+     * @return the offset up to which annotations are indexed (exclusive).
+     */
+    public int getEnd()
+    {
+        return end;
+    }
+
+    @Override
+    public int read(char[] aBuffer, int aOffset, int aLength)
+    {
+        return -1;
+    }
+
+    @Override
+    public void close()
+    {
+        jcas = null;
+        annotations = null;
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2018
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.search.index.mtas;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.uima.fit.util.JCasUtil.select;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.uima.cas.ArrayFS;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.CommonArrayFS;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.FeatureStructure;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
+
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+
+/**
+ * A block of consecutive sentences of a document which is indexed as a Lucene document of its
+ * own. An annotation belongs to the block in which it starts.
+ * <p>
+ * Each block carries a fingerprint of the annotations belonging to it, including the feature
+ * structures they reference, and of the number of tokens before it. When an annotation document
+ * changes, only the blocks whose fingerprint differs from the indexed one need to be indexed
+ * again.
+ */
+public class DocumentBlock
+{
+    // Depth up to which referenced feature structures are included in the fingerprint. This
+    // covers relations whose indexed features are reached via the attach feature of the source
+    // and target annotations.
+    private static final int FINGERPRINT_DEPTH = 3;
+
+    private final int index;
+    private final int begin;
+    private final int end;
+    private final int firstToken;
+    private final byte[] fingerprint;
+    private final List<Annotation> annotations;
+
+    public DocumentBlock(int aIndex, int aBegin, int aEnd, int aFirstToken, byte[] aFingerprint,
+            List<Annotation> aAnnotations)
+    {
+        index = aIndex;
+        begin = aBegin;
+        end = aEnd;
+        firstToken = aFirstToken;
+        fingerprint = aFingerprint;
+        annotations = aAnnotations;
+    }
+
+    public int getIndex()
+    {
+        return index;
+    }
+
+    /**
+     * @return the offset of the first character of the block (inclusive).
+     */
+    public int getBegin()
+    {
+        return begin;
+    }
+
+    /**
+     * @return the offset after the last character of the block (exclusive).
+     */
+    public int getEnd()
+    {
+        return end;
+    }
+
+    /**
+     * @return the number of tokens in the document before this block.
+     */
+    public int getFirstToken()
+    {
+        return firstToken;
+    }
+
+    public byte[] getFingerprint()
+    {
+        return fingerprint;
+    }
+
+    /**
+     * @return the annotations belonging to this block in the order of the annotation index.
+     */
+    public List<Annotation> getAnnotations()
+    {
+        return annotations;
+    }
+
+    /**
+     * Splits the document into blocks of the given number of sentences. Annotations before the
+     * first sentence belong to the first block and annotations after the last sentence belong to
+     * the last block. A document without sentences is a single block.
+     */
+    public static List<DocumentBlock> split(JCas aJCas, int aSentencesPerBlock)
+    {
+        List<Integer> boundaries = new ArrayList<>();
+        boundaries.add(0);
+        int sentenceNum = 0;
+        for (Sentence sentence : select(aJCas, Sentence.class)) {
+            if (sentenceNum > 0 && sentenceNum % aSentencesPerBlock == 0
+                    && sentence.getBegin() > boundaries.get(boundaries.size() - 1)) {
+                boundaries.add(sentence.getBegin());
+            }
+            sentenceNum++;
+        }
+        boundaries.add(Integer.MAX_VALUE);
+
+        MessageDigest digest = createDigest();
+        List<DocumentBlock> blocks = new ArrayList<>();
+        List<Annotation> annotations = new ArrayList<>();
+        int block = 0;
+        int tokenNum = 0;
+        int firstToken = 0;
+
+        // The token positions in a block are stored relative to the first token of the block,
+        // so a block needs to be indexed again if the number of tokens before it changes
+        update(digest, String.valueOf(firstToken));
+
+        // The annotation index is sorted by begin offset, so a single pass assigns all
+        // annotations to their blocks
+        for (Annotation annotation : select(aJCas, Annotation.class)) {
+            while (annotation.getBegin() >= boundaries.get(block + 1)) {
+                blocks.add(new DocumentBlock(block, boundaries.get(block),
+                        boundaries.get(block + 1), firstToken, digest.digest(), annotations));
+                annotations = new ArrayList<>();
+                firstToken = tokenNum;
+                update(digest, String.valueOf(firstToken));
+                block++;
+            }
+
+            if (annotation instanceof Token) {
+                tokenNum++;
+            }
+            update(digest, annotation, FINGERPRINT_DEPTH);
+            annotations.add(annotation);
+        }
+
+        while (block < boundaries.size() - 1) {
+            blocks.add(new DocumentBlock(block, boundaries.get(block), boundaries.get(block + 1),
+                    firstToken, digest.digest(), annotations));
+            annotations = new ArrayList<>();
+            firstToken = tokenNum;
+            update(digest, String.valueOf(firstToken));
+            block++;
+        }
+
+        return blocks;
+    }
+
+    private static void update(MessageDigest aDigest, FeatureStructure aFS, int aDepth)
+    {
+        update(aDigest, aFS.getType().getName());
+        for (Feature feature : aFS.getType().getFeatures()) {
+            if (feature.getRange().isPrimitive()) {
+                update(aDigest, aFS.getFeatureValueAsString(feature));
+            }
+            // The sofa is the same for all annotations and references the whole document text
+            else if (aDepth > 0 && !CAS.FEATURE_FULL_NAME_SOFA.equals(feature.getName())) {
+                updateReference(aDigest, aFS.getFeatureValue(feature), aDepth - 1);
+            }
+        }
+    }
+
+    private static void updateReference(MessageDigest aDigest, FeatureStructure aFS, int aDepth)
+    {
+        if (aFS == null) {
+            update(aDigest, null);
+        }
+        else if (aFS instanceof ArrayFS) {
+            for (FeatureStructure element : ((ArrayFS) aFS).toArray()) {
+                updateReference(aDigest, element, aDepth);
+            }
+        }
+        else if (aFS instanceof CommonArrayFS) {
+            for (String element : ((CommonArrayFS) aFS).toStringArray()) {
+                update(aDigest, element);
+            }
+        }
+        else {
+            update(aDigest, aFS, aDepth);
+        }
+    }
+
+    private static void update(MessageDigest aDigest, String aValue)
+    {
+        // Values are terminated so that adjacent values cannot be confused with each other
+        if (aValue == null) {
+            aDigest.update((byte) 1);
+        }
+        else {
+            aDigest.update(aValue.getBytes(UTF_8));
+            aDigest.update((byte) 0);
+        }
+    }
+
+    private static MessageDigest createDigest()
+    {
+        try {
+            return MessageDigest.getInstance("MD5");
+        }
+        catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support MD5
+            throw new IllegalStateException(e);
+        }
+    }
+}
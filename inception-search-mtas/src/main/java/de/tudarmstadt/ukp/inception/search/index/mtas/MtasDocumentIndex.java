@@ -18,26 +18,44 @@
 package de.tudarmstadt.ukp.inception.search.index.mtas;
 
 import static de.tudarmstadt.ukp.clarin.webanno.api.ProjectService.PROJECT_FOLDER;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.text.BreakIterator;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.time.DurationFormatUtils;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.custom.CustomAnalyzer;
 import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
@@ -46,31 +64,46 @@ import org.apache.lucene.codecs.Codec;
 import org.apache.lucene.document.DateTools;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
 import org.apache.lucene.index.SegmentReader;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermInSetQuery;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.Weight;
 import org.apache.lucene.search.spans.SpanWeight;
 import org.apache.lucene.search.spans.Spans;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.NRTCachingDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.StringHelper;
 import org.apache.uima.cas.TypeSystem;
-import org.apache.uima.cas.impl.XmiCasSerializer;
 import org.apache.uima.jcas.JCas;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xml.sax.SAXException;
 
 import com.github.openjson.JSONObject;
 
@@ -82,9 +115,12 @@ import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
 import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+import de.tudarmstadt.ukp.inception.search.CountResult;
 import de.tudarmstadt.ukp.inception.search.ExecutionException;
 import de.tudarmstadt.ukp.inception.search.SearchResult;
+import de.tudarmstadt.ukp.inception.search.SearchResultPage;
 import de.tudarmstadt.ukp.inception.search.index.PhysicalIndex;
+import mtas.analysis.token.MtasToken;
 import mtas.analysis.token.MtasTokenString;
 import mtas.analysis.util.MtasTokenizerFactory;
 import mtas.codec.MtasCodec;
@@ -121,11 +157,60 @@ public class MtasDocumentIndex
     /** The Constant FIELD_TIMESTAMP. */
     private static final String FIELD_TIMESTAMP = "timestamp";
 
+    // Documents are indexed in blocks of sentences. Each block is a Lucene document identified by
+    // the document ID and the block number and stores the fingerprint of its annotations as well
+    // as the number of tokens before it.
+    private static final String FIELD_BLOCK = "block";
+    private static final String FIELD_FINGERPRINT = "fingerprint";
+    private static final String FIELD_TOKEN_OFFSET = "tokenOffset";
+
+    // Stored fields needed to decide which blocks need to be indexed again
+    private static final Set<String> BLOCK_FIELDS = new HashSet<>(
+            Arrays.asList(FIELD_BLOCK, FIELD_FINGERPRINT));
+
+    // Number of sentences per block. Query matches, relations and the context of results do not
+    // extend beyond the block (see the user guide).
+    static final int SENTENCES_PER_BLOCK = 20;
+
+    // Stored fields needed to attribute counts to the indexed documents
+    private static final Set<String> COUNT_FIELDS = new HashSet<>(
+            Arrays.asList(FIELD_ID, FIELD_TITLE, FIELD_USER));
+
     // Default prefix for CQL queries
     private static final String DEFAULT_PREFIX = "Token";
 
     private static final int RESULT_WINDOW_SIZE = 2;
 
+    // Number of uncommitted changes after which the index is committed right away
+    private static final int COMMIT_BATCH_SIZE = 100;
+
+    // Maximum time in milliseconds for which changes to the index remain uncommitted
+    private static final long COMMIT_INTERVAL = 5000;
+
+    // Small segments written by near-real-time refreshes are kept in memory up to these limits
+    // (in MB) instead of creating new files for every refresh
+    private static final double NRT_CACHE_MAX_SEGMENT_SIZE = 5.0;
+    private static final double NRT_CACHE_MAX_SIZE = 60.0;
+
+    // Number of threads reading and parsing documents when the whole index is rebuilt
+    private static final int REINDEX_THREADS = Math.min(8,
+            Runtime.getRuntime().availableProcessors());
+
+    // Number of parsed queries and of result pages cached per index
+    private static final int QUERY_CACHE_SIZE = 100;
+    private static final int RESULT_PAGE_CACHE_SIZE = 50;
+
+    // Pages with more results than this are not cached, e.g. when all results are requested
+    private static final int MAX_CACHED_PAGE_SIZE = 1000;
+
+    // Interval in seconds at which the progress of a rebuild is logged
+    private static final long REINDEX_PROGRESS_INTERVAL = 10;
+
+    // Shared by all indexes, commits are short and do not need a thread per project
+    private static final ScheduledExecutorService COMMIT_SCHEDULER = Executors
+            .newSingleThreadScheduledExecutor(new BasicThreadFactory.Builder()
+                    .namingPattern("mtas-index-commit-%d").daemon(true).build());
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     static AnnotationSchemaService annotationSchemaService;
@@ -136,15 +221,35 @@ public class MtasDocumentIndex
     // The index writers for this index
     private IndexWriter indexWriter;
 
+    // Near-real-time searchers on the index writer, shared by all queries
+    private volatile SearcherManager searcherManager;
+
+    // Changes not committed to disk yet and the timer which commits them eventually
+    private int uncommittedChanges = 0;
+    private ScheduledFuture<?> scheduledCommit;
+
+    // While the whole index is rebuilt, changes are only committed at the end
+    private boolean bulkIndexing = false;
+
+    // Shared executor on which the segments of the index are searched in parallel
+    private final ExecutorService searchExecutor;
+    private final int maxQueryParallelism;
+
+    private final MtasQueryCache queryCache = new MtasQueryCache(QUERY_CACHE_SIZE,
+            RESULT_PAGE_CACHE_SIZE);
+
     // The annotations to be indexed
     ArrayList<String> annotationShortNames;
 
     private File resourceDir;
 
     public MtasDocumentIndex(Project aProject, AnnotationSchemaService aAnnotationSchemaService,
-            DocumentService aDocumentService, ProjectService aProjectService, String aDir)
+            DocumentService aDocumentService, ProjectService aProjectService, String aDir,
+            ExecutorService aSearchExecutor, int aMaxQueryParallelism)
         throws IOException
     {
+        searchExecutor = aSearchExecutor;
+        maxQueryParallelism = aMaxQueryParallelism;
         annotationSchemaService = aAnnotationSchemaService;
         documentService = aDocumentService;
         projectService = aProjectService;
@@ -176,15 +281,90 @@ public class MtasDocumentIndex
             String... aResultField)
         throws ExecutionException
     {
-        try {
-            Directory directory = FSDirectory.open(getIndexDir().toPath());
-            IndexReader indexReader = DirectoryReader.open(directory);
+        // Copy the results as the page may be cached
+        return new ArrayList<>(executeQuery(aUser, aQuery, 0, Integer.MAX_VALUE).getResults());
+    }
 
+    @Override
+    public SearchResultPage executeQuery(User aUser, String aQuery, long aOffset, int aLimit)
+        throws ExecutionException
+    {
+        try {
             // Build the query prefixes list from the annotation types
             List<String> prefixes = new ArrayList<String>(annotationShortNames);
-            String modifiedQuery = parseQuery(aQuery);
-            MtasSpanQuery mtasSpanQuery = createQuery(FIELD_CONTENT, modifiedQuery);
-            return doQuery(indexReader, aUser, FIELD_CONTENT, mtasSpanQuery, prefixes);
+            MtasSpanQuery mtasSpanQuery = getQuery(aQuery);
+
+            SearcherManager manager = getSearcherManager();
+            IndexSearcher searcher = acquireSearcher(manager);
+            try {
+                // The reader version changes whenever the searcher sees changes to the index
+                long indexVersion = ((DirectoryReader) searcher.getIndexReader()).getVersion();
+                // Which documents the user can see depends on which annotation documents exist,
+                // which is not reflected in the index version
+                List<Long> annotatedDocuments = listAnnotatedDocuments(aUser);
+                Optional<SearchResultPage> cachedPage = queryCache.getPage(indexVersion,
+                        aUser.getUsername(), annotatedDocuments, aQuery, aOffset, aLimit);
+                if (cachedPage.isPresent()) {
+                    log.debug("Query cache for project [{}]({}): {}", project.getName(),
+                            project.getId(), queryCache);
+                    return cachedPage.get();
+                }
+
+                Query visibilityFilter = createVisibilityFilter(aUser, annotatedDocuments);
+                SearchResultPage page = doQuery(searcher, visibilityFilter, FIELD_CONTENT,
+                        mtasSpanQuery, prefixes, aOffset, aLimit);
+
+                if (page.getResults().size() <= MAX_CACHED_PAGE_SIZE) {
+                    queryCache.putPage(indexVersion, aUser.getUsername(), annotatedDocuments,
+                            aQuery, aOffset, aLimit, page);
+                }
+
+                log.debug("Query cache for project [{}]({}): {}", project.getName(),
+                        project.getId(), queryCache);
+
+                return page;
+            }
+            finally {
+                manager.release(searcher);
+            }
+        }
+        catch (mtas.parser.cql.ParseException e) {
+            log.error("Mtas query syntax error", e);
+            throw(new ExecutionException(e.getMessage()));
+        }
+        catch (Exception e) {
+            log.error("Query execution error", e);
+            throw (new ExecutionException("Query execution error", e));
+        }
+    }
+
+    @Override
+    public List<CountResult> countQueryHits(User aUser, String aQuery)
+        throws ExecutionException
+    {
+        try {
+            MtasSpanQuery mtasSpanQuery = getQuery(aQuery);
+
+            SearcherManager manager = getSearcherManager();
+            IndexSearcher searcher = acquireSearcher(manager);
+            try {
+                IndexReader indexReader = searcher.getIndexReader();
+                List<LeafReaderContext> leaves = indexReader.leaves();
+                SpanWeight spanWeight = mtasSpanQuery.rewrite(indexReader).createWeight(searcher,
+                        false, 0);
+                Weight filterWeight = searcher.createNormalizedWeight(
+                        createVisibilityFilter(aUser, listAnnotatedDocuments(aUser)), false);
+
+                List<CountResult> results = new ArrayList<>();
+                for (List<CountResult> leafCounts : searchLeaves(leaves.size(),
+                        i -> countLeafHits(spanWeight, filterWeight, leaves.get(i)))) {
+                    results.addAll(leafCounts);
+                }
+                return sumBlockCounts(results);
+            }
+            finally {
+                manager.release(searcher);
+            }
         }
         catch (mtas.parser.cql.ParseException e) {
             log.error("Mtas query syntax error", e);
@@ -196,6 +376,198 @@ public class MtasDocumentIndex
         }
     }
 
+    @Override
+    public List<CountResult> countFeatureValues(User aUser, String aFeature)
+        throws ExecutionException
+    {
+        try {
+            SearcherManager manager = getSearcherManager();
+            IndexSearcher searcher = acquireSearcher(manager);
+            try {
+                List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+                Weight filterWeight = searcher.createNormalizedWeight(
+                        createVisibilityFilter(aUser, listAnnotatedDocuments(aUser)), false);
+
+                // Feature values are indexed as MTAS terms consisting of the feature name, the
+                // MTAS delimiter and the value
+                String prefix = aFeature.replace(" ", "_") + MtasToken.DELIMITER;
+
+                List<CountResult> results = new ArrayList<>();
+                for (List<CountResult> leafCounts : searchLeaves(leaves.size(),
+                        i -> countLeafTerms(filterWeight, leaves.get(i), prefix))) {
+                    results.addAll(leafCounts);
+                }
+                return sumBlockCounts(results);
+            }
+            finally {
+                manager.release(searcher);
+            }
+        }
+        catch (Exception e) {
+            log.error("Query execution error", e);
+            throw (new ExecutionException("Query execution error", e));
+        }
+    }
+
+    /**
+     * Counts the hits of a query in each live document of a single segment which is visible to
+     * the user. Only the positions of the hits are read, no results are built.
+     */
+    private List<CountResult> countLeafHits(SpanWeight aSpanWeight, Weight aFilterWeight,
+            LeafReaderContext aLeafReaderContext)
+    {
+        List<CountResult> counts = new ArrayList<>();
+
+        try {
+            Spans spans = aSpanWeight.getSpans(aLeafReaderContext, SpanWeight.Postings.POSITIONS);
+            Bits visibleDocs = getVisibleDocs(aFilterWeight, aLeafReaderContext);
+            if (spans == null || visibleDocs == null) {
+                return counts;
+            }
+
+            LeafReader reader = aLeafReaderContext.reader();
+            int docId;
+            while ((docId = spans.nextDoc()) != Spans.NO_MORE_DOCS) {
+                if (!visibleDocs.get(docId)) {
+                    continue;
+                }
+
+                long count = 0;
+                while (spans.nextStartPosition() != Spans.NO_MORE_POSITIONS) {
+                    count++;
+                }
+                counts.add(createCountResult(reader, docId, null, count));
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return counts;
+    }
+
+    /**
+     * Counts the occurrences of the terms starting with the given prefix in each live document of
+     * a single segment which is visible to the user. The counts are taken from the term
+     * frequencies in the postings, so the positions of the occurrences are never read.
+     */
+    private List<CountResult> countLeafTerms(Weight aFilterWeight,
+            LeafReaderContext aLeafReaderContext, String aPrefix)
+    {
+        List<CountResult> counts = new ArrayList<>();
+
+        try {
+            LeafReader reader = aLeafReaderContext.reader();
+            Terms terms = reader.terms(FIELD_CONTENT);
+            Bits visibleDocs = getVisibleDocs(aFilterWeight, aLeafReaderContext);
+            if (terms == null || visibleDocs == null) {
+                return counts;
+            }
+
+            BytesRef prefix = new BytesRef(aPrefix);
+            TermsEnum termsEnum = terms.iterator();
+            if (termsEnum.seekCeil(prefix) == TermsEnum.SeekStatus.END) {
+                return counts;
+            }
+
+            // Collect per document first so the stored fields of each document are read once
+            Map<Integer, Map<String, Long>> valueCounts = new TreeMap<>();
+            PostingsEnum postings = null;
+            BytesRef term = termsEnum.term();
+            while (term != null && StringHelper.startsWith(term, prefix)) {
+                String value = term.utf8ToString().substring(aPrefix.length());
+                postings = termsEnum.postings(postings, PostingsEnum.FREQS);
+                int docId;
+                while ((docId = postings.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+                    if (visibleDocs.get(docId)) {
+                        valueCounts.computeIfAbsent(docId, k -> new TreeMap<>()).put(value,
+                                (long) postings.freq());
+                    }
+                }
+                term = termsEnum.next();
+            }
+
+            for (Map.Entry<Integer, Map<String, Long>> doc : valueCounts.entrySet()) {
+                for (Map.Entry<String, Long> value : doc.getValue().entrySet()) {
+                    counts.add(createCountResult(reader, doc.getKey(), value.getKey(),
+                            value.getValue()));
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return counts;
+    }
+
+    /**
+     * Collects the live documents of a single segment which match the visibility filter. The
+     * postings of the counted terms are not in a common order, so the filter is materialized once
+     * per segment instead of being advanced alongside them.
+     * 
+     * @return the visible documents or {@code null} if there are none in the segment.
+     */
+    private static Bits getVisibleDocs(Weight aFilterWeight, LeafReaderContext aLeafReaderContext)
+        throws IOException
+    {
+        Scorer filterScorer = aFilterWeight.scorer(aLeafReaderContext);
+        if (filterScorer == null) {
+            return null;
+        }
+
+        LeafReader reader = aLeafReaderContext.reader();
+        Bits liveDocs = reader.getLiveDocs();
+        FixedBitSet visibleDocs = new FixedBitSet(reader.maxDoc());
+        DocIdSetIterator iterator = filterScorer.iterator();
+        int docId;
+        while ((docId = iterator.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+            if (liveDocs == null || liveDocs.get(docId)) {
+                visibleDocs.set(docId);
+            }
+        }
+        return visibleDocs;
+    }
+
+    /**
+     * Sums up the counts of the blocks of each indexed document.
+     */
+    private static List<CountResult> sumBlockCounts(List<CountResult> aCounts)
+    {
+        Map<List<Object>, CountResult> sums = new LinkedHashMap<>();
+        for (CountResult count : aCounts) {
+            sums.merge(Arrays.asList(count.getDocumentId(), count.getUser(), count.getValue()),
+                    count, (a, b) -> new CountResult(a.getDocumentId(), a.getDocumentTitle(),
+                            a.getUser(), a.getValue(), a.getCount() + b.getCount()));
+        }
+        return new ArrayList<>(sums.values());
+    }
+
+    private CountResult createCountResult(LeafReader aReader, int aDocId, String aValue,
+            long aCount)
+        throws IOException
+    {
+        Document document = aReader.document(aDocId, COUNT_FIELDS);
+        long sourceDocumentId = Long.valueOf(document.get(FIELD_ID).split("/")[0]);
+        return new CountResult(sourceDocumentId, document.get(FIELD_TITLE),
+                document.get(FIELD_USER), aValue, aCount);
+    }
+
+    /**
+     * Returns the parsed query from the cache or parses it and adds it to the cache.
+     */
+    private MtasSpanQuery getQuery(String aQuery) throws ParseException
+    {
+        Optional<MtasSpanQuery> cachedQuery = queryCache.getQuery(aQuery);
+        if (cachedQuery.isPresent()) {
+            return cachedQuery.get();
+        }
+
+        MtasSpanQuery query = createQuery(FIELD_CONTENT, parseQuery(aQuery));
+        queryCache.putQuery(aQuery, query);
+        return query;
+    }
+
     private String parseQuery(String aQuery)
     {
         String result;
@@ -239,197 +611,341 @@ public class MtasDocumentIndex
         return q;
     }
 
-    private List<SearchResult> doQuery(IndexReader aIndexReader, User aUser, String field,
-            MtasSpanQuery q, List<String> prefixes)
+    /**
+     * Builds a filter which restricts the results to the documents visible to the given user:
+     * the annotation documents of the user and the source documents for which the user has no
+     * annotation document. Source documents are indexed with an empty user.
+     */
+    /**
+     * @return the sorted IDs of the source documents for which the given user has annotation
+     *         documents.
+     */
+    private List<Long> listAnnotatedDocuments(User aUser)
+    {
+        return documentService.listAnnotationDocuments(project, aUser).stream()
+                .map(document -> document.getDocument().getId())
+                .sorted()
+                .collect(toList());
+    }
+
+    private Query createVisibilityFilter(User aUser, List<Long> aAnnotatedDocuments)
+    {
+        // Looked up once per query instead of once per matching document
+        List<BytesRef> sourceDocumentsWithAnnotations = new ArrayList<>();
+        for (long documentId : aAnnotatedDocuments) {
+            sourceDocumentsWithAnnotations
+                    .add(new BytesRef(String.format("%d/%d", documentId, -1)));
+        }
+
+        Query sourceDocuments = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term(FIELD_USER, "")), BooleanClause.Occur.MUST)
+                .add(new TermInSetQuery(FIELD_ID, sourceDocumentsWithAnnotations),
+                        BooleanClause.Occur.MUST_NOT)
+                .build();
+
+        return new BooleanQuery.Builder()
+                .add(new TermQuery(new Term(FIELD_USER, aUser.getUsername())),
+                        BooleanClause.Occur.SHOULD)
+                .add(sourceDocuments, BooleanClause.Occur.SHOULD)
+                .build();
+    }
+
+    private SearchResultPage doQuery(IndexSearcher searcher, Query aFilter, String field,
+            MtasSpanQuery q, List<String> prefixes, long aOffset, int aLimit)
         throws IOException
     {
+        IndexReader indexReader = searcher.getIndexReader();
+        List<LeafReaderContext> leaves = indexReader.leaves();
+
+        final float boost = 0;
+        SpanWeight spanweight = q.rewrite(indexReader).createWeight(searcher, false, boost);
+        Weight filterWeight = searcher.createNormalizedWeight(aFilter, false);
+
+        // If all results are requested, they are collected in a single pass. Otherwise, the hits
+        // are counted first and the results are then only built for the hits on the page.
+        boolean singlePass = aOffset == 0 && aLimit == Integer.MAX_VALUE;
+        List<LeafHits> counts = searchLeaves(leaves.size(),
+                i -> searchLeaf(spanweight, filterWeight, leaves.get(i), field, prefixes, 0,
+                        singlePass ? Long.MAX_VALUE : 0, true));
+
+        long totalHits = 0;
+        long[] leafStart = new long[leaves.size()];
+        for (int i = 0; i < leaves.size(); i++) {
+            leafStart[i] = totalHits;
+            totalHits += counts.get(i).count;
+        }
+
+        // The total is taken from the counts of the first pass. The second pass stops in each
+        // segment as soon as the hits of the page in that segment have been built.
+        List<LeafHits> leafHits = counts;
+        if (!singlePass) {
+            long pageEnd = aOffset + aLimit;
+            leafHits = searchLeaves(leaves.size(), i -> {
+                long leafEnd = leafStart[i] + counts.get(i).count;
+                if (leafEnd <= aOffset || leafStart[i] >= pageEnd) {
+                    return LeafHits.EMPTY;
+                }
+                return searchLeaf(spanweight, filterWeight, leaves.get(i), field, prefixes,
+                        aOffset - leafStart[i], pageEnd - leafStart[i], false);
+            });
+        }
+
+        // Results are concatenated in the order of the segments, independent of the order in
+        // which the segments were searched
         List<SearchResult> results = new ArrayList<>();
+        for (LeafHits hits : leafHits) {
+            results.addAll(hits.results);
+        }
 
-        ListIterator<LeafReaderContext> leafReaderContextIterator = aIndexReader.leaves()
-                .listIterator();
+        return new SearchResultPage(results, aOffset, totalHits);
+    }
 
-        IndexSearcher searcher = new IndexSearcher(aIndexReader);
+    /**
+     * Runs the given task for each segment. Up to {@link #maxQueryParallelism} threads work on
+     * the segments of a query, including the calling thread. The results are returned in the
+     * order of the segments.
+     */
+    private <T> List<T> searchLeaves(int aLeafCount, IntFunction<T> aSearch) throws IOException
+    {
+        AtomicReferenceArray<T> hits = new AtomicReferenceArray<>(aLeafCount);
+        AtomicInteger nextLeaf = new AtomicInteger();
+        Runnable worker = () -> {
+            int leaf;
+            while ((leaf = nextLeaf.getAndIncrement()) < aLeafCount) {
+                hits.set(leaf, aSearch.apply(leaf));
+            }
+        };
+
+        int helpers = searchExecutor != null
+                ? Math.min(maxQueryParallelism, aLeafCount) - 1
+                : 0;
+        List<Future<?>> futures = new ArrayList<>();
+        for (int n = 0; n < helpers; n++) {
+            futures.add(searchExecutor.submit(worker));
+        }
 
-        final float boost = 0;
-        SpanWeight spanweight = q.rewrite(aIndexReader).createWeight(searcher, false, boost);
+        worker.run();
 
-        while (leafReaderContextIterator.hasNext()) {
-            LeafReaderContext leafReaderContext = leafReaderContextIterator.next();
+        // Helpers which did not start yet have nothing left to do. Wait for the others to finish
+        // the segments they have taken.
+        for (Future<?> future : futures) {
+            future.cancel(false);
+        }
+        for (Future<?> future : futures) {
+            if (future.isCancelled()) {
+                continue;
+            }
             try {
-                Spans spans = spanweight.getSpans(leafReaderContext, SpanWeight.Postings.POSITIONS);
-                SegmentReader segmentReader = (SegmentReader) leafReaderContext.reader();
-                Terms terms = segmentReader.terms(field);
-                CodecInfo mtasCodecInfo = CodecInfo.getCodecInfoFromTerms(terms);
-                if (spans != null) {
-                    while (spans.nextDoc() != Spans.NO_MORE_DOCS) {
-                        if (segmentReader.numDocs() == segmentReader.maxDoc()
-                                || segmentReader.getLiveDocs().get(spans.docID())) {
-                            Document document = segmentReader.document(spans.docID());
-
-                            // Retrieve user
-                            String user = document.get(FIELD_USER);
-
-                            // Retrieve source and annotation document ids
-                            Long sourceDocumentId = Long
-                                    .valueOf(document.get(FIELD_ID).split("/")[0]);
-                            long annotationDocumentId = Long
-                                    .valueOf(document.get(FIELD_ID).split("/")[1]);
-
-                            // Retrieve the source document
-                            SourceDocument sourceDocument = documentService
-                                    .getSourceDocument(project.getId(), sourceDocumentId);
-
-                            if (documentService.existsAnnotationDocument(sourceDocument, aUser)
-                                    && annotationDocumentId == -1) {
-                                // Exclude result if the retrieved document is a sourcedocument
-                                // (that is, has annotationDocument = -1) AND it has a 
-                                // corresponding annotation document for this user
-                                continue;
-                            }
-                            else if (annotationDocumentId != -1
-                                    && !aUser.getUsername().equals(user)) {
-                                // Exclude result if the retrieved document is an annotation
-                                // document (that is, annotationDocument != -1 and its username 
-                                // is different fromthe quering user
-                                continue;
-                            }
-
-                            // Retrieve document title
-                            String documentTitle = document.get(FIELD_TITLE);
-
-                            String idValue = segmentReader.document(spans.docID())
-                                    .getField(FIELD_ID).stringValue();
-                            log.debug("********  New doc {}-{}", + spans.docID(), idValue);
-
-                            while (spans.nextStartPosition() != Spans.NO_MORE_POSITIONS) {
-
-                                int resultWindowStartPosition = spans.startPosition()
-                                        - RESULT_WINDOW_SIZE;
-
-                                // Avoid the window starting before the beginning of the text
-                                if (resultWindowStartPosition < 0) {
-                                    resultWindowStartPosition = 0;
-                                }
-
-                                int resultWindowEndPosition = spans.endPosition()
-                                        + RESULT_WINDOW_SIZE + 1;
-
-                                // Avoid the window ending after the end of the text
-                                if (resultWindowEndPosition > spans.endPosition()) {
-                                    resultWindowEndPosition = spans.endPosition();
-                                }
-                                List<MtasTokenString> tokens = mtasCodecInfo
-                                        .getPrefixFilteredObjectsByPositions(field, spans.docID(),
-                                                prefixes, resultWindowStartPosition,
-                                                resultWindowEndPosition);
-
-                                Collections.sort(tokens, new Comparator<MtasTokenString>()
-                                {
-                                    @Override
-                                    public int compare(MtasTokenString token2,
-                                            MtasTokenString token1)
-                                    {
-                                        return token2.getPositionStart() > token1.getPositionStart()
-                                                ? 1
-                                                : -1;
-                                    }
-                                });
-
-                                SearchResult result = new SearchResult();
-                                String resultText = "";
-                                String leftContext = "";
-                                String rightContext = "";
-                                result.setDocumentId(sourceDocumentId);
-                                result.setDocumentTitle(documentTitle);
-
-                                int startToken = 0;
-                                while (startToken < tokens.size()) {
-                                    if (tokens.get(startToken).getPositionStart()
-                                            .equals(tokens.get(startToken).getPositionEnd())
-                                            && tokens.get(startToken).getPositionStart() == spans
-                                                    .startPosition()) {
-                                        break;
-                                    }
-                                    startToken++;
-                                }
-
-                                if (startToken >= tokens.size()) {
-                                    startToken = 0;
-                                }
-
-                                int endToken = 0;
-                                while (endToken < tokens.size()) {
-                                    if (tokens.get(endToken).getPositionStart()
-                                            .equals(tokens.get(endToken).getPositionEnd())
-                                            && tokens.get(endToken).getPositionStart() == spans
-                                                    .endPosition()) {
-                                        break;
-                                    }
-                                    endToken++;
-                                }
-
-                                if (endToken >= tokens.size()) {
-                                    endToken = 0;
-                                }
-
-                                result.setOffsetStart(tokens.get(startToken).getOffsetStart());
-                                result.setOffsetEnd(tokens.get(endToken - 1).getOffsetEnd());
-                                result.setTokenStart(spans.startPosition());
-                                result.setTokenLength(spans.endPosition() - spans.startPosition());
-                                for (int i = 0; i < tokens.size(); i++) {
-                                    MtasTokenString token = tokens.get(i);
-                                    if (token.getPrefix().equals(DEFAULT_PREFIX)) {
-                                        if (token.getPositionStart() < spans.startPosition()) {
-                                            leftContext += CodecUtil.termValue(token.getValue())
-                                                    + " ";
-                                        }
-                                        else if (token.getPositionStart() >= spans.endPosition()) {
-                                            rightContext += CodecUtil.termValue(token.getValue())
-                                                    + " ";
-                                        }
-                                        else {
-                                            resultText += CodecUtil.termValue(token.getValue())
-                                                    + " ";
-                                        }
-
-                                        if (log.isTraceEnabled()) {
-                                            if (token.getPositionEnd() != token
-                                                    .getPositionStart()) {
-                                                log.trace(
-                                                        " doc: {}-{}, mtasID: {} offset: {}-{} position: {}-{}",
-                                                        sourceDocumentId, documentTitle,
-                                                        token.getId(), token.getOffsetStart(),
-                                                        token.getOffsetEnd(),
-                                                        token.getPositionStart(),
-                                                        token.getPositionEnd());
-                                            }
-                                            else {
-                                                log.trace(
-                                                        " doc: {}-{}, mtasID: {} offset: {}-{} position: {} {}:{}",
-                                                        sourceDocumentId, documentTitle,
-                                                        token.getId(), token.getOffsetStart(),
-                                                        token.getOffsetEnd(),
-                                                        token.getPositionStart(), token.getPrefix(),
-                                                        token.getPostfix());
-
-                                            }
-                                        }
-                                    }
-                                }
-                                result.setText(resultText);
-                                result.setLeftContext(leftContext);
-                                result.setRightContext(rightContext);
-                                results.add(result);
-                            }
+                future.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for search results");
+            }
+            catch (java.util.concurrent.ExecutionException e) {
+                throw new IOException("Unable to search index segment", e.getCause());
+            }
+        }
+
+        List<T> result = new ArrayList<>(aLeafCount);
+        for (int i = 0; i < aLeafCount; i++) {
+            result.add(hits.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Searches a single segment. Results are only built for the hits in the given range, counted
+     * from the first hit in the segment.
+     * 
+     * @param aCountAll
+     *            whether all hits visible to the user are counted. Otherwise, the search stops
+     *            once the end of the range has been reached and the returned count is only a
+     *            lower bound.
+     */
+    private LeafHits searchLeaf(SpanWeight aSpanWeight, Weight aFilterWeight,
+            LeafReaderContext aLeafReaderContext, String field, List<String> prefixes,
+            long aFrom, long aTo, boolean aCountAll)
+    {
+        List<SearchResult> results = new ArrayList<>();
+        long count = 0;
+
+        try {
+            Spans spans = aSpanWeight.getSpans(aLeafReaderContext, SpanWeight.Postings.POSITIONS);
+            Scorer filterScorer = aFilterWeight.scorer(aLeafReaderContext);
+            if (spans == null || filterScorer == null) {
+                // No hits or no documents visible to the user in this segment
+                return LeafHits.EMPTY;
+            }
+
+            SegmentReader segmentReader = (SegmentReader) aLeafReaderContext.reader();
+            Terms terms = segmentReader.terms(field);
+            CodecInfo mtasCodecInfo = CodecInfo.getCodecInfoFromTerms(terms);
+            DocIdSetIterator visibleDocs = filterScorer.iterator();
+
+            int docId = spans.nextDoc();
+            while (docId != Spans.NO_MORE_DOCS && (aCountAll || count < aTo)) {
+                // Skip ahead to the next document which has hits and is visible to the user
+                int visibleDocId = visibleDocs.docID() < docId ? visibleDocs.advance(docId)
+                        : visibleDocs.docID();
+                if (visibleDocId == DocIdSetIterator.NO_MORE_DOCS) {
+                    break;
+                }
+                if (visibleDocId != docId) {
+                    docId = spans.advance(visibleDocId);
+                    continue;
+                }
+
+                if (segmentReader.numDocs() == segmentReader.maxDoc()
+                        || segmentReader.getLiveDocs().get(docId)) {
+                    // The stored fields are only read if the document has hits in the range
+                    Document document = null;
+                    long sourceDocumentId = -1;
+                    String documentTitle = null;
+                    int tokenOffset = 0;
+
+                    while (spans.nextStartPosition() != Spans.NO_MORE_POSITIONS) {
+                        long hit = count++;
+                        if (hit >= aTo && !aCountAll) {
+                            break;
+                        }
+                        if (hit < aFrom || hit >= aTo) {
+                            continue;
                         }
+                        
+                        if (document == null) {
+                            document = segmentReader.document(docId);
+
+                            // Retrieve source document id and document title
+                            sourceDocumentId = Long.valueOf(document.get(FIELD_ID).split("/")[0]);
+                            documentTitle = document.get(FIELD_TITLE);
+
+                            // Positions are counted from the beginning of the block
+                            IndexableField tokenOffsetField = document
+                                    .getField(FIELD_TOKEN_OFFSET);
+                            tokenOffset = tokenOffsetField != null
+                                    ? tokenOffsetField.numericValue().intValue()
+                                    : 0;
+
+                            log.debug("********  New doc {}-{}", docId, document.get(FIELD_ID));
+                        }
+
+                        SearchResult result = createResult(mtasCodecInfo, field, prefixes, docId,
+                                spans.startPosition(), spans.endPosition(), sourceDocumentId,
+                                documentTitle);
+                        result.setTokenStart(tokenOffset + result.getTokenStart());
+                        results.add(result);
                     }
                 }
+
+                docId = spans.nextDoc();
             }
-            catch (Exception e) {
-                log.error("Unable to process query results", e);
+        }
+        catch (Exception e) {
+            log.error("Unable to process query results", e);
+        }
+
+        return new LeafHits(count, results);
+    }
+
+    /**
+     * Builds the result for a single hit including the text of the hit and its context.
+     */
+    private SearchResult createResult(CodecInfo aCodecInfo, String aField, List<String> aPrefixes,
+            int aDocId, int aStartPosition, int aEndPosition, long aSourceDocumentId,
+            String aDocumentTitle)
+        throws IOException
+    {
+        int resultWindowStartPosition = aStartPosition - RESULT_WINDOW_SIZE;
+
+        // Avoid the window starting before the beginning of the text
+        if (resultWindowStartPosition < 0) {
+            resultWindowStartPosition = 0;
+        }
+
+        int resultWindowEndPosition = aEndPosition + RESULT_WINDOW_SIZE + 1;
+
+        // Avoid the window ending after the end of the text
+        if (resultWindowEndPosition > aEndPosition) {
+            resultWindowEndPosition = aEndPosition;
+        }
+        List<MtasTokenString> tokens = aCodecInfo.getPrefixFilteredObjectsByPositions(aField,
+                aDocId, aPrefixes, resultWindowStartPosition, resultWindowEndPosition);
+
+        tokens.sort(Comparator.comparing(MtasTokenString::getPositionStart));
+
+        SearchResult result = new SearchResult();
+        StringBuilder resultText = new StringBuilder();
+        StringBuilder leftContext = new StringBuilder();
+        StringBuilder rightContext = new StringBuilder();
+        result.setDocumentId(aSourceDocumentId);
+        result.setDocumentTitle(aDocumentTitle);
+
+        int startToken = 0;
+        while (startToken < tokens.size()) {
+            if (tokens.get(startToken).getPositionStart()
+                    .equals(tokens.get(startToken).getPositionEnd())
+                    && tokens.get(startToken).getPositionStart() == aStartPosition) {
+                break;
+            }
+            startToken++;
+        }
+
+        if (startToken >= tokens.size()) {
+            startToken = 0;
+        }
+
+        int endToken = 0;
+        while (endToken < tokens.size()) {
+            if (tokens.get(endToken).getPositionStart()
+                    .equals(tokens.get(endToken).getPositionEnd())
+                    && tokens.get(endToken).getPositionStart() == aEndPosition) {
+                break;
+            }
+            endToken++;
+        }
+
+        if (endToken >= tokens.size()) {
+            endToken = 0;
+        }
+
+        result.setOffsetStart(tokens.get(startToken).getOffsetStart());
+        result.setOffsetEnd(tokens.get(endToken - 1).getOffsetEnd());
+        result.setTokenStart(aStartPosition);
+        result.setTokenLength(aEndPosition - aStartPosition);
+        for (MtasTokenString token : tokens) {
+            if (token.getPrefix().equals(DEFAULT_PREFIX)) {
+                String value = CodecUtil.termValue(token.getValue());
+                if (token.getPositionStart() < aStartPosition) {
+                    leftContext.append(value).append(" ");
+                }
+                else if (token.getPositionStart() >= aEndPosition) {
+                    rightContext.append(value).append(" ");
+                }
+                else {
+                    resultText.append(value).append(" ");
+                }
+
+                if (log.isTraceEnabled()) {
+                    if (token.getPositionEnd() != token.getPositionStart()) {
+                        log.trace(" doc: {}-{}, mtasID: {} offset: {}-{} position: {}-{}",
+                                aSourceDocumentId, aDocumentTitle, token.getId(),
+                                token.getOffsetStart(), token.getOffsetEnd(),
+                                token.getPositionStart(), token.getPositionEnd());
+                    }
+                    else {
+                        log.trace(" doc: {}-{}, mtasID: {} offset: {}-{} position: {} {}:{}",
+                                aSourceDocumentId, aDocumentTitle, token.getId(),
+                                token.getOffsetStart(), token.getOffsetEnd(),
+                                token.getPositionStart(), token.getPrefix(), token.getPostfix());
+                    }
+                }
             }
         }
-        return results;
+        result.setText(resultText.toString());
+        result.setLeftContext(leftContext.toString());
+        result.setRightContext(rightContext.toString());
+        return result;
     }
 
     private void indexDocument(String aDocumentTitle, long aSourceDocumentId,
@@ -437,49 +953,33 @@ public class MtasDocumentIndex
         throws IOException
     {
         if (indexWriter != null) {
-            try {
-                log.debug(
-                        "Indexing document in project [{}]({}). sourceId: {}, annotationId: {}, "
-                                + "user: {}",
-                        project.getName(), project.getId(), aSourceDocumentId,
-                        aAnnotationDocumentId, aUser);
-                
-                // Prepare bytearray with document content to be indexed
-                ByteArrayOutputStream bos = new ByteArrayOutputStream();
-                XmiCasSerializer.serialize(aJCas.getCas(), null, bos, true, null);
-                bos.close();
-
-                // Calculate timestamp that will be indexed
-                String timestamp = DateTools.dateToString(new Date(),
-                        DateTools.Resolution.MILLISECOND);
-
-                // Create new Lucene document
-                Document doc = new Document();
-                
-                // Add indexed fields
-                doc.add(new StringField(FIELD_ID, String.valueOf(aSourceDocumentId) + "/"
-                        + String.valueOf(aAnnotationDocumentId), Field.Store.YES));
-                doc.add(new StringField(FIELD_TITLE, aDocumentTitle, Field.Store.YES));
-                doc.add(new StringField(FIELD_USER, aUser, Field.Store.YES));
-                doc.add(new StringField(FIELD_TIMESTAMP, timestamp, Field.Store.YES));
-                doc.add(new TextField(FIELD_CONTENT, new String(bos.toByteArray(), "UTF-8"),
-                        Field.Store.YES));
-    
-                // Add document to the Lucene index
-                indexWriter.addDocument(doc);
-    
-                // commit
-                indexWriter.commit();
-    
-                log.info(
-                        "Document indexed in project [{}]({}). sourceId: {}, annotationId: {}, "
-                                + "user: {}, timestamp: {}",
-                        project.getName(), project.getId(), aSourceDocumentId,
-                        aAnnotationDocumentId, aUser, timestamp);
-            }
-            catch (SAXException e) {
-                log.error("Unable to index document", e);
+            log.debug(
+                    "Indexing document in project [{}]({}). sourceId: {}, annotationId: {}, "
+                            + "user: {}",
+                    project.getName(), project.getId(), aSourceDocumentId,
+                    aAnnotationDocumentId, aUser);
+
+            // Calculate timestamp that will be indexed
+            String timestamp = DateTools.dateToString(new Date(),
+                    DateTools.Resolution.MILLISECOND);
+
+            // Create one Lucene document per block
+            String id = String.format("%d/%d", aSourceDocumentId, aAnnotationDocumentId);
+            List<Document> docs = new ArrayList<>();
+            for (DocumentBlock block : DocumentBlock.split(aJCas, SENTENCES_PER_BLOCK)) {
+                docs.add(createBlockDocument(id, aDocumentTitle, aUser, timestamp, aJCas, block));
             }
+
+            // Add the blocks to the Lucene index
+            indexWriter.addDocuments(docs);
+
+            scheduleCommit();
+
+            log.info(
+                    "Document indexed in project [{}]({}). sourceId: {}, annotationId: {}, "
+                            + "user: {}, timestamp: {}",
+                    project.getName(), project.getId(), aSourceDocumentId,
+                    aAnnotationDocumentId, aUser, timestamp);
         }
         else {
             log.debug(
@@ -489,6 +989,113 @@ public class MtasDocumentIndex
         }
     };
 
+    private Document createBlockDocument(String aId, String aDocumentTitle, String aUser,
+            String aTimestamp, JCas aJCas, DocumentBlock aBlock)
+    {
+        Document doc = new Document();
+
+        // Add indexed fields
+        doc.add(new StringField(FIELD_ID, aId, Field.Store.YES));
+        doc.add(new StringField(FIELD_TITLE, aDocumentTitle, Field.Store.YES));
+        doc.add(new StringField(FIELD_USER, aUser, Field.Store.YES));
+        doc.add(new StringField(FIELD_TIMESTAMP, aTimestamp, Field.Store.YES));
+        doc.add(new StringField(FIELD_BLOCK, aId + "/" + aBlock.getIndex(), Field.Store.YES));
+        doc.add(new StoredField(FIELD_FINGERPRINT, aBlock.getFingerprint()));
+        doc.add(new StoredField(FIELD_TOKEN_OFFSET, aBlock.getFirstToken()));
+
+        // The content is handed to the MtasUimaParser as the CAS itself. It is not stored
+        // because results are rendered from the MTAS payloads and the fields above.
+        doc.add(new TextField(FIELD_CONTENT,
+                new CasReader(aJCas, aBlock)));
+
+        return doc;
+    }
+
+    @Override
+    public void updateDocument(AnnotationDocument aDocument, JCas aJCas) throws IOException
+    {
+        if (indexWriter == null) {
+            log.debug("Aborted update of annotation document [{}]({}) in project [{}]({}) - "
+                    + "indexWriter was null", aDocument.getName(), aDocument.getId(),
+                    project.getName(), project.getId());
+            return;
+        }
+
+        String id = String.format("%d/%d", aDocument.getDocument().getId(), aDocument.getId());
+        Optional<Map<String, BytesRef>> indexedFingerprints = getIndexedFingerprints(id);
+
+        // Documents indexed before blocks were introduced are indexed again as a whole
+        if (!indexedFingerprints.isPresent()) {
+            deindexDocument(aDocument);
+            indexDocument(aDocument, aJCas);
+            return;
+        }
+
+        String timestamp = DateTools.dateToString(new Date(), DateTools.Resolution.MILLISECOND);
+        Map<String, BytesRef> staleBlocks = indexedFingerprints.get();
+        int updatedBlocks = 0;
+        List<DocumentBlock> blocks = DocumentBlock.split(aJCas, SENTENCES_PER_BLOCK);
+        for (DocumentBlock block : blocks) {
+            String blockId = id + "/" + block.getIndex();
+            BytesRef indexedFingerprint = staleBlocks.remove(blockId);
+            if (new BytesRef(block.getFingerprint()).equals(indexedFingerprint)) {
+                continue;
+            }
+
+            indexWriter.updateDocument(new Term(FIELD_BLOCK, blockId), createBlockDocument(id,
+                    aDocument.getName(), aDocument.getUser(), timestamp, aJCas, block));
+            updatedBlocks++;
+        }
+
+        // Remove blocks beyond the end of the document, e.g. if sentences were merged
+        for (String blockId : staleBlocks.keySet()) {
+            indexWriter.deleteDocuments(new Term(FIELD_BLOCK, blockId));
+        }
+
+        if (updatedBlocks > 0 || !staleBlocks.isEmpty()) {
+            scheduleCommit();
+        }
+
+        log.debug("Updated annotation document [{}]({}) in project [{}]({}): {} of {} blocks "
+                + "changed, {} removed", aDocument.getName(), aDocument.getId(),
+                project.getName(), project.getId(), updatedBlocks, blocks.size(),
+                staleBlocks.size());
+    }
+
+    /**
+     * Returns the fingerprints of the indexed blocks of a document by block ID or nothing if the
+     * document has been indexed without blocks.
+     */
+    private Optional<Map<String, BytesRef>> getIndexedFingerprints(String aId) throws IOException
+    {
+        Map<String, BytesRef> fingerprints = new HashMap<>();
+        Query query = new TermQuery(new Term(FIELD_ID, aId));
+
+        SearcherManager manager = getSearcherManager();
+        IndexSearcher searcher = acquireSearcher(manager);
+        try {
+            int count = searcher.count(query);
+            if (count == 0) {
+                return Optional.of(fingerprints);
+            }
+
+            for (ScoreDoc scoreDoc : searcher.search(query, count).scoreDocs) {
+                Document document = searcher.doc(scoreDoc.doc, BLOCK_FIELDS);
+                String blockId = document.get(FIELD_BLOCK);
+                BytesRef fingerprint = document.getBinaryValue(FIELD_FINGERPRINT);
+                if (blockId == null || fingerprint == null) {
+                    return Optional.empty();
+                }
+                fingerprints.put(blockId, fingerprint);
+            }
+        }
+        finally {
+            manager.release(searcher);
+        }
+
+        return Optional.of(fingerprints);
+    }
+
     @Override
     public void indexDocument(SourceDocument aDocument, JCas aJCas) throws IOException
     {
@@ -527,7 +1134,7 @@ public class MtasDocumentIndex
             indexWriter.deleteDocuments(new Term(FIELD_ID,
                     String.format("%d/%d", aSourceDocumentId, aAnnotationDocumentId)));
 
-            indexWriter.commit();
+            scheduleCommit();
 
             log.info(
                     "Removed document from index in project [{}]({}). sourceId: {}, "
@@ -578,7 +1185,7 @@ public class MtasDocumentIndex
             // Delete document based on the previous query
             indexWriter.deleteDocuments(booleanQuery.build());
 
-            indexWriter.commit();
+            scheduleCommit();
 
             log.info(
                     "Removed document from index in project [{}]({}). sourceId: {}, "
@@ -659,15 +1266,99 @@ public class MtasDocumentIndex
         return new File(resourceDir, "/" + PROJECT_FOLDER + "/" + project.getId() + "/" + INDEX);
     }
 
+    /**
+     * Records a change to the index. Changes are visible to queries immediately through the
+     * near-real-time searcher, but they are only committed to disk once {@link #COMMIT_BATCH_SIZE}
+     * changes have accumulated or {@link #COMMIT_INTERVAL} has elapsed.
+     */
+    private synchronized void scheduleCommit() throws IOException
+    {
+        uncommittedChanges++;
+
+        if (bulkIndexing) {
+            return;
+        }
+
+        if (uncommittedChanges >= COMMIT_BATCH_SIZE) {
+            commitChanges();
+        }
+        else if (scheduledCommit == null) {
+            scheduledCommit = COMMIT_SCHEDULER.schedule(this::commitScheduledChanges,
+                    COMMIT_INTERVAL, MILLISECONDS);
+        }
+    }
+
+    private synchronized void commitScheduledChanges()
+    {
+        scheduledCommit = null;
+
+        try {
+            commitChanges();
+        }
+        catch (Exception e) {
+            log.error("Unable to commit index for project [{}]({})", project.getName(),
+                    project.getId(), e);
+        }
+    }
+
+    private synchronized void commitChanges() throws IOException
+    {
+        if (scheduledCommit != null) {
+            scheduledCommit.cancel(false);
+            scheduledCommit = null;
+        }
+
+        if (uncommittedChanges == 0 || indexWriter == null || !indexWriter.isOpen()) {
+            return;
+        }
+
+        indexWriter.commit();
+
+        log.debug("Committed {} change(s) to index for project [{}]({})", uncommittedChanges,
+                project.getName(), project.getId());
+
+        uncommittedChanges = 0;
+    }
+
+    private SearcherManager getSearcherManager() throws IOException
+    {
+        SearcherManager manager = searcherManager;
+        if (manager == null) {
+            throw new IOException("Index for project [" + project.getName() + "]("
+                    + project.getId() + ") is not open");
+        }
+        return manager;
+    }
+
+    /**
+     * Acquires a searcher which sees all changes made to the index so far, including those which
+     * have not been committed yet. The searcher must be released to the manager after use.
+     */
+    private IndexSearcher acquireSearcher(SearcherManager aManager) throws IOException
+    {
+        // This only opens a new reader if the index has changed since the last refresh
+        aManager.maybeRefreshBlocking();
+        return aManager.acquire();
+    }
+
     @Override
-    public void closePhysicalIndex()
+    public synchronized void closePhysicalIndex()
     {
+        queryCache.clear();
+
         if (indexWriter != null) {
             try {
+                if (searcherManager != null) {
+                    searcherManager.close();
+                    searcherManager = null;
+                }
+
                 if (indexWriter.isOpen()) {
                     // Commit and close the index
-                    indexWriter.commit();
+                    Directory directory = indexWriter.getDirectory();
+                    commitChanges();
                     indexWriter.close();
+                    directory.close();
                 }
 
                 log.debug("Index for project [{}]({}) has been closed", project.getName(),
@@ -712,7 +1403,7 @@ public class MtasDocumentIndex
      * Open a Mtas physical index, setting indexWriter
      */
     @Override
-    public void openPhysicalIndex()
+    public synchronized void openPhysicalIndex()
     {
         boolean isOpen;
         
@@ -726,6 +1417,7 @@ public class MtasDocumentIndex
 
                 indexWriter = openLuceneIndex(getIndexDir());
                 indexWriter.commit();
+                searcherManager = new SearcherManager(indexWriter, true, true, null);
 
                 log.debug("indexWriter has been opened for project [{}]({})", project.getName(),
                         project.getId());
@@ -777,7 +1469,8 @@ public class MtasDocumentIndex
 
     public IndexWriter openLuceneIndex(File aIndexDir) throws IOException
     {
-        Directory directory = FSDirectory.open(aIndexDir.toPath());
+        Directory directory = new NRTCachingDirectory(FSDirectory.open(aIndexDir.toPath()),
+                NRT_CACHE_MAX_SEGMENT_SIZE, NRT_CACHE_MAX_SIZE);
 
         // Create parser configuration as a JSON object
         JSONObject jsonParserConfiguration = new JSONObject();
@@ -809,41 +1502,111 @@ public class MtasDocumentIndex
         return new IndexWriter(directory, config);
     }
 
+    /**
+     * Indexes all annotation documents of all users and all source documents of the project. The
+     * documents are read and parsed by a pool of worker threads which all add to the same index
+     * writer. The changes are committed once at the end.
+     */
     private void indexAllDocuments()
     {
-
+        // Collect the documents up front, the workers only read and index the CASes
+        List<DocumentIndexingJob> jobs = new ArrayList<>();
         int users = 0;
         int annotationDocs = 0;
         int sourceDocs = 0;
 
-        try {
-            log.info("Indexing all annotation documents of project [{}]({})", project.getName(),
-                    project.getId());
+        for (User user : projectService.listProjectUsersWithPermissions(project)) {
+            users++;
+            for (AnnotationDocument document : documentService.listAnnotationDocuments(project,
+                    user)) {
+                jobs.add(() -> indexDocument(document,
+                        documentService.readAnnotationCas(document)));
+                annotationDocs++;
+            }
+        }
 
-            for (User user : projectService.listProjectUsersWithPermissions(project)) {
-                users++;
-                for (AnnotationDocument document : documentService.listAnnotationDocuments(project,
-                        user)) {
-                    indexDocument(document, documentService.readAnnotationCas(document));
-                    annotationDocs++;
-                }
+        for (SourceDocument document : documentService.listSourceDocuments(project)) {
+            jobs.add(() -> indexDocument(document,
+                    documentService.createOrReadInitialCas(document)));
+            sourceDocs++;
+        }
+
+        log.info(
+                "Indexing {} source doc(s) and {} annotation doc(s) for {} user(s) in project "
+                        + "[{}]({}) using {} thread(s)",
+                sourceDocs, annotationDocs, users, project.getName(), project.getId(),
+                REINDEX_THREADS);
+
+        AtomicInteger done = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        long startTime = System.currentTimeMillis();
+
+        synchronized (this) {
+            bulkIndexing = true;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(REINDEX_THREADS,
+                new BasicThreadFactory.Builder().namingPattern("mtas-reindex-" + project.getId()
+                        + "-%d").build());
+        try {
+            for (DocumentIndexingJob job : jobs) {
+                executor.execute(() -> {
+                    try {
+                        job.run();
+                    }
+                    catch (Exception e) {
+                        failed.incrementAndGet();
+                        log.error("Unable to index document", e);
+                    }
+                    finally {
+                        done.incrementAndGet();
+                    }
+                });
             }
+            executor.shutdown();
 
-            log.info("Indexing all source documents of project [{}]({})", project.getName(),
+            while (!executor.awaitTermination(REINDEX_PROGRESS_INTERVAL, SECONDS)) {
+                logReindexProgress(done.get(), jobs.size(), startTime);
+            }
+        }
+        catch (InterruptedException e) {
+            log.warn("Indexing of project [{}]({}) was interrupted", project.getName(),
                     project.getId());
-
-            for (SourceDocument document : documentService.listSourceDocuments(project)) {
-                indexDocument(document, documentService.createOrReadInitialCas(document));
-                sourceDocs++;
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            synchronized (this) {
+                bulkIndexing = false;
             }
         }
+
+        try {
+            commitChanges();
+        }
         catch (IOException e) {
-            log.error("Unable to index document", e);
+            log.error("Unable to commit index for project [{}]({})", project.getName(),
+                    project.getId(), e);
         }
 
         log.info(String.format(
-                "Indexing results: %d source doc(s), %d annotation doc(s) for %d user(s)",
-                sourceDocs, annotationDocs, users));
+                "Indexing results: %d source doc(s), %d annotation doc(s) for %d user(s), "
+                        + "%d failed, in %s",
+                sourceDocs, annotationDocs, users, failed.get(), DurationFormatUtils
+                        .formatDuration(System.currentTimeMillis() - startTime, "HH:mm:ss")));
+    }
+
+    private void logReindexProgress(int aDone, int aTotal, long aStartTime)
+    {
+        long elapsed = System.currentTimeMillis() - aStartTime;
+        String remaining = aDone > 0
+                ? DurationFormatUtils.formatDuration(elapsed * (aTotal - aDone) / aDone,
+                        "HH:mm:ss")
+                : "unknown";
+
+        log.info("Indexing project [{}]({}): {}/{} document(s) done, elapsed {}, remaining {}",
+                project.getName(), project.getId(), aDone, aTotal,
+                DurationFormatUtils.formatDuration(elapsed, "HH:mm:ss"), remaining);
     }
 
     private String getShortName(String aName)
@@ -864,32 +1627,54 @@ public class MtasDocumentIndex
     {
         Optional<String> result = Optional.empty();
 
-        // Prepare index searcher for accessing index
-        Directory directory = FSDirectory.open(getIndexDir().toPath());
-        IndexReader indexReader = DirectoryReader.open(directory);
-        IndexSearcher indexSearcher = new IndexSearcher(indexReader);
-
         // Prepare query for the annotation document for this annotation document
         Term term = new Term(FIELD_ID,
                 String.format("%d/%d", aDocument.getDocument().getId(), aDocument.getId()));
         
         TermQuery query = new TermQuery(term);
 
-        // Do query
-        TopDocs docs = indexSearcher.search(query, 1);
-
-        if (docs.scoreDocs.length > 0) {
-            // If there are results, retrieve first document, since all results should come
-            // from the same document
-            Document document = indexSearcher.doc(docs.scoreDocs[0].doc);
-
-            // Retrieve the timestamp field if it exists
-            if (document.getField(FIELD_TIMESTAMP) != null) {
-                result = Optional.ofNullable(StringUtils
-                        .trimToNull(document.getField(FIELD_TIMESTAMP).stringValue()));
+        SearcherManager manager = getSearcherManager();
+        IndexSearcher indexSearcher = acquireSearcher(manager);
+        try {
+            // Do query
+            TopDocs docs = indexSearcher.search(query, 1);
+
+            if (docs.scoreDocs.length > 0) {
+                // If there are results, retrieve first document, since all results should come
+                // from the same document
+                Document document = indexSearcher.doc(docs.scoreDocs[0].doc);
+
+                // Retrieve the timestamp field if it exists
+                if (document.getField(FIELD_TIMESTAMP) != null) {
+                    result = Optional.ofNullable(StringUtils
+                            .trimToNull(document.getField(FIELD_TIMESTAMP).stringValue()));
+                }
             }
         }
+        finally {
+            manager.release(indexSearcher);
+        }
         
         return result;
     }
+
+    @FunctionalInterface
+    private interface DocumentIndexingJob
+    {
+        void run() throws IOException;
+    }
+
+    private static class LeafHits
+    {
+        private static final LeafHits EMPTY = new LeafHits(0, Collections.emptyList());
+
+        private final long count;
+        private final List<SearchResult> results;
+
+        public LeafHits(long aCount, List<SearchResult> aResults)
+        {
+            count = aCount;
+            results = aResults;
+        }
+    }
 }
@@ -17,8 +17,15 @@
  */
 package de.tudarmstadt.ukp.inception.search.index.mtas;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
@@ -31,9 +38,38 @@ import de.tudarmstadt.ukp.inception.search.index.PhysicalIndexFactoryImplBase;
 @Component("mtasDocumentIndexFactory")
 public class MtasDocumentIndexFactory
     extends PhysicalIndexFactoryImplBase
+    implements InitializingBean, DisposableBean
 {
     private final Logger log = LoggerFactory.getLogger(getClass());
     
+    // Number of threads searching index segments, shared by all indexes. If not positive, one
+    // thread per processor is used.
+    @Value("${search.mtas.query-threads:0}")
+    private int queryThreads;
+
+    // Maximum number of threads a single query may use
+    @Value("${search.mtas.max-query-parallelism:4}")
+    private int maxQueryParallelism;
+
+    private ExecutorService searchExecutor;
+
+    @Override
+    public void afterPropertiesSet()
+    {
+        int threads = queryThreads > 0 ? queryThreads
+                : Runtime.getRuntime().availableProcessors();
+        searchExecutor = Executors.newFixedThreadPool(threads, new BasicThreadFactory.Builder()
+                .namingPattern("mtas-search-%d").daemon(true).build());
+        log.info("Searching MTAS indexes using {} thread(s), at most {} per query", threads,
+                maxQueryParallelism);
+    }
+
+    @Override
+    public void destroy()
+    {
+        searchExecutor.shutdownNow();
+    }
+
     @Override
     public String getDisplayName()
     {
@@ -48,7 +84,7 @@ public class MtasDocumentIndexFactory
         PhysicalIndex indexBase = null;
         try {
             indexBase = new MtasDocumentIndex(aProject, aAnnotationSchemaService, aDocumentService,
-                    aProjectService, aDir);
+                    aProjectService, aDir, searchExecutor, maxQueryParallelism);
         }
         catch (Exception e) {
             log.error("Unable to get index", e);
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2018
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.search.index.mtas;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+import de.tudarmstadt.ukp.inception.search.SearchResultPage;
+import mtas.search.spans.util.MtasSpanQuery;
+
+/**
+ * Cache of the parsed queries and the result pages of a single index.
+ * <p>
+ * Result pages are only valid for the version of the index reader they were computed on. Once a
+ * page for a newer version is requested or added, all pages of older versions are dropped. Since
+ * the documents visible to a user do not only depend on the index, pages are additionally keyed by
+ * a visibility fingerprint provided by the caller. The fingerprint must implement {@code equals}.
+ * Both caches are bounded and evict the least recently used entries first.
+ */
+public class MtasQueryCache
+{
+    private final Map<String, MtasSpanQuery> queries;
+    private final Map<PageKey, SearchResultPage> pages;
+
+    private long indexVersion = -1;
+
+    private long queryHits = 0;
+    private long queryMisses = 0;
+    private long pageHits = 0;
+    private long pageMisses = 0;
+
+    public MtasQueryCache(int aMaxQueries, int aMaxPages)
+    {
+        queries = new LinkedHashMap<String, MtasSpanQuery>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 4389157862543307744L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MtasSpanQuery> aEldest)
+            {
+                return size() > aMaxQueries;
+            }
+        };
+
+        pages = new LinkedHashMap<PageKey, SearchResultPage>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = -7002365209357960711L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<PageKey, SearchResultPage> aEldest)
+            {
+                return size() > aMaxPages;
+            }
+        };
+    }
+
+    public synchronized Optional<MtasSpanQuery> getQuery(String aQuery)
+    {
+        MtasSpanQuery query = queries.get(aQuery);
+        if (query != null) {
+            queryHits++;
+        }
+        else {
+            queryMisses++;
+        }
+        return Optional.ofNullable(query);
+    }
+
+    public synchronized void putQuery(String aQuery, MtasSpanQuery aParsedQuery)
+    {
+        queries.put(aQuery, aParsedQuery);
+    }
+
+    public synchronized Optional<SearchResultPage> getPage(long aIndexVersion, String aUser,
+            Object aVisibilityFingerprint, String aQuery, long aOffset, int aLimit)
+    {
+        updateIndexVersion(aIndexVersion);
+
+        SearchResultPage page = null;
+        if (aIndexVersion == indexVersion) {
+            page = pages.get(
+                    new PageKey(aUser, aVisibilityFingerprint, aQuery, aOffset, aLimit));
+        }
+
+        if (page != null) {
+            pageHits++;
+        }
+        else {
+            pageMisses++;
+        }
+        return Optional.ofNullable(page);
+    }
+
+    public synchronized void putPage(long aIndexVersion, String aUser,
+            Object aVisibilityFingerprint, String aQuery, long aOffset, int aLimit,
+            SearchResultPage aPage)
+    {
+        updateIndexVersion(aIndexVersion);
+
+        // Do not cache pages computed on a reader which has already been superseded
+        if (aIndexVersion == indexVersion) {
+            pages.put(new PageKey(aUser, aVisibilityFingerprint, aQuery, aOffset, aLimit),
+                    aPage);
+        }
+    }
+
+    private void updateIndexVersion(long aIndexVersion)
+    {
+        if (aIndexVersion > indexVersion) {
+            pages.clear();
+            indexVersion = aIndexVersion;
+        }
+    }
+
+    public synchronized void clear()
+    {
+        queries.clear();
+        pages.clear();
+        indexVersion = -1;
+    }
+
+    public synchronized long getQueryHitCount()
+    {
+        return queryHits;
+    }
+
+    public synchronized long getQueryMissCount()
+    {
+        return queryMisses;
+    }
+
+    public synchronized long getPageHitCount()
+    {
+        return pageHits;
+    }
+
+    public synchronized long getPageMissCount()
+    {
+        return pageMisses;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return String.format("queries: %d cached, %d hits, %d misses; pages: %d cached, %d hits, "
+                + "%d misses", queries.size(), queryHits, queryMisses, pages.size(), pageHits,
+                pageMisses);
+    }
+
+    private static class PageKey
+    {
+        private final String user;
+        private final Object visibilityFingerprint;
+        private final String query;
+        private final long offset;
+        private final int limit;
+
+        public PageKey(String aUser, Object aVisibilityFingerprint, String aQuery, long aOffset,
+                int aLimit)
+        {
+            user = aUser;
+            visibilityFingerprint = aVisibilityFingerprint;
+            query = aQuery;
+            offset = aOffset;
+            limit = aLimit;
+        }
+
+        @Override
+        public boolean equals(final Object other)
+        {
+            if (!(other instanceof PageKey)) {
+                return false;
+            }
+            PageKey castOther = (PageKey) other;
+            return new EqualsBuilder().append(user, castOther.user)
+                    .append(visibilityFingerprint, castOther.visibilityFingerprint)
+                    .append(query, castOther.query).append(offset, castOther.offset)
+                    .append(limit, castOther.limit).isEquals();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return new HashCodeBuilder().append(user).append(visibilityFingerprint).append(query)
+                    .append(offset).append(limit).toHashCode();
+        }
+    }
+}
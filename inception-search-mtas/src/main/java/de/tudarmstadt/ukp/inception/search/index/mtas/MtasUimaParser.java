@@ -19,10 +19,11 @@ package de.tudarmstadt.ukp.inception.search.index.mtas;
 
 import static de.tudarmstadt.ukp.inception.search.FeatureIndexingSupport.SPECIAL_SEP;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
+import static org.apache.uima.fit.util.JCasUtil.select;
+
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,21 +33,15 @@ import java.util.Optional;
 import java.util.TreeMap;
 
 import org.apache.commons.collections4.MultiValuedMap;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.tuple.Pair;
-import org.apache.uima.UIMAException;
-import org.apache.uima.cas.impl.XmiCasDeserializer;
 import org.apache.uima.cas.text.AnnotationFS;
-import org.apache.uima.fit.factory.JCasFactory;
 import org.apache.uima.fit.util.FSUtil;
-import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.tcas.Annotation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
-import org.xml.sax.SAXException;
 
 import com.github.openjson.JSONObject;
 
@@ -96,6 +91,10 @@ public class MtasUimaParser
 
     private NavigableMap<Integer, Pair<Token, Integer>> tokenBeginIndex;
     private NavigableMap<Integer, Pair<Token, Integer>> tokenEndIndex;
+    
+    // Character offsets of the block being indexed
+    private int blockBegin;
+    private int blockEnd;
 
     public MtasUimaParser(MtasConfiguration config)
     {
@@ -157,17 +156,22 @@ public class MtasUimaParser
         long start = System.currentTimeMillis();
         log.debug("DEBUG - Starting creation of token collection");
 
-        JCas jcas;
-        try {
-            jcas = readCas(aReader);
+        // The index passes the CAS directly instead of serializing it, see CasReader
+        if (!(aReader instanceof CasReader)) {
+            log.error("Unable to index content: expected a CasReader but got [{}]",
+                    aReader.getClass().getName());
+            return new MtasTokenCollection();
         }
-        catch (Exception e) {
-            log.error("Unable to decode CAS", e);
+
+        CasReader casReader = (CasReader) aReader;
+        Collection<Annotation> annotations = casReader.getAnnotations();
+        if (annotations == null) {
+            log.error("Unable to index content: the CAS has already been consumed");
             return new MtasTokenCollection();
         }
 
         try {
-            createTokenCollection(jcas);
+            createTokenCollection(annotations, casReader.getBegin(), casReader.getEnd());
             log.debug("Created token collection in {} ms", (System.currentTimeMillis() - start));
             return tokenCollection;
         }
@@ -177,23 +181,23 @@ public class MtasUimaParser
         }
     }
     
-    private JCas readCas(Reader reader) throws UIMAException, IOException, SAXException
+    public MtasTokenCollection createTokenCollection(JCas aJCas)
     {
-        JCas jcas = JCasFactory
-                .createJCas(annotationSchemaService.getFullProjectTypeSystem(project));
-
-        String xmi = IOUtils.toString(reader);
-
-        // Get the annotations from the XMI are back in the CAS.
-        XmiCasDeserializer.deserialize(new ByteArrayInputStream(xmi.getBytes()), jcas.getCas());
-
-        return jcas;
+        return createTokenCollection(select(aJCas, Annotation.class), 0, Integer.MAX_VALUE);
     }
 
-    public MtasTokenCollection createTokenCollection(JCas aJCas)
+    /**
+     * Creates the token collection for the given annotations which must all start within the
+     * given range of character offsets and be in the order of the annotation index. Token
+     * positions are counted from the first token in the range.
+     */
+    public MtasTokenCollection createTokenCollection(Collection<Annotation> aAnnotations,
+            int aBegin, int aEnd)
     {
         // Initialize state
         tokenCollection = new MtasTokenCollection();
+        blockBegin = aBegin;
+        blockEnd = aEnd;
         int mtasId = 0;
         int tokenNum = 0;
         
@@ -201,14 +205,21 @@ public class MtasUimaParser
         // tokens based on their offsets.
         tokenBeginIndex = new TreeMap<>();
         tokenEndIndex = new TreeMap<>();
-        for (Token token : JCasUtil.select(aJCas, Token.class)) {
-            tokenBeginIndex.put(token.getBegin(), Pair.of(token, tokenNum));
-            tokenEndIndex.put(token.getEnd(), Pair.of(token, tokenNum));
-            tokenNum++;
+        for (Annotation annotation : aAnnotations) {
+            if (annotation instanceof Token) {
+                tokenBeginIndex.put(annotation.getBegin(), Pair.of((Token) annotation, tokenNum));
+                tokenEndIndex.put(annotation.getEnd(), Pair.of((Token) annotation, tokenNum));
+                tokenNum++;
+            }
+        }
+        
+        // Without tokens, there are no positions to index the annotations at
+        if (tokenBeginIndex.isEmpty()) {
+            return tokenCollection;
         }
         
         // Loop over the annotations
-        for (Annotation annotation : JCasUtil.select(aJCas, Annotation.class)) {
+        for (Annotation annotation : aAnnotations) {
             // MTAS cannot index zero-width annotations, so we skip them here.
             if (annotation.getBegin() == annotation.getEnd()) {
                 continue;
@@ -219,8 +230,20 @@ public class MtasUimaParser
         return tokenCollection;
     }
     
-    private Range getRange(AnnotationFS aAnnotation)
+    /**
+     * Determines the token positions covered by the given annotation. An annotation which starts
+     * in the current block but ends after it is truncated to the last token of the block.
+     * 
+     * @return the range or nothing if the annotation does not start in the current block, e.g.
+     *         if it is the target of a relation in another block. Token positions are local to a
+     *         block, so such an annotation cannot be located.
+     */
+    private Optional<Range> getRange(AnnotationFS aAnnotation)
     {
+        if (aAnnotation.getBegin() < blockBegin || aAnnotation.getBegin() >= blockEnd) {
+            return Optional.empty();
+        }
+        
         // Get begin of the first token. Special cases:
         // 1) if the first token starts after the first char. For example, when there's
         // a space or line break in the beginning of the document.
@@ -240,8 +263,8 @@ public class MtasUimaParser
         else {
             endToken = tokenEndIndex.ceilingEntry(aAnnotation.getEnd() - 1).getValue();
         }
-        return new Range(beginToken.getValue(), endToken.getValue(), beginToken.getKey().getBegin(),
-                endToken.getKey().getEnd());
+        return Optional.of(new Range(beginToken.getValue(), endToken.getValue(),
+                beginToken.getKey().getBegin(), endToken.getKey().getEnd()));
     }
     
     private int indexAnnotation(MtasTokenCollection aTokenCollection, AnnotationFS aAnnotation,
@@ -250,12 +273,13 @@ public class MtasUimaParser
         int mtasId = aMtasId;
         
         // Special case: token values must be indexed
+        // Tokens and sentences always start in the current block
         if (aAnnotation instanceof Token) {
-            indexTokenText(aAnnotation, getRange(aAnnotation), mtasId++);
+            indexTokenText(aAnnotation, getRange(aAnnotation).get(), mtasId++);
         } 
         // Special case: sentences must be indexed
         else if (aAnnotation instanceof Sentence) {
-            indexSentenceText(aAnnotation, getRange(aAnnotation), mtasId++);
+            indexSentenceText(aAnnotation, getRange(aAnnotation).get(), mtasId++);
         }
         else {
             AnnotationLayer layer = layers.get(aAnnotation.getType().getName());
@@ -289,7 +313,14 @@ public class MtasUimaParser
                                 AnnotationFS.class);
                     }
 
-                    Range range = getRange(targetFs);
+                    // The relation is indexed at the position of its target
+                    Optional<Range> targetRange = getRange(targetFs);
+                    if (!targetRange.isPresent()) {
+                        log.trace("Skipping relation [{}] with target outside of the block",
+                                aAnnotation);
+                        return mtasId;
+                    }
+                    Range range = targetRange.get();
                     
                     // Index the source annotation text (equals the target)
                     indexAnnotationText(layer.getUiName(), targetFs.getCoveredText(), range,
@@ -315,7 +346,7 @@ public class MtasUimaParser
                 }
             }
             else {
-                Range range = getRange(aAnnotation);
+                Range range = getRange(aAnnotation).get();
                 
                 // Index the annotation text
                 indexAnnotationText(layer.getUiName(), aAnnotation.getCoveredText(), range,
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.search.index.mtas;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.testing.factory.TokenBuilder;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.dkpro.core.api.ner.type.NamedEntity;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+
+public class DocumentBlockTest
+{
+    private JCas jcas;
+
+    @Before
+    public void setup() throws Exception
+    {
+        jcas = JCasFactory.createJCas();
+
+        TokenBuilder<Token, Sentence> builder = TokenBuilder.create(Token.class, Sentence.class);
+        builder.buildTokens(jcas, "This is a test . \n This is sentence two . \n And three .");
+    }
+
+    @Test
+    public void testSplit() throws Exception
+    {
+        List<Sentence> sentences = JCasUtil.selectAsList(jcas, Sentence.class);
+
+        List<DocumentBlock> blocks = DocumentBlock.split(jcas, 2);
+
+        assertThat(blocks).hasSize(2);
+        assertThat(blocks).extracting(DocumentBlock::getBegin)
+                .containsExactly(0, sentences.get(2).getBegin());
+        assertThat(blocks).extracting(DocumentBlock::getFirstToken)
+                .containsExactly(0, 10);
+        assertThat(blocks.get(1).getAnnotations())
+                .allMatch(a -> a.getBegin() >= sentences.get(2).getBegin())
+                .contains(sentences.get(2));
+    }
+
+    @Test
+    public void testFingerprintChangesOnlyInAffectedBlock() throws Exception
+    {
+        List<DocumentBlock> before = DocumentBlock.split(jcas, 1);
+
+        Token token = JCasUtil.selectAsList(jcas, Token.class).get(7);
+        NamedEntity ne = new NamedEntity(jcas, token.getBegin(), token.getEnd());
+        ne.setValue("LOC");
+        ne.addToIndexes();
+
+        List<DocumentBlock> after = DocumentBlock.split(jcas, 1);
+
+        assertThat(after).hasSize(3);
+        assertThat(after.get(0).getFingerprint()).isEqualTo(before.get(0).getFingerprint());
+        assertThat(after.get(1).getFingerprint()).isNotEqualTo(before.get(1).getFingerprint());
+        assertThat(after.get(2).getFingerprint()).isEqualTo(before.get(2).getFingerprint());
+
+        ne.setValue("PER");
+
+        assertThat(DocumentBlock.split(jcas, 1).get(1).getFingerprint())
+                .isNotEqualTo(after.get(1).getFingerprint());
+    }
+
+    @Test
+    public void testFingerprintChangesWithTokenOffset() throws Exception
+    {
+        List<DocumentBlock> before = DocumentBlock.split(jcas, 1);
+
+        // Removing a token from the first block shifts the token positions of all later blocks
+        JCasUtil.selectAsList(jcas, Token.class).get(1).removeFromIndexes();
+
+        List<DocumentBlock> after = DocumentBlock.split(jcas, 1);
+
+        assertThat(after).extracting(DocumentBlock::getFirstToken)
+                .containsExactly(0, 4, 9);
+        assertThat(after.get(1).getFingerprint()).isNotEqualTo(before.get(1).getFingerprint());
+        assertThat(after.get(2).getFingerprint()).isNotEqualTo(before.get(2).getFingerprint());
+    }
+}
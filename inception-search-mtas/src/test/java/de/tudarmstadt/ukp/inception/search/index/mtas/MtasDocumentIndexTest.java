@@ -21,7 +21,9 @@ import static java.util.Arrays.asList;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.awaitility.Awaitility.await;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
@@ -95,14 +97,17 @@ import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
 import de.tudarmstadt.ukp.clarin.webanno.support.ApplicationContextProvider;
 import de.tudarmstadt.ukp.clarin.webanno.text.TextFormatSupport;
 import de.tudarmstadt.ukp.dkpro.core.api.ner.type.NamedEntity;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
 import de.tudarmstadt.ukp.inception.kb.KnowledgeBaseService;
 import de.tudarmstadt.ukp.inception.kb.KnowledgeBaseServiceImpl;
+import de.tudarmstadt.ukp.inception.search.CountResult;
 import de.tudarmstadt.ukp.inception.search.FeatureIndexingSupport;
 import de.tudarmstadt.ukp.inception.search.FeatureIndexingSupportRegistry;
 import de.tudarmstadt.ukp.inception.search.FeatureIndexingSupportRegistryImpl;
 import de.tudarmstadt.ukp.inception.search.PrimitiveUimaIndexingSupport;
 import de.tudarmstadt.ukp.inception.search.SearchResult;
+import de.tudarmstadt.ukp.inception.search.SearchResultPage;
 import de.tudarmstadt.ukp.inception.search.SearchService;
 import de.tudarmstadt.ukp.inception.search.SearchServiceImpl;
 import de.tudarmstadt.ukp.inception.search.index.PhysicalIndexFactory;
@@ -360,6 +365,185 @@ public class MtasDocumentIndexTest
         assertEquals(expectedResult, results.get(0));
     }
 
+    @Test
+    public void testPagedQuery() throws Exception
+    {
+        Project project = new Project();
+        project.setName("TestPagedQuery");
+        project.setMode(WebAnnoConst.PROJECT_TYPE_ANNOTATION);
+
+        createProject(project);
+
+        SourceDocument sourceDocument = new SourceDocument();
+
+        sourceDocument.setName("Raw text document");
+        sourceDocument.setProject(project);
+        sourceDocument.setFormat("text");
+
+        String fileContent = "The capital of Galicia is Santiago de Compostela.";
+
+        uploadDocument(project, fileContent, sourceDocument);
+
+        User user = userRepository.get("admin");
+
+        // Matches every token
+        String query = "[]";
+
+        List<SearchResult> allResults = searchService.query(user, project, query);
+
+        SearchResultPage page = searchService.query(user, project, query, 2, 3);
+
+        assertEquals(allResults.size(), page.getTotalHits());
+        assertEquals(2, page.getOffset());
+        assertEquals(allResults.subList(2, 5), page.getResults());
+        assertTrue(page.hasPrevious());
+        assertTrue(page.hasNext());
+
+        SearchResultPage lastPage = searchService.query(user, project, query,
+                allResults.size() - 1, 3);
+
+        assertEquals(1, lastPage.getResults().size());
+        assertFalse(lastPage.hasNext());
+    }
+
+    @Test
+    public void testCountQueryHits() throws Exception
+    {
+        Project project = new Project();
+        project.setName("TestCountQueryHits");
+        project.setMode(WebAnnoConst.PROJECT_TYPE_ANNOTATION);
+
+        createProject(project);
+
+        SourceDocument sourceDocument = new SourceDocument();
+
+        sourceDocument.setName("Raw text document");
+        sourceDocument.setProject(project);
+        sourceDocument.setFormat("text");
+
+        String fileContent = "The capital of Galicia is Santiago de Compostela.";
+
+        uploadDocument(project, fileContent, sourceDocument);
+
+        User user = userRepository.get("admin");
+
+        // Matches every token
+        String query = "[]";
+
+        List<SearchResult> allResults = searchService.query(user, project, query);
+
+        List<CountResult> counts = searchService.countQueryHits(user, project, query);
+
+        assertEquals(1, counts.size());
+        assertEquals((long) sourceDocument.getId(), counts.get(0).getDocumentId());
+        assertEquals("", counts.get(0).getUser());
+        assertEquals(allResults.size(), counts.get(0).getCount());
+    }
+
+    @Test
+    public void testCountFeatureValues() throws Exception
+    {
+        Project project = new Project();
+        project.setName("TestCountFeatureValues");
+        project.setMode(WebAnnoConst.PROJECT_TYPE_ANNOTATION);
+
+        createProject(project);
+
+        User user = userRepository.get("admin");
+
+        SourceDocument sourceDocument = new SourceDocument();
+
+        sourceDocument.setName("Annotation document");
+        sourceDocument.setProject(project);
+        sourceDocument.setFormat("text");
+
+        String fileContent = "The capital of Galicia is Santiago de Compostela.";
+
+        uploadDocument(project, fileContent, sourceDocument);
+
+        annotateDocument(project, user, sourceDocument);
+
+        List<CountResult> counts = searchService.countFeatureValues(user, project,
+                "Named_entity.value");
+
+        // Only the annotation document of the user contains a named entity
+        assertEquals(1, counts.size());
+        assertEquals((long) sourceDocument.getId(), counts.get(0).getDocumentId());
+        assertEquals(user.getUsername(), counts.get(0).getUser());
+        assertEquals("LOC", counts.get(0).getValue());
+        assertEquals(1, counts.get(0).getCount());
+
+        // Other users only see the source document which contains no named entity
+        if (!userRepository.exists("other")) {
+            userRepository.create(new User("other", Role.ROLE_USER));
+        }
+        User otherUser = userRepository.get("other");
+
+        assertTrue(searchService.countFeatureValues(otherUser, project, "Named_entity.value")
+                .isEmpty());
+    }
+
+    @Test
+    public void testBlockBoundary() throws Exception
+    {
+        Project project = new Project();
+        project.setName("TestBlockBoundary");
+        project.setMode(WebAnnoConst.PROJECT_TYPE_ANNOTATION);
+
+        createProject(project);
+
+        User user = userRepository.get("admin");
+
+        // One sentence more than fits into a block, so the last sentence is in a block of its own
+        JCas jCas = JCasFactory.createJCas();
+        JCasBuilder builder = new JCasBuilder(jCas);
+        for (int i = 1; i <= MtasDocumentIndex.SENTENCES_PER_BLOCK + 1; i++) {
+            int begin = builder.getPosition();
+            builder.add("first" + i, Token.class);
+            builder.add(" ");
+            builder.add("last" + i, Token.class);
+            builder.add(begin, Sentence.class);
+            builder.add(" ");
+        }
+        builder.close();
+
+        SourceDocument sourceDocument = new SourceDocument();
+
+        sourceDocument.setName("Block document");
+        sourceDocument.setProject(project);
+        sourceDocument.setFormat("text");
+
+        uploadDocument(project, jCas.getDocumentText(), sourceDocument);
+
+        AnnotationDocument annotationDocument = documentService
+                .createOrGetAnnotationDocument(sourceDocument, user);
+        documentService.writeAnnotationCas(jCas, annotationDocument, false);
+
+        await("Waiting for indexing process to complete")
+                .atMost(60, SECONDS)
+                .pollInterval(5, SECONDS)
+                .until(() -> searchService.isIndexValid(project));
+
+        String lastInFirstBlock = "last" + MtasDocumentIndex.SENTENCES_PER_BLOCK;
+        String firstInSecondBlock = "first" + (MtasDocumentIndex.SENTENCES_PER_BLOCK + 1);
+
+        // Matches within a block are found
+        assertEquals(1, searchService.query(user, project,
+                "\"first1\" \"last1\"").size());
+
+        // Matches spanning two blocks are not found
+        assertTrue(searchService.query(user, project,
+                "\"" + lastInFirstBlock + "\" \"" + firstInSecondBlock + "\"").isEmpty());
+
+        // The context of a result ends at the block boundary while the token position is still
+        // counted from the beginning of the document
+        List<SearchResult> results = searchService.query(user, project,
+                "\"" + firstInSecondBlock + "\"");
+        assertEquals(1, results.size());
+        assertEquals("", results.get(0).getLeftContext());
+        assertEquals(2 * MtasDocumentIndex.SENTENCES_PER_BLOCK, results.get(0).getTokenStart());
+    }
+
     @Configuration
     public static class TestContext
     {
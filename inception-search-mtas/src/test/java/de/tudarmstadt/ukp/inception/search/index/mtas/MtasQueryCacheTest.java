@@ -0,0 +1,110 @@
+/*
+ * Copyright 2018
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.search.index.mtas;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.inception.search.SearchResultPage;
+import mtas.search.spans.util.MtasSpanQuery;
+
+public class MtasQueryCacheTest
+{
+    private static final List<Long> VISIBLE = asList(1L, 2L);
+    
+    private MtasQueryCache sut;
+
+    @Before
+    public void setup()
+    {
+        sut = new MtasQueryCache(2, 2);
+    }
+
+    @Test
+    public void thatParsedQueriesAreCachedAndEvicted()
+    {
+        MtasSpanQuery a = mock(MtasSpanQuery.class);
+        MtasSpanQuery b = mock(MtasSpanQuery.class);
+        MtasSpanQuery c = mock(MtasSpanQuery.class);
+
+        sut.putQuery("a", a);
+        sut.putQuery("b", b);
+        assertThat(sut.getQuery("a")).contains(a);
+
+        // "b" is now the least recently used query
+        sut.putQuery("c", c);
+
+        assertThat(sut.getQuery("b")).isEmpty();
+        assertThat(sut.getQuery("a")).contains(a);
+        assertThat(sut.getQuery("c")).contains(c);
+        assertThat(sut.getQueryHitCount()).isEqualTo(3);
+        assertThat(sut.getQueryMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void thatPagesAreKeyedByUserQueryAndRange()
+    {
+        SearchResultPage page = emptyPage();
+
+        sut.putPage(1, "user1", VISIBLE, "query", 0, 10, page);
+
+        assertThat(sut.getPage(1, "user1", VISIBLE, "query", 0, 10)).containsSame(page);
+        assertThat(sut.getPage(1, "user2", VISIBLE, "query", 0, 10)).isEmpty();
+        assertThat(sut.getPage(1, "user1", VISIBLE, "other", 0, 10)).isEmpty();
+        assertThat(sut.getPage(1, "user1", VISIBLE, "query", 10, 10)).isEmpty();
+        assertThat(sut.getPageHitCount()).isEqualTo(1);
+        assertThat(sut.getPageMissCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void thatPagesAreKeyedByVisibility()
+    {
+        SearchResultPage page = emptyPage();
+
+        sut.putPage(1, "user", VISIBLE, "query", 0, 10, page);
+
+        assertThat(sut.getPage(1, "user", asList(1L, 2L), "query", 0, 10)).containsSame(page);
+        // The user has started annotating another document
+        assertThat(sut.getPage(1, "user", asList(1L, 2L, 3L), "query", 0, 10)).isEmpty();
+    }
+
+    @Test
+    public void thatPagesAreInvalidatedByNewerIndexVersion()
+    {
+        sut.putPage(1, "user", VISIBLE, "query", 0, 10, emptyPage());
+
+        assertThat(sut.getPage(2, "user", VISIBLE, "query", 0, 10)).isEmpty();
+
+        // Pages computed on an outdated reader are not cached anymore
+        sut.putPage(1, "user", VISIBLE, "query", 0, 10, emptyPage());
+        assertThat(sut.getPage(1, "user", VISIBLE, "query", 0, 10)).isEmpty();
+        assertThat(sut.getPage(2, "user", VISIBLE, "query", 0, 10)).isEmpty();
+    }
+
+    private static SearchResultPage emptyPage()
+    {
+        return new SearchResultPage(Collections.emptyList(), 0, 0);
+    }
+}
@@ -18,7 +18,6 @@
 package de.tudarmstadt.ukp.inception.search.index.mtas;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
@@ -51,7 +50,6 @@ import org.apache.lucene.search.spans.SpanWeight;
 import org.apache.lucene.search.spans.Spans;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.RAMDirectory;
-import org.apache.uima.cas.impl.XmiCasSerializer;
 import org.apache.uima.fit.factory.JCasFactory;
 import org.apache.uima.fit.testing.factory.TokenBuilder;
 import org.apache.uima.fit.util.JCasUtil;
@@ -128,15 +126,10 @@ public class MtasUimaParserLuceneTest
         dmd.setDocumentTitle("Test");
         dmd.setDocumentId("1");
 
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        XmiCasSerializer.serialize(jcas.getCas(), null, bos, true, null);
-        bos.close();
-
         Document doc = new Document();
         doc.add(new StringField(FIELD_ID, "11", Field.Store.YES));
         doc.add(new StringField(FIELD_TITLE, dmd.getDocumentTitle(), Field.Store.YES));
-        doc.add(new TextField(FIELD_CONTENT, new String(bos.toByteArray(), "UTF-8"),
-                Field.Store.YES));
+        doc.add(new TextField(FIELD_CONTENT, new CasReader(jcas)));
         w.addDocument(doc);
         w.commit();
 
@@ -149,15 +142,10 @@ public class MtasUimaParserLuceneTest
         dmd.setDocumentTitle("Test");
         dmd.setDocumentId("1");
 
-        bos = new ByteArrayOutputStream();
-        XmiCasSerializer.serialize(jcas.getCas(), null, bos, true, null);
-        bos.close();
-
         doc = new Document();
         doc.add(new StringField(FIELD_ID, "12", Field.Store.YES));
         doc.add(new StringField(FIELD_TITLE, dmd.getDocumentTitle(), Field.Store.YES));
-        doc.add(new TextField(FIELD_CONTENT, new String(bos.toByteArray(), "UTF-8"),
-                Field.Store.YES));
+        doc.add(new TextField(FIELD_CONTENT, new CasReader(jcas)));
         w.addDocument(doc);
 
         // commit
@@ -27,12 +27,15 @@ import static org.mockito.MockitoAnnotations.initMocks;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import org.apache.uima.cas.CAS;
 import org.apache.uima.fit.factory.JCasBuilder;
 import org.apache.uima.fit.factory.JCasFactory;
 import org.apache.uima.fit.testing.factory.TokenBuilder;
+import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
@@ -207,6 +210,140 @@ public class MtasUimaParserTest
     }
 
     
+    @Test
+    public void testDependencyRelation() throws Exception
+    {
+        // Set up document with a dummy dependency relation
+        jcas.setDocumentText("a b");
+        Token t1 = new Token(jcas, 0, 1);
+        t1.addToIndexes();
+        
+        POS p1 = new POS(jcas, t1.getBegin(), t1.getEnd());
+        p1.setPosValue("A");
+        t1.setPos(p1);
+        p1.addToIndexes();
+
+        Token t2 = new Token(jcas, 2, 3);
+        t2.addToIndexes();
+
+        POS p2 = new POS(jcas, t2.getBegin(), t2.getEnd());
+        p2.setPosValue("B");
+        t2.setPos(p2);
+        p2.addToIndexes();
+        
+        Dependency d1 = new Dependency(jcas, t2.getBegin(), t2.getEnd());
+        d1.setDependent(t2);
+        d1.setGovernor(t1);
+        d1.addToIndexes();
+        
+        setupDependencySchema();
+        
+        MtasUimaParser sut = new MtasUimaParser(project, annotationSchemaService,
+                featureIndexingSupportRegistry);
+        MtasTokenCollection tc = sut.createTokenCollection(jcas);
+        
+        MtasUtils.print(tc);
+        
+        List<MtasToken> tokens = new ArrayList<>();
+        tc.iterator().forEachRemaining(tokens::add);
+        
+        assertThat(tokens)
+                .filteredOn(t -> "Token".equals(t.getPrefix()))
+                .extracting(MtasToken::getPostfix)
+                .containsExactly(
+                        "This", "is", "a", "test", ".", "This", "is", "sentence", "two", ".");
+
+        assertThat(tokens)
+                .filteredOn(t -> "s".equals(t.getPrefix()))
+                .extracting(MtasToken::getPostfix)
+                .containsExactly(
+                        "This is a test .", "This is sentence two .");
+    }
+    
+    @Test
+    public void testNamedEnity() throws Exception
+    {
+        JCasBuilder builder = new JCasBuilder(jcas);
+        builder.add("I", Token.class);
+        builder.add(" ");
+        builder.add("am", Token.class);
+        builder.add(" ");
+        int begin = builder.getPosition();
+        builder.add("John", Token.class);
+        builder.add(" ");
+        builder.add("Smith", Token.class);
+        NamedEntity ne = new NamedEntity(jcas, begin, builder.getPosition());
+        ne.setValue("PER");
+        ne.addToIndexes();
+        builder.add(" ");
+        builder.add(".", Token.class);
+        
+        AnnotationLayer layer = new AnnotationLayer(NamedEntity.class.getName(),
+                "Named Entity", WebAnnoConst.SPAN_TYPE, project, true, AnchoringMode.TOKENS);
+        when(annotationSchemaService.listAnnotationLayer(any(Project.class)))
+                .thenReturn(asList(layer));
+
+        when(annotationSchemaService.listAnnotationFeature(any(AnnotationLayer.class)))
+                .thenReturn(asList(
+                        new AnnotationFeature(1l, layer, "value", CAS.TYPE_NAME_STRING),
+                        new AnnotationFeature(2l, layer, "identifier", CAS.TYPE_NAME_STRING)));
+        
+        MtasUimaParser sut = new MtasUimaParser(project, annotationSchemaService,
+                featureIndexingSupportRegistry);
+        MtasTokenCollection tc = sut.createTokenCollection(jcas);
+        
+        MtasUtils.print(tc);
+        
+        List<MtasToken> tokens = new ArrayList<>();
+        tc.iterator().forEachRemaining(tokens::add);
+
+        assertThat(tokens)
+            .filteredOn(t -> t.getPrefix().startsWith("Named_Entity"))
+            .extracting(MtasToken::getPrefix)
+            .containsExactly("Named_Entity", "Named_Entity.value");
+
+        assertThat(tokens)
+            .filteredOn(t -> t.getPrefix().startsWith("Named_Entity"))
+            .extracting(MtasToken::getPostfix)
+            .containsExactly("", "PER");
+    }
+    
+    @Test
+    public void testZeroWidthSpanNotIndexed() throws Exception
+    {
+        TokenBuilder<Token, Sentence> builder = TokenBuilder.create(Token.class, Sentence.class);
+        builder.buildTokens(jcas, "This is a test . \n This is sentence two .");
+
+        NamedEntity zeroWidthNe = new NamedEntity(jcas, 4, 4);
+        zeroWidthNe.setValue("OTH");
+        zeroWidthNe.addToIndexes();
+        
+        AnnotationLayer layer = new AnnotationLayer(NamedEntity.class.getName(),
+                "Named Entity", WebAnnoConst.SPAN_TYPE, project, true, TOKENS);
+        when(annotationSchemaService.listAnnotationLayer(any(Project.class)))
+                .thenReturn(asList(layer));
+
+        when(annotationSchemaService.listAnnotationFeature(any(AnnotationLayer.class)))
+                .thenReturn(asList(
+                        new AnnotationFeature(1l, layer, "value", CAS.TYPE_NAME_STRING),
+                        new AnnotationFeature(2l, layer, "identifier", CAS.TYPE_NAME_STRING)));
+        
+        MtasUimaParser sut = new MtasUimaParser(project, annotationSchemaService,
+                featureIndexingSupportRegistry);
+        MtasTokenCollection tc = sut.createTokenCollection(jcas);
+        
+        MtasUtils.print(tc);
+        
+        List<MtasToken> tokens = new ArrayList<>();
+        tc.iterator().forEachRemaining(tokens::add);
+
+        assertThat(tokens)
+            .filteredOn(t -> t.getPrefix().startsWith("Named_Entity"))
+            .extracting(MtasToken::getPrefix)
+            .isEmpty();
+    }
+
+    
     @Test
     public void testDependencyRelation() throws Exception
     {
@@ -296,4 +433,59 @@ public class MtasUimaParserTest
                     "Dependency-target=b", 
                     "Dependency-target.PosValue=B");
     }
+
+    @Test
+    public void testDependencyRelationWithTargetOutsideOfBlock() throws Exception
+    {
+        // Set up document with a dependency relation which is located at the governor while the
+        // dependent is in the next block
+        jcas.setDocumentText("a b");
+        Token t1 = new Token(jcas, 0, 1);
+        t1.addToIndexes();
+        
+        POS p1 = new POS(jcas, t1.getBegin(), t1.getEnd());
+        p1.setPosValue("A");
+        t1.setPos(p1);
+        p1.addToIndexes();
+
+        Token t2 = new Token(jcas, 2, 3);
+        t2.addToIndexes();
+
+        POS p2 = new POS(jcas, t2.getBegin(), t2.getEnd());
+        p2.setPosValue("B");
+        t2.setPos(p2);
+        p2.addToIndexes();
+        
+        Dependency d1 = new Dependency(jcas, t1.getBegin(), t1.getEnd());
+        d1.setDependent(t2);
+        d1.setGovernor(t1);
+        d1.addToIndexes();
+        
+        setupDependencySchema();
+        
+        // Index only the block containing the first token
+        List<Annotation> firstBlock = JCasUtil.select(jcas, Annotation.class).stream()
+                .filter(a -> a.getBegin() < 2)
+                .collect(Collectors.toList());
+        
+        MtasUimaParser sut = new MtasUimaParser(project, annotationSchemaService,
+                featureIndexingSupportRegistry);
+        MtasTokenCollection tc = sut.createTokenCollection(firstBlock, 0, 2);
+        
+        List<MtasToken> tokens = new ArrayList<>();
+        tc.iterator().forEachRemaining(tokens::add);
+
+        assertThat(tokens)
+            .filteredOn(t -> t.getPrefix().startsWith("Dependency"))
+            .isEmpty();
+        assertThat(tokens)
+            .filteredOn(t -> t.getPrefix().equals("Token"))
+            .extracting(MtasToken::getPostfix)
+            .containsExactly("a");
+    }
+    
+    private void setupDependencySchema()
+    {
+
+    }
 }
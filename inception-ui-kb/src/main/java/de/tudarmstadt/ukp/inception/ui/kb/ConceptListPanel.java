@@ -17,7 +17,10 @@
  */
 package de.tudarmstadt.ukp.inception.ui.kb;
 
+import static de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaBehavior.visibleWhen;
+
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -36,6 +39,7 @@ import org.apache.wicket.spring.injection.annot.SpringBean;
 import org.eclipse.rdf4j.query.QueryEvaluationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.wicketstuff.event.annotation.OnEvent;
 
 import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaAjaxFormComponentUpdatingBehavior;
 import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaAjaxFormSubmittingBehavior;
@@ -44,6 +48,7 @@ import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaModel;
 import de.tudarmstadt.ukp.clarin.webanno.support.wicket.OverviewListChoice;
 import de.tudarmstadt.ukp.inception.kb.KnowledgeBaseService;
 import de.tudarmstadt.ukp.inception.kb.graph.KBHandle;
+import de.tudarmstadt.ukp.inception.kb.graph.KBPage;
 import de.tudarmstadt.ukp.inception.kb.graph.RdfUtils;
 import de.tudarmstadt.ukp.inception.kb.model.KnowledgeBase;
 import de.tudarmstadt.ukp.inception.ui.kb.event.AjaxConceptSelectionEvent;
@@ -54,12 +59,18 @@ public class ConceptListPanel extends Panel {
     private static final Logger LOG = LoggerFactory.getLogger(ConceptListPanel.class);
     
     private static final int LIST_MAX_ROWS = 30;
+    private static final int PAGE_SIZE = 100;
 
     private @SpringBean KnowledgeBaseService kbService;
 
     private IModel<KBHandle> selectedConcept;
     private IModel<KnowledgeBase> kbModel;
     private IModel<Preferences> preferences;
+    private IModel<KBPage> conceptsPage;
+    
+    // Concepts of the pages loaded so far and the cursor of the next page
+    private List<KBHandle> loadedConcepts;
+    private String nextCursor;
 
     public ConceptListPanel(String aId, IModel<KnowledgeBase> aKbModel,
             IModel<KBHandle> selectedConceptModel) {
@@ -70,17 +81,24 @@ public class ConceptListPanel extends Panel {
         selectedConcept = selectedConceptModel;
         kbModel = aKbModel;
         preferences = Model.of(new Preferences());
+        conceptsPage = LambdaModel.of(this::getConcepts);
 
         OverviewListChoice<KBHandle> overviewList = new OverviewListChoice<>("concepts");
         overviewList.setChoiceRenderer(new ChoiceRenderer<>("uiLabel"));
         overviewList.setModel(selectedConceptModel);
-        overviewList.setChoices(LambdaModel.of(this::getConcepts));
+        overviewList.setChoices(LambdaModel.of(() -> conceptsPage.getObject().getHandles()));
         overviewList.add(new LambdaAjaxFormComponentUpdatingBehavior("change",
                 this::actionSelectionChanged));
         overviewList.setMaxRows(LIST_MAX_ROWS);
         add(overviewList);
 
-        add(new Label("count", LambdaModel.of(() -> overviewList.getChoices().size())));
+        add(new Label("count", LambdaModel.of(() -> overviewList.getChoices().size()
+                + (conceptsPage.getObject().hasNext() ? "+" : ""))));
+
+        LambdaAjaxLink loadMoreLink = new LambdaAjaxLink("loadMore", this::actionLoadMore);
+        loadMoreLink.add(new Label("label", new ResourceModel("concept.list.loadmore")));
+        loadMoreLink.add(visibleWhen(() -> conceptsPage.getObject().hasNext()));
+        add(loadMoreLink);
 
         LambdaAjaxLink addLink = new LambdaAjaxLink("add", target -> send(getPage(),
                 Broadcast.BREADTH, new AjaxNewConceptEvent(target)));
@@ -94,6 +112,34 @@ public class ConceptListPanel extends Panel {
         add(form);
     }
     
+    /**
+     * Concepts which have been created or deleted need to show up in or disappear from the list,
+     * so the loaded pages are discarded unless a concept from the list has been selected.
+     */
+    @OnEvent
+    public void actionConceptSelection(AjaxConceptSelectionEvent aEvent)
+    {
+        KBHandle selection = aEvent.getSelection();
+        if (loadedConcepts != null
+                && (selection == null || !loadedConcepts.contains(selection))) {
+            resetPages();
+        }
+    }
+    
+    private void actionLoadMore(AjaxRequestTarget aTarget)
+    {
+        if (getConcepts().hasNext()) {
+            loadNextPage();
+        }
+        aTarget.add(this);
+    }
+    
+    private void resetPages()
+    {
+        loadedConcepts = null;
+        nextCursor = null;
+    }
+    
     private void actionSelectionChanged(AjaxRequestTarget aTarget) {
         // if the selection changes, publish an event denoting the change
         AjaxConceptSelectionEvent e = new AjaxConceptSelectionEvent(aTarget,
@@ -108,6 +154,7 @@ public class ConceptListPanel extends Panel {
      * @param aTarget
      */
     private void actionPreferenceChanged(AjaxRequestTarget aTarget) {
+        resetPages();
         if (!preferences.getObject().showAllConcepts && selectedConcept.getObject() != null
                 && RdfUtils.isFromImplicitNamespace(selectedConcept.getObject())) {
             send(getPage(), Broadcast.BREADTH, new AjaxConceptSelectionEvent(aTarget, null, true));
@@ -116,20 +163,35 @@ public class ConceptListPanel extends Panel {
         }
     }
 
-    private List<KBHandle> getConcepts() {
+    /**
+     * Returns the concepts of the pages loaded so far. The pages are kept until the preferences
+     * change or concepts are created or deleted, so loading more concepts only retrieves the next
+     * page.
+     */
+    private KBPage getConcepts() {
         if (isVisibleInHierarchy()) {
-            Preferences prefs = preferences.getObject();
-            try {
-                return kbService.listConcepts(kbModel.getObject(),
-                    prefs.showAllConcepts);
-            }
-            catch (QueryEvaluationException e) {
-                error("Unable to list concepts: " + e.getLocalizedMessage());
-                LOG.error("Unable to list concepts.",e);
-                return Collections.emptyList();
+            if (loadedConcepts == null) {
+                loadedConcepts = new ArrayList<>();
+                loadNextPage();
             }
+            return new KBPage(loadedConcepts, nextCursor);
         } else {
-            return Collections.emptyList();
+            return new KBPage(Collections.emptyList(), null);
+        }
+    }
+    
+    private void loadNextPage()
+    {
+        try {
+            KBPage page = kbService.listConcepts(kbModel.getObject(),
+                    preferences.getObject().showAllConcepts, nextCursor, PAGE_SIZE);
+            loadedConcepts.addAll(page.getHandles());
+            nextCursor = page.getNextCursor();
+        }
+        catch (QueryEvaluationException e) {
+            error("Unable to list concepts: " + e.getLocalizedMessage());
+            LOG.error("Unable to list concepts.",e);
+            nextCursor = null;
         }
     }
 
@@ -17,24 +17,28 @@
  */
 package de.tudarmstadt.ukp.inception.ui.kb;
 
+import static de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaBehavior.visibleWhen;
 import static org.apache.commons.lang3.StringUtils.isNotEmpty;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 
+import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.apache.wicket.event.Broadcast;
 import org.apache.wicket.markup.html.basic.Label;
 import org.apache.wicket.markup.html.form.CheckBox;
 import org.apache.wicket.markup.html.form.ChoiceRenderer;
 import org.apache.wicket.markup.html.panel.Panel;
 import org.apache.wicket.model.IModel;
-import org.apache.wicket.model.LoadableDetachableModel;
 import org.apache.wicket.model.Model;
 import org.apache.wicket.model.ResourceModel;
 import org.apache.wicket.spring.injection.annot.SpringBean;
 import org.eclipse.rdf4j.query.QueryEvaluationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.wicketstuff.event.annotation.OnEvent;
 
 import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaAjaxFormComponentUpdatingBehavior;
 import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaAjaxLink;
@@ -42,6 +46,7 @@ import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaModel;
 import de.tudarmstadt.ukp.clarin.webanno.support.wicket.OverviewListChoice;
 import de.tudarmstadt.ukp.inception.kb.KnowledgeBaseService;
 import de.tudarmstadt.ukp.inception.kb.graph.KBHandle;
+import de.tudarmstadt.ukp.inception.kb.graph.KBPage;
 import de.tudarmstadt.ukp.inception.kb.model.KnowledgeBase;
 import de.tudarmstadt.ukp.inception.ui.kb.event.AjaxInstanceSelectionEvent;
 import de.tudarmstadt.ukp.inception.ui.kb.event.AjaxNewInstanceEvent;
@@ -50,11 +55,20 @@ public class InstanceListPanel extends Panel {
     private static final long serialVersionUID = -2431507947235476294L;
     private static final Logger LOG = LoggerFactory.getLogger(InstanceListPanel.class);
 
+    private static final int PAGE_SIZE = 100;
+
     private @SpringBean KnowledgeBaseService kbService;
 
     private IModel<KnowledgeBase> kbModel;
     private IModel<KBHandle> conceptModel;
     private IModel<Boolean> showAll;
+    private IModel<KBPage> instancesPage;
+    
+    // Instances of the pages loaded so far, the cursor of the next page and the concept they were
+    // loaded for
+    private List<KBHandle> loadedInstances;
+    private String nextCursor;
+    private String pagedConceptIdentifier;
 
     public InstanceListPanel(String aId, IModel<KnowledgeBase> aKbModel, IModel<KBHandle> aConcept,
             IModel<KBHandle> aInstance) {
@@ -66,7 +80,9 @@ public class InstanceListPanel extends Panel {
         conceptModel = aConcept;
         showAll = Model.of(Boolean.FALSE);
         
-        IModel<List<KBHandle>> instancesModel = LoadableDetachableModel.of(this::getInstances);
+        instancesPage = LambdaModel.of(this::getInstances);
+        IModel<List<KBHandle>> instancesModel = LambdaModel
+                .of(() -> instancesPage.getObject().getHandles());
 
         OverviewListChoice<KBHandle> overviewList = new OverviewListChoice<KBHandle>("instances") {
             private static final long serialVersionUID = -122960232588575731L;
@@ -88,7 +104,13 @@ public class InstanceListPanel extends Panel {
                                 new AjaxInstanceSelectionEvent(target, aInstance.getObject()))));
         add(overviewList);
 
-        add(new Label("count", LambdaModel.of(() -> overviewList.getChoices().size())));
+        add(new Label("count", LambdaModel.of(() -> overviewList.getChoices().size()
+                + (instancesPage.getObject().hasNext() ? "+" : ""))));
+
+        LambdaAjaxLink loadMoreLink = new LambdaAjaxLink("loadMore", this::actionLoadMore);
+        loadMoreLink.add(new Label("label", new ResourceModel("instance.loadmore")));
+        loadMoreLink.add(visibleWhen(() -> instancesPage.getObject().hasNext()));
+        add(loadMoreLink);
 
         LambdaAjaxLink addLink = new LambdaAjaxLink("add",
             target -> send(getPage(), Broadcast.BREADTH, new AjaxNewInstanceEvent(target)));
@@ -109,8 +131,10 @@ public class InstanceListPanel extends Panel {
         });
 
         CheckBox showAllCheckBox = new CheckBox("showAllInstances", showAll);
-        showAllCheckBox
-                .add(new LambdaAjaxFormComponentUpdatingBehavior("change", t -> t.add(this)));
+        showAllCheckBox.add(new LambdaAjaxFormComponentUpdatingBehavior("change", t -> {
+            resetPages();
+            t.add(this);
+        }));
         add(showAllCheckBox);
     }
     
@@ -123,19 +147,69 @@ public class InstanceListPanel extends Panel {
                 isNotEmpty(conceptModel.getObject().getIdentifier()));
     }
 
-    private List<KBHandle> getInstances() {
+    /**
+     * Instances which have been created or deleted need to show up in or disappear from the list,
+     * so the loaded pages are discarded unless an instance from the list has been selected.
+     */
+    @OnEvent
+    public void actionInstanceSelection(AjaxInstanceSelectionEvent aEvent)
+    {
+        KBHandle selection = aEvent.getSelection();
+        if (loadedInstances != null
+                && (selection == null || !loadedInstances.contains(selection))) {
+            resetPages();
+        }
+    }
+    
+    private void actionLoadMore(AjaxRequestTarget aTarget)
+    {
+        if (getInstances().hasNext()) {
+            loadNextPage();
+        }
+        aTarget.add(this);
+    }
+    
+    private void resetPages()
+    {
+        loadedInstances = null;
+        nextCursor = null;
+    }
+
+    /**
+     * Returns the instances of the pages loaded so far. The pages are kept until the concept or
+     * the "show all" setting changes or instances are created or deleted, so loading more
+     * instances only retrieves the next page.
+     */
+    private KBPage getInstances() {
         if (conceptModel.getObject() != null) {
-            try {
-                return kbService.listInstances(kbModel.getObject(),
-                        conceptModel.getObject().getIdentifier(), showAll.getObject());
+            String conceptIdentifier = conceptModel.getObject().getIdentifier();
+            if (!Objects.equals(conceptIdentifier, pagedConceptIdentifier)) {
+                pagedConceptIdentifier = conceptIdentifier;
+                resetPages();
             }
-            catch (QueryEvaluationException e) {
-                error("Unable to list instances: " + e.getLocalizedMessage());
-                LOG.error("Unable to list instances.",e);
-                return Collections.emptyList();
+            
+            if (loadedInstances == null) {
+                loadedInstances = new ArrayList<>();
+                loadNextPage();
             }
+            return new KBPage(loadedInstances, nextCursor);
         } else {
-            return Collections.emptyList();
+            return new KBPage(Collections.emptyList(), null);
+        }
+    }
+    
+    private void loadNextPage()
+    {
+        try {
+            KBPage page = kbService.listInstances(kbModel.getObject(), pagedConceptIdentifier,
+                    showAll.getObject(), nextCursor, PAGE_SIZE);
+            loadedInstances.addAll(page.getHandles());
+            nextCursor = page.getNextCursor();
+        }
+        catch (QueryEvaluationException e) {
+            error("Unable to list instances: " + e.getLocalizedMessage());
+            LOG.error("Unable to list instances.",e);
+            nextCursor = null;
         }
     }
 
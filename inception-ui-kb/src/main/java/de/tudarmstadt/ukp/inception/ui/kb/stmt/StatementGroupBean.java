@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.UUID;
 
 import de.tudarmstadt.ukp.inception.kb.graph.KBHandle;
+import de.tudarmstadt.ukp.inception.kb.graph.KBProperty;
 import de.tudarmstadt.ukp.inception.kb.graph.KBStatement;
 import de.tudarmstadt.ukp.inception.kb.model.KnowledgeBase;
 
@@ -46,6 +47,7 @@ public class StatementGroupBean implements Serializable {
     private KnowledgeBase kb;
     private KBHandle instance;
     private KBHandle property;
+    private KBProperty propertyDetails;
     private List<KBStatement> statements;
     private StatementDetailPreference detailPreference;
     
@@ -77,6 +79,18 @@ public class StatementGroupBean implements Serializable {
         this.property = property;
     }
 
+    /**
+     * @return the property of this group as read from the knowledge base or {@code null} if it has
+     *         not been read yet.
+     */
+    public KBProperty getPropertyDetails() {
+        return propertyDetails;
+    }
+
+    public void setPropertyDetails(KBProperty propertyDetails) {
+        this.propertyDetails = propertyDetails;
+    }
+
     public List<KBStatement> getStatements() {
         return statements;
     }
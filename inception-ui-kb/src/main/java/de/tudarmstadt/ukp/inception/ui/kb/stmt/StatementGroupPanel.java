@@ -21,7 +21,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -227,9 +226,12 @@ public class StatementGroupPanel extends Panel {
             // TODO what about handling type intersection when multiple range statements are
             // present?
             // obtain IRI of property range, if existent
-            Optional<KBProperty> property = kbService.readProperty(statementGroupBean.getKb(),
-                statementGroupBean.getProperty().getIdentifier());
-            IModel<KBProperty> propertyModel = Model.of(property.orElse(null));
+            KBProperty property = statementGroupBean.getPropertyDetails();
+            if (property == null) {
+                property = kbService.readProperty(statementGroupBean.getKb(),
+                    statementGroupBean.getProperty().getIdentifier()).orElse(null);
+            }
+            IModel<KBProperty> propertyModel = Model.of(property);
 
             WebMarkupContainer statementIdentifier = new WebMarkupContainer("statementIdtext"); 
             TooltipBehavior tip = new TooltipBehavior();
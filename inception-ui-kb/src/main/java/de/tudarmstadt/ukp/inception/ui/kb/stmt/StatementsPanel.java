@@ -17,15 +17,18 @@
  */
 package de.tudarmstadt.ukp.inception.ui.kb.stmt;
 
+import static java.util.function.Function.identity;
 import static org.apache.commons.lang3.StringUtils.isNotEmpty;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.apache.wicket.ajax.AjaxRequestTarget;
@@ -55,6 +58,8 @@ import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaBehavior;
 import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaModel;
 import de.tudarmstadt.ukp.inception.kb.KnowledgeBaseService;
 import de.tudarmstadt.ukp.inception.kb.graph.KBHandle;
+import de.tudarmstadt.ukp.inception.kb.graph.KBProperty;
+import de.tudarmstadt.ukp.inception.kb.graph.KBQualifier;
 import de.tudarmstadt.ukp.inception.kb.graph.KBStatement;
 import de.tudarmstadt.ukp.inception.kb.model.KnowledgeBase;
 import de.tudarmstadt.ukp.inception.ui.kb.WriteProtectionBehavior;
@@ -254,6 +259,16 @@ public class StatementsPanel extends Panel {
             statements.removeIf((s) -> s.isInferred());
         }
         
+        // read the properties of all statements and qualifiers at once instead of one by one in
+        // the statement groups and editors
+        Map<String, KBProperty> properties = readProperties(statements);
+        for (KBStatement statement : statements) {
+            resolveLabel(statement.getProperty(), properties);
+            for (KBQualifier qualifier : statement.getQualifiers()) {
+                resolveLabel(qualifier.getKbProperty(), properties);
+            }
+        }
+        
         // group statements by property
         Map<KBHandle, List<KBStatement>> groupedStatements = statements.stream()
                 .collect(Collectors.groupingBy(KBStatement::getProperty));
@@ -264,6 +279,7 @@ public class StatementsPanel extends Panel {
             bean.setKb(kbModel.getObject());
             bean.setInstance(instance.getObject());
             bean.setProperty(entry.getKey());
+            bean.setPropertyDetails(properties.get(entry.getKey().getIdentifier()));
             bean.setStatements(entry.getValue());
             return bean;
         }).collect(Collectors.toList());
@@ -271,4 +287,31 @@ public class StatementsPanel extends Panel {
         Collections.sort(beans, statementGroupComparator.getObject());        
         return beans;
     }
+    
+    private Map<String, KBProperty> readProperties(List<KBStatement> aStatements) {
+        Set<String> identifiers = new HashSet<>();
+        for (KBStatement statement : aStatements) {
+            identifiers.add(statement.getProperty().getIdentifier());
+            for (KBQualifier qualifier : statement.getQualifiers()) {
+                identifiers.add(qualifier.getKbProperty().getIdentifier());
+            }
+        }
+        
+        try {
+            return kbService.readProperties(kbModel.getObject(), identifiers).stream()
+                    .collect(Collectors.toMap(KBProperty::getIdentifier, identity()));
+        }
+        catch (QueryEvaluationException e) {
+            error("Unable to read properties: " + e.getLocalizedMessage());
+            LOG.error("Unable to read properties.", e);
+            return Collections.emptyMap();
+        }
+    }
+    
+    private void resolveLabel(KBHandle aHandle, Map<String, KBProperty> aProperties) {
+        KBProperty property = aProperties.get(aHandle.getIdentifier());
+        if (property != null && aHandle.getName() == null) {
+            aHandle.setName(property.getName());
+        }
+    }
 }
@@ -17,45 +17,63 @@
  */
 package de.tudarmstadt.ukp.inception.app.ui.search.sidebar;
 
+import static de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst.PAGE_PARAM_DOCUMENT_ID;
+import static de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst.PAGE_PARAM_PROJECT_ID;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
+import org.apache.uima.cas.CAS;
+import org.apache.wicket.Component;
 import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.ajax.AbstractAjaxTimerBehavior;
 import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.apache.wicket.feedback.IFeedback;
 import org.apache.wicket.markup.html.WebMarkupContainer;
 import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.markup.html.form.DropDownChoice;
 import org.apache.wicket.markup.html.form.Form;
 import org.apache.wicket.markup.html.form.TextArea;
+import org.apache.wicket.markup.html.form.TextField;
 import org.apache.wicket.markup.html.list.ListItem;
 import org.apache.wicket.markup.html.list.ListView;
 import org.apache.wicket.markup.html.panel.Fragment;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.Model;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.spring.injection.annot.SpringBean;
+import org.apache.wicket.util.time.Duration;
 import org.wicketstuff.event.annotation.OnEvent;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
 import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
 import de.tudarmstadt.ukp.clarin.webanno.api.JCasProvider;
+import de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.action.AnnotationActionHandler;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.model.AnnotatorState;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering.event.RenderAnnotationsEvent;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering.model.VMarker;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering.model.VTextMarker;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.security.UserDao;
 import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
 import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaAjaxButton;
 import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaAjaxLink;
+import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaAjaxFormComponentUpdatingBehavior;
+import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaBehavior;
+import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaChoiceRenderer;
 import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaModel;
 import de.tudarmstadt.ukp.clarin.webanno.support.spring.ApplicationEventPublisherHolder;
 import de.tudarmstadt.ukp.clarin.webanno.ui.annotation.AnnotationPage;
 import de.tudarmstadt.ukp.clarin.webanno.ui.annotation.sidebar.AnnotationSidebar_ImplBase;
+import de.tudarmstadt.ukp.inception.search.BulkAnnotationJob;
 import de.tudarmstadt.ukp.inception.search.SearchResult;
+import de.tudarmstadt.ukp.inception.search.SearchResultPage;
 import de.tudarmstadt.ukp.inception.search.SearchService;
 import de.tudarmstadt.ukp.inception.search.event.SearchQueryEvent;
 import wicket.contrib.input.events.EventType;
@@ -67,6 +85,10 @@ public class SearchAnnotationSidebar
 {
     private static final long serialVersionUID = -3358207848681467993L;
 
+    private static final int RESULTS_PER_PAGE = 100;
+
+    private static final Duration BULK_ANNOTATION_POLL_INTERVAL = Duration.seconds(2);
+
     private @SpringBean DocumentService documentService;
     private @SpringBean AnnotationSchemaService annotationService;
     private @SpringBean SearchService searchService;
@@ -79,10 +101,17 @@ public class SearchAnnotationSidebar
     final WebMarkupContainer mainContainer;
 
     private Model<String> targetQuery = Model.of("");
+    private long resultsOffset = 0;
+    private IModel<SearchResultPage> searchResultPage;
     private IModel<List<SearchResult>> searchResults;
     
     private SearchResult selectedResult;
 
+    private IModel<AnnotationLayer> bulkAnnotationLayer = Model.of();
+    private IModel<AnnotationFeature> bulkAnnotationFeature = Model.of();
+    private IModel<String> bulkAnnotationValue = Model.of();
+    private boolean bulkAnnotationPolling;
+
     public SearchAnnotationSidebar(String aId, IModel<AnnotatorState> aModel,
             AnnotationActionHandler aActionHandler, JCasProvider aJCasProvider,
             AnnotationPage aAnnotationPage)
@@ -103,7 +132,8 @@ public class SearchAnnotationSidebar
         mainContainer.add(searchForm);
 
         
-        searchResults = LambdaModel.of(this::getSearchResults);
+        searchResultPage = LambdaModel.of(this::getSearchResults);
+        searchResults = LambdaModel.of(() -> searchResultPage.getObject().getResults());
         
         // Add link for reindexing the project
         mainContainer.add(new LambdaAjaxLink("reindexProject", t -> {
@@ -136,30 +166,232 @@ public class SearchAnnotationSidebar
                 searchResults.getObject().stream().map((result -> result.getDocumentTitle()))
                         .distinct().collect(Collectors.toList())));
         mainContainer.add(searchResultGroups);
+
+        mainContainer.add(new Label("resultsInfo", LambdaModel.of(() -> {
+            SearchResultPage page = searchResultPage.getObject();
+            return String.format("%d-%d of %d", page.getOffset() + 1,
+                    page.getOffset() + page.getResults().size(), page.getTotalHits());
+        })).add(LambdaBehavior.visibleWhen(() -> !searchResults.getObject().isEmpty())));
+        mainContainer.add(new LambdaAjaxLink("previousPage", this::actionPreviousPage)
+                .onConfigure((_this) -> _this
+                        .setVisible(searchResultPage.getObject().hasPrevious())));
+        mainContainer.add(new LambdaAjaxLink("nextPage", this::actionNextPage)
+                .onConfigure((_this) -> _this.setVisible(searchResultPage.getObject().hasNext())));
+
+        mainContainer.add(createBulkAnnotationForm());
+        mainContainer.add(createBulkAnnotationStatus());
+    }
+
+    private Form<Void> createBulkAnnotationForm()
+    {
+        Form<Void> form = new Form<>("bulkAnnotationForm");
+        form.setOutputMarkupId(true);
+
+        DropDownChoice<AnnotationLayer> layer = new DropDownChoice<>("layer", bulkAnnotationLayer,
+                LambdaModel.of(this::listSpanLayers),
+                new LambdaChoiceRenderer<>(AnnotationLayer::getUiName));
+        layer.setRequired(true);
+        layer.add(new LambdaAjaxFormComponentUpdatingBehavior("change", t -> {
+            bulkAnnotationFeature.setObject(null);
+            t.add(form);
+        }));
+        form.add(layer);
+
+        DropDownChoice<AnnotationFeature> feature = new DropDownChoice<>("feature",
+                bulkAnnotationFeature, LambdaModel.of(this::listStringFeatures),
+                new LambdaChoiceRenderer<>(AnnotationFeature::getUiName));
+        feature.setRequired(true);
+        form.add(feature);
+
+        form.add(new TextField<>("value", bulkAnnotationValue, String.class).setRequired(true));
+        form.add(new LambdaAjaxButton<>("annotateAll", this::actionBulkAnnotate));
+
+        // Only one job per user can be active, so the form is hidden while one is
+        form.add(LambdaBehavior.visibleWhen(() -> !searchResults.getObject().isEmpty()
+                && !isBulkAnnotationActive()));
+
+        return form;
+    }
+
+    private WebMarkupContainer createBulkAnnotationStatus()
+    {
+        WebMarkupContainer status = new WebMarkupContainer("bulkAnnotationStatus");
+        status.add(new Label("bulkAnnotationProgress",
+                LambdaModel.of(this::getBulkAnnotationProgress)));
+        status.add(new LambdaAjaxLink("cancelBulkAnnotation", this::actionCancelBulkAnnotation)
+                .add(LambdaBehavior.visibleWhen(this::isBulkAnnotationActive)));
+        status.add(LambdaBehavior.visibleWhen(() -> getBulkAnnotationJob().isPresent()));
+
+        // Poll the job while it is active. The flag (rather than the state of the job) controls
+        // the timer so that it still fires once after the job has finished.
+        bulkAnnotationPolling = isBulkAnnotationActive();
+        status.add(new AbstractAjaxTimerBehavior(BULK_ANNOTATION_POLL_INTERVAL)
+        {
+            private static final long serialVersionUID = 6129316356346357232L;
+
+            @Override
+            protected void onTimer(AjaxRequestTarget aTarget)
+            {
+                actionBulkAnnotationProgress(aTarget);
+            }
+
+            @Override
+            public boolean isEnabled(Component aComponent)
+            {
+                return bulkAnnotationPolling;
+            }
+        });
+
+        return status;
     }
 
     private void actionSearch(AjaxRequestTarget aTarget, Form<Void> aForm) {
+        resultsOffset = 0;
+        refreshResults(aTarget);
+    }
+
+    private void actionPreviousPage(AjaxRequestTarget aTarget)
+    {
+        resultsOffset = Math.max(0, resultsOffset - RESULTS_PER_PAGE);
+        refreshResults(aTarget);
+    }
+
+    private void actionNextPage(AjaxRequestTarget aTarget)
+    {
+        resultsOffset += RESULTS_PER_PAGE;
+        refreshResults(aTarget);
+    }
+
+    private void actionBulkAnnotate(AjaxRequestTarget aTarget, Form<Void> aForm)
+    {
+        try {
+            // Annotate all results of the query, not only those on the current page
+            List<SearchResult> results = searchService.query(currentUser, currentProject,
+                    targetQuery.getObject());
+            searchService.annotateResults(currentUser, currentProject, results,
+                    bulkAnnotationLayer.getObject(), bulkAnnotationFeature.getObject(),
+                    bulkAnnotationValue.getObject());
+            bulkAnnotationPolling = true;
+        }
+        catch (Exception e) {
+            error("Unable to start bulk annotation: " + e.getMessage());
+        }
+
+        aTarget.add(mainContainer);
+        aTarget.addChildren(getPage(), IFeedback.class);
+    }
+
+    private void actionCancelBulkAnnotation(AjaxRequestTarget aTarget)
+    {
+        getBulkAnnotationJob().ifPresent(BulkAnnotationJob::cancel);
+        aTarget.add(mainContainer);
+    }
+
+    private void actionBulkAnnotationProgress(AjaxRequestTarget aTarget)
+    {
+        if (!isBulkAnnotationActive()) {
+            bulkAnnotationPolling = false;
+
+            // If the job has written the document which is currently open, the editor state
+            // (timestamp, selection) is outdated. Load the document again as if it had just been
+            // opened instead of only rendering the new annotations.
+            AnnotatorState state = getModel().getObject();
+            if (state.getDocument() != null && getBulkAnnotationJob()
+                    .map(job -> job.isDocumentAnnotated(state.getDocument())).orElse(false)) {
+                PageParameters params = new PageParameters();
+                params.set(PAGE_PARAM_PROJECT_ID, state.getProject().getId());
+                params.set(PAGE_PARAM_DOCUMENT_ID, state.getDocument().getId());
+                setResponsePage(AnnotationPage.class, params);
+                return;
+            }
+        }
+
+        aTarget.add(mainContainer);
+    }
+
+    private Optional<BulkAnnotationJob> getBulkAnnotationJob()
+    {
+        return searchService.getBulkAnnotationJob(currentUser, currentProject);
+    }
+
+    private boolean isBulkAnnotationActive()
+    {
+        return getBulkAnnotationJob().map(job -> !job.isDone()).orElse(false);
+    }
+
+    private String getBulkAnnotationProgress()
+    {
+        return getBulkAnnotationJob().map(job -> {
+            String progress = String.format("%d of %d results annotated in %d of %d documents",
+                    job.getAnnotatedResults(), job.getTotalResults(),
+                    job.getProcessedDocuments(), job.getTotalDocuments());
+            if (job.getFailedResults() > 0) {
+                progress += String.format(" (%d failed)", job.getFailedResults());
+            }
+            if (job.getSkippedResults() > 0) {
+                progress += String.format(" (%d skipped in finished or modified documents)",
+                        job.getSkippedResults());
+            }
+            switch (job.getState()) {
+            case QUEUED:
+                return "Waiting to annotate " + job.getTotalResults() + " results";
+            case RUNNING:
+                return "Annotating: " + progress;
+            case CANCELLED:
+                return "Cancelled: " + progress;
+            case FAILED:
+                return "Failed: " + progress;
+            default:
+                return "Completed: " + progress;
+            }
+        }).orElse("");
+    }
+
+    private List<AnnotationLayer> listSpanLayers()
+    {
+        return annotationService.listAnnotationLayer(currentProject).stream()
+                .filter(layer -> layer.isEnabled() && !layer.isReadonly()
+                        && WebAnnoConst.SPAN_TYPE.equals(layer.getType()))
+                .collect(Collectors.toList());
+    }
+
+    private List<AnnotationFeature> listStringFeatures()
+    {
+        if (bulkAnnotationLayer.getObject() == null) {
+            return Collections.emptyList();
+        }
+
+        return annotationService.listAnnotationFeature(bulkAnnotationLayer.getObject()).stream()
+                .filter(feature -> feature.isEnabled()
+                        && CAS.TYPE_NAME_STRING.equals(feature.getType()))
+                .collect(Collectors.toList());
+    }
+
+    private void refreshResults(AjaxRequestTarget aTarget)
+    {
         selectedResult = null;
+        searchResultPage.detach();
         searchResults.detach();
         aTarget.add(mainContainer);
         aTarget.addChildren(getPage(), IFeedback.class);
     }
     
-    private List<SearchResult> getSearchResults()
+    private SearchResultPage getSearchResults()
     {
         if (isBlank(targetQuery.getObject())) {
-            return Collections.emptyList();
+            return new SearchResultPage(Collections.emptyList(), 0, 0);
         }
         
         try {
             currentProject = getModel().getObject().getProject();
             applicationEventPublisher.get().publishEvent(new SearchQueryEvent(this, currentProject,
                     currentUser.getUsername(), targetQuery.getObject()));
-            return searchService.query(currentUser, currentProject, targetQuery.getObject());
+            return searchService.query(currentUser, currentProject, targetQuery.getObject(),
+                    resultsOffset, RESULTS_PER_PAGE);
         }
         catch (Exception e) {
             error("Error in the query: " + e.getMessage());
-            return Collections.emptyList();
+            return new SearchResultPage(Collections.emptyList(), 0, 0);
         }
     }
 